@@ -0,0 +1,26 @@
+#!/bin/bash
+# Initiates the config server and $SHARDS shards as single-node replica sets and adds the shards to the router
+
+set -e
+
+run() {
+  local host=$1 script=$2
+  until mongosh --quiet --host "$host" --eval "$script"; do
+    sleep 2
+  done
+}
+
+initiate() {
+  local host=$1 config=$2
+  run "$host" "try { rs.status() } catch (e) { rs.initiate($config) }"
+  run "$host" "if (!db.hello().isWritablePrimary) { throw new Error('no primary yet') }"
+}
+
+initiate config:27019 "{_id: 'config', configsvr: true, members: [{_id: 0, host: 'config:27019'}]}"
+
+for i in $(seq 1 "$SHARDS"); do
+  initiate "shard$i:27018" "{_id: 'shard$i', members: [{_id: 0, host: 'shard$i:27018'}]}"
+  run router:27017 "sh.addShard('shard$i/shard$i:27018')"
+done
+
+echo "Cluster of $SHARDS shards is ready on port 27020"
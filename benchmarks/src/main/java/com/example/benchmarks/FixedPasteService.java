@@ -0,0 +1,99 @@
+package com.example.benchmarks;
+
+import com.example.model.Access;
+import com.example.model.Paste;
+import com.example.model.PasteContent;
+import com.example.model.PasteCursor;
+import com.example.model.PasteRequest;
+import com.example.model.PasteResult;
+import com.example.service.PasteService;
+
+import java.io.InputStream;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Service that returns the same pastes for every read, so that only the controller is measured
+ */
+class FixedPasteService implements PasteService {
+
+    private final List<Paste> pastes;
+
+    FixedPasteService(int count, int textLength) {
+
+        var now = LocalDateTime.now();
+        pastes = new ArrayList<>();
+
+        for (int i = 0; i < count; i++) {
+            pastes.add(Paste.builder()
+                    .hash((long) i)
+                    .text(Texts.of(textLength, i))
+                    .access(Access.PUBLIC)
+                    .createdAt(now.minusSeconds(i))
+                    .expireAt(now.plusDays(1))
+                    .build());
+        }
+    }
+
+    @Override
+    public Paste getByHash(Long hash) {
+        return pastes.get((int) (hash % pastes.size()));
+    }
+
+    @Override
+    public PasteContent getContentByHash(Long hash) {
+        return getByHash(hash).toContent();
+    }
+
+    @Override
+    public LocalDateTime getExpireAtByHash(Long hash) {
+        return getByHash(hash).getExpireAt();
+    }
+
+    @Override
+    public List<Paste> getAllLast() {
+        return pastes.subList(0, Math.min(10, pastes.size()));
+    }
+
+    @Override
+    public List<Paste> getAllLast(PasteCursor after, int limit) {
+        return pastes.subList(0, Math.min(limit, pastes.size()));
+    }
+
+    @Override
+    public List<Paste> getAllBySubstring(String text) {
+        return pastes;
+    }
+
+    @Override
+    public List<Paste> getAllBySubstring(String text, PasteCursor after, int limit) {
+        return pastes.subList(0, Math.min(limit, pastes.size()));
+    }
+
+    @Override
+    public Stream<Paste> streamAllBySubstring(String text) {
+        return pastes.stream();
+    }
+
+    @Override
+    public Paste create(PasteRequest pasteRequest) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public Paste create(PasteRequest pasteRequest, InputStream text) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public List<PasteResult> createAll(List<PasteRequest> pasteRequests) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void removeExpiredPastes() {
+        throw new UnsupportedOperationException();
+    }
+}
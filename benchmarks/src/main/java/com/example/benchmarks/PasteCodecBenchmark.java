@@ -0,0 +1,81 @@
+package com.example.benchmarks;
+
+import com.example.model.Access;
+import com.example.model.Paste;
+import com.example.model.PasteContent;
+import com.example.service.PasteCodec;
+import com.example.service.PasteDocuments;
+import com.example.service.PasteMetrics;
+import com.example.service.PasteTrigrams;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.bson.BsonBinaryReader;
+import org.bson.BsonBinaryWriter;
+import org.bson.RawBsonDocument;
+import org.bson.codecs.DecoderContext;
+import org.bson.codecs.EncoderContext;
+import org.bson.io.BasicOutputBuffer;
+import org.openjdk.jmh.annotations.*;
+
+import java.nio.ByteBuffer;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Conversions of pastes to and from BSON, done for every written and every read paste
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class PasteCodecBenchmark {
+
+    @Param({"64", "4096"})
+    public int textLength;
+
+    private PasteCodec pasteCodec;
+    private PasteDocuments pasteDocuments;
+    private Paste paste;
+    private byte[] bson;
+
+    @Setup
+    public void setUp() {
+
+        var pasteTrigrams = new PasteTrigrams(65536, 512, 64);
+        pasteDocuments = new PasteDocuments(pasteTrigrams);
+        pasteCodec = new PasteCodec(pasteDocuments, pasteTrigrams,
+                new PasteMetrics(new SimpleMeterRegistry()));
+
+        var now = LocalDateTime.now().truncatedTo(ChronoUnit.MILLIS);
+        paste = Paste.builder()
+                .hash(42L)
+                .text(Texts.of(textLength))
+                .access(Access.PUBLIC)
+                .createdAt(now)
+                .expireAt(now.plusSeconds(600))
+                .build();
+
+        bson = toDocument().toByteArray();
+    }
+
+    @Benchmark
+    public BasicOutputBuffer toDocument() {
+        var buffer = new BasicOutputBuffer();
+        pasteCodec.encode(new BsonBinaryWriter(buffer), paste, EncoderContext.builder().build());
+        return buffer;
+    }
+
+    @Benchmark
+    public Paste toPaste() {
+        try (var reader = new BsonBinaryReader(ByteBuffer.wrap(bson))) {
+            return pasteCodec.decode(reader, DecoderContext.builder().build());
+        }
+    }
+
+    @Benchmark
+    public PasteContent toInlineContent() {
+        return pasteDocuments.toInlineContent(new RawBsonDocument(bson));
+    }
+}
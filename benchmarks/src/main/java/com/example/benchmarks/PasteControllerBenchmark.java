@@ -0,0 +1,72 @@
+package com.example.benchmarks;
+
+import com.example.controller.PasteContentHttpMessageConverter;
+import com.example.controller.PasteController;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.http.converter.StringHttpMessageConverter;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+
+/**
+ * Handling of requests by the controller, mostly serialization of pastes, with a service
+ * that returns prepared pastes
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PasteControllerBenchmark {
+
+    @Param({"64", "4096"})
+    public int textLength;
+
+    private MockMvc mockMvc;
+
+    @Setup
+    public void setUp() {
+
+        var objectMapper = new ObjectMapper();
+        var pasteController =
+                new PasteController(new FixedPasteService(100, textLength), objectMapper);
+        ReflectionTestUtils.setField(pasteController, "maxPageSize", 100);
+
+        mockMvc = MockMvcBuilders.standaloneSetup(pasteController)
+                .setMessageConverters(new PasteContentHttpMessageConverter(),
+                        new StringHttpMessageConverter(),
+                        new MappingJackson2HttpMessageConverter(objectMapper))
+                .build();
+    }
+
+    @Benchmark
+    public byte[] getByHash() throws Exception {
+        return mockMvc.perform(get("/api/v1/pastes/{hash}", "1"))
+                .andReturn().getResponse().getContentAsByteArray();
+    }
+
+    @Benchmark
+    public byte[] getAllLast() throws Exception {
+        return mockMvc.perform(get("/api/v1/pastes"))
+                .andReturn().getResponse().getContentAsByteArray();
+    }
+
+    @Benchmark
+    public byte[] getPageOfLast() throws Exception {
+        return mockMvc.perform(get("/api/v1/pastes").param("size", "100"))
+                .andReturn().getResponse().getContentAsByteArray();
+    }
+
+    @Benchmark
+    public byte[] getAllBySubstring() throws Exception {
+        return mockMvc.perform(get("/api/v1/pastes/text/{text}", "message").param("size", "100"))
+                .andReturn().getResponse().getContentAsByteArray();
+    }
+}
@@ -0,0 +1,45 @@
+package com.example.benchmarks;
+
+import com.example.model.Paste;
+import com.example.model.PasteRequest;
+import org.openjdk.jmh.annotations.*;
+
+import java.time.LocalDateTime;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Creation of pastes from requests and generation of their hashes, done for every new paste
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class PasteModelBenchmark {
+
+    @Param({"64", "4096"})
+    public int textLength;
+
+    private PasteRequest pasteRequest;
+    private String text;
+    private LocalDateTime time;
+
+    @Setup
+    public void setUp() {
+        text = Texts.of(textLength);
+        time = LocalDateTime.now();
+        pasteRequest = PasteRequest.builder().text(text).access("public").validityInSeconds(600)
+                .build();
+    }
+
+    @Benchmark
+    public Paste toPaste() {
+        return pasteRequest.toPaste();
+    }
+
+    @Benchmark
+    public long generateHash() {
+        return Paste.generateHash(text, time);
+    }
+}
@@ -0,0 +1,119 @@
+package com.example.benchmarks;
+
+import com.example.PastebinMineRestMongoApplication;
+import com.example.model.Paste;
+import com.example.model.PasteContent;
+import com.example.model.PasteRequest;
+import com.example.service.PasteService;
+import de.bwaldvogel.mongo.MongoServer;
+import de.bwaldvogel.mongo.backend.memory.MemoryBackend;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Operations of the service end to end, from the service down to the driver, against an in-memory
+ * MongoDB server.
+ * The server has neither a disk nor real indexes, so the numbers show the cost of the application
+ * and the driver rather than the cost of MongoDB
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PasteServiceBenchmark {
+
+    private static final int PASTES = 1000;
+    private static final int BATCH_SIZE = 100;
+
+    @Param({"false", "true"})
+    public boolean cacheEnabled;
+
+    @Param({"64", "4096"})
+    public int textLength;
+
+    private MongoServer mongoServer;
+    private ConfigurableApplicationContext context;
+    private PasteService pasteService;
+    private long[] hashes;
+    private String text;
+
+    @Setup
+    public void setUp() {
+
+        mongoServer = new MongoServer(new MemoryBackend());
+        var address = mongoServer.bind();
+
+        // Arguments override application.properties, unlike default properties of the builder
+        context = new SpringApplicationBuilder(PastebinMineRestMongoApplication.class)
+                .web(WebApplicationType.NONE)
+                .run("--mongodb.host=mongodb://" + address.getHostString() + ":"
+                                + address.getPort(),
+                        "--pastes.cache.enabled=" + cacheEnabled,
+                        "--spring.main.banner-mode=off",
+                        "--logging.level.com.example=warn",
+                        "--logging.level.org.mongodb=warn");
+
+        pasteService = context.getBean(PasteService.class);
+        text = Texts.of(textLength);
+
+        var created = new ArrayList<Paste>();
+        for (int i = 0; i < PASTES; i += BATCH_SIZE) {
+            var requests = new ArrayList<PasteRequest>();
+            for (int j = i; j < i + BATCH_SIZE; j++) {
+                requests.add(request(Texts.of(textLength, j)));
+            }
+            pasteService.createAll(requests).forEach(result -> created.add(result.paste()));
+        }
+
+        hashes = created.stream().mapToLong(Paste::getHash).toArray();
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+        mongoServer.shutdownNow();
+    }
+
+    @Benchmark
+    public Paste getByHash() {
+        return pasteService.getByHash(randomHash());
+    }
+
+    @Benchmark
+    public PasteContent getContentByHash() {
+        return pasteService.getContentByHash(randomHash());
+    }
+
+    @Benchmark
+    public Paste create() {
+        return pasteService.create(request(text));
+    }
+
+    @Benchmark
+    public List<Paste> getAllLast() {
+        return pasteService.getAllLast();
+    }
+
+    @Benchmark
+    public List<Paste> getAllBySubstring() {
+        return pasteService.getAllBySubstring("#" + ThreadLocalRandom.current().nextInt(PASTES)
+                + " ", null, 20);
+    }
+
+    private long randomHash() {
+        return hashes[ThreadLocalRandom.current().nextInt(hashes.length)];
+    }
+
+    private static PasteRequest request(String text) {
+        return PasteRequest.builder().text(text).access("public").validityInSeconds(3600).build();
+    }
+}
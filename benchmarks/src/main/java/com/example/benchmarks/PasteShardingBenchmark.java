@@ -0,0 +1,119 @@
+package com.example.benchmarks;
+
+import com.example.PastebinMineRestMongoApplication;
+import com.example.model.Paste;
+import com.example.model.PasteRequest;
+import com.example.service.PasteService;
+import com.mongodb.client.MongoDatabase;
+import de.bwaldvogel.mongo.MongoServer;
+import de.bwaldvogel.mongo.backend.memory.MemoryBackend;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.ArrayList;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Load test of lookups and uploads of pastes under many concurrent clients, to compare the
+ * throughput of sharded clusters of a different number of shards. Start a cluster of {@code SHARDS}
+ * shards with {@code SHARDS=2 docker compose -f docker-compose.sharded.yml up -d} and run
+ * {@code java -jar target/benchmarks.jar PasteShardingBenchmark -t 64
+ * -p mongodbHost=mongodb://localhost:27020} for every number of shards, the cluster is removed
+ * with {@code docker compose ... down -v} in between.
+ * Without {@code mongodbHost} the test runs against an in-memory server, only to check the test
+ * itself
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 10)
+@Measurement(iterations = 3, time = 20)
+@Threads(64)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PasteShardingBenchmark {
+
+    private static final int PASTES = 10_000;
+    private static final int BATCH_SIZE = 100;
+    private static final int TEXT_LENGTH = 512;
+
+    @Param("")
+    public String mongodbHost;
+
+    private MongoServer mongoServer;
+    private ConfigurableApplicationContext context;
+    private PasteService pasteService;
+    private long[] hashes;
+    private String text;
+
+    @Setup
+    public void setUp() {
+
+        var host = mongodbHost;
+        if (host.isEmpty()) {
+            mongoServer = new MongoServer(new MemoryBackend());
+            var address = mongoServer.bind();
+            host = "mongodb://" + address.getHostString() + ":" + address.getPort();
+        }
+
+        // The cache is off, so that every lookup reaches the cluster
+        context = new SpringApplicationBuilder(PastebinMineRestMongoApplication.class)
+                .web(WebApplicationType.NONE)
+                .run("--mongodb.host=" + host,
+                        "--mongodb.database=pastebin-sharding-benchmark",
+                        "--mongodb.sharding.enabled=" + (mongoServer == null),
+                        "--mongodb.pool.max-size=200",
+                        "--pastes.cache.enabled=false",
+                        "--pastes.remover.enabled=false",
+                        "--spring.main.banner-mode=off",
+                        "--logging.level.com.example=warn",
+                        "--logging.level.org.mongodb=warn");
+
+        pasteService = context.getBean(PasteService.class);
+        text = Texts.of(TEXT_LENGTH);
+
+        var created = new ArrayList<Paste>();
+        for (int i = 0; i < PASTES; i += BATCH_SIZE) {
+            var requests = new ArrayList<PasteRequest>();
+            for (int j = i; j < i + BATCH_SIZE; j++) {
+                requests.add(request(Texts.of(TEXT_LENGTH, j)));
+            }
+            pasteService.createAll(requests).forEach(result -> created.add(result.paste()));
+        }
+
+        hashes = created.stream().mapToLong(Paste::getHash).toArray();
+    }
+
+    @TearDown
+    public void tearDown() {
+
+        context.getBean(MongoDatabase.class).drop();
+        context.close();
+
+        if (mongoServer != null) {
+            mongoServer.shutdownNow();
+        }
+    }
+
+    /**
+     * Lookup by a link, every lookup is sent to the single shard of the hash
+     */
+    @Benchmark
+    public Paste getByHash() {
+        return pasteService.getByHash(hashes[ThreadLocalRandom.current().nextInt(hashes.length)]);
+    }
+
+    /**
+     * Upload of a paste, consecutive hashes are spread over all shards by the hashed shard key
+     */
+    @Benchmark
+    public Paste create() {
+        return pasteService.create(request(text));
+    }
+
+    private static PasteRequest request(String text) {
+        return PasteRequest.builder().text(text).access("public").validityInSeconds(3600).build();
+    }
+}
@@ -0,0 +1,28 @@
+package com.example.benchmarks;
+
+/**
+ * Texts of pastes for benchmarks
+ */
+final class Texts {
+
+    private static final String LINE =
+            "Benchmark message of a paste with some code: for (int i = 0; i < n; i++) {}\n";
+
+    private Texts() {
+    }
+
+    /**
+     * Returns a text of exactly {@code length} characters made of repeated lines
+     */
+    static String of(int length) {
+        return LINE.repeat(length / LINE.length() + 1).substring(0, length);
+    }
+
+    /**
+     * Returns a text of about {@code length} characters that differs from texts with other numbers
+     */
+    static String of(int length, int number) {
+        var prefix = "#" + number + " ";
+        return prefix + of(Math.max(length - prefix.length(), 0));
+    }
+}
@@ -2,9 +2,14 @@ package com.example;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.autoconfigure.mongo.MongoAutoConfiguration;
+import org.springframework.boot.autoconfigure.mongo.MongoReactiveAutoConfiguration;
 import org.springframework.scheduling.annotation.EnableScheduling;
 
-@SpringBootApplication
+// Clients are created only by MongoDBConfig when pastes are stored in MongoDB
+// and by ReactiveMongoDBConfig for the "reactive" profile
+@SpringBootApplication(
+        exclude = {MongoAutoConfiguration.class, MongoReactiveAutoConfiguration.class})
 @EnableScheduling
 public class PastebinMineRestMongoApplication {
 
@@ -0,0 +1,120 @@
+package com.example.config;
+
+import com.mongodb.MongoClientSettings;
+import com.mongodb.connection.ConnectionId;
+import com.mongodb.connection.ServerId;
+import com.mongodb.event.ConnectionCheckOutFailedEvent;
+import com.mongodb.event.ConnectionCheckOutStartedEvent;
+import com.mongodb.event.ConnectionCheckedInEvent;
+import com.mongodb.event.ConnectionCheckedOutEvent;
+import com.mongodb.event.ConnectionClosedEvent;
+import com.mongodb.event.ConnectionPoolListener;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.boot.autoconfigure.mongo.MongoClientSettingsBuilderCustomizer;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures how long operations wait for a connection, as the timer {@code mongodb.driver.pool.wait}
+ * tagged by the {@code outcome} of the checkout, and how long connections are held out of the pool,
+ * as the timer {@code mongodb.driver.pool.usage}. Failed checkouts are also counted
+ * as {@code mongodb.driver.pool.checkout.failed} tagged by the {@code reason}.
+ * Sizes of the pool, of checked out connections and of the wait queue are measured by Micrometer
+ * itself.
+ * Connections are tracked by their ids, since the reactive driver checks them out and in on
+ * different threads.
+ * Checkout events of the driver carry no id of the operation, so waits are tracked per server in
+ * the order they start, which is the order the fair pool serves them
+ */
+@Component
+public class MongoConnectionPoolMetrics implements MongoClientSettingsBuilderCustomizer,
+        ConnectionPoolListener {
+
+    private final Map<ConnectionId, Long> checkedOutAt = new ConcurrentHashMap<>();
+    private final Map<ServerId, Queue<Long>> waitingSince = new ConcurrentHashMap<>();
+
+    private final MeterRegistry meterRegistry;
+    private final Timer usage;
+
+    public MongoConnectionPoolMetrics(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+        this.usage = Timer.builder("mongodb.driver.pool.usage")
+                .description("Time a connection is checked out of the pool")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public void customize(MongoClientSettings.Builder settings) {
+        settings.applyToConnectionPoolSettings(pool -> pool.addConnectionPoolListener(this));
+    }
+
+    @Override
+    public void connectionCheckOutStarted(ConnectionCheckOutStartedEvent event) {
+        waitingSince.computeIfAbsent(event.getServerId(), serverId -> new ConcurrentLinkedQueue<>())
+                .add(System.nanoTime());
+    }
+
+    @Override
+    public void connectionCheckedOut(ConnectionCheckedOutEvent event) {
+        var now = System.nanoTime();
+        recordWait(event.getConnectionId().getServerId(), "checked_out", now);
+        checkedOutAt.put(event.getConnectionId(), now);
+    }
+
+    @Override
+    public void connectionCheckedIn(ConnectionCheckedInEvent event) {
+
+        var startedAt = checkedOutAt.remove(event.getConnectionId());
+        if (startedAt == null) {
+            return;
+        }
+
+        usage.record(System.nanoTime() - startedAt, TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public void connectionClosed(ConnectionClosedEvent event) {
+        checkedOutAt.remove(event.getConnectionId());
+    }
+
+    @Override
+    public void connectionCheckOutFailed(ConnectionCheckOutFailedEvent event) {
+        recordWait(event.getServerId(), "failed", System.nanoTime());
+        Counter.builder("mongodb.driver.pool.checkout.failed")
+                .description(
+                        "Checkouts of connections that failed, e.g. timed out waiting for the pool")
+                .tag("reason", event.getReason().name().toLowerCase())
+                .register(meterRegistry)
+                .increment();
+    }
+
+    private void recordWait(ServerId serverId, String outcome, long now) {
+
+        var waiting = waitingSince.get(serverId);
+        var startedAt = waiting == null ? null : waiting.poll();
+        if (startedAt == null) {
+            return;
+        }
+
+        Timer.builder("mongodb.driver.pool.wait")
+                .description("Time an operation waits for a connection of the pool")
+                .tag("outcome", outcome)
+                .register(meterRegistry)
+                .record(now - startedAt, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Returns the number of connections which are checked out and not checked in yet
+     * @return number of tracked connections
+     */
+    int getCheckedOut() {
+        return checkedOutAt.size();
+    }
+}
@@ -1,13 +1,36 @@
 package com.example.config;
 
+import com.example.service.PasteCodec;
+import com.example.service.PasteIngestBuffer;
+import com.example.service.PasteServiceMongoDB;
+import com.example.service.PasteWriteBehindFlusher;
+import com.mongodb.ConnectionString;
+import com.mongodb.MongoClientSettings;
+import com.mongodb.ReadPreference;
 import com.mongodb.client.MongoClient;
 import com.mongodb.client.MongoClients;
 import com.mongodb.client.MongoDatabase;
+import org.bson.codecs.configuration.CodecRegistries;
+import org.bson.codecs.configuration.CodecRegistry;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.mongo.MongoClientSettingsBuilderCustomizer;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.context.annotation.Profile;
 
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Synchronous client of MongoDB, created only when pastes are stored in MongoDB.
+ * In the "reactive" profile it is used only off the event loop, by buckets, segments of large
+ * pastes, indexes and the backfill of trigrams
+ */
 @Configuration
+@ConditionalOnProperty(name = "pastes.storage", havingValue = "mongodb", matchIfMissing = true)
 public class MongoDBConfig {
 
     @Value("${mongodb.host}")
@@ -16,13 +39,85 @@ public class MongoDBConfig {
     @Value("${mongodb.database}")
     private String database;
 
+    @Value("${mongodb.pool.min-size:0}")
+    private int minPoolSize;
+
+    @Value("${mongodb.pool.max-size:100}")
+    private int maxPoolSize;
+
+    @Value("${mongodb.pool.max-connecting:2}")
+    private int maxConnecting;
+
+    @Value("${mongodb.pool.max-wait-time.millis:120000}")
+    private long maxWaitTimeMillis;
+
+    @Value("${mongodb.pool.max-idle-time.millis:0}")
+    private long maxIdleTimeMillis;
+
+    @Value("${mongodb.read-preference:primary}")
+    private String readPreference;
+
+    /**
+     * Settings of clients with the pool of connections configured by {@code mongodb.pool.*}
+     * properties.
+     * Customizers add listeners to the clients, e.g. metrics of the pool and commands.
+     * The settings are a bean of their own, so Boot does not add its standard customizer,
+     * whose default connection string would replace {@code mongodb.host}
+     */
+    @Bean
+    public MongoClientSettings mongoClientSettings(
+            ObjectProvider<MongoClientSettingsBuilderCustomizer> customizers) {
+
+        var settings = MongoClientSettings.builder()
+                .applyConnectionString(new ConnectionString(host))
+                .applyToConnectionPoolSettings(pool -> pool
+                        .minSize(minPoolSize)
+                        .maxSize(maxPoolSize)
+                        .maxConnecting(maxConnecting)
+                        .maxWaitTime(maxWaitTimeMillis, TimeUnit.MILLISECONDS)
+                        .maxConnectionIdleTime(maxIdleTimeMillis, TimeUnit.MILLISECONDS))
+                .readPreference(ReadPreference.valueOf(readPreference));
+
+        customizers.orderedStream().forEach(customizer -> customizer.customize(settings));
+
+        return settings.build();
+    }
+
     @Bean(destroyMethod = "close")
-    public MongoClient mongoClient() {
-        return MongoClients.create(host);
+    public MongoClient mongoClient(MongoClientSettings mongoClientSettings) {
+        return MongoClients.create(mongoClientSettings);
     }
 
+    /**
+     * Registry of the default codecs and the {@link PasteCodec}, so that collections of pastes can
+     * be typed
+     */
     @Bean
-    public MongoDatabase mongoDatabase(MongoClient mongoClient) {
-        return mongoClient.getDatabase(database);
+    public CodecRegistry pasteCodecRegistry(PasteCodec pasteCodec) {
+        return CodecRegistries.fromRegistries(
+                CodecRegistries.fromCodecs(pasteCodec),
+                MongoClientSettings.getDefaultCodecRegistry());
+    }
+
+    @Bean
+    public MongoDatabase mongoDatabase(MongoClient mongoClient, CodecRegistry pasteCodecRegistry) {
+        return mongoClient.getDatabase(database).withCodecRegistry(pasteCodecRegistry);
+    }
+
+    /**
+     * Flusher of the write-behind ingest. It depends on the client, so on shutdown
+     * the remaining pastes are drained before the client is closed
+     */
+    @Bean(initMethod = "start", destroyMethod = "drain")
+    @DependsOn("mongoClient")
+    @Profile("!reactive")
+    @ConditionalOnProperty(name = "pastes.ingest.write-behind.enabled", havingValue = "true")
+    public PasteWriteBehindFlusher pasteWriteBehindFlusher(
+            PasteIngestBuffer pasteIngestBuffer,
+            PasteServiceMongoDB pasteServiceMongoDB,
+            @Value("${pastes.ingest.write-behind.flush-interval.millis:50}")
+            long flushIntervalMillis) {
+        return new PasteWriteBehindFlusher(pasteIngestBuffer, pasteServiceMongoDB,
+                Duration.ofMillis(flushIntervalMillis));
     }
 }
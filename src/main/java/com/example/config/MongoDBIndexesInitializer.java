@@ -0,0 +1,236 @@
+package com.example.config;
+
+import com.example.service.ExpiryStrategy;
+import com.mongodb.MongoException;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoDatabase;
+import com.mongodb.client.model.IndexOptions;
+import com.mongodb.client.model.Indexes;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Makes sure that all indexes required by the queries of the paste service
+ * exist on the collection of pastes
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+@ConditionalOnExpression("${mongodb.indexes.enabled:true} "
+        + "and '${pastes.storage:mongodb}'.equalsIgnoreCase('mongodb')")
+public class MongoDBIndexesInitializer {
+
+    private final MongoDatabase db;
+
+    @Value("${mongodb.collection.pastes}")
+    private String collectionName;
+
+    @Value("${mongodb.collection.blobs}")
+    private String blobsCollectionName;
+
+    @Value("${mongodb.collection.files}")
+    private String filesBucketName;
+
+    @Value("${mongodb.collection.grams}")
+    private String gramsCollectionName;
+
+    @Value("${pastes.expiry.strategy:scheduler}")
+    private ExpiryStrategy expiryStrategy;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        try {
+            createIndexes();
+        } catch (MongoException e) {
+            log.error("Indexes were not created", e);
+        }
+    }
+
+    /**
+     * Creates missing indexes of the collections of pastes, blobs, files and grams, existing
+     * indexes are left untouched unless their TTL does not match the configured
+     * {@link ExpiryStrategy}
+     */
+    public void createIndexes() {
+        createIndexesOfPastes(collectionName);
+        createIndexesOfBlobs();
+        createIndexesOfFiles();
+        createIndexesOfGrams();
+    }
+
+    /**
+     * Creates missing indexes of a collection of pastes, e.g. of a bucket of
+     * {@link ExpiryStrategy#BUCKETS}
+     */
+    public void createIndexesOfPastes(String collectionName) {
+
+        var collection = db.getCollection(collectionName);
+        var existingIndexes = getIndexes(collection);
+
+        // Lookup of a paste by a link
+        createIndex(collection, existingIndexes,
+                Indexes.ascending("hash"),
+                new IndexOptions().name("hash_1").unique(true));
+
+        // Feed of the last public pastes and pages of search results
+        createIndex(collection, existingIndexes,
+                Indexes.compoundIndex(
+                        Indexes.ascending("access"),
+                        Indexes.descending("createdAt"),
+                        Indexes.descending("hash")),
+                new IndexOptions().name("access_1_createdAt_-1_hash_-1"));
+
+        // Superseded by the index above
+        dropIndex(collection, existingIndexes, "access_1_createdAt_-1");
+
+        // Search by a substring, large pastes are searched by their segments in the collection of
+        // grams
+        createIndex(collection, existingIndexes,
+                Indexes.ascending("grams"),
+                new IndexOptions().name("grams_1"));
+
+        // Pastes not indexed with the current trigram buckets, read by the backfill and by searches
+        // until it is done
+        createIndex(collection, existingIndexes,
+                Indexes.ascending("gramBuckets"),
+                new IndexOptions().name("gramBuckets_1"));
+
+        // Removal of expired pastes, either by the scheduler or by MongoDB itself
+        createIndex(collection, existingIndexes, Indexes.ascending("expireAt"), expireAtOptions());
+    }
+
+    private void createIndexesOfBlobs() {
+
+        var collection = db.getCollection(blobsCollectionName);
+        var existingIndexes = getIndexes(collection);
+
+        // Removal of blobs after the last referencing paste expires
+        createIndex(collection, existingIndexes, Indexes.ascending("expireAt"), expireAtOptions());
+    }
+
+    private void createIndexesOfFiles() {
+
+        var collection = db.getCollection(filesBucketName + ".files");
+        var existingIndexes = getIndexes(collection);
+
+        // Removal of files after their pastes expire, never by TTL, since their chunks would be
+        // left behind
+        createIndex(collection, existingIndexes,
+                Indexes.ascending("metadata.expireAt"),
+                new IndexOptions().name("metadata.expireAt_1"));
+    }
+
+    private void createIndexesOfGrams() {
+
+        var collection = db.getCollection(gramsCollectionName);
+        var existingIndexes = getIndexes(collection);
+
+        // Search of segments of large pastes by a substring
+        createIndex(collection, existingIndexes,
+                Indexes.ascending("grams"),
+                new IndexOptions().name("grams_1"));
+
+        // Replacement of segments of a paste indexed again
+        createIndex(collection, existingIndexes,
+                Indexes.ascending("hash"),
+                new IndexOptions().name("hash_1"));
+
+        // Removal of segments after their pastes expire
+        createIndex(collection, existingIndexes, Indexes.ascending("expireAt"), expireAtOptions());
+    }
+
+    private IndexOptions expireAtOptions() {
+
+        var options = new IndexOptions().name("expireAt_1");
+        if (expiryStrategy == ExpiryStrategy.TTL) {
+            options.expireAfter(0L, TimeUnit.SECONDS);
+        }
+
+        return options;
+    }
+
+    private void createIndex(MongoCollection<Document> collection,
+                             Map<String, Document> existingIndexes,
+                             Bson keys, IndexOptions options) {
+
+        var existingIndex = existingIndexes.get(options.getName());
+
+        if (existingIndex != null) {
+
+            var expireAfterSeconds = options.getExpireAfter(TimeUnit.SECONDS);
+            var existingExpireAfterSeconds = existingIndex.get("expireAfterSeconds", Number.class);
+
+            if (Objects.equals(expireAfterSeconds, toLong(existingExpireAfterSeconds))) {
+                log.info("Index '{}' of collection '{}' already exists", options.getName(),
+                        nameOf(collection));
+                return;
+            }
+
+            log.info("Index '{}' of collection '{}' has TTL '{}' instead of '{}' and is rebuilt",
+                    options.getName(), nameOf(collection), existingExpireAfterSeconds,
+                    expireAfterSeconds);
+            collection.dropIndex(options.getName());
+        }
+
+        var start = System.nanoTime();
+
+        try {
+            collection.createIndex(keys, options);
+        } catch (MongoException e) {
+            log.error("Index '{}' of collection '{}' failed to build: {}",
+                    options.getName(), nameOf(collection), e.getMessage());
+            return;
+        }
+
+        var elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+        log.info("Index '{}' of collection '{}' is built in {} ms", options.getName(),
+                nameOf(collection), elapsedMillis);
+    }
+
+    private void dropIndex(MongoCollection<Document> collection,
+                           Map<String, Document> existingIndexes, String name) {
+
+        if (!existingIndexes.containsKey(name)) {
+            return;
+        }
+
+        try {
+            collection.dropIndex(name);
+            log.info("Obsolete index '{}' of collection '{}' is dropped", name, nameOf(collection));
+        } catch (MongoException e) {
+            log.error("Obsolete index '{}' of collection '{}' failed to drop: {}",
+                    name, nameOf(collection), e.getMessage());
+        }
+    }
+
+    private Map<String, Document> getIndexes(MongoCollection<Document> collection) {
+
+        var indexes = new HashMap<String, Document>();
+
+        for (var index : collection.listIndexes()) {
+            indexes.put(index.getString("name"), index);
+        }
+
+        return indexes;
+    }
+
+    private String nameOf(MongoCollection<Document> collection) {
+        return collection.getNamespace().getCollectionName();
+    }
+
+    private Long toLong(Number number) {
+        return number == null ? null : number.longValue();
+    }
+}
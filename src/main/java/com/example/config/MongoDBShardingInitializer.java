@@ -0,0 +1,101 @@
+package com.example.config;
+
+import com.mongodb.MongoException;
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoDatabase;
+import com.mongodb.client.model.IndexOptions;
+import com.mongodb.client.model.Indexes;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+/**
+ * Shards the collections of pastes and blobs when the application is connected to a sharded
+ * cluster.
+ * Pastes are sharded by the hashed {@code hash}, so that time-ordered hashes are spread over all
+ * shards instead of hitting the last chunk, and every lookup by a link is routed to a single shard.
+ * The unique index on {@code hash} is still allowed, because the shard key is on the same field.
+ * Blobs are sharded by the hashed {@code _id}, which is the digest of the text and is used by all
+ * their queries.
+ * The feed and the search are sorted by every shard with its own index and merged by the router
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+@ConditionalOnExpression("${mongodb.sharding.enabled:false} "
+        + "and '${pastes.storage:mongodb}'.equalsIgnoreCase('mongodb')")
+public class MongoDBShardingInitializer {
+
+    static final Bson PASTES_SHARD_KEY = Indexes.hashed("hash");
+    static final Bson BLOBS_SHARD_KEY = Indexes.hashed("_id");
+
+    private final MongoClient mongoClient;
+    private final MongoDatabase db;
+
+    @Value("${mongodb.collection.pastes}")
+    private String collectionName;
+
+    @Value("${mongodb.collection.blobs}")
+    private String blobsCollectionName;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        shardCollections();
+    }
+
+    /**
+     * Shards the collections of pastes and blobs, collections that are already sharded are left
+     * untouched
+     * @return {@code true} if both collections are sharded
+     */
+    public boolean shardCollections() {
+
+        var admin = mongoClient.getDatabase("admin");
+
+        try {
+            admin.runCommand(new Document("enableSharding", db.getName()));
+        } catch (MongoException e) {
+            log.error("Sharding of database '{}' was not enabled, "
+                    + "is the application connected to mongos? {}", db.getName(), e.getMessage());
+            return false;
+        }
+
+        return shardPastes(collectionName)
+                & shardCollection(blobsCollectionName, BLOBS_SHARD_KEY, "_id_hashed");
+    }
+
+    /**
+     * Shards a collection of pastes, e.g. of a bucket of
+     * {@link com.example.service.ExpiryStrategy#BUCKETS}
+     * @return {@code true} if the collection is sharded
+     */
+    public boolean shardPastes(String collectionName) {
+        return shardCollection(collectionName, PASTES_SHARD_KEY, "hash_hashed");
+    }
+
+    private boolean shardCollection(String name, Bson key, String indexName) {
+
+        var namespace = db.getName() + "." + name;
+
+        try {
+            // The index of the shard key must exist before a collection with documents is sharded
+            db.getCollection(name).createIndex(key, new IndexOptions().name(indexName));
+
+            mongoClient.getDatabase("admin").runCommand(new Document("shardCollection", namespace)
+                    .append("key", key.toBsonDocument()));
+        } catch (MongoException e) {
+            log.error("Collection '{}' was not sharded: {}", namespace, e.getMessage());
+            return false;
+        }
+
+        log.info("Collection '{}' is sharded by {}", namespace, key.toBsonDocument().toJson());
+
+        return true;
+    }
+}
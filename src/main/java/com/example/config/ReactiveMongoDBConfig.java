@@ -0,0 +1,34 @@
+package com.example.config;
+
+import com.mongodb.MongoClientSettings;
+import com.mongodb.reactivestreams.client.MongoClient;
+import com.mongodb.reactivestreams.client.MongoClients;
+import com.mongodb.reactivestreams.client.MongoDatabase;
+import org.bson.codecs.configuration.CodecRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+
+/**
+ * Client of the reactive streams driver for the "reactive" profile,
+ * it shares settings, listeners and codecs with the blocking client
+ */
+@Configuration
+@Profile("reactive")
+public class ReactiveMongoDBConfig {
+
+    @Value("${mongodb.database}")
+    private String database;
+
+    @Bean(destroyMethod = "close")
+    public MongoClient reactiveMongoClient(MongoClientSettings mongoClientSettings) {
+        return MongoClients.create(mongoClientSettings);
+    }
+
+    @Bean
+    public MongoDatabase reactiveMongoDatabase(MongoClient reactiveMongoClient,
+                                               CodecRegistry pasteCodecRegistry) {
+        return reactiveMongoClient.getDatabase(database).withCodecRegistry(pasteCodecRegistry);
+    }
+}
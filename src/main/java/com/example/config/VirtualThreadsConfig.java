@@ -0,0 +1,66 @@
+package com.example.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.embedded.tomcat.TomcatProtocolHandlerCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Runs request handlers and scheduled tasks on virtual threads if
+ * {@code pastes.threads.virtual.enabled} is set, so a request blocked on MongoDB does not hold a
+ * platform thread.
+ * Virtual threads are looked up at runtime because the application is built for Java 17,
+ * the mode requires Java 21 to run
+ */
+@Configuration
+@ConditionalOnProperty(name = "pastes.threads.virtual.enabled", havingValue = "true")
+public class VirtualThreadsConfig {
+
+    @Bean
+    public TomcatProtocolHandlerCustomizer<?> virtualThreadsProtocolHandlerCustomizer() {
+        var executor = newThreadPerTaskExecutor(virtualThreadFactory("http-virtual-"));
+        return protocolHandler -> protocolHandler.setExecutor(executor);
+    }
+
+    @Bean
+    public ThreadPoolTaskScheduler taskScheduler(@Value("${spring.task.scheduling.pool.size:1}")
+                                                 int poolSize) {
+        var scheduler = new ThreadPoolTaskScheduler();
+        scheduler.setPoolSize(poolSize);
+        scheduler.setThreadFactory(virtualThreadFactory("scheduling-virtual-"));
+        return scheduler;
+    }
+
+    /**
+     * Returns a factory of virtual threads named by the {@code prefix} and a sequence number
+     * @throws IllegalStateException if virtual threads are not supported by the running Java
+     */
+    static ThreadFactory virtualThreadFactory(String prefix) {
+        try {
+            var builderClass = Class.forName("java.lang.Thread$Builder");
+            var builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            builder = builderClass.getMethod("name", String.class, long.class)
+                    .invoke(builder, prefix, 0L);
+            return (ThreadFactory) builderClass.getMethod("factory").invoke(builder);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Virtual threads are not supported by Java "
+                    + Runtime.version(), e);
+        }
+    }
+
+    private static ExecutorService newThreadPerTaskExecutor(ThreadFactory threadFactory) {
+        try {
+            var method = Executors.class.getMethod("newThreadPerTaskExecutor", ThreadFactory.class);
+            return (ExecutorService) method.invoke(null, threadFactory);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Virtual threads are not supported by Java "
+                    + Runtime.version(), e);
+        }
+    }
+}
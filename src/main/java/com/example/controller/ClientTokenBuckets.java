@@ -0,0 +1,97 @@
+package com.example.controller;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Token buckets of clients, {@code capacity} tokens each, refilled by {@code tokensPerSecond}.
+ * The bucket of a client is a single time, when the bucket would be full again, so a request takes
+ * its tokens by one compare-and-set without locks, and buckets of different clients do not contend
+ * at all.
+ * A bucket which is full again is the same as a new one, so such buckets are dropped by
+ * {@link #removeFull()}
+ */
+public class ClientTokenBuckets {
+
+    private final long capacity;
+    private final long nanosPerToken;
+    private final LongSupplier nanoTime;
+
+    /**
+     * Time in nanoseconds when the bucket of the client is full again
+     */
+    private final Map<String, AtomicLong> fullAt = new ConcurrentHashMap<>();
+
+    public ClientTokenBuckets(long capacity, double tokensPerSecond) {
+        this(capacity, tokensPerSecond, System::nanoTime);
+    }
+
+    ClientTokenBuckets(long capacity, double tokensPerSecond, LongSupplier nanoTime) {
+
+        if (capacity <= 0 || tokensPerSecond <= 0) {
+            throw new IllegalArgumentException(
+                    "Capacity and refill rate of token buckets must be positive");
+        }
+
+        this.capacity = capacity;
+        this.nanosPerToken = Math.max(1, Math.round(1e9 / tokensPerSecond));
+        this.nanoTime = nanoTime;
+    }
+
+    /**
+     * Takes tokens from the bucket of the client if it has enough of them
+     * @param client key of the client
+     * @param tokens cost of the request
+     * @return {@code 0} if the tokens are taken, otherwise nanoseconds until the bucket has enough
+     * tokens
+     */
+    public long tryTake(String client, long tokens) {
+
+        var cost = Math.min(tokens, capacity) * nanosPerToken;
+        var burst = capacity * nanosPerToken;
+        var bucket = fullAt.computeIfAbsent(client, c -> new AtomicLong(nanoTime.getAsLong()));
+
+        while (true) {
+
+            var now = nanoTime.getAsLong();
+            var current = bucket.get();
+            // Tokens above the capacity are not kept, so a bucket full for a long time is just full
+            var next = Math.max(current, now) + cost;
+
+            if (next - now > burst) {
+                return next - now - burst;
+            }
+
+            if (bucket.compareAndSet(current, next)) {
+                return 0;
+            }
+        }
+    }
+
+    /**
+     * Drops buckets of clients which have not taken tokens long enough for their buckets to be full
+     * again
+     * @return number of the dropped buckets
+     */
+    public int removeFull() {
+
+        var now = nanoTime.getAsLong();
+        var removed = 0;
+
+        for (var entry : fullAt.entrySet()) {
+            // A request taking tokens right at this moment is forgiven, its bucket was full anyway
+            if (entry.getValue().get() - now <= 0
+                    && fullAt.remove(entry.getKey(), entry.getValue())) {
+                removed++;
+            }
+        }
+
+        return removed;
+    }
+
+    public int size() {
+        return fullAt.size();
+    }
+}
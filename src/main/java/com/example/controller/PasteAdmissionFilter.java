@@ -0,0 +1,205 @@
+package com.example.controller;
+
+import com.example.service.PasteMetrics;
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Admission control of requests to pastes. Every client, by its remote address, has a token bucket
+ * of {@code pastes.admission.tokens.capacity} tokens refilled by
+ * {@code pastes.admission.tokens.per-second}, and every request takes tokens by the cost of its
+ * operation, {@code pastes.admission.cost.*}, so a client running searches runs out of tokens much
+ * sooner than a client following links.
+ * A client out of tokens gets 429 with {@code Retry-After} until its bucket has enough tokens
+ * again.
+ * At most {@code pastes.admission.max-concurrent} requests are handled at once, set below the size
+ * of the pool of MongoDB connections, and the rest get 503 right away instead of waiting for a
+ * connection.
+ * Behind a proxy the remote address is the address of the client only with
+ * {@code server.forward-headers-strategy}
+ */
+@Component
+@Profile("!reactive")
+@ConditionalOnProperty(name = "pastes.admission.enabled", havingValue = "true")
+@Slf4j
+public class PasteAdmissionFilter extends OncePerRequestFilter {
+
+    private static final String BASE_PATH = "/api/v1/pastes";
+
+    private final ClientTokenBuckets tokenBuckets;
+    private final PasteMetrics pasteMetrics;
+    private final int maxConcurrent;
+    private final AtomicInteger concurrent = new AtomicInteger();
+
+    @Value("${pastes.admission.cost.lookup:1}")
+    private long lookupCost;
+
+    @Value("${pastes.admission.cost.feed:2}")
+    private long feedCost;
+
+    @Value("${pastes.admission.cost.search:20}")
+    private long searchCost;
+
+    @Value("${pastes.admission.cost.create:5}")
+    private long createCost;
+
+    @Value("${pastes.admission.cost.batch:50}")
+    private long batchCost;
+
+    public PasteAdmissionFilter(PasteMetrics pasteMetrics,
+                                @Value("${pastes.admission.tokens.capacity:100}") long capacity,
+                                @Value("${pastes.admission.tokens.per-second:50}")
+                                double tokensPerSecond,
+                                @Value("${pastes.admission.max-concurrent:64}") int maxConcurrent) {
+        this.tokenBuckets = new ClientTokenBuckets(capacity, tokensPerSecond);
+        this.pasteMetrics = pasteMetrics;
+        this.maxConcurrent = maxConcurrent;
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !pathOf(request).startsWith(BASE_PATH);
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response,
+                                    FilterChain chain)
+            throws ServletException, IOException {
+
+        // Shed load before the client is charged, so a client is not punished for the load of
+        // others
+        if (concurrent.incrementAndGet() > maxConcurrent) {
+            concurrent.decrementAndGet();
+            pasteMetrics.rejected("concurrency");
+            reject(response, HttpStatus.SERVICE_UNAVAILABLE, 1, "Server is busy, try again later");
+            return;
+        }
+
+        var released = new AtomicBoolean();
+        Runnable release = () -> {
+            if (released.compareAndSet(false, true)) {
+                concurrent.decrementAndGet();
+            }
+        };
+
+        try {
+            var waitNanos = tokenBuckets.tryTake(request.getRemoteAddr(), costOf(request));
+            if (waitNanos > 0) {
+                pasteMetrics.rejected("rate");
+                reject(response, HttpStatus.TOO_MANY_REQUESTS, toRetryAfterSeconds(waitNanos),
+                        "Too many requests, try again later");
+                return;
+            }
+
+            chain.doFilter(request, response);
+        } finally {
+            // A streamed response is still being written, its slot is released once it is complete
+            if (request.isAsyncStarted()) {
+                request.getAsyncContext().addListener(new ReleasingAsyncListener(release));
+            } else {
+                release.run();
+            }
+        }
+    }
+
+    /**
+     * Drops buckets of clients that have been quiet long enough for their buckets to be full again
+     */
+    @Scheduled(fixedRateString = "${pastes.admission.clients.sweep.millis:60000}")
+    public void removeQuietClients() {
+        var removed = tokenBuckets.removeFull();
+        log.debug("Token buckets of '{}' quiet clients are removed, '{}' are left", removed,
+                tokenBuckets.size());
+    }
+
+    /**
+     * Returns the number of requests being handled now
+     */
+    public int getConcurrent() {
+        return concurrent.get();
+    }
+
+    private long costOf(HttpServletRequest request) {
+
+        var path = pathOf(request);
+
+        if (HttpMethod.POST.matches(request.getMethod())) {
+            return path.equals(BASE_PATH + "/batch") ? batchCost : createCost;
+        }
+
+        if (path.startsWith(BASE_PATH + "/text/")) {
+            return searchCost;
+        }
+
+        if (path.equals(BASE_PATH) || path.equals(BASE_PATH + "/")) {
+            return feedCost;
+        }
+
+        return lookupCost;
+    }
+
+    private static String pathOf(HttpServletRequest request) {
+        return request.getRequestURI().substring(request.getContextPath().length());
+    }
+
+    private static long toRetryAfterSeconds(long waitNanos) {
+        return Math.max(1,
+                (waitNanos + TimeUnit.SECONDS.toNanos(1) - 1) / TimeUnit.SECONDS.toNanos(1));
+    }
+
+    private static void reject(HttpServletResponse response, HttpStatus status,
+                               long retryAfterSeconds, String message)
+            throws IOException {
+
+        response.setStatus(status.value());
+        response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfterSeconds));
+        response.setContentType(MediaType.TEXT_PLAIN_VALUE);
+        response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+        response.getWriter().write(message);
+    }
+
+    private record ReleasingAsyncListener(Runnable release) implements AsyncListener {
+
+        @Override
+        public void onComplete(AsyncEvent event) {
+            release.run();
+        }
+
+        @Override
+        public void onTimeout(AsyncEvent event) {
+            release.run();
+        }
+
+        @Override
+        public void onError(AsyncEvent event) {
+            release.run();
+        }
+
+        @Override
+        public void onStartAsync(AsyncEvent event) {
+            // The listener is not kept by a new async cycle, so it registers itself again
+            event.getAsyncContext().addListener(this);
+        }
+    }
+}
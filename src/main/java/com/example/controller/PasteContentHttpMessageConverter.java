@@ -0,0 +1,52 @@
+package com.example.controller;
+
+import com.example.model.PasteContent;
+import org.springframework.http.HttpInputMessage;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.AbstractHttpMessageConverter;
+import org.springframework.http.converter.HttpMessageNotReadableException;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Writes stored texts of pastes to responses as they are, without decoding them into strings.
+ * The {@code Content-Encoding} header of an encoded text is set by the controller
+ */
+@Component
+public class PasteContentHttpMessageConverter extends AbstractHttpMessageConverter<PasteContent> {
+
+    public PasteContentHttpMessageConverter() {
+        super(StandardCharsets.UTF_8, MediaType.TEXT_PLAIN, MediaType.ALL);
+    }
+
+    @Override
+    protected boolean supports(Class<?> clazz) {
+        return PasteContent.class.isAssignableFrom(clazz);
+    }
+
+    @Override
+    protected boolean canRead(MediaType mediaType) {
+        return false;
+    }
+
+    @Override
+    protected PasteContent readInternal(Class<? extends PasteContent> clazz,
+                                        HttpInputMessage inputMessage) {
+        throw new HttpMessageNotReadableException("Pastes are not read as stored content",
+                inputMessage);
+    }
+
+    @Override
+    protected Long getContentLength(PasteContent content, MediaType contentType) {
+        return (long) content.getLength();
+    }
+
+    @Override
+    protected void writeInternal(PasteContent content,
+                                 HttpOutputMessage outputMessage) throws IOException {
+        content.writeTo(outputMessage.getBody());
+    }
+}
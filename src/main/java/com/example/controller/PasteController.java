@@ -1,61 +1,488 @@
 package com.example.controller;
 
 import com.example.model.Paste;
+import com.example.model.PasteCursor;
+import com.example.model.PasteEncoding;
+import com.example.model.PasteId;
 import com.example.model.PasteRequest;
+import com.example.service.PasteIngestRejectedException;
+import com.example.service.PasteSearchTimeoutException;
 import com.example.service.PasteService;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.core.io.InputStreamResource;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 @RestController
 @RequestMapping("/api/v1/pastes")
+@Profile("!reactive")
 @RequiredArgsConstructor
 public class PasteController {
 
+    private static final String APPLICATION_NDJSON_VALUE = "application/x-ndjson";
+    private static final MediaType TEXT_PLAIN_UTF8 =
+            new MediaType(MediaType.TEXT_PLAIN, StandardCharsets.UTF_8);
+    private static final String SEARCH_TIMEOUT_MESSAGE =
+            "Search took too long, try a longer substring or again later";
+
     private final PasteService pasteService;
+    private final ObjectMapper objectMapper;
+
+    @Value("${pastes.pages.max-size}")
+    private int maxPageSize;
+
+    @Value("${pastes.batch.max-size:100}")
+    private int maxBatchSize;
 
+    @Value("${pastes.upload.max-size.bytes:67108864}")
+    private long maxUploadSizeInBytes;
+
+    @Value("${pastes.http.max-age.seconds:31536000}")
+    private long maxAgeInSeconds;
+
+    @Value("${pastes.http.feed.shared-max-age.seconds:5}")
+    private long feedSharedMaxAgeInSeconds;
+
+    /**
+     * Pastes never change, so the text is cached by clients and shared caches until the paste
+     * expires.
+     * A conditional request with the ETag of the paste is answered with 304 without loading the
+     * text
+     */
     @GetMapping("/{hash}")
-    public ResponseEntity<?> getByHash(@PathVariable String hash) {
+    public ResponseEntity<?> getByHash(@PathVariable String hash,
+                                       @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING,
+                                               required = false)
+                                       String acceptEncoding,
+                                       @RequestHeader(value = HttpHeaders.IF_NONE_MATCH,
+                                               required = false)
+                                       String ifNoneMatch) throws IOException {
 
         long hashFormatted;
         try {
-            hashFormatted = Long.parseLong(hash);
-        } catch (NumberFormatException e) {
+            hashFormatted = PasteId.parse(hash);
+        } catch (IllegalArgumentException e) {
             return ResponseEntity.badRequest().body("Provided hash has a wrong format");
         }
 
-        var paste = pasteService.getByHash(hashFormatted);
+        var matchedETag = matchETag(ifNoneMatch, hashFormatted, acceptEncoding);
+        if (matchedETag != null) {
+
+            var expireAt = pasteService.getExpireAtByHash(hashFormatted);
+            if (expireAt == null) {
+                return ResponseEntity.notFound().build();
+            }
 
-        if (paste == null) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED)
+                    .eTag(matchedETag)
+                    .cacheControl(cacheControlUntil(expireAt))
+                    .build();
+        }
+
+        var content = pasteService.getContentByHash(hashFormatted);
+
+        if (content == null) {
             return ResponseEntity.notFound().build();
         }
 
-        return ResponseEntity.ok(paste.getText());
+        var cacheControl = cacheControlUntil(content.getExpireAt());
+
+        if (content.getEncoding() == PasteEncoding.IDENTITY) {
+            return ResponseEntity.ok()
+                    .eTag(eTagOf(hashFormatted, PasteEncoding.IDENTITY))
+                    .cacheControl(cacheControl)
+                    .contentType(TEXT_PLAIN_UTF8)
+                    .body(content);
+        }
+
+        // Compressed text is sent as it is stored when the client accepts its encoding
+        if (accepts(acceptEncoding, content.getEncoding())) {
+            return ResponseEntity.ok()
+                    .eTag(eTagOf(hashFormatted, content.getEncoding()))
+                    .cacheControl(cacheControl)
+                    .header(HttpHeaders.CONTENT_ENCODING, content.getEncoding().getName())
+                    .header(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING)
+                    .contentType(TEXT_PLAIN_UTF8)
+                    .body(content);
+        }
+
+        // A streamed text is decoded while it is sent rather than as a whole, so its length is not
+        // known
+        if (content.isStreamed()) {
+            var body = new InputStreamResource(content.openDecoded());
+            return ResponseEntity.ok()
+                    .eTag(eTagOf(hashFormatted, PasteEncoding.IDENTITY))
+                    .cacheControl(cacheControl)
+                    .header(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING)
+                    .contentType(TEXT_PLAIN_UTF8)
+                    .body(body);
+        }
+
+        return ResponseEntity.ok()
+                .eTag(eTagOf(hashFormatted, PasteEncoding.IDENTITY))
+                .cacheControl(cacheControl)
+                .header(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING)
+                .body(content.getText());
     }
 
     @GetMapping
-    public ResponseEntity<?> getAllLast() {
+    public ResponseEntity<?> getAllLast(@RequestParam(required = false) String cursor,
+                                        @RequestParam(required = false) Integer size) {
 
-        var pastes = pasteService.getAllLast().stream()
-                .map(Paste::getText)
-                .toList();
+        if (cursor == null && size == null) {
+
+            var pastes = pasteService.getAllLast().stream()
+                    .map(Paste::getText)
+                    .toList();
+
+            return ResponseEntity.ok()
+                    .cacheControl(feedCacheControl())
+                    .body(pastes);
+        }
 
-        return ResponseEntity.ok(pastes);
+        PasteCursor after;
+        try {
+            after = cursor == null ? null : PasteCursor.decode(cursor);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body("Provided cursor has a wrong format");
+        }
+
+        var limit = toPageSize(size);
+        var pastes = pasteService.getAllLast(after, limit);
+
+        return toPage(pastes, limit, feedCacheControl());
     }
 
     @GetMapping("/text/{text}")
-    public ResponseEntity<?> getAllBySubstring(@PathVariable String text) {
+    public ResponseEntity<?> getAllBySubstring(@PathVariable String text,
+                                               @RequestParam(required = false) String cursor,
+                                               @RequestParam(required = false) Integer size) {
 
-        var pastes = pasteService.getAllBySubstring(text).stream()
-                .map(Paste::getText)
-                .toList();
+        PasteCursor after;
+        try {
+            after = cursor == null ? null : PasteCursor.decode(cursor);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body("Provided cursor has a wrong format");
+        }
+
+        var limit = toPageSize(size);
+
+        List<Paste> pastes;
+        try {
+            pastes = pasteService.getAllBySubstring(text, after, limit);
+        } catch (PasteSearchTimeoutException e) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .header(HttpHeaders.RETRY_AFTER, "1")
+                    .body(SEARCH_TIMEOUT_MESSAGE);
+        }
 
-        return ResponseEntity.ok(pastes);
+        return toPage(pastes, limit, CacheControl.empty());
+    }
+
+    /**
+     * Writes all found pastes as JSON strings, one per line, while they are read from the storage.
+     * The status is sent with the first line, so a search that takes too long ends the stream
+     * with an error record {@code {"error": "..."}} rather than with 503
+     */
+    @GetMapping(value = "/text/{text}", produces = APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamAllBySubstring(@PathVariable String text) {
+
+        StreamingResponseBody body = outputStream -> {
+            try (var pastes = pasteService.streamAllBySubstring(text)) {
+                var iterator = pastes.iterator();
+                while (iterator.hasNext()) {
+                    outputStream.write(objectMapper.writeValueAsBytes(iterator.next().getText()));
+                    outputStream.write('\n');
+                }
+            } catch (PasteSearchTimeoutException e) {
+                outputStream.write(
+                        objectMapper.writeValueAsBytes(Map.of("error", SEARCH_TIMEOUT_MESSAGE)));
+                outputStream.write('\n');
+            }
+        };
+
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(APPLICATION_NDJSON_VALUE))
+                .body(body);
     }
 
     @PostMapping
     public ResponseEntity<?> create(@RequestBody PasteRequest pasteRequest) {
-        var paste = pasteService.create(pasteRequest);
-        return ResponseEntity.ok(paste.getHash());
+
+        var error = pasteRequest.validate();
+        if (error != null) {
+            return ResponseEntity.badRequest().body(error);
+        }
+
+        Paste paste;
+        try {
+            paste = pasteService.create(pasteRequest);
+        } catch (PasteIngestRejectedException e) {
+            return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                    .header(HttpHeaders.RETRY_AFTER, "1")
+                    .body("Too many pastes are being added, try again later");
+        }
+
+        return ResponseEntity.ok(PasteId.format(paste.getHash()));
+    }
+
+    /**
+     * Creates a paste with the raw body of the request as its UTF-8 text, the body is passed to the
+     * storage as a stream rather than bound to a request in memory. Bodies larger than
+     * {@code pastes.upload.max-size.bytes} are rejected with 413, by {@code Content-Length} before
+     * they are read or as soon as the limit is exceeded
+     */
+    @PostMapping("/raw")
+    public ResponseEntity<?> createFromStream(@RequestParam String access,
+                                              @RequestParam long validityInSeconds,
+                                              @RequestHeader(value = HttpHeaders.CONTENT_LENGTH,
+                                                      required = false)
+                                              Long contentLength,
+                                              InputStream body) throws IOException {
+
+        if (contentLength != null && contentLength > maxUploadSizeInBytes) {
+            return tooLarge();
+        }
+
+        // The text is read from the body, so it is only a placeholder for the validation
+        var pasteRequest = PasteRequest.builder()
+                .text("")
+                .access(access)
+                .validityInSeconds(validityInSeconds)
+                .build();
+
+        var error = pasteRequest.validate();
+        if (error != null) {
+            return ResponseEntity.badRequest().body(error);
+        }
+
+        Paste paste;
+        try {
+            paste = pasteService.create(pasteRequest,
+                    new SizeLimitedInputStream(body, maxUploadSizeInBytes));
+        } catch (SizeLimitedInputStream.SizeLimitExceededException e) {
+            return tooLarge();
+        } catch (PasteIngestRejectedException e) {
+            return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                    .header(HttpHeaders.RETRY_AFTER, "1")
+                    .body("Too many pastes are being added, try again later");
+        }
+
+        return ResponseEntity.ok(PasteId.format(paste.getHash()));
+    }
+
+    /**
+     * Creates all pastes of the batch, returns the hash or the error of every paste in the same
+     * order
+     */
+    @PostMapping("/batch")
+    public ResponseEntity<?> createAll(@RequestBody List<PasteRequest> pasteRequests) {
+
+        if (pasteRequests.size() > maxBatchSize) {
+            return ResponseEntity.badRequest()
+                    .body("Batch must not have more than " + maxBatchSize + " pastes");
+        }
+
+        var results = pasteService.createAll(pasteRequests).stream()
+                .map(result -> result.isCreated()
+                        ? new BatchItem(PasteId.format(result.paste().getHash()), null)
+                        : new BatchItem(null, result.error()))
+                .toList();
+
+        return ResponseEntity.ok(results);
+    }
+
+    private ResponseEntity<String> tooLarge() {
+        return ResponseEntity.status(HttpStatus.PAYLOAD_TOO_LARGE)
+                .body("Paste must not be larger than " + maxUploadSizeInBytes + " bytes");
+    }
+
+    private int toPageSize(Integer size) {
+
+        if (size == null || size <= 0) {
+            return maxPageSize;
+        }
+
+        return Math.min(size, maxPageSize);
+    }
+
+    /**
+     * Returns texts of the pastes, and a link to the next page in the {@code Link} header if the
+     * page is full
+     */
+    private ResponseEntity<List<String>> toPage(List<Paste> pastes, int limit,
+                                                CacheControl cacheControl) {
+
+        var texts = pastes.stream()
+                .map(Paste::getText)
+                .toList();
+
+        var response = ResponseEntity.ok().cacheControl(cacheControl);
+
+        if (pastes.size() == limit) {
+            var next = PasteCursor.of(pastes.get(pastes.size() - 1));
+            var link = ServletUriComponentsBuilder.fromCurrentRequest()
+                    .replaceQueryParam("cursor", next.encode())
+                    .replaceQueryParam("size", limit)
+                    .toUriString();
+            response.header(HttpHeaders.LINK, "<" + link + ">; rel=\"next\"");
+        }
+
+        return response.body(texts);
+    }
+
+    /**
+     * ETag of a representation of the paste, which is derived from the hash alone since pastes
+     * never change.
+     * Texts stored compressed have their own strong ETags. Other texts get a weak ETag,
+     * since Tomcat does not compress responses with strong ETags on the fly
+     * ({@code server.compression})
+     */
+    private static String eTagOf(long hash, PasteEncoding encoding) {
+
+        if (encoding == PasteEncoding.IDENTITY) {
+            return "W/\"" + PasteId.format(hash) + "\"";
+        }
+
+        return "\"" + PasteId.format(hash) + "-" + encoding.getName() + "\"";
+    }
+
+    /**
+     * Returns the ETag of the paste listed by the {@code If-None-Match} header, {@code null} if
+     * none is listed.
+     * Tags are compared weakly, a compressed representation matches only while the client accepts
+     * its encoding
+     */
+    private static String matchETag(String ifNoneMatch, long hash, String acceptEncoding) {
+
+        if (ifNoneMatch == null) {
+            return null;
+        }
+
+        for (var tag : ifNoneMatch.split(",")) {
+
+            tag = tag.trim();
+            if (tag.startsWith("W/")) {
+                tag = tag.substring(2);
+            }
+
+            if (tag.equals("*")) {
+                return eTagOf(hash, PasteEncoding.IDENTITY);
+            }
+
+            for (var encoding : PasteEncoding.values()) {
+                var eTag = eTagOf(hash, encoding);
+                var opaqueTag = eTag.startsWith("W/") ? eTag.substring(2) : eTag;
+                if (tag.equals(opaqueTag)
+                        && (encoding == PasteEncoding.IDENTITY
+                                || accepts(acceptEncoding, encoding))) {
+                    return eTag;
+                }
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Caching of a paste by clients and shared caches until it expires, at most
+     * {@code pastes.http.max-age.seconds}
+     */
+    private CacheControl cacheControlUntil(LocalDateTime expireAt) {
+
+        if (expireAt == null) {
+            return CacheControl.noCache();
+        }
+
+        var seconds = Duration.between(LocalDateTime.now(), expireAt).toSeconds();
+        var maxAge = Math.max(0, Math.min(seconds, maxAgeInSeconds));
+
+        return CacheControl.maxAge(maxAge, TimeUnit.SECONDS)
+                .cachePublic()
+                .immutable();
+    }
+
+    /**
+     * The feed changes with every new paste, so only shared caches keep it, for
+     * {@code pastes.http.feed.shared-max-age.seconds}
+     */
+    private CacheControl feedCacheControl() {
+        return CacheControl.maxAge(0, TimeUnit.SECONDS)
+                .sMaxAge(feedSharedMaxAgeInSeconds, TimeUnit.SECONDS)
+                .cachePublic();
+    }
+
+    /**
+     * Returns whether the {@code Accept-Encoding} header allows the encoding with non-zero quality.
+     * The encoding listed by its name takes precedence over '*', whatever their order
+     */
+    private static boolean accepts(String acceptEncoding, PasteEncoding encoding) {
+
+        if (acceptEncoding == null) {
+            return false;
+        }
+
+        Double wildcardQuality = null;
+
+        for (var coding : acceptEncoding.split(",")) {
+
+            var parts = coding.split(";");
+            var name = parts[0].trim();
+
+            if (name.equalsIgnoreCase(encoding.getName())) {
+                return qualityOf(parts) > 0;
+            }
+            if (name.equals("*") && wildcardQuality == null) {
+                wildcardQuality = qualityOf(parts);
+            }
+        }
+
+        return wildcardQuality != null && wildcardQuality > 0;
+    }
+
+    /**
+     * Returns the quality of a coding of the {@code Accept-Encoding} header split by ';', a
+     * malformed one is 0
+     */
+    private static double qualityOf(String[] parts) {
+
+        for (int i = 1; i < parts.length; i++) {
+            var param = parts[i].trim();
+            if (param.startsWith("q=")) {
+                try {
+                    return Double.parseDouble(param.substring(2));
+                } catch (NumberFormatException e) {
+                    return 0;
+                }
+            }
+        }
+
+        return 1;
+    }
+
+    /**
+     * Result of creating one paste of a batch, either {@code hash} or {@code error} is present
+     */
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    public record BatchItem(String hash, String error) {
     }
 }
@@ -0,0 +1,179 @@
+package com.example.controller;
+
+import com.example.model.Paste;
+import com.example.model.PasteCursor;
+import com.example.model.PasteId;
+import com.example.model.PasteRequest;
+import com.example.service.PasteSearchTimeoutException;
+import com.example.service.ReactivePasteService;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.TextNode;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.util.UriComponentsBuilder;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+
+/**
+ * Non-blocking twin of {@link PasteController} for the "reactive" profile, with the same API
+ */
+@RestController
+@RequestMapping("/api/v1/pastes")
+@Profile("reactive")
+@RequiredArgsConstructor
+public class ReactivePasteController {
+
+    private static final String SEARCH_TIMEOUT_MESSAGE =
+            "Search took too long, try a longer substring or again later";
+
+    private final ReactivePasteService pasteService;
+
+    @Value("${pastes.pages.max-size}")
+    private int maxPageSize;
+
+    /**
+     * Texts of pastes stored as files are not read in this profile, such pastes are answered with
+     * 501
+     */
+    @GetMapping("/{hash}")
+    public Mono<ResponseEntity<String>> getByHash(@PathVariable String hash) {
+
+        long hashFormatted;
+        try {
+            hashFormatted = PasteId.parse(hash);
+        } catch (IllegalArgumentException e) {
+            return Mono.just(ResponseEntity.badRequest().body("Provided hash has a wrong format"));
+        }
+
+        return pasteService.getByHash(hashFormatted)
+                .map(paste -> paste.getFileId() != null
+                        ? ResponseEntity.status(HttpStatus.NOT_IMPLEMENTED)
+                                .body("Paste is stored as a file, "
+                                        + "which is not served by this server")
+                        : ResponseEntity.ok(paste.getText()))
+                .defaultIfEmpty(ResponseEntity.notFound().build());
+    }
+
+    @GetMapping
+    public Mono<ResponseEntity<?>> getAllLast(@RequestParam(required = false) String cursor,
+                                              @RequestParam(required = false) Integer size,
+                                              ServerHttpRequest request) {
+
+        if (cursor == null && size == null) {
+            return pasteService.getAllLast()
+                    .map(Paste::getText)
+                    .collectList()
+                    .map(ResponseEntity::ok);
+        }
+
+        PasteCursor after;
+        try {
+            after = cursor == null ? null : PasteCursor.decode(cursor);
+        } catch (IllegalArgumentException e) {
+            return Mono.just(ResponseEntity.badRequest()
+                    .body("Provided cursor has a wrong format"));
+        }
+
+        var limit = toPageSize(size);
+
+        return pasteService.getAllLast(after, limit)
+                .collectList()
+                .map(pastes -> toPage(pastes, limit, request));
+    }
+
+    @GetMapping("/text/{text}")
+    public Mono<ResponseEntity<?>> getAllBySubstring(@PathVariable String text,
+                                                     @RequestParam(required = false) String cursor,
+                                                     @RequestParam(required = false) Integer size,
+                                                     ServerHttpRequest request) {
+
+        PasteCursor after;
+        try {
+            after = cursor == null ? null : PasteCursor.decode(cursor);
+        } catch (IllegalArgumentException e) {
+            return Mono.just(ResponseEntity.badRequest()
+                    .body("Provided cursor has a wrong format"));
+        }
+
+        var limit = toPageSize(size);
+
+        return pasteService.getAllBySubstring(text, after, limit)
+                .collectList()
+                .<ResponseEntity<?>>map(pastes -> toPage(pastes, limit, request))
+                .onErrorResume(PasteSearchTimeoutException.class, e -> Mono.just(
+                        ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                                .header(HttpHeaders.RETRY_AFTER, "1")
+                                .body(SEARCH_TIMEOUT_MESSAGE)));
+    }
+
+    /**
+     * Writes all found pastes as JSON strings, one per line, as fast as the client reads them.
+     * The status is sent with the first line, so a search that takes too long ends the stream
+     * with an error record {@code {"error": "..."}} rather than with 503
+     */
+    @GetMapping(value = "/text/{text}", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public Flux<JsonNode> streamAllBySubstring(@PathVariable String text) {
+        // Plain strings would be written as they are, JSON nodes are encoded and delimited by the
+        // JSON encoder
+        return pasteService.getAllBySubstring(text)
+                .<JsonNode>map(paste -> TextNode.valueOf(paste.getText()))
+                .onErrorResume(PasteSearchTimeoutException.class, e -> Mono.just(
+                        JsonNodeFactory.instance.objectNode()
+                                .put("error", SEARCH_TIMEOUT_MESSAGE)));
+    }
+
+    @PostMapping
+    public Mono<ResponseEntity<String>> create(@RequestBody PasteRequest pasteRequest) {
+
+        var error = pasteRequest.validate();
+        if (error != null) {
+            return Mono.just(ResponseEntity.badRequest().body(error));
+        }
+
+        return pasteService.create(pasteRequest)
+                .map(paste -> ResponseEntity.ok(PasteId.format(paste.getHash())));
+    }
+
+    private int toPageSize(Integer size) {
+
+        if (size == null || size <= 0) {
+            return maxPageSize;
+        }
+
+        return Math.min(size, maxPageSize);
+    }
+
+    /**
+     * Returns texts of the pastes, and a link to the next page in the {@code Link} header if the
+     * page is full
+     */
+    private ResponseEntity<?> toPage(List<Paste> pastes, int limit, ServerHttpRequest request) {
+
+        var texts = pastes.stream()
+                .map(Paste::getText)
+                .toList();
+
+        var response = ResponseEntity.ok();
+
+        if (pastes.size() == limit) {
+            var next = PasteCursor.of(pastes.get(pastes.size() - 1));
+            var link = UriComponentsBuilder.fromHttpRequest(request)
+                    .replaceQueryParam("cursor", next.encode())
+                    .replaceQueryParam("size", limit)
+                    .toUriString();
+            response.header(HttpHeaders.LINK, "<" + link + ">; rel=\"next\"");
+        }
+
+        return response.body(texts);
+    }
+}
@@ -0,0 +1,71 @@
+package com.example.controller;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Stream that fails as soon as more than {@code maxSize} bytes are read from it,
+ * so a body without {@code Content-Length} is rejected without being read to the end
+ */
+class SizeLimitedInputStream extends FilterInputStream {
+
+    private final long maxSize;
+    private long size;
+
+    SizeLimitedInputStream(InputStream inputStream, long maxSize) {
+        super(inputStream);
+        this.maxSize = maxSize;
+    }
+
+    @Override
+    public int read() throws IOException {
+
+        var b = super.read();
+        if (b >= 0) {
+            count(1);
+        }
+
+        return b;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+
+        var n = super.read(b, off, len);
+        if (n > 0) {
+            count(n);
+        }
+
+        return n;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        var skipped = super.skip(n);
+        count(skipped);
+        return skipped;
+    }
+
+    @Override
+    public boolean markSupported() {
+        return false;
+    }
+
+    private void count(long n) throws SizeLimitExceededException {
+        size += n;
+        if (size > maxSize) {
+            throw new SizeLimitExceededException(maxSize);
+        }
+    }
+
+    /**
+     * Thrown when a body is larger than allowed
+     */
+    static class SizeLimitExceededException extends IOException {
+
+        SizeLimitExceededException(long maxSize) {
+            super("Body is larger than " + maxSize + " bytes");
+        }
+    }
+}
@@ -2,21 +2,77 @@ package com.example.model;
 
 import lombok.*;
 
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDateTime;
 
+/**
+ * Paste of a text. Pastes are equal by their hash and attributes, the text is neither compared nor
+ * printed through {@link #getText()}, since a text of a stored paste may have to be decompressed or
+ * downloaded first
+ */
 @Builder
 @Getter @Setter
-@EqualsAndHashCode
-@ToString
+@EqualsAndHashCode(doNotUseGetters = true)
+@ToString(doNotUseGetters = true)
 public class Paste {
 
     private Long hash;
+
+    @EqualsAndHashCode.Exclude
     private String text;
     private Access access;
     private LocalDateTime createdAt;
     private LocalDateTime expireAt;
 
-    protected static long generateHash(String text, LocalDateTime time) {
+    /**
+     * Stored form of the text, if the text itself is not loaded
+     */
+    @EqualsAndHashCode.Exclude
+    @ToString.Exclude
+    private PasteContent content;
+
+    /**
+     * Id of the blob with the text, if the text is stored in a blob rather than in the paste
+     */
+    @EqualsAndHashCode.Exclude
+    @ToString.Exclude
+    private String blobId;
+
+    /**
+     * Id of the file with the text, if the text is too large to be stored in a document
+     */
+    @EqualsAndHashCode.Exclude
+    @ToString.Exclude
+    private String fileId;
+
+    /**
+     * Returns the text, decoding it from the {@code content} if the text itself is not loaded
+     * @return the text of the paste
+     */
+    public String getText() {
+
+        if (text == null && content != null) {
+            return content.getText();
+        }
+
+        return text;
+    }
+
+    /**
+     * Returns the text in the form it is stored, the loaded text is returned as UTF-8 bytes
+     * @return stored form of the text
+     */
+    public PasteContent toContent() {
+
+        var stored = text == null && content != null
+                ? content
+                : new PasteContent(text.getBytes(StandardCharsets.UTF_8), PasteEncoding.IDENTITY);
+        stored.setExpireAt(expireAt);
+
+        return stored;
+    }
+
+    public static long generateHash(String text, LocalDateTime time) {
         return 31L * text.hashCode()
                 + 31L * time.hashCode();
     }
@@ -0,0 +1,25 @@
+package com.example.model;
+
+/**
+ * Insert or delete of a paste by any node, published to subscribers of the node as an application
+ * event.
+ * A change may be published more than once, so subscribers must be idempotent
+ * @param type type of the change
+ * @param hash hash of the changed paste
+ * @param paste inserted paste, without the text of its blob or file, {@code null} for a delete
+ */
+public record PasteChange(Type type, long hash, Paste paste) {
+
+    public enum Type {
+        INSERT,
+        DELETE
+    }
+
+    public static PasteChange inserted(Paste paste) {
+        return new PasteChange(Type.INSERT, paste.getHash(), paste);
+    }
+
+    public static PasteChange deleted(long hash) {
+        return new PasteChange(Type.DELETE, hash, null);
+    }
+}
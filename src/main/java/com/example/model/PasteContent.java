@@ -0,0 +1,203 @@
+package com.example.model;
+
+import lombok.Getter;
+import lombok.Setter;
+import lombok.ToString;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * Text of a paste in the form it is stored, i.e. UTF-8 bytes encoded with a {@link PasteEncoding}.
+ * The bytes may be a part of a larger array, e.g. of a raw document read from the storage, so they
+ * are not copied.
+ * A text too large to be held in memory is read from its {@link Source} every time it is written.
+ * The text is decoded only when it is requested
+ */
+@ToString(exclude = {"data", "source"}, doNotUseGetters = true)
+public class PasteContent {
+
+    private final byte[] data;
+    private final int offset;
+    private final Source source;
+
+    /**
+     * Number of stored bytes
+     */
+    @Getter
+    private final int length;
+
+    @Getter
+    private final PasteEncoding encoding;
+
+    /**
+     * Expiration time of the paste of the text, {@code null} if it is not known
+     */
+    @Getter @Setter
+    private LocalDateTime expireAt;
+
+    public PasteContent(byte[] data, PasteEncoding encoding) {
+        this(data, 0, data.length, encoding);
+    }
+
+    public PasteContent(byte[] data, int offset, int length, PasteEncoding encoding) {
+        this.data = data;
+        this.offset = offset;
+        this.length = length;
+        this.encoding = encoding;
+        this.source = null;
+    }
+
+    /**
+     * Content whose stored bytes are not held in memory
+     * @param source source of the stored bytes
+     * @param length number of stored bytes
+     * @param encoding encoding of the stored bytes
+     */
+    public PasteContent(Source source, int length, PasteEncoding encoding) {
+        this.data = null;
+        this.offset = 0;
+        this.length = length;
+        this.encoding = encoding;
+        this.source = source;
+    }
+
+    /**
+     * Returns whether the stored bytes are read from a {@link Source} rather than held in memory
+     * @return {@code true} if the content is streamed
+     */
+    public boolean isStreamed() {
+        return source != null;
+    }
+
+    /**
+     * Returns the stored bytes, they are copied only if the content is a part of a larger array
+     * or read whole if the content is streamed
+     * @return stored bytes
+     */
+    public byte[] getData() {
+
+        if (source != null) {
+            try (var inputStream = source.open()) {
+                return inputStream.readAllBytes();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        if (offset == 0 && length == data.length) {
+            return data;
+        }
+
+        return Arrays.copyOfRange(data, offset, offset + length);
+    }
+
+    /**
+     * Writes the stored bytes as they are, a streamed content is copied piece by piece
+     * @param outputStream stream to write to
+     */
+    public void writeTo(OutputStream outputStream) throws IOException {
+
+        if (source != null) {
+            try (var inputStream = source.open()) {
+                inputStream.transferTo(outputStream);
+            }
+            return;
+        }
+
+        outputStream.write(data, offset, length);
+    }
+
+    /**
+     * Opens a stream of UTF-8 bytes of the text, which are decoded piece by piece while they are
+     * read.
+     * The stream must be closed after use
+     * @return stream of the decoded text
+     */
+    public InputStream openDecoded() throws IOException {
+        var inputStream = source != null ? source.open()
+                : new ByteArrayInputStream(data, offset, length);
+        return encoding.decoder(inputStream);
+    }
+
+    /**
+     * Decodes the text, every call decodes it again, so the text is not held in memory along with
+     * the content
+     * @return decoded text
+     */
+    public String getText() {
+
+        if (source != null) {
+            try (var decoder = encoding.decoder(source.open())) {
+                return new String(decoder.readAllBytes(), StandardCharsets.UTF_8);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        if (encoding == PasteEncoding.IDENTITY) {
+            return new String(data, offset, length, StandardCharsets.UTF_8);
+        }
+
+        return new String(encoding.decode(getData()), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Contents are equal when they hold equal stored bytes in memory in the same encoding.
+     * A streamed content is never read to be compared, it equals only contents of the same source
+     */
+    @Override
+    public boolean equals(Object o) {
+
+        if (this == o) {
+            return true;
+        }
+
+        if (!(o instanceof PasteContent other) || length != other.length
+                || encoding != other.encoding) {
+            return false;
+        }
+
+        if (source != null || other.source != null) {
+            return source == other.source;
+        }
+
+        return Arrays.equals(data, offset, offset + length, other.data, other.offset,
+                other.offset + length);
+    }
+
+    @Override
+    public int hashCode() {
+
+        if (source != null) {
+            return Objects.hash(System.identityHashCode(source), length, encoding);
+        }
+
+        int result = 1;
+        for (int i = offset; i < offset + length; i++) {
+            result = 31 * result + data[i];
+        }
+
+        return 31 * Objects.hash(length, encoding) + result;
+    }
+
+    /**
+     * Source of stored bytes of a text that is not held in memory, e.g. of a file in the storage
+     */
+    @FunctionalInterface
+    public interface Source {
+
+        /**
+         * Opens a new stream of the stored bytes, the stream must be closed after use
+         * @return stream of the stored bytes
+         */
+        InputStream open() throws IOException;
+    }
+}
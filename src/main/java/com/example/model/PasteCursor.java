@@ -0,0 +1,54 @@
+package com.example.model;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+
+/**
+ * Position of a paste in a list of pastes ordered by {@code createdAt} and {@code hash},
+ * used to request the next page of the list
+ * @param createdAt time of creation of the last paste of a page
+ * @param hash hash of the last paste of a page
+ */
+public record PasteCursor(LocalDateTime createdAt, long hash) {
+
+    private static final String SEPARATOR = "_";
+
+    public static PasteCursor of(Paste paste) {
+        return new PasteCursor(paste.getCreatedAt(), paste.getHash());
+    }
+
+    /**
+     * Decodes a cursor previously returned by {@link #encode()}
+     * @param cursor encoded cursor
+     * @return decoded cursor
+     * @throws IllegalArgumentException if the {@code cursor} has a wrong format
+     */
+    public static PasteCursor decode(String cursor) {
+
+        try {
+            var decoded = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            var parts = decoded.split(SEPARATOR, 2);
+
+            if (parts.length != 2) {
+                throw new IllegalArgumentException("Cursor has a wrong format");
+            }
+
+            return new PasteCursor(LocalDateTime.parse(parts[0]), Long.parseLong(parts[1]));
+
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException("Cursor has a wrong format", e);
+        }
+    }
+
+    /**
+     * Encodes the cursor into an opaque URL-safe string
+     * @return encoded cursor
+     */
+    public String encode() {
+        var decoded = createdAt + SEPARATOR + hash;
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString(decoded.getBytes(StandardCharsets.UTF_8));
+    }
+}
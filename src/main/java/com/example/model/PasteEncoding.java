@@ -0,0 +1,131 @@
+package com.example.model;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Encoding of stored texts of pastes. Names of encodings match values of the HTTP
+ * {@code Content-Encoding} header, so encoded texts can be sent to clients as they are stored
+ */
+public enum PasteEncoding {
+
+    IDENTITY("identity") {
+        @Override
+        public OutputStream encoder(OutputStream outputStream) {
+            return outputStream;
+        }
+
+        @Override
+        public InputStream decoder(InputStream inputStream) {
+            return inputStream;
+        }
+    },
+
+    GZIP("gzip") {
+        @Override
+        public OutputStream encoder(OutputStream outputStream) throws IOException {
+            return new GZIPOutputStream(outputStream);
+        }
+
+        @Override
+        public InputStream decoder(InputStream inputStream) throws IOException {
+            return new GZIPInputStream(inputStream);
+        }
+    },
+
+    DEFLATE("deflate") {
+        @Override
+        public OutputStream encoder(OutputStream outputStream) {
+            return new DeflaterOutputStream(outputStream);
+        }
+
+        @Override
+        public InputStream decoder(InputStream inputStream) {
+            return new InflaterInputStream(inputStream);
+        }
+    };
+
+    private final String name;
+
+    PasteEncoding(String name) {
+        this.name = name;
+    }
+
+    /**
+     * Returns the name of the encoding as used in the HTTP {@code Content-Encoding} header
+     * @return the name of the encoding
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Returns the encoding by its name
+     * @param name name of the encoding as used in the HTTP {@code Content-Encoding} header
+     * @return the encoding with the specified name
+     * @throws IllegalArgumentException if there is no encoding with the specified name
+     */
+    public static PasteEncoding fromName(String name) {
+
+        for (var encoding : values()) {
+            if (encoding.name.equalsIgnoreCase(name)) {
+                return encoding;
+            }
+        }
+
+        throw new IllegalArgumentException("Unknown encoding '" + name + "'");
+    }
+
+    /**
+     * Wraps a stream with a stream that encodes everything written into it
+     * @param outputStream stream for encoded bytes
+     * @return stream for bytes to encode
+     */
+    public abstract OutputStream encoder(OutputStream outputStream) throws IOException;
+
+    /**
+     * Wraps a stream with a stream that decodes everything read from it
+     * @param inputStream stream of encoded bytes
+     * @return stream of decoded bytes
+     */
+    public abstract InputStream decoder(InputStream inputStream) throws IOException;
+
+    /**
+     * Encodes bytes
+     * @param data bytes to encode
+     * @return encoded bytes
+     */
+    public byte[] encode(byte[] data) {
+
+        var outputStream = new ByteArrayOutputStream();
+
+        try (var encoder = encoder(outputStream)) {
+            encoder.write(data);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        return outputStream.toByteArray();
+    }
+
+    /**
+     * Decodes bytes
+     * @param data encoded bytes
+     * @return decoded bytes
+     */
+    public byte[] decode(byte[] data) {
+        try (var decoder = decoder(new ByteArrayInputStream(data))) {
+            return decoder.readAllBytes();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
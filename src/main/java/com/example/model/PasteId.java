@@ -0,0 +1,78 @@
+package com.example.model;
+
+/**
+ * External form of hashes of pastes used in links.
+ * A hash is written as 11 base62 characters, which is enough for any 64-bit number.
+ * The alphabet starts with letters, so the first character is always a letter
+ * and the external form never clashes with the decimal form of hashes used in older links
+ */
+public final class PasteId {
+
+    private static final String ALPHABET =
+            "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789";
+    private static final int BASE = ALPHABET.length();
+    private static final int LENGTH = 11;
+
+    private PasteId() {
+    }
+
+    /**
+     * Formats a hash of a paste for links
+     * @param hash hash of a paste
+     * @return base62 form of the {@code hash}
+     */
+    public static String format(long hash) {
+
+        var chars = new char[LENGTH];
+
+        for (int i = LENGTH - 1; i >= 0; i--) {
+            chars[i] = ALPHABET.charAt((int) Long.remainderUnsigned(hash, BASE));
+            hash = Long.divideUnsigned(hash, BASE);
+        }
+
+        return new String(chars);
+    }
+
+    /**
+     * Parses a hash of a paste from a link, either in the base62 or in the decimal form
+     * @param id hash of a paste from a link
+     * @return parsed hash
+     * @throws IllegalArgumentException if the {@code id} has a wrong format
+     */
+    public static long parse(String id) {
+
+        if (id.isEmpty()) {
+            throw new IllegalArgumentException("Id is empty");
+        }
+
+        var first = id.charAt(0);
+        if (first == '-' || Character.isDigit(first)) {
+            return Long.parseLong(id);
+        }
+
+        if (id.length() != LENGTH) {
+            throw new IllegalArgumentException("Id must have " + LENGTH + " characters");
+        }
+
+        long hash = 0;
+        long max = Long.divideUnsigned(-1L, BASE);
+
+        for (int i = 0; i < LENGTH; i++) {
+
+            int digit = ALPHABET.indexOf(id.charAt(i));
+            if (digit < 0) {
+                throw new IllegalArgumentException("Id has a wrong character '" + id.charAt(i)
+                        + "'");
+            }
+
+            if (Long.compareUnsigned(hash, max) > 0
+                    || Long.compareUnsigned(hash * BASE + digit, hash * BASE) < 0) {
+                throw new IllegalArgumentException("Id is too large");
+            }
+
+            hash = hash * BASE + digit;
+        }
+
+        return hash;
+    }
+}
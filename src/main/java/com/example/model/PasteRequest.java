@@ -5,7 +5,7 @@ import lombok.*;
 import java.time.LocalDateTime;
 import java.time.temporal.ChronoUnit;
 
-@Builder
+@Builder(toBuilder = true)
 @Getter @Setter
 @EqualsAndHashCode
 @ToString
@@ -15,16 +15,44 @@ public class PasteRequest {
     private String access;
     private long validityInSeconds;
 
+    /**
+     * Returns the reason why a paste cannot be created by the request
+     * @return error of the request, {@code null} if a paste can be created by it
+     */
+    public String validate() {
+
+        if (text == null) {
+            return "Text is missing";
+        }
+
+        if (access == null) {
+            return "Access is missing";
+        }
+
+        try {
+            Access.valueOf(access.toUpperCase());
+        } catch (IllegalArgumentException e) {
+            return "Access '" + access + "' is unknown";
+        }
+
+        if (validityInSeconds < 0) {
+            return "Validity must not be negative";
+        }
+
+        return null;
+    }
+
+    /**
+     * Creates a paste of the request without a hash, the hash is generated when the paste is stored
+     * @return new paste
+     */
     public Paste toPaste() {
 
         var createdAt = LocalDateTime.now().truncatedTo(ChronoUnit.SECONDS);
         var expiredAt = createdAt.plusSeconds(this.getValidityInSeconds());
         var accessEnum = Access.valueOf(access.toUpperCase());
 
-        var hash = Paste.generateHash(this.getText(), createdAt);
-
         return Paste.builder()
-                .hash(hash)
                 .text(this.getText())
                 .access(accessEnum)
                 .createdAt(createdAt)
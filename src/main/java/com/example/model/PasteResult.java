@@ -0,0 +1,21 @@
+package com.example.model;
+
+/**
+ * Outcome of creating one paste of a batch
+ * @param paste created paste, {@code null} if the paste was not created
+ * @param error reason why the paste was not created, {@code null} if it was created
+ */
+public record PasteResult(Paste paste, String error) {
+
+    public static PasteResult created(Paste paste) {
+        return new PasteResult(paste, null);
+    }
+
+    public static PasteResult failed(String error) {
+        return new PasteResult(null, error);
+    }
+
+    public boolean isCreated() {
+        return paste != null;
+    }
+}
@@ -0,0 +1,24 @@
+package com.example.service;
+
+/**
+ * Strategy of removal of expired pastes
+ */
+public enum ExpiryStrategy {
+
+    /**
+     * Expired pastes are removed in batches by {@link PasteScheduledRemover}
+     */
+    SCHEDULER,
+
+    /**
+     * Expired pastes are removed by MongoDB itself with a TTL index on {@code expireAt}
+     */
+    TTL,
+
+    /**
+     * Pastes are stored in collections by the hour or the day of their expiration,
+     * and {@link PasteScheduledRemover} drops whole collections once they have expired, see
+     * {@link PasteBuckets}
+     */
+    BUCKETS
+}
@@ -0,0 +1,158 @@
+package com.example.service;
+
+import com.example.model.Access;
+import com.example.model.Paste;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+/**
+ * In-memory feed of the most recently loaded public pastes.
+ * The feed is an immutable snapshot of at most {@code pastes.last-pastes.limit} pastes
+ * which is replaced atomically on every change, so reads never wait for writes
+ */
+@Component
+public class LastPastesFeed {
+
+    private static final Comparator<Paste> NEWEST_FIRST = Comparator.comparing(Paste::getCreatedAt)
+            .thenComparing(Paste::getHash)
+            .reversed();
+
+    private final int limit;
+
+    /**
+     * Pastes of the feed sorted from the newest, {@code null} until the feed starts loading
+     */
+    private final AtomicReference<List<Paste>> pastes = new AtomicReference<>();
+    private final AtomicBoolean refreshing = new AtomicBoolean();
+    private volatile boolean loaded;
+
+    public LastPastesFeed(@Value("${pastes.last-pastes.limit}") int limit) {
+        this.limit = limit;
+    }
+
+    /**
+     * Returns not expired pastes of the feed, from the newest to the oldest
+     * @return pastes of the feed
+     */
+    public List<Paste> getPastes() {
+
+        var snapshot = pastes.get();
+        if (snapshot == null) {
+            return Collections.emptyList();
+        }
+
+        var now = LocalDateTime.now();
+
+        return snapshot.stream()
+                .filter(p -> p.getExpireAt().isAfter(now))
+                .toList();
+    }
+
+    /**
+     * Returns whether the feed has been loaded from the storage
+     * @return {@code true} if the feed is loaded
+     */
+    public boolean isLoaded() {
+        return loaded;
+    }
+
+    /**
+     * Returns whether the feed contains expired pastes, i.e. some older pastes might be missing
+     * from it
+     * @return {@code true} if the feed contains expired pastes
+     */
+    public boolean hasExpired() {
+
+        var snapshot = pastes.get();
+        if (snapshot == null) {
+            return false;
+        }
+
+        var now = LocalDateTime.now();
+
+        return snapshot.stream()
+                .anyMatch(p -> !p.getExpireAt().isAfter(now));
+    }
+
+    /**
+     * Adds new paste to the feed, unlisted pastes are ignored
+     * @param paste new paste
+     */
+    public void add(Paste paste) {
+        addAll(List.of(paste));
+    }
+
+    /**
+     * Adds new pastes to the feed at once, unlisted pastes are ignored
+     * @param newPastes new pastes
+     */
+    public void addAll(List<Paste> newPastes) {
+
+        if (newPastes.stream().noneMatch(p -> p.getAccess() == Access.PUBLIC)) {
+            return;
+        }
+
+        pastes.updateAndGet(snapshot -> snapshot == null ? null : merge(snapshot, newPastes));
+    }
+
+    /**
+     * Replaces all pastes of the feed
+     * @param lastPastes the most recently loaded public pastes
+     */
+    public void reset(List<Paste> lastPastes) {
+        pastes.set(merge(Collections.emptyList(), lastPastes));
+        loaded = true;
+    }
+
+    /**
+     * Merges the feed with pastes from the {@code loader} unless the feed is already being
+     * refreshed by another thread. Pastes added while the loader is running are kept, also when the
+     * feed is loaded for the first time
+     * @param loader loader of the most recently loaded public pastes
+     */
+    public void refresh(Supplier<List<Paste>> loader) {
+
+        if (!refreshing.compareAndSet(false, true)) {
+            return;
+        }
+
+        // An empty feed accepts new pastes while the first load is running
+        pastes.compareAndSet(null, Collections.emptyList());
+
+        try {
+            var lastPastes = loader.get();
+            pastes.updateAndGet(snapshot -> merge(snapshot, lastPastes));
+            loaded = true;
+        } catch (RuntimeException e) {
+            // Pastes added during a failed first load are stored and are loaded with the others
+            // next time
+            if (!loaded) {
+                pastes.set(null);
+            }
+            throw e;
+        } finally {
+            refreshing.set(false);
+        }
+    }
+
+    private List<Paste> merge(List<Paste> snapshot, List<Paste> newPastes) {
+
+        var now = LocalDateTime.now();
+        var hashes = new HashSet<Long>();
+
+        return Stream.concat(newPastes.stream(), snapshot.stream())
+                .filter(p -> p.getAccess() == Access.PUBLIC)
+                .filter(p -> p.getExpireAt().isAfter(now))
+                .filter(p -> hashes.add(p.getHash()))
+                .sorted(NEWEST_FIRST)
+                .limit(limit)
+                .toList();
+    }
+}
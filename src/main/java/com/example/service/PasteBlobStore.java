@@ -0,0 +1,341 @@
+package com.example.service;
+
+import com.example.model.PasteContent;
+import com.example.model.PasteEncoding;
+import com.mongodb.ErrorCategory;
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.MongoWriteException;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoDatabase;
+import com.mongodb.client.model.BulkWriteOptions;
+import com.mongodb.client.model.UpdateOneModel;
+import com.mongodb.client.model.UpdateOptions;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.bson.types.Binary;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+
+/**
+ * Storage of texts of pastes that are shared by all pastes with the same text.
+ * Every text is stored once in the collection of blobs by its SHA-256 digest, along with the number
+ * of pastes referencing it and the expiration time of the last of them, so a blob lives exactly as
+ * long as its pastes:
+ * it is deleted once no paste references it, or by its expiration time if a release was missed.
+ * Texts shorter than {@code pastes.blobs.min-size.bytes} are not worth a separate document and stay
+ * in pastes.
+ * Texts of at least {@code pastes.compression.min-size.bytes} are compressed with
+ * {@code pastes.compression.encoding}
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+@ConditionalOnProperty(name = "pastes.storage", havingValue = "mongodb", matchIfMissing = true)
+public class PasteBlobStore {
+
+    static final Document CONTENT_PROJECTION = new Document("text", 1)
+            .append("data", 1)
+            .append("encoding", 1);
+
+    private final MongoDatabase db;
+    private final PasteReadRoutes pasteReadRoutes;
+
+    @Value("${mongodb.collection.blobs}")
+    private String collectionName;
+
+    @Value("${pastes.blobs.min-size.bytes}")
+    private int minSizeInBytes;
+
+    @Value("${pastes.compression.encoding:identity}")
+    private PasteEncoding encoding;
+
+    @Value("${pastes.compression.min-size.bytes:0}")
+    private int compressionMinSizeInBytes;
+
+    @Value("${pastes.remover.batch-size:1000}")
+    private int removerBatchSize;
+
+    /**
+     * Returns whether a text is large enough to be stored as a blob
+     * @param text text of a paste
+     * @return {@code true} if the text should be stored with {@link #save(String, Date)}
+     */
+    public boolean isBlob(String text) {
+        // UTF-8 takes at least one byte per character, so only long enough texts are encoded
+        return text.length() >= minSizeInBytes
+                || text.length() * 3 >= minSizeInBytes
+                        && text.getBytes(StandardCharsets.UTF_8).length >= minSizeInBytes;
+    }
+
+    /**
+     * Adds a reference to the blob of a text, the blob is created if it does not exist yet
+     * @param text text of a new paste
+     * @param expireAt expiration time of the new paste
+     * @return id of the blob
+     */
+    public String save(String text, Date expireAt) {
+
+        var bytes = text.getBytes(StandardCharsets.UTF_8);
+        var blobId = digest(bytes);
+
+        upsert(blobId, toUpdate(text, bytes, 1, expireAt));
+
+        return blobId;
+    }
+
+    /**
+     * Adds references to the blobs of texts with one bulk write, blobs are created if they do not
+     * exist yet
+     * @param texts texts of new pastes
+     * @param expireAts expiration times of the new pastes, in the same order as {@code texts}
+     * @return ids of the blobs in the same order as {@code texts}
+     */
+    public List<String> saveAll(List<String> texts, List<Date> expireAts) {
+
+        var blobIds = new ArrayList<String>(texts.size());
+        var updates = new LinkedHashMap<String, Document>();
+
+        for (int i = 0; i < texts.size(); i++) {
+
+            var text = texts.get(i);
+            var expireAt = expireAts.get(i);
+            var bytes = text.getBytes(StandardCharsets.UTF_8);
+            var blobId = digest(bytes);
+
+            blobIds.add(blobId);
+
+            // Identical texts of a batch become a single update of their blob
+            var update = updates.get(blobId);
+            if (update == null) {
+                updates.put(blobId, toUpdate(text, bytes, 1, expireAt));
+            } else {
+                var refCount = update.get("$inc", Document.class).getInteger("refCount");
+                var maxExpireAt = update.get("$max", Document.class).getDate("expireAt");
+                update.put("$inc", new Document("refCount", refCount + 1));
+                update.put("$max", new Document("expireAt",
+                        expireAt.after(maxExpireAt) ? expireAt : maxExpireAt));
+            }
+        }
+
+        if (updates.isEmpty()) {
+            return blobIds;
+        }
+
+        var ids = new ArrayList<>(updates.keySet());
+        var options = new UpdateOptions().upsert(true);
+        var models = ids.stream()
+                .map(id -> new UpdateOneModel<Document>(
+                        new Document("_id", id), updates.get(id), options))
+                .toList();
+
+        try {
+            getCollectionOfBlobs().bulkWrite(models, new BulkWriteOptions().ordered(false));
+        } catch (MongoBulkWriteException e) {
+            if (e.getWriteConcernError() != null) {
+                throw e;
+            }
+            for (var error : e.getWriteErrors()) {
+                if (error.getCategory() != ErrorCategory.DUPLICATE_KEY) {
+                    throw e;
+                }
+                // Concurrent upsert of the same text has inserted the blob first
+                var blobId = ids.get(error.getIndex());
+                getCollectionOfBlobs()
+                        .updateOne(new Document("_id", blobId), updates.get(blobId), options);
+            }
+        }
+
+        return blobIds;
+    }
+
+    /**
+     * Returns a text by the id of its blob in the form it is stored
+     * @param blobId id of a blob
+     * @param route route of the read, the same as of the paste of the blob
+     * @return content of the blob, {@code null} if there is no such blob
+     */
+    public PasteContent load(String blobId, PasteReadRoute route) {
+
+        var doc = pasteReadRoutes.route(getCollectionOfBlobs(), route)
+                .find(new Document("_id", blobId))
+                .projection(CONTENT_PROJECTION)
+                .first();
+
+        return doc == null ? null : toContent(doc);
+    }
+
+    /**
+     * Returns texts by ids of their blobs in the form they are stored
+     * @param blobIds ids of blobs
+     * @return contents by ids of their blobs, missing blobs are skipped
+     */
+    public Map<String, PasteContent> loadAll(Collection<String> blobIds) {
+        return loadAll(getCollectionOfBlobs(), blobIds);
+    }
+
+    /**
+     * Returns texts by ids of their blobs in the form they are stored
+     * @param blobIds ids of blobs
+     * @param route route of the read, the same as of the pastes of the blobs
+     * @return contents by ids of their blobs, missing blobs are skipped
+     */
+    public Map<String, PasteContent> loadAll(Collection<String> blobIds, PasteReadRoute route) {
+        return loadAll(pasteReadRoutes.route(getCollectionOfBlobs(), route), blobIds);
+    }
+
+    private Map<String, PasteContent> loadAll(MongoCollection<Document> collection,
+                                              Collection<String> blobIds) {
+
+        var contents = new HashMap<String, PasteContent>();
+
+        if (blobIds.isEmpty()) {
+            return contents;
+        }
+
+        var docs = collection
+                .find(new Document("_id", new Document("$in", new ArrayList<>(blobIds))))
+                .projection(CONTENT_PROJECTION);
+
+        for (var doc : docs) {
+            contents.put(doc.getString("_id"), toContent(doc));
+        }
+
+        return contents;
+    }
+
+    /**
+     * Removes references of removed pastes from their blobs and deletes blobs that are no longer
+     * referenced
+     * @param blobIds ids of blobs of removed pastes, an id is repeated for every removed paste
+     */
+    public void release(Collection<String> blobIds) {
+
+        if (blobIds.isEmpty()) {
+            return;
+        }
+
+        var counts = new HashMap<String, Integer>();
+        for (var blobId : blobIds) {
+            counts.merge(blobId, 1, Integer::sum);
+        }
+
+        var updates = counts.entrySet().stream()
+                .map(e -> new UpdateOneModel<Document>(
+                        new Document("_id", e.getKey()),
+                        new Document("$inc", new Document("refCount", -e.getValue()))))
+                .toList();
+
+        var collection = getCollectionOfBlobs();
+        collection.bulkWrite(updates);
+
+        // Blobs referenced again in the meantime have a positive count and are kept
+        var unreferenced =
+                new Document("_id", new Document("$in", new ArrayList<>(counts.keySet())))
+                .append("refCount", new Document("$lte", 0));
+        var deletedCount = collection.deleteMany(unreferenced).getDeletedCount();
+
+        if (deletedCount > 0) {
+            log.info("Unreferenced blobs were deleted: '{}' blobs", deletedCount);
+        }
+    }
+
+    /**
+     * Removes blobs whose last referencing paste has expired, in batches of
+     * {@code pastes.remover.batch-size}
+     */
+    public void removeExpiredBlobs(Date now) {
+
+        var collection = getCollectionOfBlobs();
+        var query = new Document("expireAt", new Document("$lte", now));
+
+        long deletedCount = 0;
+        List<Object> ids;
+
+        do {
+            ids = new ArrayList<>();
+            collection.find(query)
+                    .projection(new Document("_id", 1))
+                    .limit(removerBatchSize)
+                    .map(doc -> doc.get("_id"))
+                    .into(ids);
+
+            if (!ids.isEmpty()) {
+                // Blobs referenced again in the meantime have a later expiration time and are kept
+                var filter = new Document("_id", new Document("$in", ids))
+                        .append("expireAt", new Document("$lte", now));
+                deletedCount += collection.deleteMany(filter).getDeletedCount();
+            }
+        } while (ids.size() == removerBatchSize);
+
+        if (deletedCount > 0) {
+            log.info("Expired blobs were deleted: '{}' blobs", deletedCount);
+        }
+    }
+
+    /**
+     * Update of the blob of a text which adds {@code refCount} references to it and creates it if
+     * necessary
+     */
+    Document toUpdate(String text, byte[] bytes, int refCount, Date expireAt) {
+
+        Document content;
+        if (encoding != PasteEncoding.IDENTITY && bytes.length >= compressionMinSizeInBytes) {
+            content = new Document("data", new Binary(encoding.encode(bytes)))
+                    .append("encoding", encoding.getName());
+        } else {
+            content = new Document("text", text);
+        }
+
+        return new Document()
+                .append("$setOnInsert", content)
+                .append("$inc", new Document("refCount", refCount))
+                .append("$max", new Document("expireAt", expireAt));
+    }
+
+    private void upsert(String blobId, Document update) {
+
+        var collection = getCollectionOfBlobs();
+        var options = new UpdateOptions().upsert(true);
+
+        try {
+            collection.updateOne(new Document("_id", blobId), update, options);
+        } catch (MongoWriteException e) {
+            // Concurrent upsert of the same text has inserted the blob first
+            if (e.getError().getCategory() != ErrorCategory.DUPLICATE_KEY) {
+                throw e;
+            }
+            collection.updateOne(new Document("_id", blobId), update, options);
+        }
+    }
+
+    PasteContent toContent(Document doc) {
+
+        var text = doc.getString("text");
+        if (text != null) {
+            return new PasteContent(text.getBytes(StandardCharsets.UTF_8), PasteEncoding.IDENTITY);
+        }
+
+        var data = doc.get("data", Binary.class).getData();
+        return new PasteContent(data, PasteEncoding.fromName(doc.getString("encoding")));
+    }
+
+    private MongoCollection<Document> getCollectionOfBlobs() {
+        return db.getCollection(collectionName);
+    }
+
+    String digest(byte[] bytes) {
+        try {
+            var digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(bytes));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not supported", e);
+        }
+    }
+}
@@ -0,0 +1,361 @@
+package com.example.service;
+
+import com.example.config.MongoDBIndexesInitializer;
+import com.example.config.MongoDBShardingInitializer;
+import com.example.model.Paste;
+import com.mongodb.client.MongoDatabase;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Layout of pastes in collections. With the {@link ExpiryStrategy#BUCKETS} strategy every paste is
+ * stored in the collection of the bucket of its expiration time,
+ * {@code pastes.expiry.bucket.duration} long, and a whole bucket is dropped once its last moment
+ * has passed, instead of deleting its pastes one by one.
+ * The number of the bucket is kept in the upper {@link #BUCKET_BITS} bits of the hash of a paste,
+ * so a paste is looked up by its link in a single collection. Lower bits are taken from the
+ * generated hash.
+ * Pastes expiring later than {@code pastes.expiry.bucket.coarse-after} share the last bucket of a
+ * window {@code pastes.expiry.bucket.coarse-duration} long, and pastes expiring later than
+ * {@code pastes.expiry.bucket.horizon} share the last bucket of all, which is cleaned by deleting
+ * expired pastes.
+ * So the number of live collections, each read by its own cursor, is bounded whatever the validity
+ * of pastes.
+ * With other strategies all pastes are stored in the single collection
+ * {@code mongodb.collection.pastes}
+ */
+@Component
+@ConditionalOnProperty(name = "pastes.storage", havingValue = "mongodb", matchIfMissing = true)
+@Slf4j
+public class PasteBuckets {
+
+    static final int BUCKET_BITS = 20;
+    static final int HASH_BITS = Long.SIZE - 1 - BUCKET_BITS;
+    static final long MAX_BUCKET = (1L << BUCKET_BITS) - 1;
+    static final long EPOCH_SECONDS = Instant.parse("2023-01-01T00:00:00Z").getEpochSecond();
+
+    private static final DateTimeFormatter BUCKET_FORMAT =
+            DateTimeFormatter.ofPattern("yyyyMMddHHmm")
+            .withZone(ZoneOffset.UTC);
+
+    private final MongoDatabase db;
+    private final PasteDocuments pasteDocuments;
+    private final ObjectProvider<MongoDBIndexesInitializer> indexesInitializer;
+    private final ObjectProvider<MongoDBShardingInitializer> shardingInitializer;
+    private final String collectionName;
+    private final boolean enabled;
+    private final long bucketSeconds;
+    private final long coarseAfterSeconds;
+    private final long bucketsInCoarse;
+    private final long horizonSeconds;
+    private final long refreshMillis;
+
+    /**
+     * Collections of buckets created by this node or found in the database
+     */
+    private final Set<String> knownCollections = ConcurrentHashMap.newKeySet();
+    /**
+     * Collections of buckets whose indexes are created by this node, completed once they are ready
+     * for inserts
+     */
+    private final Map<String, CompletableFuture<Void>> preparedCollections =
+            new ConcurrentHashMap<>();
+    private volatile List<String> liveCollections;
+    private volatile long refreshedAtMillis;
+
+    public PasteBuckets(MongoDatabase db,
+                        PasteDocuments pasteDocuments,
+                        ObjectProvider<MongoDBIndexesInitializer> indexesInitializer,
+                        ObjectProvider<MongoDBShardingInitializer> shardingInitializer,
+                        @Value("${mongodb.collection.pastes}") String collectionName,
+                        @Value("${pastes.expiry.strategy:scheduler}") ExpiryStrategy expiryStrategy,
+                        @Value("${pastes.expiry.bucket.duration:PT1H}") Duration bucketDuration,
+                        @Value("${pastes.expiry.bucket.coarse-after:P2D}") Duration coarseAfter,
+                        @Value("${pastes.expiry.bucket.coarse-duration:P30D}")
+                        Duration coarseDuration,
+                        @Value("${pastes.expiry.bucket.horizon:P365D}") Duration horizon,
+                        @Value("${pastes.expiry.bucket.refresh.millis:5000}") long refreshMillis) {
+
+        // Hourly buckets last until 2142, daily buckets fit into four-digit years of their names
+        if (bucketDuration.compareTo(Duration.ofHours(1)) < 0
+                || bucketDuration.compareTo(Duration.ofDays(1)) > 0) {
+            throw new IllegalArgumentException("Bucket must be from one hour to one day long");
+        }
+
+        if (coarseDuration.compareTo(bucketDuration) < 0
+                || coarseDuration.toSeconds() % bucketDuration.toSeconds() != 0) {
+            throw new IllegalArgumentException("Coarse bucket must be a multiple of a bucket");
+        }
+
+        if (coarseAfter.isNegative() || horizon.compareTo(coarseAfter) < 0) {
+            throw new IllegalArgumentException(
+                    "Horizon of buckets must not be before the start of coarse buckets");
+        }
+
+        this.db = db;
+        this.pasteDocuments = pasteDocuments;
+        this.indexesInitializer = indexesInitializer;
+        this.shardingInitializer = shardingInitializer;
+        this.collectionName = collectionName;
+        this.enabled = expiryStrategy == ExpiryStrategy.BUCKETS;
+        this.bucketSeconds = bucketDuration.toSeconds();
+        this.coarseAfterSeconds = coarseAfter.toSeconds();
+        this.bucketsInCoarse = coarseDuration.toSeconds() / bucketSeconds;
+        this.horizonSeconds = horizon.toSeconds();
+        this.refreshMillis = refreshMillis;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Puts the number of the bucket of the expiration time into the upper bits of a generated hash
+     * @param hash generated hash of the paste
+     * @param expireAt expiration time of the paste
+     * @return hash of the paste in its bucket
+     */
+    public long inBucket(long hash, LocalDateTime expireAt) {
+
+        if (!enabled) {
+            return hash;
+        }
+
+        var epochSeconds = pasteDocuments.toEpochMilli(expireAt) / 1000;
+        var validSeconds = epochSeconds - System.currentTimeMillis() / 1000;
+        var bucket = Math.max(Math.floorDiv(epochSeconds - EPOCH_SECONDS, bucketSeconds), 0);
+
+        if (validSeconds > horizonSeconds) {
+            // Pastes beyond the horizon, e.g. which never expire in practice, share the last bucket
+            bucket = MAX_BUCKET;
+        } else if (validSeconds > coarseAfterSeconds) {
+            // The paste is dropped with the last bucket of its window, which ends not before the
+            // paste expires
+            bucket = (bucket / bucketsInCoarse + 1) * bucketsInCoarse - 1;
+        }
+
+        bucket = Math.min(bucket, MAX_BUCKET);
+
+        return bucket << HASH_BITS | hash & ((1L << HASH_BITS) - 1);
+    }
+
+    /**
+     * Returns the name of the collection of the paste by its hash
+     */
+    public String collectionOf(long hash) {
+        return enabled ? nameOf(hash >>> HASH_BITS) : collectionName;
+    }
+
+    /**
+     * Returns the name of the collection of the paste to insert it to. The collection of a new
+     * bucket gets its indexes first, concurrent inserts into it wait until the unique index of
+     * hashes exists
+     */
+    public String collectionFor(Paste paste) {
+
+        var name = collectionOf(paste.getHash());
+
+        if (!enabled) {
+            return name;
+        }
+
+        var prepared = new CompletableFuture<Void>();
+        var existing = preparedCollections.putIfAbsent(name, prepared);
+
+        if (existing != null) {
+            existing.join();
+            return name;
+        }
+
+        try {
+            indexesInitializer.ifAvailable(initializer -> initializer.createIndexesOfPastes(name));
+            shardingInitializer.ifAvailable(initializer -> initializer.shardPastes(name));
+        } catch (RuntimeException e) {
+            preparedCollections.remove(name, prepared);
+            prepared.completeExceptionally(e);
+            throw e;
+        }
+
+        prepared.complete(null);
+
+        if (knownCollections.add(name)) {
+            liveCollections = null;
+        }
+
+        return name;
+    }
+
+    /**
+     * Returns the name of the collection of the last bucket, shared by pastes beyond the horizon
+     * and cleaned by deleting expired pastes instead of being dropped
+     */
+    public String lastCollection() {
+        return nameOf(MAX_BUCKET);
+    }
+
+    /**
+     * Returns names of the collections which may have not expired pastes, from the oldest bucket.
+     * Buckets created by other nodes are found within {@code pastes.expiry.bucket.refresh.millis}
+     */
+    public List<String> liveCollections() {
+
+        if (!enabled) {
+            return List.of(collectionName);
+        }
+
+        var now = System.currentTimeMillis();
+        if (now - refreshedAtMillis >= refreshMillis) {
+            refresh();
+            liveCollections = null;
+        }
+
+        var collections = liveCollections;
+        if (collections == null) {
+            collections = liveCollectionsAt(Instant.ofEpochMilli(now));
+            liveCollections = collections;
+        }
+
+        return collections;
+    }
+
+    /**
+     * Drops collections of buckets whose last moment has passed
+     * @return number of pastes of the dropped buckets, estimated from their metadata
+     */
+    public long dropExpired(LocalDateTime now) {
+
+        if (!enabled) {
+            return 0;
+        }
+
+        refresh();
+
+        var instant = Instant.ofEpochMilli(pasteDocuments.toEpochMilli(now));
+        long dropped = 0;
+
+        for (var name : new TreeSet<>(knownCollections)) {
+            if (!endOf(name).isAfter(instant) && !name.equals(lastCollection())) {
+                var collection = db.getCollection(name);
+                var count = collection.estimatedDocumentCount();
+                collection.drop();
+                knownCollections.remove(name);
+                preparedCollections.remove(name);
+                dropped += count;
+                log.info("Expired bucket '{}' of '{}' pastes is dropped", name, count);
+            }
+        }
+
+        liveCollections = null;
+
+        return dropped;
+    }
+
+    /**
+     * Merges iterators sorted by the {@code comparator} into one sorted iterator, lazily
+     */
+    public static <T> Iterator<T> merge(List<? extends Iterator<T>> iterators,
+                                        Comparator<? super T> comparator) {
+
+        if (iterators.size() == 1) {
+            return iterators.get(0);
+        }
+
+        record Head<T>(T value, Iterator<T> iterator) {
+        }
+
+        var heads = new PriorityQueue<Head<T>>(Math.max(iterators.size(), 1),
+                (a, b) -> comparator.compare(a.value(), b.value()));
+        for (var iterator : iterators) {
+            if (iterator.hasNext()) {
+                heads.add(new Head<>(iterator.next(), iterator));
+            }
+        }
+
+        return new Iterator<>() {
+
+            @Override
+            public boolean hasNext() {
+                return !heads.isEmpty();
+            }
+
+            @Override
+            public T next() {
+
+                var head = heads.poll();
+                if (head == null) {
+                    throw new NoSuchElementException();
+                }
+
+                if (head.iterator().hasNext()) {
+                    heads.add(new Head<>(head.iterator().next(), head.iterator()));
+                }
+
+                return head.value();
+            }
+        };
+    }
+
+    private void refresh() {
+
+        var prefix = collectionName + "_";
+
+        for (var name : db.listCollectionNames()) {
+            if (name.startsWith(prefix) && startOf(name) != null) {
+                knownCollections.add(name);
+            }
+        }
+
+        refreshedAtMillis = System.currentTimeMillis();
+    }
+
+    private List<String> liveCollectionsAt(Instant now) {
+
+        var collections = new ArrayList<String>();
+
+        for (var name : new TreeSet<>(knownCollections)) {
+            if (endOf(name).isAfter(now)) {
+                collections.add(name);
+            }
+        }
+
+        return collections;
+    }
+
+    private String nameOf(long bucket) {
+        var start = Instant.ofEpochSecond(EPOCH_SECONDS + bucket * bucketSeconds);
+        return collectionName + "_" + BUCKET_FORMAT.format(start);
+    }
+
+    private Instant startOf(String name) {
+        try {
+            return BUCKET_FORMAT.parse(name.substring(collectionName.length() + 1), Instant::from);
+        } catch (DateTimeParseException e) {
+            return null;
+        }
+    }
+
+    private Instant endOf(String name) {
+        return startOf(name).plusSeconds(bucketSeconds);
+    }
+}
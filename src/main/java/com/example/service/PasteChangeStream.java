@@ -0,0 +1,376 @@
+package com.example.service;
+
+import com.example.model.Paste;
+import com.example.model.PasteChange;
+import com.mongodb.MongoCommandException;
+import com.mongodb.MongoException;
+import com.mongodb.client.MongoDatabase;
+import com.mongodb.client.model.Aggregates;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.Projections;
+import com.mongodb.client.model.ReplaceOptions;
+import com.mongodb.client.model.changestream.ChangeStreamDocument;
+import com.mongodb.client.model.changestream.FullDocumentBeforeChange;
+import com.mongodb.client.model.changestream.OperationType;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.BsonDocument;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+/**
+ * Follows inserts and deletes of pastes by all nodes and publishes them to subscribers of this node
+ * as {@link PasteChange} events, so that in-memory state of every node reflects writes of the
+ * others.
+ * Changes are read from a change stream of the database, which covers collections of all buckets.
+ * The resume token is saved to {@code mongodb.collection.changes} at most every
+ * {@code pastes.changes.resume-token.save-interval.millis}, so changes made while the node was away
+ * are not lost.
+ * A deleted paste is known by its hash only from the shard key or, with
+ * {@code pastes.changes.pre-images.enabled}, from the pre-image of the document. When MongoDB is
+ * neither a replica set nor a sharded cluster, new pastes are polled every
+ * {@code pastes.changes.polling.interval.millis} instead, and deletes are not published
+ */
+@Component
+@Slf4j
+@ConditionalOnExpression("${pastes.changes.enabled:false} "
+        + "and '${pastes.storage:mongodb}'.equalsIgnoreCase('mongodb')")
+public class PasteChangeStream {
+
+    static final int COMMAND_NOT_FOUND = 59;
+    static final int INVALID_RESUME_TOKEN = 260;
+    static final int CHANGE_STREAM_FATAL_ERROR = 280;
+    static final int CHANGE_STREAM_HISTORY_LOST = 286;
+
+    private final MongoDatabase db;
+    private final PasteBuckets pasteBuckets;
+    private final ApplicationEventPublisher eventPublisher;
+    private final String collectionName;
+    private final String changesCollectionName;
+    private final String node;
+    private final boolean preImagesEnabled;
+    private final long maxAwaitMillis;
+    private final long saveIntervalMillis;
+    private final long pollingIntervalMillis;
+    private final long pollingLagMillis;
+
+    private volatile boolean running;
+    private volatile boolean polling;
+    private boolean detected;
+    private Thread thread;
+    private long savedAtMillis;
+
+    public PasteChangeStream(MongoDatabase db,
+                             PasteBuckets pasteBuckets,
+                             ApplicationEventPublisher eventPublisher,
+                             @Value("${mongodb.collection.pastes}") String collectionName,
+                             @Value("${mongodb.collection.changes}") String changesCollectionName,
+                             @Value("${pastes.id.node-id:0}") long nodeId,
+                             @Value("${pastes.changes.pre-images.enabled:false}")
+                             boolean preImagesEnabled,
+                             @Value("${pastes.changes.max-await.millis:1000}") long maxAwaitMillis,
+                             @Value("${pastes.changes.resume-token.save-interval.millis:1000}")
+                             long saveIntervalMillis,
+                             @Value("${pastes.changes.polling.interval.millis:500}")
+                             long pollingIntervalMillis,
+                             @Value("${pastes.changes.polling.lag.millis:2000}")
+                             long pollingLagMillis) {
+
+        this.db = db;
+        this.pasteBuckets = pasteBuckets;
+        this.eventPublisher = eventPublisher;
+        this.collectionName = collectionName;
+        this.changesCollectionName = changesCollectionName;
+        this.node = "node-" + nodeId;
+        this.preImagesEnabled = preImagesEnabled;
+        this.maxAwaitMillis = maxAwaitMillis;
+        this.saveIntervalMillis = saveIntervalMillis;
+        this.pollingIntervalMillis = pollingIntervalMillis;
+        this.pollingLagMillis = pollingLagMillis;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public synchronized void start() {
+
+        if (running) {
+            return;
+        }
+
+        running = true;
+        thread = new Thread(this::run, "paste-changes");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Stops following changes, the thread finishes within {@code pastes.changes.max-await.millis}
+     * or {@code pastes.changes.polling.interval.millis}
+     */
+    @PreDestroy
+    public synchronized void stop() throws InterruptedException {
+
+        running = false;
+
+        if (thread != null) {
+            thread.join(Math.max(maxAwaitMillis, pollingIntervalMillis) * 2);
+            thread = null;
+        }
+    }
+
+    /**
+     * Returns whether changes are polled, because MongoDB does not support change streams
+     */
+    public boolean isPolling() {
+        return polling;
+    }
+
+    private void run() {
+        while (running) {
+
+            if (!detected && !detectChangeStreams()) {
+                sleep(pollingIntervalMillis);
+                continue;
+            }
+
+            try {
+                if (polling) {
+                    poll();
+                } else {
+                    watch();
+                }
+            } catch (MongoCommandException e) {
+                if (isResumeTokenLost(e)) {
+                    log.warn("Changes of pastes are followed from now on, the resume token is "
+                            + "lost: {}", e.getMessage());
+                    deleteResumeToken();
+                } else {
+                    log.warn("Changes of pastes are not followed, retrying in {} ms: {}",
+                            pollingIntervalMillis, e.getMessage());
+                    sleep(pollingIntervalMillis);
+                }
+            } catch (MongoException e) {
+                log.warn("Changes of pastes are not followed, retrying in {} ms: {}",
+                        pollingIntervalMillis, e.getMessage());
+                sleep(pollingIntervalMillis);
+            }
+        }
+    }
+
+    /**
+     * Change streams are available on replica sets and through {@code mongos} only. Changes are
+     * polled only when MongoDB answers that it is neither of them, a failed detection is retried
+     * @return {@code true} if support of change streams is detected
+     */
+    private boolean detectChangeStreams() {
+
+        Document hello;
+        try {
+            hello = hello();
+        } catch (MongoException e) {
+            log.warn("Support of change streams is unknown, detecting again in {} ms: {}",
+                    pollingIntervalMillis, e.getMessage());
+            return false;
+        }
+
+        polling = !hello.containsKey("setName") && !"isdbgrid".equals(hello.getString("msg"));
+        detected = true;
+
+        if (polling) {
+            log.info("MongoDB has no change streams, new pastes are polled every {} ms",
+                    pollingIntervalMillis);
+        }
+
+        return true;
+    }
+
+    private Document hello() {
+        try {
+            return db.runCommand(new Document("hello", 1));
+        } catch (MongoCommandException e) {
+            if (e.getErrorCode() != COMMAND_NOT_FOUND) {
+                throw e;
+            }
+            // Servers before 4.4.2 know only the legacy command
+            return db.runCommand(new Document("isMaster", 1));
+        }
+    }
+
+    private void watch() {
+
+        if (preImagesEnabled) {
+            db.runCommand(new Document("collMod", collectionName)
+                    .append("changeStreamPreAndPostImages", new Document("enabled", true)));
+        }
+
+        var pipeline = List.of(
+                Aggregates.match(Filters.and(
+                        Filters.in("operationType", "insert", "delete"),
+                        Filters.regex("ns.coll",
+                                "^" + Pattern.quote(collectionName) + "(_\\d{12})?$"))),
+                Aggregates.project(Projections.exclude(
+                        "fullDocument.grams", "fullDocumentBeforeChange.text",
+                        "fullDocumentBeforeChange.grams")));
+
+        var changeStream = db.watch(pipeline, Paste.class)
+                .maxAwaitTime(maxAwaitMillis, TimeUnit.MILLISECONDS);
+        if (preImagesEnabled) {
+            changeStream.fullDocumentBeforeChange(FullDocumentBeforeChange.WHEN_AVAILABLE);
+        }
+
+        var resumeToken = loadResumeToken();
+        if (resumeToken != null) {
+            changeStream.resumeAfter(resumeToken);
+        }
+
+        try (var cursor = changeStream.cursor()) {
+
+            log.info("Changes of pastes are followed by a change stream{}",
+                    resumeToken == null ? "" : " from the saved token");
+
+            while (running) {
+
+                var event = cursor.tryNext();
+                if (event != null) {
+                    publish(event);
+                }
+
+                saveResumeToken(cursor.getResumeToken(), false);
+            }
+
+            saveResumeToken(cursor.getResumeToken(), true);
+        }
+    }
+
+    private void publish(ChangeStreamDocument<Paste> event) {
+
+        if (event.getOperationType() == OperationType.INSERT && event.getFullDocument() != null) {
+            publish(PasteChange.inserted(event.getFullDocument()));
+            return;
+        }
+
+        if (event.getOperationType() == OperationType.DELETE) {
+
+            // The shard key is a part of the document key in a sharded cluster
+            var documentKey = event.getDocumentKey();
+            if (documentKey != null && documentKey.isInt64("hash")) {
+                publish(PasteChange.deleted(documentKey.getInt64("hash").getValue()));
+            } else if (event.getFullDocumentBeforeChange() != null) {
+                publish(PasteChange.deleted(event.getFullDocumentBeforeChange().getHash()));
+            } else {
+                log.debug("Delete of paste '{}' is not published, its hash is unknown",
+                        documentKey);
+            }
+        }
+    }
+
+    /**
+     * Publishes pastes inserted since the last poll. Pastes are found by their ids, which start
+     * with the time of their insert on the node that inserted them, so every poll looks
+     * {@code pastes.changes.polling.lag.millis} back to cover clocks of the nodes and inserts in
+     * progress, pastes published by earlier polls are skipped
+     */
+    private void poll() {
+
+        var seenAt = new HashMap<Long, Long>();
+        var since = System.currentTimeMillis();
+
+        while (running) {
+
+            var startedAt = System.currentTimeMillis();
+            var from = since - pollingLagMillis;
+
+            for (var name : pasteBuckets.liveCollections()) {
+                var pastes = db.getCollection(name, Paste.class)
+                        .find(Filters.gte("_id", objectIdAt(from)))
+                        .projection(PasteDocuments.WITHOUT_GRAMS);
+                for (var paste : pastes) {
+                    if (seenAt.putIfAbsent(paste.getHash(), startedAt) == null) {
+                        publish(PasteChange.inserted(paste));
+                    }
+                }
+            }
+
+            // Ids are precise to seconds, so pastes are remembered a second longer than they are
+            // looked for
+            forget(seenAt, from - 1000);
+
+            since = startedAt;
+            sleep(pollingIntervalMillis);
+        }
+    }
+
+    private void publish(PasteChange change) {
+        try {
+            eventPublisher.publishEvent(change);
+        } catch (RuntimeException e) {
+            log.warn("Change of paste '{}' was not handled by a subscriber: {}", change.hash(),
+                    e.getMessage());
+        }
+    }
+
+    private BsonDocument loadResumeToken() {
+
+        var doc = db.getCollection(changesCollectionName, BsonDocument.class)
+                .find(Filters.eq("_id", node))
+                .first();
+
+        return doc == null || !doc.isDocument("resumeToken") ? null
+                : doc.getDocument("resumeToken");
+    }
+
+    private void saveResumeToken(BsonDocument resumeToken, boolean force) {
+
+        var now = System.currentTimeMillis();
+        if (resumeToken == null || !force && now - savedAtMillis < saveIntervalMillis) {
+            return;
+        }
+
+        db.getCollection(changesCollectionName).replaceOne(
+                Filters.eq("_id", node),
+                new Document("_id", node).append("resumeToken", resumeToken)
+                        .append("savedAt", new Date(now)),
+                new ReplaceOptions().upsert(true));
+
+        savedAtMillis = now;
+    }
+
+    private void deleteResumeToken() {
+        db.getCollection(changesCollectionName).deleteOne(Filters.eq("_id", node));
+    }
+
+    private static boolean isResumeTokenLost(MongoCommandException e) {
+        return e.getErrorCode() == INVALID_RESUME_TOKEN
+                || e.getErrorCode() == CHANGE_STREAM_FATAL_ERROR
+                || e.getErrorCode() == CHANGE_STREAM_HISTORY_LOST;
+    }
+
+    private static ObjectId objectIdAt(long epochMilli) {
+        return new ObjectId(String.format("%08x", epochMilli / 1000) + "0".repeat(16));
+    }
+
+    private static void forget(Map<Long, Long> seenAt, long beforeMillis) {
+        seenAt.values().removeIf(seenAtMillis -> seenAtMillis < beforeMillis);
+    }
+
+    private void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            running = false;
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package com.example.service;
+
+import com.example.model.Access;
+import com.example.model.Paste;
+import lombok.RequiredArgsConstructor;
+import org.bson.BsonReader;
+import org.bson.BsonType;
+import org.bson.BsonWriter;
+import org.bson.codecs.Codec;
+import org.bson.codecs.DecoderContext;
+import org.bson.codecs.EncoderContext;
+import org.bson.types.ObjectId;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Codec of pastes, which reads and writes fields of a paste straight from and to BSON
+ * without building an intermediate document. Dates are stored as milliseconds since the epoch
+ * and the text of a paste is stored either inline, as the id of its blob or as the id of its file
+ */
+@Component
+@RequiredArgsConstructor
+public class PasteCodec implements Codec<Paste> {
+
+    private static final Map<String, Access> ACCESS_BY_NAME = Arrays.stream(Access.values())
+            .collect(Collectors.toUnmodifiableMap(Access::name, Function.identity()));
+
+    private final PasteDocuments pasteDocuments;
+    private final PasteTrigrams pasteTrigrams;
+    private final PasteMetrics pasteMetrics;
+
+    @Override
+    public void encode(BsonWriter writer, Paste paste, EncoderContext encoderContext) {
+
+        var startedAt = System.nanoTime();
+
+        writer.writeStartDocument();
+
+        writer.writeObjectId("_id", new ObjectId());
+        writer.writeInt64("hash", paste.getHash());
+        if (paste.getFileId() != null) {
+            writer.writeObjectId("fileId", new ObjectId(paste.getFileId()));
+        } else if (paste.getBlobId() != null) {
+            writer.writeString("blobId", paste.getBlobId());
+        } else {
+            writer.writeString("text", paste.getText());
+        }
+        writer.writeString("access", paste.getAccess().name());
+        writer.writeDateTime("createdAt", pasteDocuments.toEpochMilli(paste.getCreatedAt()));
+        writer.writeDateTime("expireAt", pasteDocuments.toEpochMilli(paste.getExpireAt()));
+
+        // Texts of files are not searched, so they are never read to be indexed.
+        // Large pastes keep no trigrams, they are found by segments of the PasteGramStore
+        var grams = paste.getFileId() == null ? pasteTrigrams.ofPaste(paste.getText()) : null;
+        writer.writeStartArray("grams");
+        for (int gram : grams == null ? List.<Integer>of() : grams) {
+            writer.writeInt32(gram);
+        }
+        writer.writeEndArray();
+        writer.writeInt32("gramBuckets", pasteTrigrams.getBuckets());
+
+        writer.writeEndDocument();
+
+        pasteMetrics.addConversionTime(System.nanoTime() - startedAt);
+    }
+
+    /**
+     * Decodes a paste, fields that are not a part of the paste, e.g. its trigrams, are skipped.
+     * A text stored in a blob or a file is not loaded, the paste gets only the id of the blob or
+     * the file
+     */
+    @Override
+    public Paste decode(BsonReader reader, DecoderContext decoderContext) {
+
+        var startedAt = System.nanoTime();
+        var paste = Paste.builder();
+
+        reader.readStartDocument();
+
+        while (reader.readBsonType() != BsonType.END_OF_DOCUMENT) {
+            switch (reader.readName()) {
+                case "hash" -> paste.hash(reader.readInt64());
+                case "text" -> paste.text(reader.readString());
+                case "blobId" -> paste.blobId(reader.readString());
+                case "fileId" -> paste.fileId(reader.readObjectId().toHexString());
+                case "access" -> paste.access(toAccess(reader.readString()));
+                case "createdAt" ->
+                        paste.createdAt(pasteDocuments.toLocalDateTime(reader.readDateTime()));
+                case "expireAt" ->
+                        paste.expireAt(pasteDocuments.toLocalDateTime(reader.readDateTime()));
+                default -> reader.skipValue();
+            }
+        }
+
+        reader.readEndDocument();
+
+        pasteMetrics.addConversionTime(System.nanoTime() - startedAt);
+
+        return paste.build();
+    }
+
+    @Override
+    public Class<Paste> getEncoderClass() {
+        return Paste.class;
+    }
+
+    private static Access toAccess(String name) {
+
+        var access = ACCESS_BY_NAME.get(name);
+        if (access == null) {
+            throw new IllegalArgumentException("Access '" + name + "' is unknown");
+        }
+
+        return access;
+    }
+}
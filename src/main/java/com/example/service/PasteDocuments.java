@@ -0,0 +1,268 @@
+package com.example.service;
+
+import com.example.model.Access;
+import com.example.model.Paste;
+import com.example.model.PasteContent;
+import com.example.model.PasteCursor;
+import com.example.model.PasteEncoding;
+import com.mongodb.client.model.Sorts;
+import jakarta.annotation.Nullable;
+import lombok.RequiredArgsConstructor;
+import org.bson.BsonBinaryReader;
+import org.bson.BsonType;
+import org.bson.Document;
+import org.bson.RawBsonDocument;
+import org.bson.conversions.Bson;
+import org.springframework.stereotype.Component;
+
+import java.nio.ByteOrder;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.zone.ZoneRules;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.List;
+import java.util.function.Predicate;
+import java.util.regex.Pattern;
+
+/**
+ * Queries of the collection of pastes and conversions of their stored values,
+ * shared by the blocking and the reactive services
+ */
+@Component
+@RequiredArgsConstructor
+public class PasteDocuments {
+
+    public static final Bson NEWEST_FIRST = Sorts.descending("createdAt", "hash");
+    public static final Bson OLDEST_FIRST = Sorts.ascending("createdAt", "hash");
+
+    /**
+     * Orders of {@link #NEWEST_FIRST} and {@link #OLDEST_FIRST}, to merge pastes found in several
+     * collections
+     */
+    public static final Comparator<Paste> NEWEST_FIRST_ORDER =
+            Comparator.comparing(Paste::getCreatedAt)
+            .thenComparing(Paste::getHash)
+            .reversed();
+    public static final Comparator<Paste> OLDEST_FIRST_ORDER = NEWEST_FIRST_ORDER.reversed();
+
+    /**
+     * Projection of pastes without their trigrams, which are only needed by the search
+     */
+    public static final Document WITHOUT_GRAMS = new Document("grams", 0);
+
+    /**
+     * Projection of the stored text of pastes, either inline, in a blob or in a file
+     */
+    public static final Document TEXT_ONLY = new Document("_id", 0)
+            .append("text", 1)
+            .append("blobId", 1)
+            .append("fileId", 1)
+            .append("expireAt", 1);
+
+    /**
+     * Projection of the expiration time of pastes, to check that a paste exists without its text
+     */
+    public static final Document EXPIRE_AT_ONLY = new Document("_id", 0)
+            .append("expireAt", 1);
+
+    private final PasteTrigrams pasteTrigrams;
+
+    /**
+     * Rules of the time zone of pastes, resolved once rather than for every converted date
+     */
+    private final ZoneRules zoneRules = ZoneId.systemDefault().getRules();
+    private final ZoneOffset fixedOffset = zoneRules.isFixedOffset()
+            ? zoneRules.getOffset(Instant.EPOCH) : null;
+
+    /**
+     * Filter of a not expired paste by its hash. The hash is the shard key,
+     * so in a sharded cluster the lookup is sent to a single shard
+     */
+    public Document byHash(long hash) {
+        return new Document("hash", hash)
+                .append("expireAt", notExpired());
+    }
+
+    /**
+     * Filter of not expired public pastes loaded before the paste at the position {@code after},
+     * to be sorted {@link #NEWEST_FIRST}. Pastes with texts in files are too large for the feed
+     * and are found only by their links
+     */
+    public Document lastPastes(@Nullable PasteCursor after) {
+
+        var filter = new Document("access", Access.PUBLIC);
+        filter.append("expireAt", notExpired());
+        filter.append("fileId", new Document("$exists", false));
+        if (after != null) {
+            filter.append("$and", List.of(after(after, false)));
+        }
+
+        return filter;
+    }
+
+    /**
+     * Filter of candidates of pastes containing the substring {@code text}, loaded after the paste
+     * at the position {@code after}, to be sorted {@link #OLDEST_FIRST}. Candidates are narrowed by
+     * trigrams, large pastes by trigrams of their segments found in {@code matches}. Texts stored
+     * in pastes are checked by MongoDB, texts stored in blobs must be checked with
+     * {@link #containing(String)}. Texts stored in files are never searched
+     */
+    public Document bySubstring(String text, @Nullable PasteCursor after,
+                                PasteGramMatches matches) {
+
+        var conditions = new ArrayList<Document>();
+        conditions.add(new Document("access", Access.PUBLIC));
+        conditions.add(new Document("expireAt", notExpired()));
+
+        if (after != null) {
+            conditions.add(after(after, true));
+        }
+
+        var trigrams = pasteTrigrams.ofQuery(text);
+        if (!trigrams.isEmpty()) {
+
+            var candidates = new ArrayList<Document>();
+            candidates.add(new Document("grams", new Document("$all", trigrams)));
+
+            if (!matches.hashes().isEmpty()) {
+                candidates.add(new Document("hash", new Document("$in", matches.hashes())));
+            }
+
+            // Pastes which are not indexed with the current buckets yet are candidates until the
+            // backfill is complete
+            if (!matches.complete()) {
+                candidates.add(new Document("gramBuckets",
+                        new Document("$ne", pasteTrigrams.getBuckets())));
+            }
+
+            conditions.add(new Document("$or", candidates));
+
+            if (matches.until() != null) {
+                conditions.add(notAfter(matches.until()));
+            }
+        }
+
+        conditions.add(new Document("$or", List.of(
+                new Document("text",
+                        new Document("$regex", Pattern.quote(text)).append("$options", "i")),
+                new Document("blobId", new Document("$exists", true)))));
+
+        return new Document("$and", conditions);
+    }
+
+    /**
+     * Returns a case-insensitive literal match of the substring {@code text},
+     * so that the input is never interpreted as a regular expression
+     */
+    public Predicate<Paste> containing(String text) {
+        var pattern = Pattern.compile(Pattern.quote(text),
+                Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE);
+        return paste -> paste.getText() != null && pattern.matcher(paste.getText()).find();
+    }
+
+    /**
+     * Filter on {@code expireAt} that skips pastes which are expired but not removed yet
+     */
+    public Document notExpired() {
+        var now = toDate(LocalDateTime.now());
+        return new Document("$gt", now);
+    }
+
+    /**
+     * Returns the inline text of a raw document as UTF-8 bytes of the document itself, so the text
+     * is neither copied nor decoded. Only names of fields are decoded on the way to the text
+     * @param document raw document of a paste
+     * @return the inline text, {@code null} if the text is stored in a blob or a file
+     */
+    public PasteContent toInlineContent(RawBsonDocument document) {
+
+        var buffer = document.getByteBuffer().asNIO().slice().order(ByteOrder.LITTLE_ENDIAN);
+
+        try (var reader = new BsonBinaryReader(buffer)) {
+
+            reader.readStartDocument();
+
+            while (reader.readBsonType() != BsonType.END_OF_DOCUMENT) {
+
+                var name = reader.readName();
+
+                if (name.equals("text") && reader.getCurrentBsonType() == BsonType.STRING) {
+                    // String value is its length in bytes including the trailing zero, followed by
+                    // the bytes
+                    var position = reader.getBsonInput().getPosition();
+                    var length = buffer.getInt(position) - 1;
+                    return new PasteContent(buffer.array(), buffer.arrayOffset() + position + 4,
+                            length, PasteEncoding.IDENTITY);
+                }
+
+                reader.skipValue();
+            }
+        }
+
+        return null;
+    }
+
+    public LocalDateTime toLocalDateTime(Date date) {
+        return toLocalDateTime(date.getTime());
+    }
+
+    public Date toDate(LocalDateTime localDateTime) {
+        return new Date(toEpochMilli(localDateTime));
+    }
+
+    /**
+     * Converts milliseconds since the epoch to the local time, a fixed offset is applied without
+     * any lookup of rules
+     */
+    public LocalDateTime toLocalDateTime(long epochMilli) {
+
+        var offset = fixedOffset != null ? fixedOffset
+                : zoneRules.getOffset(Instant.ofEpochMilli(epochMilli));
+
+        return LocalDateTime.ofEpochSecond(Math.floorDiv(epochMilli, 1000),
+                (int) Math.floorMod(epochMilli, 1000) * 1_000_000, offset);
+    }
+
+    /**
+     * Converts the local time to milliseconds since the epoch, a fixed offset is applied without
+     * any lookup of rules
+     */
+    public long toEpochMilli(LocalDateTime localDateTime) {
+
+        var offset = fixedOffset != null ? fixedOffset : zoneRules.getOffset(localDateTime);
+
+        return localDateTime.toEpochSecond(offset) * 1000 + localDateTime.getNano() / 1_000_000;
+    }
+
+    /**
+     * Filter of pastes that go after the {@code cursor} in a list ordered by {@code createdAt} and
+     * {@code hash}
+     */
+    Document after(PasteCursor cursor, boolean ascending) {
+
+        var operator = ascending ? "$gt" : "$lt";
+        var createdAt = toDate(cursor.createdAt());
+
+        return new Document("$or", List.of(
+                new Document("createdAt", new Document(operator, createdAt)),
+                new Document("createdAt", createdAt)
+                        .append("hash", new Document(operator, cursor.hash()))));
+    }
+
+    /**
+     * Filter of pastes that go before the {@code cursor} or are at it, in ascending order
+     */
+    private Document notAfter(PasteCursor cursor) {
+
+        var createdAt = toDate(cursor.createdAt());
+
+        return new Document("$or", List.of(
+                new Document("createdAt", new Document("$lt", createdAt)),
+                new Document("createdAt", createdAt)
+                        .append("hash", new Document("$lte", cursor.hash()))));
+    }
+}
@@ -0,0 +1,29 @@
+package com.example.service;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.Date;
+
+/**
+ * Removes expired files of the {@link PasteFileStore} when expired pastes are removed by a TTL
+ * index.
+ * Chunks of files cannot expire by a TTL index, so files are removed on schedule with every
+ * strategy
+ */
+@Service
+@RequiredArgsConstructor
+@ConditionalOnExpression("${pastes.remover.enabled:false} "
+        + "and '${pastes.expiry.strategy:scheduler}'.equalsIgnoreCase('ttl') "
+        + "and '${pastes.storage:mongodb}'.equalsIgnoreCase('mongodb')")
+public class PasteFileRemover {
+
+    private final PasteFileStore pasteFileStore;
+
+    @Scheduled(fixedRateString = "${pastes.remover.scheduled.fixed-rate.millis}")
+    public void removeExpiredFiles() {
+        pasteFileStore.removeExpiredFiles(new Date());
+    }
+}
@@ -0,0 +1,162 @@
+package com.example.service;
+
+import com.example.model.PasteContent;
+import com.example.model.PasteEncoding;
+import com.mongodb.MongoException;
+import com.mongodb.MongoGridFSException;
+import com.mongodb.client.MongoDatabase;
+import com.mongodb.client.gridfs.GridFSBucket;
+import com.mongodb.client.gridfs.GridFSBuckets;
+import com.mongodb.client.gridfs.GridFSUploadStream;
+import com.mongodb.client.gridfs.model.GridFSFile;
+import com.mongodb.client.gridfs.model.GridFSUploadOptions;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Storage of texts of pastes too large to be held in memory, as GridFS files of
+ * {@code pastes.files.chunk-size.bytes} chunks in the bucket {@code mongodb.collection.files}. A
+ * text is written chunk by chunk while it is read from the request and read back chunk by chunk
+ * while it is sent, so memory of an upload or a download does not depend on the size of the text.
+ * Texts are compressed with {@code pastes.compression.encoding}.
+ * Every file keeps the expiration time of its paste in its metadata and is removed after it expires
+ */
+@Component
+@Slf4j
+@ConditionalOnProperty(name = "pastes.storage", havingValue = "mongodb", matchIfMissing = true)
+public class PasteFileStore {
+
+    private static final String FILENAME = "paste";
+
+    private final GridFSBucket bucket;
+    private final int chunkSizeInBytes;
+    private final PasteEncoding encoding;
+    private final int removerBatchSize;
+
+    public PasteFileStore(MongoDatabase db,
+                          @Value("${mongodb.collection.files}") String bucketName,
+                          @Value("${pastes.files.chunk-size.bytes:261120}") int chunkSizeInBytes,
+                          @Value("${pastes.compression.encoding:identity}") PasteEncoding encoding,
+                          @Value("${pastes.remover.batch-size:1000}") int removerBatchSize) {
+
+        this.bucket = GridFSBuckets.create(db, bucketName);
+        this.chunkSizeInBytes = chunkSizeInBytes;
+        this.encoding = encoding;
+        this.removerBatchSize = removerBatchSize;
+    }
+
+    /**
+     * Writes a text to a new file, the file is not created if the text cannot be read to the end
+     * @param head bytes of the text that have already been read
+     * @param tail the rest of the text
+     * @param expireAt expiration time of the paste
+     * @return id of the file
+     * @throws IOException if the text cannot be read
+     */
+    public String save(byte[] head, InputStream tail, Date expireAt) throws IOException {
+
+        var options = new GridFSUploadOptions()
+                .chunkSizeBytes(chunkSizeInBytes)
+                .metadata(new Document("expireAt", expireAt)
+                        .append("encoding", encoding.getName()));
+
+        var upload = bucket.openUploadStream(FILENAME, options);
+
+        try {
+            // The file is written on close, so it is not closed when the text fails to be read
+            var encoder = encoding.encoder(upload);
+            encoder.write(head);
+            tail.transferTo(encoder);
+            encoder.close();
+        } catch (IOException | RuntimeException e) {
+            abort(upload, e);
+            throw e;
+        }
+
+        return upload.getObjectId().toHexString();
+    }
+
+    /**
+     * Returns the text of a file in the form it is stored, it is read from the storage only when it
+     * is written
+     * @param fileId id of a file
+     * @return content of the file, {@code null} if there is no such file
+     */
+    public PasteContent load(String fileId) {
+
+        var id = new ObjectId(fileId);
+        var file = bucket.find(new Document("_id", id)).first();
+
+        if (file == null) {
+            return null;
+        }
+
+        var fileEncoding = PasteEncoding.fromName(file.getMetadata().getString("encoding"));
+
+        return new PasteContent(() -> bucket.openDownloadStream(id),
+                Math.toIntExact(file.getLength()), fileEncoding);
+    }
+
+    /**
+     * Removes a file, e.g. of a paste that was not saved
+     */
+    public void delete(String fileId) {
+        try {
+            bucket.delete(new ObjectId(fileId));
+        } catch (MongoGridFSException e) {
+            log.warn("File '{}' was not deleted: {}", fileId, e.getMessage());
+        }
+    }
+
+    /**
+     * Removes files whose pastes have expired, in batches of {@code pastes.remover.batch-size}.
+     * Every file is removed with its chunks, which have no expiration time of their own
+     */
+    public void removeExpiredFiles(Date now) {
+
+        var query = new Document("metadata.expireAt", new Document("$lte", now));
+
+        long deletedCount = 0;
+        List<ObjectId> ids;
+
+        do {
+            ids = bucket.find(query)
+                    .limit(removerBatchSize)
+                    .map(GridFSFile::getObjectId)
+                    .into(new ArrayList<>());
+
+            for (var id : ids) {
+                try {
+                    bucket.delete(id);
+                    deletedCount++;
+                } catch (MongoGridFSException e) {
+                    // Removed by another node in the meantime
+                    log.debug("Expired file '{}' is already deleted", id);
+                }
+            }
+        } while (ids.size() == removerBatchSize);
+
+        if (deletedCount > 0) {
+            log.info("Expired files were deleted: '{}' files", deletedCount);
+        }
+    }
+
+    private static void abort(GridFSUploadStream upload, Exception cause) {
+        try {
+            // Chunks written so far are deleted
+            upload.abort();
+        } catch (MongoException e) {
+            cause.addSuppressed(e);
+        }
+    }
+}
@@ -0,0 +1,18 @@
+package com.example.service;
+
+import com.example.model.PasteCursor;
+import jakarta.annotation.Nullable;
+
+import java.util.List;
+
+/**
+ * Large pastes whose segments have all trigrams of a searched substring, found by the
+ * {@link PasteGramStore}
+ * @param hashes hashes of the found pastes
+ * @param until position of the last found paste if more pastes may follow it, {@code null} if all
+ * are found
+ * @param complete whether all stored pastes are indexed with the current trigram buckets,
+ * otherwise pastes which are not indexed yet are candidates too
+ */
+public record PasteGramMatches(List<Long> hashes, @Nullable PasteCursor until, boolean complete) {
+}
@@ -0,0 +1,220 @@
+package com.example.service;
+
+import com.example.model.Access;
+import com.example.model.Paste;
+import com.example.model.PasteCursor;
+import com.mongodb.MongoException;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoDatabase;
+import com.mongodb.client.model.InsertManyOptions;
+import jakarta.annotation.Nullable;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Trigrams of segments of public pastes too large to keep their trigrams in themselves, see
+ * {@link PasteTrigrams}.
+ * Every segment is a document of the collection of grams with the hash, the position and the
+ * expiration time of its paste, written right after the paste, so the search finds large pastes by
+ * their segments and then reads only the found pastes.
+ * At most {@code pastes.search.segments.max-candidates} segments are read per search,
+ * a page of results then stops at the last of them
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+@ConditionalOnProperty(name = "pastes.storage", havingValue = "mongodb", matchIfMissing = true)
+public class PasteGramStore {
+
+    private final MongoDatabase db;
+    private final PasteTrigrams pasteTrigrams;
+    private final PasteDocuments pasteDocuments;
+    private final PasteBuckets pasteBuckets;
+
+    @Value("${mongodb.collection.grams}")
+    private String collectionName;
+
+    @Value("${pastes.search.segments.max-candidates:1000}")
+    private int maxCandidates;
+
+    @Value("${pastes.search.max-time.millis:5000}")
+    private long searchMaxTimeMillis;
+
+    @Value("${pastes.remover.batch-size:1000}")
+    private int removerBatchSize;
+
+    /**
+     * Set by the {@link PasteGramsBackfill} once all stored pastes are indexed with the current
+     * trigram buckets
+     */
+    private volatile boolean complete;
+
+    /**
+     * Adds segments of pastes which are public and too large for their trigrams to be kept in them,
+     * other pastes are skipped. Pastes whose segments are not added are left to the
+     * {@link PasteGramsBackfill}, since the pastes themselves are already stored
+     * @param pastes new pastes with their texts
+     */
+    public void save(Collection<Paste> pastes) {
+        try {
+            insert(pastes);
+        } catch (MongoException e) {
+            log.warn(
+                    "Segments of '{}' new pastes were not saved, they are left to the backfill: {}",
+                    pastes.size(), e.getMessage());
+            leaveToBackfill(pastes);
+        }
+    }
+
+    /**
+     * Finds large pastes with a segment which may contain the substring {@code text},
+     * loaded after the paste at the position {@code after}
+     */
+    public PasteGramMatches find(String text, @Nullable PasteCursor after) {
+
+        var trigrams = pasteTrigrams.ofSegmentQuery(text);
+        if (trigrams.isEmpty()) {
+            return new PasteGramMatches(List.of(), null, complete);
+        }
+
+        var filter = new Document("grams", new Document("$all", trigrams))
+                .append("expireAt", pasteDocuments.notExpired());
+        if (after != null) {
+            filter.append("$and", List.of(pasteDocuments.after(after, true)));
+        }
+
+        var hashes = new LinkedHashSet<Long>();
+        var found = 0;
+        Document last = null;
+
+        for (var segment : getCollectionOfGrams().find(filter)
+                .projection(new Document("_id", 0).append("hash", 1).append("createdAt", 1))
+                .sort(PasteDocuments.OLDEST_FIRST)
+                .limit(maxCandidates)
+                .maxTime(searchMaxTimeMillis, TimeUnit.MILLISECONDS)) {
+            hashes.add(segment.getLong("hash"));
+            last = segment;
+            found++;
+        }
+
+        // Segments after the last read one are not known, so results must not go past it
+        var until = found < maxCandidates ? null
+                : new PasteCursor(pasteDocuments.toLocalDateTime(last.getDate("createdAt")),
+                        last.getLong("hash"));
+
+        return new PasteGramMatches(new ArrayList<>(hashes), until, complete);
+    }
+
+    /**
+     * Replaces segments of pastes indexed again, e.g. with other trigram buckets
+     * @param pastes pastes with their texts
+     */
+    public void replace(Collection<Paste> pastes) {
+
+        var hashes = pastes.stream().map(Paste::getHash).toList();
+        if (!hashes.isEmpty()) {
+            getCollectionOfGrams().deleteMany(new Document("hash", new Document("$in", hashes)));
+        }
+
+        insert(pastes);
+    }
+
+    /**
+     * Removes segments of expired pastes in batches of {@code pastes.remover.batch-size}
+     */
+    public void removeExpiredGrams(Date now) {
+
+        var collection = getCollectionOfGrams();
+        var query = new Document("expireAt", new Document("$lte", now));
+
+        long deletedCount = 0;
+        List<Object> ids;
+
+        do {
+            ids = new ArrayList<>();
+            collection.find(query)
+                    .projection(new Document("_id", 1))
+                    .limit(removerBatchSize)
+                    .map(doc -> doc.get("_id"))
+                    .into(ids);
+
+            if (!ids.isEmpty()) {
+                deletedCount += collection.deleteMany(new Document("_id", new Document("$in", ids)))
+                        .getDeletedCount();
+            }
+        } while (ids.size() == removerBatchSize);
+
+        if (deletedCount > 0) {
+            log.info("Segments of expired pastes were deleted: '{}' segments", deletedCount);
+        }
+    }
+
+    public boolean isComplete() {
+        return complete;
+    }
+
+    public void setComplete(boolean complete) {
+        this.complete = complete;
+    }
+
+    private void insert(Collection<Paste> pastes) {
+
+        var segments = new ArrayList<Document>();
+
+        for (var paste : pastes) {
+            if (paste.getAccess() == Access.PUBLIC && paste.getFileId() == null
+                    && paste.getText() != null) {
+                var gramsOfSegments = pasteTrigrams.ofSegments(paste.getText());
+                if (gramsOfSegments.size() > 1) {
+                    segments.addAll(toSegments(paste, gramsOfSegments));
+                }
+            }
+        }
+
+        if (!segments.isEmpty()) {
+            getCollectionOfGrams().insertMany(segments, new InsertManyOptions().ordered(false));
+        }
+    }
+
+    private void leaveToBackfill(Collection<Paste> pastes) {
+
+        complete = false;
+
+        for (var paste : pastes) {
+            try {
+                db.getCollection(pasteBuckets.collectionOf(paste.getHash())).updateOne(
+                        new Document("hash", paste.getHash()),
+                        new Document("$unset", new Document("gramBuckets", "")));
+            } catch (MongoException e) {
+                log.warn("Paste '{}' is not searchable by its segments: {}", paste.getHash(),
+                        e.getMessage());
+            }
+        }
+    }
+
+    private List<Document> toSegments(Paste paste, List<List<Integer>> segments) {
+
+        var docs = new ArrayList<Document>(segments.size());
+
+        for (int i = 0; i < segments.size(); i++) {
+            docs.add(new Document("hash", paste.getHash())
+                    .append("segment", i)
+                    .append("grams", segments.get(i))
+                    .append("createdAt", pasteDocuments.toDate(paste.getCreatedAt()))
+                    .append("expireAt", pasteDocuments.toDate(paste.getExpireAt())));
+        }
+
+        return docs;
+    }
+
+    private MongoCollection<Document> getCollectionOfGrams() {
+        return db.getCollection(collectionName);
+    }
+}
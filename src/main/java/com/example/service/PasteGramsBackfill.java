@@ -0,0 +1,135 @@
+package com.example.service;
+
+import com.example.model.Paste;
+import com.mongodb.MongoException;
+import com.mongodb.client.MongoDatabase;
+import com.mongodb.client.model.BulkWriteOptions;
+import com.mongodb.client.model.UpdateOneModel;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Indexes pastes stored without trigrams or with other trigram buckets, i.e. before the index
+ * existed or before {@code pastes.search.trigrams.buckets} was changed, in batches of
+ * {@code pastes.search.backfill.batch-size}.
+ * Such pastes are candidates of every search until none of them is left, then the search relies on
+ * trigrams alone
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+@ConditionalOnProperty(name = "pastes.storage", havingValue = "mongodb", matchIfMissing = true)
+public class PasteGramsBackfill {
+
+    private final MongoDatabase db;
+    private final PasteBuckets pasteBuckets;
+    private final PasteTrigrams pasteTrigrams;
+    private final PasteDocuments pasteDocuments;
+    private final PasteBlobStore pasteBlobStore;
+    private final PasteGramStore pasteGramStore;
+
+    @Value("${pastes.search.backfill.batch-size:500}")
+    private int batchSize;
+
+    @Scheduled(fixedDelayString = "${pastes.search.backfill.delay.millis:1000}")
+    public void backfill() {
+
+        if (pasteGramStore.isComplete()) {
+            return;
+        }
+
+        try {
+            var indexedCount = indexNextBatch();
+            if (indexedCount == 0) {
+                pasteGramStore.setComplete(true);
+                log.info("All pastes are indexed with '{}' trigram buckets",
+                        pasteTrigrams.getBuckets());
+            } else {
+                log.info("Pastes are indexed with '{}' trigram buckets: '{}' pastes",
+                        pasteTrigrams.getBuckets(), indexedCount);
+            }
+        } catch (MongoException e) {
+            log.warn("Pastes were not indexed, they will be indexed later: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Indexes the next batch of not expired pastes of every collection which are not indexed
+     * with the current trigram buckets
+     * @return number of the indexed pastes, {@code 0} if all of them are indexed
+     */
+    public int indexNextBatch() {
+
+        var filter = new Document("gramBuckets", new Document("$ne", pasteTrigrams.getBuckets()))
+                .append("expireAt", pasteDocuments.notExpired());
+
+        var indexedCount = 0;
+
+        for (var name : pasteBuckets.liveCollections()) {
+
+            var collection = db.getCollection(name, Paste.class);
+            var pastes = collection.find(filter)
+                    .projection(PasteDocuments.WITHOUT_GRAMS)
+                    .limit(batchSize)
+                    .into(new ArrayList<>());
+
+            if (pastes.isEmpty()) {
+                continue;
+            }
+
+            withTexts(pastes);
+
+            // Segments are written first, so a paste is never indexed without them
+            pasteGramStore.replace(pastes);
+
+            var updates = pastes.stream()
+                    .map(paste -> new UpdateOneModel<Paste>(
+                            new Document("hash", paste.getHash()),
+                            new Document("$set", new Document("grams", gramsOf(paste))
+                                    .append("gramBuckets", pasteTrigrams.getBuckets()))))
+                    .toList();
+            collection.bulkWrite(updates, new BulkWriteOptions().ordered(false));
+
+            indexedCount += pastes.size();
+        }
+
+        return indexedCount;
+    }
+
+    /**
+     * Trigrams kept in a paste itself, none for files and for large pastes found by their segments
+     */
+    private List<Integer> gramsOf(Paste paste) {
+
+        if (paste.getFileId() != null || paste.getText() == null) {
+            return List.of();
+        }
+
+        return Objects.requireNonNullElse(pasteTrigrams.ofPaste(paste.getText()), List.of());
+    }
+
+    private void withTexts(List<Paste> pastes) {
+
+        var blobIds = pastes.stream()
+                .map(Paste::getBlobId)
+                .filter(Objects::nonNull)
+                .distinct()
+                .toList();
+        var contents = pasteBlobStore.loadAll(blobIds);
+
+        for (var paste : pastes) {
+            if (paste.getBlobId() != null) {
+                paste.setContent(contents.get(paste.getBlobId()));
+            }
+        }
+    }
+}
@@ -0,0 +1,153 @@
+package com.example.service;
+
+import com.example.model.Paste;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Bounded buffer of new pastes which are accepted but not written to the storage yet.
+ * Adding and taking pastes never blocks: the queue is lock-free, and the capacity
+ * of {@code pastes.ingest.write-behind.capacity} pastes is reserved with a CAS on the counter of
+ * pastes.
+ * Pastes stay readable by their hashes until they are written
+ */
+@Component
+@Profile("!reactive")
+@ConditionalOnProperty(name = "pastes.ingest.write-behind.enabled", havingValue = "true")
+public class PasteIngestBuffer {
+
+    private final int capacity;
+    private final int batchSize;
+
+    private final Queue<Paste> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger size = new AtomicInteger();
+    private final Map<Long, Paste> pending = new ConcurrentHashMap<>();
+
+    /**
+     * Thread waiting for a full batch of pastes, {@code null} if there is none
+     */
+    private volatile Thread waiter;
+
+    public PasteIngestBuffer(@Value("${pastes.ingest.write-behind.capacity:10000}") int capacity,
+                             @Value("${pastes.ingest.write-behind.batch-size:500}") int batchSize) {
+        this.capacity = capacity;
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Adds new paste to the buffer unless it is full
+     * @param paste new paste with its final hash
+     * @return {@code true} if the paste is added, {@code false} if the buffer is full
+     */
+    public boolean offer(Paste paste) {
+
+        int current;
+        do {
+            current = size.get();
+            if (current >= capacity) {
+                return false;
+            }
+        } while (!size.compareAndSet(current, current + 1));
+
+        pending.put(paste.getHash(), paste);
+        queue.add(paste);
+
+        if (current + 1 >= batchSize) {
+            var thread = waiter;
+            if (thread != null) {
+                LockSupport.unpark(thread);
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Returns a paste which is not written yet by its hash
+     * @param hash hash of a paste
+     * @return the paste, {@code null} if there is no such paste in the buffer
+     */
+    public Paste get(long hash) {
+        return pending.get(hash);
+    }
+
+    /**
+     * Takes the oldest pastes from the buffer to write them. They stay readable until
+     * {@link #complete(List)}
+     * @param limit maximum number of taken pastes
+     * @return taken pastes, empty if the buffer is empty
+     */
+    public List<Paste> poll(int limit) {
+
+        var pastes = new ArrayList<Paste>();
+
+        Paste paste;
+        while (pastes.size() < limit && (paste = queue.poll()) != null) {
+            pastes.add(paste);
+        }
+
+        size.addAndGet(-pastes.size());
+
+        return pastes;
+    }
+
+    /**
+     * Returns taken pastes that were not written back to the buffer, even if it is full
+     * @param pastes pastes taken with {@link #poll(int)}
+     */
+    public void requeue(List<Paste> pastes) {
+        size.addAndGet(pastes.size());
+        queue.addAll(pastes);
+    }
+
+    /**
+     * Forgets taken pastes that have been written or dropped
+     * @param pastes pastes taken with {@link #poll(int)}
+     */
+    public void complete(List<Paste> pastes) {
+        for (var paste : pastes) {
+            pending.remove(paste.getHash(), paste);
+        }
+    }
+
+    /**
+     * Waits until the buffer has a full batch of pastes, but no longer than {@code timeout}.
+     * The wait may end earlier, which only makes the next batch smaller
+     * @param timeout maximum time to wait
+     */
+    public void awaitBatch(Duration timeout) {
+
+        waiter = Thread.currentThread();
+        try {
+            if (size.get() < batchSize) {
+                LockSupport.parkNanos(this, timeout.toNanos());
+            }
+        } finally {
+            waiter = null;
+        }
+    }
+
+    /**
+     * Returns the number of pastes waiting to be taken
+     * @return number of pastes in the queue
+     */
+    public int size() {
+        return size.get();
+    }
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+}
@@ -0,0 +1,11 @@
+package com.example.service;
+
+/**
+ * Thrown when a new paste cannot be accepted because too many pastes are waiting to be written
+ */
+public class PasteIngestRejectedException extends RuntimeException {
+
+    public PasteIngestRejectedException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,223 @@
+package com.example.service;
+
+import com.mongodb.MongoClientSettings;
+import com.mongodb.event.CommandFailedEvent;
+import com.mongodb.event.CommandListener;
+import com.mongodb.event.CommandSucceededEvent;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.Getter;
+import org.springframework.boot.autoconfigure.mongo.MongoClientSettingsBuilderCustomizer;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Metrics of pastes. Every operation of the service is measured by the timer
+ * {@code pastes.operation} tagged by the {@code operation}, and the parts of its time spent in
+ * MongoDB commands and in conversions of pastes to and from BSON by the timers
+ * {@code pastes.operation.mongodb} and {@code pastes.operation.conversion}.
+ * The parts are summed up per thread, since the sync driver runs commands and codecs on the calling
+ * thread.
+ * Reads are measured by the timer {@code pastes.read} tagged by their {@link PasteReadRoute route}
+ * as well, to compare the latency of reads from the primary and from secondaries
+ */
+@Component
+public class PasteMetrics implements MongoClientSettingsBuilderCustomizer, CommandListener {
+
+    private static final int MONGODB = 0;
+    private static final int CONVERSION = 1;
+
+    /**
+     * Nanoseconds spent by the current thread in MongoDB commands and in conversions so far
+     */
+    private static final ThreadLocal<long[]> SPENT = ThreadLocal.withInitial(() -> new long[2]);
+
+    private final MeterRegistry meterRegistry;
+    private final Map<String, OperationTimers> operations = new ConcurrentHashMap<>();
+    private final Map<PasteReadRoute, Timer> reads = new ConcurrentHashMap<>();
+    private final Map<String, Counter> rejected = new ConcurrentHashMap<>();
+
+    private final Counter created;
+    private final Counter expired;
+    private final Counter notFound;
+    private final DistributionSummary sizes;
+    private final DistributionSummary searchResults;
+
+    /**
+     * Duration of runs of the scheduled remover of expired pastes
+     */
+    @Getter
+    private final Timer removerRuns;
+
+    public PasteMetrics(MeterRegistry meterRegistry) {
+
+        this.meterRegistry = meterRegistry;
+
+        this.created = Counter.builder("pastes.created")
+                .description("Number of created pastes")
+                .register(meterRegistry);
+        this.expired = Counter.builder("pastes.expired")
+                .description("Number of removed expired pastes")
+                .register(meterRegistry);
+        this.notFound = Counter.builder("pastes.not.found")
+                .description("Number of requested pastes that were not found")
+                .register(meterRegistry);
+        this.sizes = DistributionSummary.builder("pastes.size")
+                .description("Length of texts of created pastes")
+                .baseUnit("characters")
+                .register(meterRegistry);
+        this.searchResults = DistributionSummary.builder("pastes.search.results")
+                .description("Number of pastes found by a search")
+                .register(meterRegistry);
+        this.removerRuns = Timer.builder("pastes.remover")
+                .description("Duration of runs of the scheduled remover of expired pastes")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public void customize(MongoClientSettings.Builder settings) {
+        settings.addCommandListener(this);
+    }
+
+    @Override
+    public void commandSucceeded(CommandSucceededEvent event) {
+        SPENT.get()[MONGODB] += event.getElapsedTime(TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public void commandFailed(CommandFailedEvent event) {
+        SPENT.get()[MONGODB] += event.getElapsedTime(TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Adds time of a conversion of a paste to the operation of the current thread
+     * @param nanos duration of the conversion in nanoseconds
+     */
+    public void addConversionTime(long nanos) {
+        SPENT.get()[CONVERSION] += nanos;
+    }
+
+    /**
+     * Measures an operation, operations may be nested
+     * @param operation name of the operation
+     * @param call the operation
+     * @return result of the operation
+     */
+    public <T> T record(String operation, Supplier<T> call) {
+
+        var spent = SPENT.get();
+        var mongodbBefore = spent[MONGODB];
+        var conversionBefore = spent[CONVERSION];
+        var startedAt = System.nanoTime();
+
+        try {
+            return call.get();
+        } finally {
+            var timers = operations.computeIfAbsent(operation, this::operationTimers);
+            timers.total().record(System.nanoTime() - startedAt, TimeUnit.NANOSECONDS);
+            timers.mongodb().record(spent[MONGODB] - mongodbBefore, TimeUnit.NANOSECONDS);
+            timers.conversion().record(spent[CONVERSION] - conversionBefore, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /**
+     * Measures an operation without a result, operations may be nested
+     * @param operation name of the operation
+     * @param call the operation
+     */
+    public void record(String operation, Runnable call) {
+        record(operation, () -> {
+            call.run();
+            return null;
+        });
+    }
+
+    /**
+     * Measures a read by its route, within an operation
+     * @param route route of the read
+     * @param call the read
+     * @return result of the read
+     */
+    public <T> T recordRead(PasteReadRoute route, Supplier<T> call) {
+
+        var startedAt = System.nanoTime();
+
+        try {
+            return call.get();
+        } finally {
+            reads.computeIfAbsent(route, this::readTimer)
+                    .record(System.nanoTime() - startedAt, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    public void created(String text) {
+        created(text.length());
+    }
+
+    /**
+     * Counts a created paste whose text is not decoded, the number of its stored bytes stands for
+     * its length
+     * @param size number of stored bytes of the text
+     */
+    public void created(long size) {
+        created.increment();
+        sizes.record(size);
+    }
+
+    public void expired(long count) {
+        expired.increment(count);
+    }
+
+    public void notFound() {
+        notFound.increment();
+    }
+
+    public void found(int count) {
+        searchResults.record(count);
+    }
+
+    /**
+     * Counts a request rejected by the admission control
+     * @param reason {@code rate} if the client is out of tokens, {@code concurrency} if too many
+     * requests are handled
+     */
+    public void rejected(String reason) {
+        rejected.computeIfAbsent(reason, r -> Counter.builder("pastes.admission.rejected")
+                        .description("Number of requests rejected by the admission control")
+                        .tag("reason", r)
+                        .register(meterRegistry))
+                .increment();
+    }
+
+    private OperationTimers operationTimers(String operation) {
+        return new OperationTimers(
+                operationTimer("pastes.operation", "Duration of operations with pastes", operation),
+                operationTimer("pastes.operation.mongodb",
+                               "Time of operations spent in MongoDB commands", operation),
+                operationTimer("pastes.operation.conversion",
+                               "Time of operations spent in conversions of pastes", operation));
+    }
+
+    private Timer operationTimer(String name, String description, String operation) {
+        return Timer.builder(name)
+                .description(description)
+                .tag("operation", operation)
+                .register(meterRegistry);
+    }
+
+    private Timer readTimer(PasteReadRoute route) {
+        return Timer.builder("pastes.read")
+                .description("Duration of reads of pastes by their route")
+                .tag("route", route.name().toLowerCase())
+                .register(meterRegistry);
+    }
+
+    private record OperationTimers(Timer total, Timer mongodb, Timer conversion) {
+    }
+}
@@ -0,0 +1,19 @@
+package com.example.service;
+
+/**
+ * Route of reads of pastes to members of a replica set, see {@link PasteReadRoutes}
+ */
+public enum PasteReadRoute {
+
+    /**
+     * Lookups of single pastes by their links, read from the primary by default,
+     * so that a paste is found right after it is created
+     */
+    LOOKUP,
+
+    /**
+     * The feed and the search, which read many pastes and may be served by secondaries
+     * that lag behind the primary, as a new paste shows up there a bit later anyway
+     */
+    SCAN
+}
@@ -0,0 +1,103 @@
+package com.example.service;
+
+import com.mongodb.ReadConcern;
+import com.mongodb.ReadConcernLevel;
+import com.mongodb.ReadPreference;
+import com.mongodb.client.MongoCollection;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Read preferences and read concerns of the {@link PasteReadRoute routes} of reads.
+ * Lookups use {@code mongodb.routes.lookup.read-preference}, the feed and the search use
+ * {@code mongodb.routes.scan.read-preference}, so heavy scans may run on secondaries and do not
+ * compete with writes on the primary. A secondary that lags more than
+ * {@code mongodb.routes.scan.max-staleness.seconds} is not read, and scans are read with
+ * {@code mongodb.routes.scan.read-concern}.
+ * Writes and other reads keep the settings of the client, {@code mongodb.read-preference}
+ */
+@Component
+@ConditionalOnProperty(name = "pastes.storage", havingValue = "mongodb", matchIfMissing = true)
+public class PasteReadRoutes {
+
+    /**
+     * The least max staleness allowed by MongoDB
+     */
+    static final long MIN_MAX_STALENESS_SECONDS = 90;
+
+    private final Map<PasteReadRoute, Route> routes = new EnumMap<>(PasteReadRoute.class);
+
+    public PasteReadRoutes(@Value("${mongodb.routes.lookup.read-preference:primary}")
+                           String lookupReadPreference,
+                           @Value("${mongodb.routes.lookup.read-concern:local}")
+                           String lookupReadConcern,
+                           @Value("${mongodb.routes.scan.read-preference:secondaryPreferred}")
+                           String scanReadPreference,
+                           @Value("${mongodb.routes.scan.max-staleness.seconds:0}")
+                           long scanMaxStalenessSeconds,
+                           @Value("${mongodb.routes.scan.read-concern:local}")
+                           String scanReadConcern) {
+
+        routes.put(PasteReadRoute.LOOKUP, new Route(
+                readPreference(lookupReadPreference, 0),
+                readConcern(lookupReadConcern)));
+        routes.put(PasteReadRoute.SCAN, new Route(
+                readPreference(scanReadPreference, scanMaxStalenessSeconds),
+                readConcern(scanReadConcern)));
+    }
+
+    /**
+     * Returns the collection which is read by the route
+     */
+    public <T> MongoCollection<T> route(MongoCollection<T> collection, PasteReadRoute route) {
+
+        var settings = routes.get(route);
+
+        return collection.withReadPreference(settings.readPreference())
+                .withReadConcern(settings.readConcern());
+    }
+
+    public ReadPreference getReadPreference(PasteReadRoute route) {
+        return routes.get(route).readPreference();
+    }
+
+    public ReadConcern getReadConcern(PasteReadRoute route) {
+        return routes.get(route).readConcern();
+    }
+
+    /**
+     * Parses a read preference, {@code 0} seconds of max staleness means no max staleness
+     */
+    private static ReadPreference readPreference(String name, long maxStalenessSeconds) {
+
+        if (maxStalenessSeconds <= 0) {
+            return ReadPreference.valueOf(name);
+        }
+
+        if (maxStalenessSeconds < MIN_MAX_STALENESS_SECONDS) {
+            throw new IllegalArgumentException("Max staleness must be at least "
+                    + MIN_MAX_STALENESS_SECONDS + " seconds");
+        }
+
+        // The primary is always up to date and takes no max staleness
+        if (ReadPreference.primary().getName().equalsIgnoreCase(name)) {
+            throw new IllegalArgumentException(
+                    "Max staleness is not allowed for the primary read preference");
+        }
+
+        return ReadPreference.valueOf(name, List.of(), maxStalenessSeconds, TimeUnit.SECONDS);
+    }
+
+    private static ReadConcern readConcern(String level) {
+        return new ReadConcern(ReadConcernLevel.fromString(level));
+    }
+
+    private record Route(ReadPreference readPreference, ReadConcern readConcern) {
+    }
+}
@@ -1,19 +1,23 @@
 package com.example.service;
 
 import lombok.RequiredArgsConstructor;
-import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.context.annotation.Profile;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
 @Service
 @RequiredArgsConstructor
-@ConditionalOnProperty(name = "pastes.remover.enabled", havingValue = "true")
+@Profile("!reactive")
+@ConditionalOnExpression("${pastes.remover.enabled:false} "
+        + "and !'${pastes.expiry.strategy:scheduler}'.equalsIgnoreCase('ttl')")
 public class PasteScheduledRemover {
 
     private final PasteService pasteService;
+    private final PasteMetrics pasteMetrics;
 
     @Scheduled(fixedRateString = "${pastes.remover.scheduled.fixed-rate.millis}")
     public void parseAndSend() {
-        pasteService.removeExpiredPastes();
+        pasteMetrics.getRemoverRuns().record(pasteService::removeExpiredPastes);
     }
 }
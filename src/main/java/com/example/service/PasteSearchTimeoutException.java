@@ -0,0 +1,12 @@
+package com.example.service;
+
+/**
+ * Thrown when a search by a substring reads candidates for longer than
+ * {@code pastes.search.max-time.millis}
+ */
+public class PasteSearchTimeoutException extends RuntimeException {
+
+    public PasteSearchTimeoutException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
@@ -1,9 +1,16 @@
 package com.example.service;
 
 import com.example.model.Paste;
+import com.example.model.PasteContent;
+import com.example.model.PasteCursor;
 import com.example.model.PasteRequest;
+import com.example.model.PasteResult;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.LocalDateTime;
 import java.util.List;
+import java.util.stream.Stream;
 
 /**
  * Service for interacting with paste storage
@@ -17,12 +24,36 @@ public interface PasteService {
      */
     Paste getByHash(Long hash);
 
+    /**
+     * Returns only the text of a paste by a specified {@code hash}, in the form it is stored
+     * @param hash a hash of a previously loaded paste
+     * @return the stored text of a paste with a specified {@code hash}, {@code null} if there is no
+     * such paste
+     */
+    PasteContent getContentByHash(Long hash);
+
+    /**
+     * Returns the expiration time of a paste by a specified {@code hash} without loading its text
+     * @param hash a hash of a previously loaded paste
+     * @return the expiration time of a paste with a specified {@code hash}, {@code null} if there
+     * is no such paste
+     */
+    LocalDateTime getExpireAtByHash(Long hash);
+
     /**
      * Returns the 10 most recently loaded public pastes
      * @return the 10 most recently loaded public pastes
      */
     List<Paste> getAllLast();
 
+    /**
+     * Returns a page of public pastes ordered from the most recently loaded
+     * @param after position of the last paste of the previous page, {@code null} for the first page
+     * @param limit maximum number of pastes in the page
+     * @return public pastes loaded before the paste at the position {@code after}
+     */
+    List<Paste> getAllLast(PasteCursor after, int limit);
+
     /**
      * Returns all public pastes with text that has the specified substring ({@code text})
      * @param text substring for searching in pastes
@@ -30,6 +61,25 @@ public interface PasteService {
      */
     List<Paste> getAllBySubstring(String text);
 
+    /**
+     * Returns a page of public pastes with text that has the specified substring ({@code text}),
+     * ordered from the earliest loaded
+     * @param text substring for searching in pastes
+     * @param after position of the last paste of the previous page, {@code null} for the first page
+     * @param limit maximum number of pastes in the page
+     * @return pastes with text containing specified substring, loaded after the paste at the
+     * position {@code after}
+     */
+    List<Paste> getAllBySubstring(String text, PasteCursor after, int limit);
+
+    /**
+     * Returns all public pastes with text that has the specified substring ({@code text})
+     * one by one as they are read from the storage. The stream must be closed after use
+     * @param text substring for searching in pastes
+     * @return stream of pastes with text containing specified substring ({@code text})
+     */
+    Stream<Paste> streamAllBySubstring(String text);
+
     /**
      * Adds new paste
      * @param pasteRequest request with specified paste parameters
@@ -37,6 +87,25 @@ public interface PasteService {
      */
     Paste create(PasteRequest pasteRequest);
 
+    /**
+     * Adds new paste with the text read from a stream, the text of the request is ignored.
+     * Storages that support it write large texts while they are read, without holding them in
+     * memory
+     * @param pasteRequest request with specified paste parameters
+     * @param text UTF-8 bytes of the text
+     * @return a new paste created by specified parameters
+     * @throws IOException if the text cannot be read
+     */
+    Paste create(PasteRequest pasteRequest, InputStream text) throws IOException;
+
+    /**
+     * Adds new pastes at once. Invalid requests are rejected before anything is written,
+     * and a paste that fails to be written does not prevent the others from being added
+     * @param pasteRequests requests with specified paste parameters
+     * @return results of the requests in the same order
+     */
+    List<PasteResult> createAll(List<PasteRequest> pasteRequests);
+
     /**
      * Removes all expired pastes
      */
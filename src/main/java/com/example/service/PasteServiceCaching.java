@@ -0,0 +1,277 @@
+package com.example.service;
+
+import com.example.model.Paste;
+import com.example.model.PasteChange;
+import com.example.model.PasteContent;
+import com.example.model.PasteCursor;
+import com.example.model.PasteRequest;
+import com.example.model.PasteResult;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Primary;
+import org.springframework.context.annotation.Profile;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+/**
+ * Decorator of {@link PasteService} that keeps recently read pastes in memory.
+ * Texts are kept in the form they are served, as {@link PasteContent}, so a hit is served without
+ * encoding the text.
+ * The cache is bounded by the approximate size of the pastes in bytes,
+ * every paste is evicted no later than it expires,
+ * and hashes of missing pastes are cached for a short time as well.
+ * Hits, misses and evictions are published to the meter registry as the {@code cache.*} meters of
+ * cache "pastes"
+ */
+@Service
+@Primary
+@Profile("!reactive")
+@ConditionalOnProperty(name = "pastes.cache.enabled", havingValue = "true")
+public class PasteServiceCaching implements PasteService {
+
+    private static final int PASTE_OVERHEAD_IN_BYTES = 128;
+
+    private final PasteService pasteService;
+    private final Cache<Long, Optional<Paste>> cache;
+
+    public PasteServiceCaching(PasteStorage pasteService,
+                               MeterRegistry meterRegistry,
+                               @Value("${pastes.cache.max-size.bytes}") long maxSizeInBytes,
+                               @Value("${pastes.cache.max-ttl.seconds}") long maxTtlInSeconds,
+                               @Value("${pastes.cache.negative-ttl.millis}")
+                               long negativeTtlInMillis) {
+
+        this.pasteService = pasteService;
+        this.cache = Caffeine.newBuilder()
+                .maximumWeight(maxSizeInBytes)
+                .weigher((Long hash, Optional<Paste> paste) -> weigh(paste))
+                .expireAfter(new PasteExpiry(Duration.ofSeconds(maxTtlInSeconds),
+                        Duration.ofMillis(negativeTtlInMillis)))
+                .recordStats()
+                .build();
+
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "pastes");
+    }
+
+    @Override
+    public Paste getByHash(Long hash) {
+
+        if (hash == null) {
+            return pasteService.getByHash(null);
+        }
+
+        return cache.get(hash,
+                h -> Optional.ofNullable(pasteService.getByHash(h))
+                        .map(PasteServiceCaching::toCached))
+                .orElse(null);
+    }
+
+    /**
+     * Serves the stored content of a cached paste as it is, a missing paste is loaded whole and
+     * cached, since the raw text of the storage cannot be cached as a paste
+     */
+    @Override
+    public PasteContent getContentByHash(Long hash) {
+
+        var paste = getByHash(hash);
+        if (paste == null) {
+            return null;
+        }
+
+        return paste.toContent();
+    }
+
+    /**
+     * Serves the expiration time of a cached paste, a missing paste is not loaded and cached for it
+     */
+    @Override
+    public LocalDateTime getExpireAtByHash(Long hash) {
+
+        var cached = hash == null ? null : cache.getIfPresent(hash);
+        if (cached != null) {
+            return cached.map(Paste::getExpireAt).orElse(null);
+        }
+
+        return pasteService.getExpireAtByHash(hash);
+    }
+
+    @Override
+    public List<Paste> getAllLast() {
+        return pasteService.getAllLast();
+    }
+
+    @Override
+    public List<Paste> getAllLast(PasteCursor after, int limit) {
+        return pasteService.getAllLast(after, limit);
+    }
+
+    @Override
+    public List<Paste> getAllBySubstring(String text) {
+        return pasteService.getAllBySubstring(text);
+    }
+
+    @Override
+    public List<Paste> getAllBySubstring(String text, PasteCursor after, int limit) {
+        return pasteService.getAllBySubstring(text, after, limit);
+    }
+
+    @Override
+    public Stream<Paste> streamAllBySubstring(String text) {
+        return pasteService.streamAllBySubstring(text);
+    }
+
+    @Override
+    public Paste create(PasteRequest pasteRequest) {
+
+        var paste = pasteService.create(pasteRequest);
+
+        // Replaces a cached miss of the same hash as well
+        cache.put(paste.getHash(), Optional.of(toCached(paste)));
+
+        return paste;
+    }
+
+    /**
+     * A paste with a text in a file is cached without its text, which is read from the file every
+     * time
+     */
+    @Override
+    public Paste create(PasteRequest pasteRequest, InputStream text) throws IOException {
+
+        var paste = pasteService.create(pasteRequest, text);
+
+        cache.put(paste.getHash(), Optional.of(toCached(paste)));
+
+        return paste;
+    }
+
+    @Override
+    public List<PasteResult> createAll(List<PasteRequest> pasteRequests) {
+
+        var results = pasteService.createAll(pasteRequests);
+
+        for (var result : results) {
+            if (result.isCreated()) {
+                cache.put(result.paste().getHash(), Optional.of(toCached(result.paste())));
+            }
+        }
+
+        return results;
+    }
+
+    @Override
+    public void removeExpiredPastes() {
+        // Cached pastes are evicted by their own expiration time
+        pasteService.removeExpiredPastes();
+    }
+
+    /**
+     * Keeps the cache coherent with changes of other nodes, as published by the
+     * {@link PasteChangeStream}.
+     * A new paste replaces a cached miss of its hash, a deleted paste is evicted
+     */
+    @EventListener
+    public void onPasteChange(PasteChange change) {
+        if (change.type() == PasteChange.Type.INSERT) {
+            cache.asMap().remove(change.hash(), Optional.empty());
+        } else {
+            cache.invalidate(change.hash());
+        }
+    }
+
+    /**
+     * Returns hit, miss and eviction counters of the cache
+     * @return statistics of the cache
+     */
+    public CacheStats getStats() {
+        return cache.stats();
+    }
+
+    /**
+     * Copy of a paste which holds its text as UTF-8 bytes, the paste itself is returned to the
+     * caller unchanged
+     */
+    private static Paste toCached(Paste paste) {
+
+        if (paste.getContent() != null || paste.getText() == null) {
+            return paste;
+        }
+
+        return Paste.builder()
+                .hash(paste.getHash())
+                .access(paste.getAccess())
+                .createdAt(paste.getCreatedAt())
+                .expireAt(paste.getExpireAt())
+                .blobId(paste.getBlobId())
+                .content(paste.toContent())
+                .build();
+    }
+
+    private static int weigh(Optional<Paste> paste) {
+
+        if (paste.isEmpty()) {
+            return PASTE_OVERHEAD_IN_BYTES;
+        }
+
+        // Stored content is weighed as it is, without decoding it, a streamed content is not held
+        // at all
+        var content = paste.get().getContent();
+        if (content != null) {
+            return PASTE_OVERHEAD_IN_BYTES + (content.isStreamed() ? 0 : content.getLength());
+        }
+
+        var text = Objects.requireNonNullElse(paste.get().getText(), "");
+        return PASTE_OVERHEAD_IN_BYTES + 2 * text.length();
+    }
+
+    /**
+     * Keeps a paste until it expires, but no longer than {@code maxTtl},
+     * and a cached miss no longer than {@code negativeTtl}
+     */
+    private record PasteExpiry(Duration maxTtl, Duration negativeTtl)
+            implements Expiry<Long, Optional<Paste>> {
+
+        @Override
+        public long expireAfterCreate(Long hash, Optional<Paste> paste, long currentTime) {
+
+            if (paste.isEmpty()) {
+                return negativeTtl.toNanos();
+            }
+
+            var untilExpiration = Duration.between(LocalDateTime.now(), paste.get().getExpireAt());
+            if (untilExpiration.isNegative()) {
+                return 0;
+            }
+
+            return untilExpiration.compareTo(maxTtl) < 0 ? untilExpiration.toNanos()
+                    : maxTtl.toNanos();
+        }
+
+        @Override
+        public long expireAfterUpdate(Long hash, Optional<Paste> paste, long currentTime,
+                                      long currentDuration) {
+            return expireAfterCreate(hash, paste, currentTime);
+        }
+
+        @Override
+        public long expireAfterRead(Long hash, Optional<Paste> paste, long currentTime,
+                                    long currentDuration) {
+            return currentDuration;
+        }
+    }
+}
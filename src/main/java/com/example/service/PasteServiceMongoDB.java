@@ -2,28 +2,64 @@ package com.example.service;
 
 import com.example.model.Access;
 import com.example.model.Paste;
+import com.example.model.PasteChange;
+import com.example.model.PasteContent;
+import com.example.model.PasteCursor;
 import com.example.model.PasteRequest;
+import com.example.model.PasteResult;
+import com.example.service.id.PasteIdGenerator;
+import com.mongodb.ErrorCategory;
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.MongoException;
+import com.mongodb.MongoExecutionTimeoutException;
+import com.mongodb.MongoWriteException;
 import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoCursor;
 import com.mongodb.client.MongoDatabase;
-import com.mongodb.client.model.Sorts;
+import com.mongodb.client.model.CountOptions;
+import com.mongodb.client.model.InsertManyOptions;
 import jakarta.annotation.Nullable;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.bson.Document;
+import org.bson.RawBsonDocument;
+import org.bson.conversions.Bson;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.annotation.Profile;
+import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Service;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDateTime;
-import java.time.ZoneId;
 import java.util.*;
-import java.util.regex.Pattern;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 @Service
 @RequiredArgsConstructor
 @Slf4j
-public class PasteServiceMongoDB implements PasteService {
+@Profile("!reactive")
+@ConditionalOnProperty(name = "pastes.storage", havingValue = "mongodb", matchIfMissing = true)
+public class PasteServiceMongoDB implements PasteStorage {
 
     private final MongoDatabase db;
+    private final LastPastesFeed lastPastesFeed;
+    private final PasteDocuments pasteDocuments;
+    private final PasteIdGenerator pasteIdGenerator;
+    private final PasteBlobStore pasteBlobStore;
+    private final PasteFileStore pasteFileStore;
+    private final PasteGramStore pasteGramStore;
+    private final PasteBuckets pasteBuckets;
+    private final PasteReadRoutes pasteReadRoutes;
+    private final Optional<PasteIngestBuffer> pasteIngestBuffer;
+    private final PasteMetrics pasteMetrics;
 
     @Value("${mongodb.collection.pastes}")
     private String collectionName;
@@ -31,31 +67,193 @@ public class PasteServiceMongoDB implements PasteService {
     @Value("${pastes.last-pastes.limit}")
     private int limitOfLastPastes;
 
+    @Value("${pastes.id.max-attempts:3}")
+    private int maxAttemptsToCreate;
+
+    @Value("${pastes.remover.batch-size:1000}")
+    private int removerBatchSize;
+
+    @Value("${pastes.files.min-size.bytes:4194304}")
+    private int fileMinSizeInBytes;
+
+    @Value("${pastes.search.max-time.millis:5000}")
+    private long searchMaxTimeMillis;
+
+    @Value("${pastes.search.batch-size:100}")
+    private int searchBatchSize;
+
     @Override
     public Paste getByHash(Long hash) {
+        return pasteMetrics.record("getByHash",
+                () -> found(pasteMetrics.recordRead(PasteReadRoute.LOOKUP,
+                        () -> findByHash(hash))));
+    }
+
+    private Paste findByHash(Long hash) {
 
-        var collection = getCollectionOfPastes();
+        // Pastes accepted by the write-behind ingest are read before they are written
+        var pending = pasteIngestBuffer.map(buffer -> buffer.get(hash)).orElse(null);
+        if (pending != null && pending.getExpireAt().isAfter(LocalDateTime.now())) {
+            return pending;
+        }
+
+        var collection =
+                getCollectionOfPastes(pasteBuckets.collectionOf(hash), PasteReadRoute.LOOKUP);
 
-        var docs = collection.find(new Document("hash", hash));
-        var doc = docs.first();
+        var paste = collection.find(pasteDocuments.byHash(hash))
+                .projection(PasteDocuments.WITHOUT_GRAMS)
+                .first();
 
-        return toPaste(doc);
+        return withContent(paste, PasteReadRoute.LOOKUP);
     }
 
+    /**
+     * Reads the document as raw BSON with only its text projected, so an inline text is served
+     * straight from the bytes received from MongoDB without building a document or a paste
+     */
+    @Override
+    public PasteContent getContentByHash(Long hash) {
+        return pasteMetrics.record("getContentByHash",
+                () -> found(pasteMetrics.recordRead(PasteReadRoute.LOOKUP,
+                        () -> findContentByHash(hash))));
+    }
+
+    private PasteContent findContentByHash(Long hash) {
+
+        var pending = pasteIngestBuffer.map(buffer -> buffer.get(hash)).orElse(null);
+        if (pending != null && pending.getExpireAt().isAfter(LocalDateTime.now())) {
+            return pending.toContent();
+        }
+
+        var doc = getCollectionOfPastes(pasteBuckets.collectionOf(hash), PasteReadRoute.LOOKUP)
+                .withDocumentClass(RawBsonDocument.class)
+                .find(pasteDocuments.byHash(hash))
+                .projection(PasteDocuments.TEXT_ONLY)
+                .first();
+
+        if (doc == null) {
+            return null;
+        }
+
+        var content = pasteDocuments.toInlineContent(doc);
+        if (content == null && doc.containsKey("blobId")) {
+            content =
+                    pasteBlobStore.load(doc.getString("blobId").getValue(), PasteReadRoute.LOOKUP);
+        } else if (content == null && doc.containsKey("fileId")) {
+            content = pasteFileStore.load(doc.getObjectId("fileId").getValue().toHexString());
+        }
+
+        if (content != null) {
+            content.setExpireAt(
+                    pasteDocuments.toLocalDateTime(doc.getDateTime("expireAt").getValue()));
+        }
+
+        return content;
+    }
+
+    /**
+     * Reads only the expiration time, e.g. to answer a conditional request without the text
+     */
+    @Override
+    public LocalDateTime getExpireAtByHash(Long hash) {
+        return pasteMetrics.record("getExpireAtByHash",
+                () -> found(pasteMetrics.recordRead(PasteReadRoute.LOOKUP,
+                        () -> findExpireAtByHash(hash))));
+    }
+
+    private LocalDateTime findExpireAtByHash(Long hash) {
+
+        var pending = pasteIngestBuffer.map(buffer -> buffer.get(hash)).orElse(null);
+        if (pending != null && pending.getExpireAt().isAfter(LocalDateTime.now())) {
+            return pending.getExpireAt();
+        }
+
+        var doc = getCollectionOfPastes(pasteBuckets.collectionOf(hash), PasteReadRoute.LOOKUP)
+                .withDocumentClass(Document.class)
+                .find(pasteDocuments.byHash(hash))
+                .projection(PasteDocuments.EXPIRE_AT_ONLY)
+                .first();
+
+        return doc == null ? null : pasteDocuments.toLocalDateTime(doc.getDate("expireAt"));
+    }
+
+    /**
+     * Returns pastes of the in-memory feed, which is loaded from the storage only on startup
+     * and when some of its pastes expire
+     */
     @Override
     public List<Paste> getAllLast() {
-        return getAllLast(limitOfLastPastes);
+        return pasteMetrics.record("getAllLast", this::getAllLastFromFeed);
+    }
+
+    private List<Paste> getAllLastFromFeed() {
+
+        // Pastes added while the feed is loaded are merged with the loaded ones rather than
+        // replaced by them
+        if (!lastPastesFeed.isLoaded() || lastPastesFeed.hasExpired()) {
+            lastPastesFeed.refresh(() -> getAllLast(limitOfLastPastes));
+        }
+
+        return lastPastesFeed.getPastes();
+    }
+
+    /**
+     * Loads the feed of the last pastes from the storage, merged with pastes created while it is
+     * loaded, since requests are already served
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void reloadLastPastes() {
+        try {
+            lastPastesFeed.refresh(() -> getAllLast(limitOfLastPastes));
+        } catch (MongoException e) {
+            log.warn("Last pastes were not loaded, they will be loaded on the first request: {}",
+                    e.getMessage());
+        }
+    }
+
+    /**
+     * Adds public pastes created by other nodes to the feed, as published by the
+     * {@link PasteChangeStream}.
+     * Pastes of this node are already in the feed and are not added twice
+     */
+    @EventListener
+    public void onPasteChange(PasteChange change) {
+        if (change.type() == PasteChange.Type.INSERT
+                && change.paste().getAccess() == Access.PUBLIC
+                && change.paste().getFileId() == null) {
+            lastPastesFeed.add(withContent(change.paste(), PasteReadRoute.LOOKUP));
+        }
+    }
+
+    /**
+     * Serves the first page from the in-memory feed if it fits there, other pages are read from the
+     * storage
+     */
+    @Override
+    public List<Paste> getAllLast(PasteCursor after, int limit) {
+
+        if (after == null && limit <= limitOfLastPastes) {
+            var pastes = getAllLast();
+            return pastes.subList(0, Math.min(limit, pastes.size()));
+        }
+
+        return pasteMetrics.record("getAllLast", () -> findLast(after, limit));
     }
 
     protected List<Paste> getAllLast(int limit) {
+        return findLast(null, limit);
+    }
 
-        var collection = getCollectionOfPastes();
+    private List<Paste> findLast(PasteCursor after, int limit) {
 
-        var docs = collection.find(new Document("access", Access.PUBLIC))
-                .sort(Sorts.descending("createdAt"))
-                .limit(limit);
+        var filter = pasteDocuments.lastPastes(after);
 
-        return toPastes(docs);
+        return pasteMetrics.recordRead(PasteReadRoute.SCAN, () -> {
+            try (var pastes = findInLiveCollections(filter, PasteDocuments.NEWEST_FIRST,
+                    PasteDocuments.NEWEST_FIRST_ORDER, limit, 0)) {
+                return withContents(pastes.limit(limit).toList());
+            }
+        });
     }
 
     @Override
@@ -65,113 +263,709 @@ public class PasteServiceMongoDB implements PasteService {
             return Collections.emptyList();
         }
 
-        Pattern pattern = Pattern.compile(text, Pattern.CASE_INSENSITIVE);
+        return pasteMetrics.record("getAllBySubstring",
+                () -> pasteMetrics.recordRead(PasteReadRoute.SCAN, () -> {
+                    try (var pastes = findBySubstring(text, null)) {
+                        return searched(pastes.toList());
+                    }
+                }));
+    }
+
+    @Override
+    public List<Paste> getAllBySubstring(String text, PasteCursor after, int limit) {
+
+        if (Objects.requireNonNullElse(text, "").isBlank()) {
+            return Collections.emptyList();
+        }
+
+        return pasteMetrics.record("getAllBySubstring",
+                () -> pasteMetrics.recordRead(PasteReadRoute.SCAN, () -> {
+                    try (var pastes = findBySubstring(text, after)) {
+                        return searched(pastes.limit(limit).toList());
+                    }
+                }));
+    }
 
-        var collection = getCollectionOfPastes();
+    /**
+     * Only opening of the cursor is measured as the operation, the number of found pastes is
+     * recorded when the stream is closed
+     */
+    @Override
+    public Stream<Paste> streamAllBySubstring(String text) {
 
-        var filter = new Document();
-        filter.append("text", new Document("$regex", pattern));
-        filter.append("access", Access.PUBLIC);
+        if (Objects.requireNonNullElse(text, "").isBlank()) {
+            return Stream.empty();
+        }
 
-        var docs = collection.find(filter)
-                .sort(Sorts.ascending("createdAt"));
+        var count = new AtomicInteger();
 
-        return toPastes(docs);
+        return pasteMetrics.record("streamAllBySubstring",
+                        () -> pasteMetrics.recordRead(PasteReadRoute.SCAN,
+                                () -> findBySubstring(text, null)))
+                .peek(paste -> count.incrementAndGet())
+                .onClose(() -> pasteMetrics.found(count.get()));
     }
 
+    /**
+     * Searches pastes by trigrams first, large pastes by trigrams of their segments,
+     * and checks the candidates with a case-insensitive literal match.
+     * Texts stored in pastes are checked by MongoDB, texts stored in blobs are loaded by batches
+     * of {@code pastes.search.batch-size} candidates and checked then.
+     * Candidates are read for at most {@code pastes.search.max-time.millis}
+     * @throws PasteSearchTimeoutException when the stream is read if candidates are read for longer
+     */
+    private Stream<Paste> findBySubstring(String text, @Nullable PasteCursor after) {
+
+        Stream<Paste> candidates;
+        try {
+            var matches = pasteGramStore.find(text, after);
+            var filter = pasteDocuments.bySubstring(text, after, matches);
+            candidates = findInLiveCollections(filter, PasteDocuments.OLDEST_FIRST,
+                    PasteDocuments.OLDEST_FIRST_ORDER, 0, searchMaxTimeMillis);
+        } catch (MongoExecutionTimeoutException e) {
+            throw new PasteSearchTimeoutException("Search by a substring took too long", e);
+        }
+
+        return inBatches(candidates, searchBatchSize)
+                .flatMap(batch -> withContents(batch).stream())
+                .filter(pasteDocuments.containing(text));
+    }
+
+    /**
+     * Groups pastes of the stream into lists of at most {@code size} pastes, a timeout of the
+     * cursors is thrown as {@link PasteSearchTimeoutException}. Closing the returned stream closes
+     * the grouped one
+     */
+    private static Stream<List<Paste>> inBatches(Stream<Paste> pastes, int size) {
+
+        var iterator = pastes.iterator();
+
+        var batches = new Iterator<List<Paste>>() {
+
+            @Override
+            public boolean hasNext() {
+                try {
+                    return iterator.hasNext();
+                } catch (MongoExecutionTimeoutException e) {
+                    throw new PasteSearchTimeoutException("Search by a substring took too long", e);
+                }
+            }
+
+            @Override
+            public List<Paste> next() {
+
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+
+                var batch = new ArrayList<Paste>(size);
+                while (batch.size() < size && hasNext()) {
+                    batch.add(iterator.next());
+                }
+
+                return batch;
+            }
+        };
+
+        var spliterator = Spliterators.spliteratorUnknownSize(batches,
+                Spliterator.ORDERED | Spliterator.NONNULL);
+
+        return StreamSupport.stream(spliterator, false)
+                .onClose(pastes::close);
+    }
+
+    /**
+     * Finds pastes in all collections which may have not expired pastes and merges them in the
+     * order of the sort, every collection is read by its own cursor on the
+     * {@link PasteReadRoute#SCAN} route.
+     * The stream must be closed to close the cursors
+     * @param limit maximum number of pastes read from every collection, {@code 0} for all of them
+     * @param maxTimeMillis maximum time of reading every cursor, {@code 0} for no limit
+     */
+    private Stream<Paste> findInLiveCollections(Bson filter, Bson sort, Comparator<Paste> order,
+                                                int limit, long maxTimeMillis) {
+
+        var cursors = new ArrayList<MongoCursor<Paste>>();
+
+        try {
+            for (var name : pasteBuckets.liveCollections()) {
+                cursors.add(getCollectionOfPastes(name, PasteReadRoute.SCAN).find(filter)
+                        .projection(PasteDocuments.WITHOUT_GRAMS)
+                        .sort(sort)
+                        .limit(limit)
+                        .maxTime(maxTimeMillis, TimeUnit.MILLISECONDS)
+                        .cursor());
+            }
+        } catch (MongoException e) {
+            cursors.forEach(MongoCursor::close);
+            throw e;
+        }
+
+        var merged = PasteBuckets.merge(cursors, order);
+        var spliterator = Spliterators.spliteratorUnknownSize(merged,
+                Spliterator.ORDERED | Spliterator.NONNULL);
+
+        return StreamSupport.stream(spliterator, false)
+                .onClose(() -> cursors.forEach(MongoCursor::close));
+    }
+
+    /**
+     * Adds new paste with a hash from the {@link PasteIdGenerator},
+     * a hash that is already taken is generated again up to {@code pastes.id.max-attempts} times.
+     * With the write-behind ingest the paste is only added to the {@link PasteIngestBuffer}
+     * and is written later by the {@link PasteWriteBehindFlusher}
+     * @throws PasteIngestRejectedException if the buffer of the write-behind ingest is full
+     */
     @Override
     public Paste create(PasteRequest pasteRequest) {
 
+        if (pasteIngestBuffer.isPresent()) {
+            return pasteMetrics.record("accept",
+                    () -> accept(pasteRequest, pasteIngestBuffer.get()));
+        }
+
+        return pasteMetrics.record("create", () -> insert(pasteRequest));
+    }
+
+    private Paste insert(PasteRequest pasteRequest) {
+
         var paste = pasteRequest.toPaste();
 
-        var document = toDocument(paste);
+        String blobId = null;
+        if (pasteBlobStore.isBlob(paste.getText())) {
+            blobId = pasteBlobStore.save(paste.getText(),
+                    pasteDocuments.toDate(paste.getExpireAt()));
+        }
+        paste.setBlobId(blobId);
+
+        insertWithNewHash(paste);
+        pasteGramStore.save(List.of(paste));
 
-        var collection = getCollectionOfPastes();
-        collection.insertOne(document);
+        lastPastesFeed.add(paste);
+        pasteMetrics.created(paste.getText());
 
         log.info("New paste is added by hash '{}'", paste.getHash());
 
         return paste;
     }
 
+    /**
+     * Reads the text up to {@code pastes.files.min-size.bytes} first, a shorter text is added as
+     * any other paste.
+     * A longer text is written to a file of the {@link PasteFileStore} while the rest of it is
+     * read, and the paste keeps only the id of the file. Such pastes are found only by their links
+     * @throws IOException if the text cannot be read, nothing is kept then
+     */
     @Override
-    public void removeExpiredPastes() {
-
-        var collection = getCollectionOfPastes();
+    public Paste create(PasteRequest pasteRequest, InputStream text) throws IOException {
 
-        var now = toDate(LocalDateTime.now());
-        var query = new Document("expireAt", new Document("$lt", now));
-        var deleteResult = collection.deleteMany(query);
+        var head = text.readNBytes(fileMinSizeInBytes);
+        if (head.length < fileMinSizeInBytes) {
+            return create(pasteRequest.toBuilder()
+                    .text(new String(head, StandardCharsets.UTF_8)).build());
+        }
 
-        if (deleteResult.getDeletedCount() > 0) {
-            log.info("Expired pastes were deleted: '{}' pastes", deleteResult.getDeletedCount());
+        try {
+            return pasteMetrics.record("createFromStream",
+                    () -> insertFile(pasteRequest, head, text));
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
         }
     }
 
-    private MongoCollection<Document> getCollectionOfPastes() {
-        return db.getCollection(collectionName);
-    }
+    private Paste insertFile(PasteRequest pasteRequest, byte[] head, InputStream tail) {
 
-    private Paste toPaste(@Nullable Document document) {
+        var paste = pasteRequest.toBuilder().text("").build().toPaste();
+        paste.setText(null);
 
-        if (document == null) {
-            return null;
+        try {
+            paste.setFileId(
+                    pasteFileStore.save(head, tail, pasteDocuments.toDate(paste.getExpireAt())));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
         }
 
-        var hash = document.getLong("hash");
-        var text = document.getString("text");
-        var access = Access.valueOf(document.getString("access"));
-        var createdAt = toLocalDateTime(document.getDate("createdAt"));
-        var expireAt = toLocalDateTime(document.getDate("expireAt"));
+        try {
+            insertWithNewHash(paste);
+        } catch (RuntimeException e) {
+            pasteFileStore.delete(paste.getFileId());
+            throw e;
+        }
 
-        return Paste.builder()
-                .hash(hash)
-                .text(text)
-                .access(access)
-                .createdAt(createdAt)
-                .expireAt(expireAt)
-                .build();
+        // The text is read from the file whenever it is requested
+        paste.setContent(pasteFileStore.load(paste.getFileId()));
+        pasteMetrics.created(paste.getContent() == null ? 0 : paste.getContent().getLength());
+
+        log.info("New paste is added by hash '{}' with the text in file '{}'", paste.getHash(),
+                paste.getFileId());
+
+        return paste;
+    }
+
+    /**
+     * Inserts a paste with a new hash, a hash that is already taken is generated again
+     * up to {@code pastes.id.max-attempts} times
+     */
+    private void insertWithNewHash(Paste paste) {
+
+        for (int attempt = 1; ; attempt++) {
+
+            paste.setHash(generateHash(paste));
+
+            try {
+                getCollectionOfPastes(pasteBuckets.collectionFor(paste)).insertOne(paste);
+                break;
+            } catch (MongoWriteException e) {
+                if (e.getError().getCategory() != ErrorCategory.DUPLICATE_KEY
+                        || attempt >= maxAttemptsToCreate) {
+                    throw e;
+                }
+                log.warn("Hash '{}' is already taken, attempt {} of {}", paste.getHash(), attempt,
+                        maxAttemptsToCreate);
+            }
+        }
+    }
+
+    /**
+     * Validates all requests first, then writes blobs of the valid ones with one bulk write
+     * and the pastes with one unordered {@code insertMany}, so a failed paste does not stop the
+     * rest.
+     * Pastes whose hashes are already taken are retried with new hashes up to
+     * {@code pastes.id.max-attempts} times
+     */
+    @Override
+    public List<PasteResult> createAll(List<PasteRequest> pasteRequests) {
+        return pasteMetrics.record("createAll", () -> insertRequests(pasteRequests));
     }
 
-    private List<Paste> toPastes(Iterable<Document> documents) {
+    private List<PasteResult> insertRequests(List<PasteRequest> pasteRequests) {
 
+        var results = new PasteResult[pasteRequests.size()];
         var pastes = new ArrayList<Paste>();
+        var positions = new ArrayList<Integer>();
 
-        for (var doc : documents) {
-            var paste = toPaste(doc);
+        for (int i = 0; i < pasteRequests.size(); i++) {
+
+            var error = validate(pasteRequests.get(i));
+            if (error != null) {
+                results[i] = PasteResult.failed(error);
+                continue;
+            }
+
+            var paste = pasteRequests.get(i).toPaste();
+            paste.setHash(generateHash(paste));
             pastes.add(paste);
+            positions.add(i);
         }
 
-        return pastes;
+        if (!pastes.isEmpty()) {
+
+            var errors = insertAll(pastes, maxAttemptsToCreate);
+            releaseBlobs(pastes, errors);
+
+            var created = new ArrayList<Paste>();
+
+            for (int i = 0; i < pastes.size(); i++) {
+                if (errors[i] == null) {
+                    results[positions.get(i)] = PasteResult.created(pastes.get(i));
+                    created.add(pastes.get(i));
+                    pasteMetrics.created(pastes.get(i).getText());
+                } else {
+                    results[positions.get(i)] = PasteResult.failed(errors[i]);
+                }
+            }
+
+            pasteGramStore.save(created);
+            lastPastesFeed.addAll(created);
+
+            log.info("New pastes are added: '{}' of '{}' pastes", created.size(),
+                    pasteRequests.size());
+        }
+
+        return Arrays.asList(results);
     }
 
-    private Document toDocument(Paste paste) {
+    /**
+     * Writes pastes accepted by the write-behind ingest, their hashes are never changed
+     * since they have already been returned. Hashes are reserved when pastes are accepted, so a
+     * taken hash means that the paste has already been written by a batch that failed afterwards
+     * and was requeued.
+     * Pastes that cannot be written otherwise are logged and dropped
+     * @param pastes pastes taken from the {@link PasteIngestBuffer}
+     */
+    public void flush(List<Paste> pastes) {
+        pasteMetrics.record("flush", () -> write(pastes));
+    }
 
-        if (paste == null) {
-            return null;
+    private void write(List<Paste> pastes) {
+
+        var errors = insertAll(pastes, 1);
+
+        var alreadyWritten = findWritten(pastes, errors);
+        for (int i = 0; i < pastes.size(); i++) {
+            if (errors[i] != null && alreadyWritten.contains(pastes.get(i).getHash())) {
+                errors[i] = null;
+            }
+        }
+
+        releaseBlobs(pastes, errors);
+
+        var written = new ArrayList<Paste>();
+        for (int i = 0; i < pastes.size(); i++) {
+            if (errors[i] == null) {
+                written.add(pastes.get(i));
+                pasteMetrics.created(pastes.get(i).getText());
+            } else {
+                log.error("Buffered paste was dropped by hash '{}': {}", pastes.get(i).getHash(),
+                        errors[i]);
+            }
+        }
+
+        pasteGramStore.save(written);
+        lastPastesFeed.addAll(written);
+
+        log.info("Buffered pastes are written: '{}' of '{}' pastes", written.size(), pastes.size());
+    }
+
+    /**
+     * Returns hashes of the failed pastes that are stored with the same creation time, i.e. are
+     * these very pastes
+     */
+    private Set<Long> findWritten(List<Paste> pastes, String[] errors) {
+
+        var failed = new ArrayList<Integer>();
+        for (int i = 0; i < pastes.size(); i++) {
+            if (errors[i] != null) {
+                failed.add(i);
+            }
+        }
+
+        var written = new HashSet<Long>();
+
+        for (var group : byCollection(pastes, failed).entrySet()) {
+
+            var createdAtByHash = new HashMap<Long, Long>();
+            for (var i : group.getValue()) {
+                createdAtByHash.put(pastes.get(i).getHash(),
+                        pasteDocuments.toEpochMilli(pastes.get(i).getCreatedAt()));
+            }
+
+            var docs = db.getCollection(group.getKey())
+                    .find(new Document("hash",
+                            new Document("$in", new ArrayList<>(createdAtByHash.keySet()))))
+                    .projection(new Document("_id", 0).append("hash", 1).append("createdAt", 1));
+
+            for (var doc : docs) {
+                var hash = doc.getLong("hash");
+                if (Objects.equals(createdAtByHash.get(hash), doc.getDate("createdAt").getTime())) {
+                    written.add(hash);
+                }
+            }
+        }
+
+        return written;
+    }
+
+    private Paste accept(PasteRequest pasteRequest, PasteIngestBuffer buffer) {
+
+        var paste = pasteRequest.toPaste();
+        reserveHash(paste, buffer);
+
+        if (!buffer.offer(paste)) {
+            throw new PasteIngestRejectedException("Too many pastes are waiting to be written");
+        }
+
+        return paste;
+    }
+
+    /**
+     * Generates a hash which is neither waiting in the buffer nor stored, up to
+     * {@code pastes.id.max-attempts} times.
+     * The hash is returned before the paste is written, so it cannot be changed when the paste is
+     * written
+     */
+    private void reserveHash(Paste paste, PasteIngestBuffer buffer) {
+
+        for (int attempt = 1; ; attempt++) {
+
+            paste.setHash(generateHash(paste));
+
+            var taken = buffer.get(paste.getHash()) != null
+                    || getCollectionOfPastes(pasteBuckets.collectionFor(paste))
+                            .countDocuments(new Document("hash", paste.getHash()),
+                                    new CountOptions().limit(1)) > 0;
+            if (!taken) {
+                return;
+            }
+
+            if (attempt >= maxAttemptsToCreate) {
+                throw new IllegalStateException("No free hash is found in " + maxAttemptsToCreate
+                        + " attempts");
+            }
+            log.warn("Hash '{}' is already taken, attempt {} of {}", paste.getHash(), attempt,
+                    maxAttemptsToCreate);
+        }
+    }
+
+    /**
+     * Inserts pastes with their hashes, generating new hashes for taken ones up to
+     * {@code maxAttempts} attempts.
+     * Returns errors of the pastes that were not inserted, by their positions, their blobs are
+     * released by the caller.
+     * Blobs of pastes written again, e.g. requeued by the write-behind ingest, are referenced only
+     * once
+     */
+    private String[] insertAll(List<Paste> pastes, int maxAttempts) {
+
+        var errors = new String[pastes.size()];
+
+        var blobPositions = new ArrayList<Integer>();
+        for (int i = 0; i < pastes.size(); i++) {
+            if (pastes.get(i).getBlobId() == null
+                    && pasteBlobStore.isBlob(pastes.get(i).getText())) {
+                blobPositions.add(i);
+            }
+        }
+
+        var savedBlobIds = pasteBlobStore.saveAll(
+                blobPositions.stream().map(i -> pastes.get(i).getText()).toList(),
+                blobPositions.stream()
+                        .map(i -> pasteDocuments.toDate(pastes.get(i).getExpireAt())).toList());
+        for (int i = 0; i < blobPositions.size(); i++) {
+            pastes.get(blobPositions.get(i)).setBlobId(savedBlobIds.get(i));
+        }
+
+        List<Integer> pending = new ArrayList<>();
+        for (int i = 0; i < pastes.size(); i++) {
+            pending.add(i);
+        }
+
+        for (int attempt = 1; !pending.isEmpty(); attempt++) {
+
+            if (attempt > 1) {
+                for (var i : pending) {
+                    pastes.get(i).setHash(generateHash(pastes.get(i)));
+                }
+            }
+
+            var retried = new ArrayList<Integer>();
+
+            // Every collection gets one unordered insertMany, there are several of them only with
+            // buckets
+            for (var group : byCollection(pastes, pending).entrySet()) {
+
+                var positions = group.getValue();
+                var attempted = positions.stream().map(pastes::get).toList();
+
+                try {
+                    getCollectionOfPastes(group.getKey())
+                            .insertMany(attempted, new InsertManyOptions().ordered(false));
+                } catch (MongoBulkWriteException e) {
+
+                    if (e.getWriteConcernError() != null) {
+                        throw e;
+                    }
+
+                    for (var error : e.getWriteErrors()) {
+                        var i = positions.get(error.getIndex());
+                        if (error.getCategory() == ErrorCategory.DUPLICATE_KEY
+                                && attempt < maxAttempts) {
+                            retried.add(i);
+                        } else {
+                            log.warn("Paste was not added by hash '{}': {}",
+                                    pastes.get(i).getHash(), error.getMessage());
+                            errors[i] = "Paste was not saved";
+                        }
+                    }
+                }
+            }
+
+            if (!retried.isEmpty()) {
+                log.warn("Hashes of '{}' pastes are already taken, attempt {} of {}",
+                        retried.size(), attempt, maxAttempts);
+            }
+
+            pending = retried;
+        }
+
+        return errors;
+    }
+
+    /**
+     * Pastes that were not inserted do not reference their blobs
+     */
+    private void releaseBlobs(List<Paste> pastes, String[] errors) {
+
+        var unusedBlobIds = new ArrayList<String>();
+        for (int i = 0; i < pastes.size(); i++) {
+            if (errors[i] != null && pastes.get(i).getBlobId() != null) {
+                unusedBlobIds.add(pastes.get(i).getBlobId());
+            }
         }
 
-        var document = new Document();
-        document.append("hash", paste.getHash());
-        document.append("text", paste.getText());
-        document.append("access", paste.getAccess());
-        document.append("createdAt", toDate(paste.getCreatedAt()));
-        document.append("expireAt", toDate(paste.getExpireAt()));
+        pasteBlobStore.release(unusedBlobIds);
+    }
+
+    private Map<String, List<Integer>> byCollection(List<Paste> pastes, List<Integer> positions) {
+
+        var groups = new LinkedHashMap<String, List<Integer>>();
+        for (var i : positions) {
+            groups.computeIfAbsent(pasteBuckets.collectionFor(pastes.get(i)),
+                    name -> new ArrayList<>()).add(i);
+        }
 
-        return document;
+        return groups;
     }
 
-    private LocalDateTime toLocalDateTime(Date date) {
-        var instant = date.toInstant();
-        return instant.atZone(zoneId()).toLocalDateTime();
+    /**
+     * Generates a hash of a new paste, with the number of its bucket if pastes are stored in
+     * buckets.
+     * A text in a file is not read for it, the id of the file is used instead
+     */
+    private long generateHash(Paste paste) {
+        var text = paste.getFileId() != null ? paste.getFileId() : paste.getText();
+        var hash = pasteIdGenerator.generate(text, paste.getCreatedAt());
+        return pasteBuckets.inBucket(hash, paste.getExpireAt());
     }
 
-    private Date toDate(LocalDateTime localDateTime) {
-        var zonedDateTime = localDateTime.atZone(zoneId());
-        return Date.from(zonedDateTime.toInstant());
+    /**
+     * Returns the reason why a paste cannot be created by the request, {@code null} if it can be
+     */
+    private static String validate(@Nullable PasteRequest pasteRequest) {
+        return pasteRequest == null ? "Paste is missing" : pasteRequest.validate();
+    }
+
+    /**
+     * Removes expired pastes in batches of {@code pastes.remover.batch-size} pastes,
+     * so that a single removal never locks a large range of the collection.
+     * With buckets, whole collections of expired buckets are dropped instead,
+     * only the last bucket shared by pastes beyond the horizon is cleaned paste by paste
+     */
+    @Override
+    public void removeExpiredPastes() {
+        pasteMetrics.record("removeExpiredPastes", this::removeExpired);
     }
 
-    private ZoneId zoneId() {
-        return ZoneId.systemDefault();
+    private void removeExpired() {
+
+        var now = LocalDateTime.now();
+        var deletedCount = pasteBuckets.isEnabled()
+                ? pasteBuckets.dropExpired(now) + deleteExpired(pasteBuckets.lastCollection(), now)
+                : deleteExpired(collectionName, now);
+
+        if (deletedCount > 0) {
+            pasteMetrics.expired(deletedCount);
+            log.info("Expired pastes were deleted: '{}' pastes", deletedCount);
+        }
+
+        pasteBlobStore.removeExpiredBlobs(pasteDocuments.toDate(now));
+        pasteFileStore.removeExpiredFiles(pasteDocuments.toDate(now));
+        pasteGramStore.removeExpiredGrams(pasteDocuments.toDate(now));
+
+        if (lastPastesFeed.hasExpired()) {
+            lastPastesFeed.refresh(() -> getAllLast(limitOfLastPastes));
+        }
+    }
+
+    private long deleteExpired(String name, LocalDateTime now) {
+
+        var collection = getCollectionOfPastes(name).withDocumentClass(Document.class);
+
+        var query = new Document("expireAt", new Document("$lte", pasteDocuments.toDate(now)));
+
+        long deletedCount = 0;
+        List<Document> docs;
+
+        do {
+            docs = new ArrayList<>();
+            collection.find(query)
+                    .projection(new Document("_id", 0).append("hash", 1).append("blobId", 1))
+                    .limit(removerBatchSize)
+                    .into(docs);
+
+            if (!docs.isEmpty()) {
+
+                // Pastes are deleted by the shard key, so a sharded cluster sends every hash only
+                // to its own shard
+                var hashes = docs.stream().map(doc -> doc.get("hash")).toList();
+                var deleteResult =
+                        collection.deleteMany(new Document("hash", new Document("$in", hashes)));
+                deletedCount += deleteResult.getDeletedCount();
+
+                var blobIds = docs.stream().map(doc -> doc.getString("blobId"))
+                        .filter(Objects::nonNull).toList();
+                pasteBlobStore.release(blobIds);
+            }
+        } while (docs.size() == removerBatchSize);
+
+        return deletedCount;
+    }
+
+    private <T> T found(@Nullable T result) {
+
+        if (result == null) {
+            pasteMetrics.notFound();
+        }
+
+        return result;
+    }
+
+    private List<Paste> searched(List<Paste> pastes) {
+        pasteMetrics.found(pastes.size());
+        return pastes;
+    }
+
+    private MongoCollection<Paste> getCollectionOfPastes(String name) {
+        return db.getCollection(name, Paste.class);
+    }
+
+    private MongoCollection<Paste> getCollectionOfPastes(String name, PasteReadRoute route) {
+        return pasteReadRoutes.route(getCollectionOfPastes(name), route);
+    }
+
+    /**
+     * Loads the text of a paste stored in a blob on the route of the paste,
+     * a text stored in a file is read only when it is requested
+     */
+    private Paste withContent(@Nullable Paste paste, PasteReadRoute route) {
+
+        if (paste != null && paste.getText() == null && paste.getBlobId() != null) {
+            paste.setContent(pasteBlobStore.load(paste.getBlobId(), route));
+        } else if (paste != null && paste.getText() == null && paste.getFileId() != null) {
+            paste.setContent(pasteFileStore.load(paste.getFileId()));
+        }
+
+        return paste;
+    }
+
+    /**
+     * Loads texts of pastes stored in blobs by a single query on the {@link PasteReadRoute#SCAN}
+     * route, like the pastes themselves. Blobs not replicated yet to the member that is read are
+     * loaded by lookups
+     */
+    private List<Paste> withContents(Iterable<Paste> found) {
+
+        var pastes = new ArrayList<Paste>();
+        found.forEach(pastes::add);
+
+        var blobIds = pastes.stream()
+                .filter(paste -> paste.getText() == null)
+                .map(Paste::getBlobId)
+                .filter(Objects::nonNull)
+                .toList();
+
+        var blobContents = pasteBlobStore.loadAll(blobIds, PasteReadRoute.SCAN);
+
+        var missingBlobIds = blobIds.stream()
+                .filter(blobId -> !blobContents.containsKey(blobId)).toList();
+        blobContents.putAll(pasteBlobStore.loadAll(missingBlobIds, PasteReadRoute.LOOKUP));
+
+        for (var paste : pastes) {
+            if (paste.getText() == null && paste.getBlobId() != null) {
+                paste.setContent(blobContents.get(paste.getBlobId()));
+            }
+        }
+
+        return pastes;
     }
 }
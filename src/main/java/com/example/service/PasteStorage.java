@@ -0,0 +1,10 @@
+package com.example.service;
+
+/**
+ * {@link PasteService} that keeps pastes itself rather than decorating another service.
+ * The storage is selected by {@code pastes.storage}: {@code mongodb} for
+ * {@link PasteServiceMongoDB} and {@code memory} for
+ * {@link com.example.service.memory.PasteServiceInMemory}
+ */
+public interface PasteStorage extends PasteService {
+}
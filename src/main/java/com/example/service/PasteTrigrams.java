@@ -0,0 +1,165 @@
+package com.example.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.TreeSet;
+
+/**
+ * Splits texts of pastes into trigrams for the search by a substring.
+ * Trigrams of a case-folded text are hashed into {@code pastes.search.trigrams.buckets} buckets,
+ * so a paste keeps a bounded list of numbers however large it is.
+ * A paste can contain a substring only if it has all trigram buckets of the substring.
+ * A text with more than {@code pastes.search.trigrams.max-per-paste} buckets would match almost any
+ * substring, so it is split into segments with at most that many buckets each, overlapping by
+ * {@code pastes.search.trigrams.segment-overlap} characters, and every segment is matched on its
+ * own
+ */
+@Component
+public class PasteTrigrams {
+
+    private static final int TRIGRAM_LENGTH = 3;
+
+    private final int buckets;
+    private final int maxPerPaste;
+    private final int segmentOverlap;
+
+    public PasteTrigrams(@Value("${pastes.search.trigrams.buckets:65536}") int buckets,
+                         @Value("${pastes.search.trigrams.max-per-paste:512}") int maxPerPaste,
+                         @Value("${pastes.search.trigrams.segment-overlap:64}")
+                         int segmentOverlap) {
+
+        if (segmentOverlap < TRIGRAM_LENGTH || segmentOverlap > maxPerPaste) {
+            throw new IllegalArgumentException("Overlap of segments must be from "
+                    + TRIGRAM_LENGTH + " to the maximum number of trigrams per paste");
+        }
+
+        this.buckets = buckets;
+        this.maxPerPaste = maxPerPaste;
+        this.segmentOverlap = segmentOverlap;
+    }
+
+    public int getBuckets() {
+        return buckets;
+    }
+
+    /**
+     * Returns trigram buckets of a paste text
+     * @param text text of a paste
+     * @return sorted distinct trigram buckets of the {@code text},
+     * or {@code null} if the text has too many of them to be worth indexing
+     */
+    public List<Integer> ofPaste(String text) {
+
+        var trigrams = of(text);
+
+        if (trigrams.size() > maxPerPaste) {
+            return null;
+        }
+
+        return trigrams;
+    }
+
+    /**
+     * Returns trigram buckets of a searched substring
+     * @param text searched substring
+     * @return sorted distinct trigram buckets of the {@code text},
+     * empty if the text is too short to have any trigram
+     */
+    public List<Integer> ofQuery(String text) {
+        return of(text);
+    }
+
+    /**
+     * Returns trigram buckets of segments of a paste text whose buckets do not fit into one list.
+     * Every segment is as long as its buckets fit into
+     * {@code pastes.search.trigrams.max-per-paste}, and the next one starts
+     * {@code pastes.search.trigrams.segment-overlap} characters before its end, so every substring
+     * of at most that many characters is entirely within some segment
+     * @param text text of a paste
+     * @return sorted distinct trigram buckets of every segment, a single segment if the text is not
+     * that large
+     */
+    public List<List<Integer>> ofSegments(String text) {
+
+        var trigrams = trigramsOf(fold(text));
+        var segments = new ArrayList<List<Integer>>();
+
+        // Segment from the trigram at start, every trigram spans TRIGRAM_LENGTH characters from its
+        // index
+        int start = 0;
+        while (true) {
+
+            var segment = new TreeSet<Integer>();
+            int end = start;
+            while (end < trigrams.length
+                    && (segment.size() < maxPerPaste || segment.contains(trigrams[end]))) {
+                segment.add(trigrams[end++]);
+            }
+
+            segments.add(new ArrayList<>(segment));
+
+            if (end >= trigrams.length) {
+                return segments;
+            }
+
+            // Trigrams of the last segmentOverlap characters are repeated by the next segment
+            start = Math.max(start + 1, end - segmentOverlap + TRIGRAM_LENGTH - 1);
+        }
+    }
+
+    /**
+     * Returns trigram buckets that a segment of a paste must have to contain a searched substring,
+     * those of its first {@code pastes.search.trigrams.segment-overlap} characters
+     * @param text searched substring
+     * @return sorted distinct trigram buckets, empty if the text is too short to have any trigram
+     */
+    public List<Integer> ofSegmentQuery(String text) {
+
+        var codePoints = fold(text);
+        if (codePoints.length > segmentOverlap) {
+            codePoints = Arrays.copyOf(codePoints, segmentOverlap);
+        }
+
+        return new ArrayList<>(
+                new TreeSet<>(Arrays.stream(trigramsOf(codePoints)).boxed().toList()));
+    }
+
+    private List<Integer> of(String text) {
+        return new ArrayList<>(
+                new TreeSet<>(Arrays.stream(trigramsOf(fold(text))).boxed().toList()));
+    }
+
+    /**
+     * Folds every code point separately, so that a substring folds to a substring of the folded
+     * text
+     */
+    private static int[] fold(String text) {
+        return text.codePoints()
+                .map(cp -> Character.toLowerCase(Character.toUpperCase(cp)))
+                .toArray();
+    }
+
+    /**
+     * Returns trigram buckets of the folded code points in the order of their trigrams
+     */
+    private int[] trigramsOf(int[] codePoints) {
+
+        var trigrams = new int[Math.max(0, codePoints.length - TRIGRAM_LENGTH + 1)];
+
+        for (int i = 0; i < trigrams.length; i++) {
+
+            int hash = 0;
+            for (int j = i; j < i + TRIGRAM_LENGTH; j++) {
+                hash = 31 * hash + codePoints[j];
+            }
+
+            trigrams[i] = Math.floorMod(hash * 0x9E3779B9, buckets);
+        }
+
+        return trigrams;
+    }
+}
@@ -0,0 +1,122 @@
+package com.example.service;
+
+import com.example.model.Paste;
+import com.mongodb.MongoException;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Writes pastes of the {@link PasteIngestBuffer} to the storage on its own thread.
+ * Pastes are written in group commits of up to {@code pastes.ingest.write-behind.batch-size}
+ * pastes, as soon as a batch is full or every
+ * {@code pastes.ingest.write-behind.flush-interval.millis}.
+ * Batches which fail to be written to the storage are returned to the buffer and retried after the
+ * interval.
+ * A batch which fails otherwise, e.g. with a paste that cannot be encoded, is written paste by
+ * paste and the failing pastes are dropped, so a bad paste never stops the buffer from draining
+ */
+@RequiredArgsConstructor
+@Slf4j
+public class PasteWriteBehindFlusher {
+
+    private static final Duration JOIN_TIMEOUT = Duration.ofSeconds(30);
+
+    private final PasteIngestBuffer buffer;
+    private final PasteServiceMongoDB pasteService;
+    private final Duration flushInterval;
+
+    private volatile boolean running;
+    private Thread thread;
+
+    public void start() {
+        running = true;
+        thread = new Thread(this::run, "paste-write-behind");
+        thread.start();
+    }
+
+    /**
+     * Stops the flushing thread and writes all remaining pastes on the calling thread,
+     * must be called before the storage is closed. The flushing thread is waited for at most 30
+     * seconds
+     */
+    public void drain() throws InterruptedException {
+
+        running = false;
+        LockSupport.unpark(thread);
+        thread.join(JOIN_TIMEOUT.toMillis());
+
+        if (thread.isAlive()) {
+            log.warn("Write-behind thread did not stop in '{}', "
+                    + "buffered pastes are written along with it", JOIN_TIMEOUT);
+        }
+
+        try {
+            flushAll();
+        } catch (RuntimeException e) {
+            log.error("Buffered pastes were lost on shutdown: '{}' pastes", buffer.size(), e);
+            return;
+        }
+
+        log.info("Buffered pastes were written on shutdown");
+    }
+
+    private void run() {
+        while (running) {
+
+            buffer.awaitBatch(flushInterval);
+
+            try {
+                flushAll();
+            } catch (RuntimeException e) {
+                log.error("Buffered pastes were not written, '{}' pastes are waiting",
+                        buffer.size(), e);
+                LockSupport.parkNanos(this, flushInterval.toNanos());
+            }
+        }
+    }
+
+    private void flushAll() {
+
+        List<Paste> batch;
+
+        while (!(batch = buffer.poll(buffer.getBatchSize())).isEmpty()) {
+            try {
+                pasteService.flush(batch);
+            } catch (MongoException e) {
+                buffer.requeue(batch);
+                throw e;
+            } catch (RuntimeException e) {
+                log.error("Batch of buffered pastes failed and is written paste by paste", e);
+                flushEach(batch);
+            }
+            buffer.complete(batch);
+        }
+    }
+
+    /**
+     * Writes pastes of a failed batch one by one, pastes which fail other than in the storage are
+     * dropped.
+     * If the storage fails, pastes not written yet are returned to the buffer
+     */
+    private void flushEach(List<Paste> batch) {
+
+        for (int i = 0; i < batch.size(); i++) {
+
+            var paste = batch.get(i);
+
+            try {
+                pasteService.flush(List.of(paste));
+            } catch (MongoException e) {
+                buffer.complete(batch.subList(0, i));
+                buffer.requeue(batch.subList(i, batch.size()));
+                throw e;
+            } catch (RuntimeException e) {
+                log.error("Buffered paste was dropped by hash '{}'", paste.getHash(), e);
+            }
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package com.example.service;
+
+import com.example.model.Paste;
+import com.example.model.PasteCursor;
+import com.example.model.PasteRequest;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Non-blocking service for interacting with paste storage.
+ * Lists of pastes are emitted as they are read from the storage, following the demand of the
+ * subscriber
+ */
+public interface ReactivePasteService {
+
+    /**
+     * Returns a paste by a specified {@code hash}
+     * @param hash a hash of a previously loaded paste
+     * @return a paste with a specified {@code hash}, empty if there is no such paste
+     */
+    Mono<Paste> getByHash(Long hash);
+
+    /**
+     * Returns the most recently loaded public pastes
+     * @return the {@code pastes.last-pastes.limit} most recently loaded public pastes
+     */
+    Flux<Paste> getAllLast();
+
+    /**
+     * Returns a page of public pastes ordered from the most recently loaded
+     * @param after position of the last paste of the previous page, {@code null} for the first page
+     * @param limit maximum number of pastes in the page
+     * @return public pastes loaded before the paste at the position {@code after}
+     */
+    Flux<Paste> getAllLast(PasteCursor after, int limit);
+
+    /**
+     * Returns all public pastes with text that has the specified substring ({@code text})
+     * @param text substring for searching in pastes
+     * @return pastes with text containing specified substring ({@code text})
+     */
+    Flux<Paste> getAllBySubstring(String text);
+
+    /**
+     * Returns a page of public pastes with text that has the specified substring ({@code text}),
+     * ordered from the earliest loaded
+     * @param text substring for searching in pastes
+     * @param after position of the last paste of the previous page, {@code null} for the first page
+     * @param limit maximum number of pastes in the page
+     * @return pastes with text containing specified substring, loaded after the paste at the
+     * position {@code after}
+     */
+    Flux<Paste> getAllBySubstring(String text, PasteCursor after, int limit);
+
+    /**
+     * Adds new paste
+     * @param pasteRequest request with specified paste parameters
+     * @return a new paste created by specified parameters
+     */
+    Mono<Paste> create(PasteRequest pasteRequest);
+}
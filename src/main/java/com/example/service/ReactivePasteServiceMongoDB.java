@@ -0,0 +1,348 @@
+package com.example.service;
+
+import com.example.model.Access;
+import com.example.model.Paste;
+import com.example.model.PasteChange;
+import com.example.model.PasteCursor;
+import com.example.model.PasteRequest;
+import com.example.service.id.PasteIdGenerator;
+import com.mongodb.ErrorCategory;
+import com.mongodb.MongoExecutionTimeoutException;
+import com.mongodb.MongoWriteException;
+import com.mongodb.client.model.UpdateOptions;
+import com.mongodb.reactivestreams.client.FindPublisher;
+import com.mongodb.reactivestreams.client.MongoCollection;
+import com.mongodb.reactivestreams.client.MongoDatabase;
+import jakarta.annotation.Nullable;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+import reactor.util.retry.Retry;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Implementation of {@link ReactivePasteService} on the reactive streams driver for the "reactive"
+ * profile.
+ * It stores pastes exactly like {@link PasteServiceMongoDB}, which is not started in this profile
+ */
+@Service
+@Profile("reactive")
+@RequiredArgsConstructor
+@Slf4j
+public class ReactivePasteServiceMongoDB implements ReactivePasteService {
+
+    private final MongoDatabase reactiveMongoDatabase;
+    private final LastPastesFeed lastPastesFeed;
+    private final PasteDocuments pasteDocuments;
+    private final PasteIdGenerator pasteIdGenerator;
+    private final PasteBlobStore pasteBlobStore;
+    private final PasteBuckets pasteBuckets;
+    private final PasteGramStore pasteGramStore;
+
+    @Value("${mongodb.collection.pastes}")
+    private String collectionName;
+
+    @Value("${mongodb.collection.blobs}")
+    private String blobsCollectionName;
+
+    @Value("${pastes.last-pastes.limit}")
+    private int limitOfLastPastes;
+
+    @Value("${pastes.id.max-attempts:3}")
+    private int maxAttemptsToCreate;
+
+    @Value("${pastes.search.max-time.millis:5000}")
+    private long searchMaxTimeMillis;
+
+    @Value("${pastes.search.batch-size:100}")
+    private int searchBatchSize;
+
+    @Override
+    public Mono<Paste> getByHash(Long hash) {
+
+        var paste = getCollectionOfPastes(pasteBuckets.collectionOf(hash))
+                .find(pasteDocuments.byHash(hash))
+                .projection(PasteDocuments.WITHOUT_GRAMS)
+                .first();
+
+        return Mono.from(paste).flatMap(this::withContent);
+    }
+
+    /**
+     * Returns pastes of the in-memory feed, the feed is loaded first if it is not loaded or has
+     * expired pastes
+     */
+    @Override
+    public Flux<Paste> getAllLast() {
+
+        if (lastPastesFeed.isLoaded() && !lastPastesFeed.hasExpired()) {
+            return Flux.fromIterable(lastPastesFeed.getPastes());
+        }
+
+        return findLast(null, limitOfLastPastes)
+                .collectList()
+                .doOnNext(pastes -> lastPastesFeed.refresh(() -> pastes))
+                .thenMany(Flux.defer(() -> Flux.fromIterable(lastPastesFeed.getPastes())));
+    }
+
+    /**
+     * Adds public pastes created by other nodes to the feed, as published by the
+     * {@link PasteChangeStream}
+     */
+    @EventListener
+    public void onPasteChange(PasteChange change) {
+        if (change.type() == PasteChange.Type.INSERT
+                && change.paste().getAccess() == Access.PUBLIC
+                && change.paste().getFileId() == null) {
+            withContent(change.paste()).subscribe(lastPastesFeed::add,
+                    e -> log.warn("Paste '{}' was not added to the feed: {}",
+                            change.paste().getHash(), e.getMessage()));
+        }
+    }
+
+    @Override
+    public Flux<Paste> getAllLast(PasteCursor after, int limit) {
+
+        if (after == null && limit <= limitOfLastPastes) {
+            return getAllLast().take(limit);
+        }
+
+        return findLast(after, limit);
+    }
+
+    @Override
+    public Flux<Paste> getAllBySubstring(String text) {
+
+        if (Objects.requireNonNullElse(text, "").isBlank()) {
+            return Flux.empty();
+        }
+
+        return findBySubstring(text, null);
+    }
+
+    @Override
+    public Flux<Paste> getAllBySubstring(String text, PasteCursor after, int limit) {
+
+        if (Objects.requireNonNullElse(text, "").isBlank()) {
+            return Flux.empty();
+        }
+
+        return findBySubstring(text, after).take(limit);
+    }
+
+    /**
+     * Adds new paste with a hash from the {@link PasteIdGenerator},
+     * a hash that is already taken is generated again up to {@code pastes.id.max-attempts} times
+     */
+    @Override
+    public Mono<Paste> create(PasteRequest pasteRequest) {
+        return Mono.fromCallable(pasteRequest::toPaste)
+                .flatMap(paste -> saveBlob(paste)
+                        .flatMap(blobId -> {
+                            paste.setBlobId(blobId.orElse(null));
+                            return insert(paste);
+                        }))
+                .flatMap(paste -> Mono.fromRunnable(() -> pasteGramStore.save(List.of(paste)))
+                        .subscribeOn(Schedulers.boundedElastic())
+                        .thenReturn(paste))
+                .doOnNext(paste -> {
+                    lastPastesFeed.add(paste);
+                    log.info("New paste is added by hash '{}'", paste.getHash());
+                });
+    }
+
+    private Flux<Paste> findLast(@Nullable PasteCursor after, int limit) {
+
+        var filter = pasteDocuments.lastPastes(after);
+
+        return findInLiveCollections(filter, PasteDocuments.NEWEST_FIRST,
+                PasteDocuments.NEWEST_FIRST_ORDER, limit, 0)
+                .take(limit)
+                .concatMap(this::withContent);
+    }
+
+    /**
+     * Searches pastes like {@link PasteServiceMongoDB}, documents are requested from the cursor
+     * only as fast as the subscriber consumes the found pastes, texts in blobs are loaded by
+     * batches of candidates. Segments of large pastes are found by the blocking client, so they are
+     * found off the event loop
+     */
+    private Flux<Paste> findBySubstring(String text, @Nullable PasteCursor after) {
+        return Mono.fromCallable(() -> pasteGramStore.find(text, after))
+                .subscribeOn(Schedulers.boundedElastic())
+                .flatMapMany(matches -> findInLiveCollections(
+                        pasteDocuments.bySubstring(text, after, matches),
+                        PasteDocuments.OLDEST_FIRST, PasteDocuments.OLDEST_FIRST_ORDER, 0,
+                        searchMaxTimeMillis))
+                .buffer(searchBatchSize)
+                .concatMap(this::withContents)
+                .filter(pasteDocuments.containing(text))
+                .onErrorMap(MongoExecutionTimeoutException.class,
+                        e -> new PasteSearchTimeoutException(
+                                "Search by a substring took too long", e));
+    }
+
+    /**
+     * Finds pastes in all collections which may have not expired pastes and merges them in the
+     * order of the sort
+     * @param limit maximum number of pastes read from every collection, {@code 0} for all of them
+     * @param maxTimeMillis maximum time of reading every cursor, {@code 0} for no limit
+     */
+    private Flux<Paste> findInLiveCollections(Bson filter, Bson sort, Comparator<Paste> order,
+                                              int limit, long maxTimeMillis) {
+        return liveCollections().flatMapMany(names -> Flux.mergeComparing(order, names.stream()
+                .map(name -> getCollectionOfPastes(name)
+                        .find(filter)
+                        .projection(PasteDocuments.WITHOUT_GRAMS)
+                        .sort(sort)
+                        .limit(limit)
+                        .maxTime(maxTimeMillis, TimeUnit.MILLISECONDS))
+                .toArray(FindPublisher[]::new)));
+    }
+
+    private Mono<Optional<String>> saveBlob(Paste paste) {
+
+        if (!pasteBlobStore.isBlob(paste.getText())) {
+            return Mono.just(Optional.empty());
+        }
+
+        var bytes = paste.getText().getBytes(StandardCharsets.UTF_8);
+        var blobId = pasteBlobStore.digest(bytes);
+        var update = pasteBlobStore.toUpdate(paste.getText(), bytes, 1,
+                pasteDocuments.toDate(paste.getExpireAt()));
+
+        var upsert = Mono.defer(() -> Mono.from(getCollectionOfBlobs()
+                .updateOne(new Document("_id", blobId), update, new UpdateOptions().upsert(true))));
+
+        // Concurrent upsert of the same text may insert the blob first
+        return upsert
+                .retryWhen(Retry.max(1)
+                        .filter(this::isDuplicateKey)
+                        .onRetryExhaustedThrow((spec, signal) -> signal.failure()))
+                .thenReturn(Optional.of(blobId));
+    }
+
+    private Mono<Paste> insert(Paste paste) {
+
+        var insert = Mono.defer(() -> {
+            var hash = pasteIdGenerator.generate(paste.getText(), paste.getCreatedAt());
+            paste.setHash(pasteBuckets.inBucket(hash, paste.getExpireAt()));
+            return collectionFor(paste)
+                    .flatMap(name -> Mono.from(getCollectionOfPastes(name).insertOne(paste)));
+        });
+
+        return insert
+                .retryWhen(Retry.max(maxAttemptsToCreate - 1L)
+                        .filter(this::isDuplicateKey)
+                        .doBeforeRetry(signal -> log.warn(
+                                "Hash '{}' is already taken, attempt {} of {}",
+                                paste.getHash(), signal.totalRetries() + 1, maxAttemptsToCreate))
+                        .onRetryExhaustedThrow((spec, signal) -> signal.failure()))
+                .thenReturn(paste);
+    }
+
+    private boolean isDuplicateKey(Throwable e) {
+        return e instanceof MongoWriteException writeException
+                && writeException.getError().getCategory() == ErrorCategory.DUPLICATE_KEY;
+    }
+
+    /**
+     * Loads the text of a paste stored in a blob
+     */
+    private Mono<Paste> withContent(Paste paste) {
+
+        if (paste.getText() != null || paste.getBlobId() == null) {
+            return Mono.just(paste);
+        }
+
+        var blob = getCollectionOfBlobs()
+                .find(new Document("_id", paste.getBlobId()))
+                .projection(PasteBlobStore.CONTENT_PROJECTION)
+                .first();
+
+        return Mono.from(blob)
+                .doOnNext(doc -> paste.setContent(pasteBlobStore.toContent(doc)))
+                .thenReturn(paste);
+    }
+
+    /**
+     * Loads texts of pastes stored in blobs by a single query
+     */
+    private Flux<Paste> withContents(List<Paste> pastes) {
+
+        var blobIds = pastes.stream()
+                .filter(paste -> paste.getText() == null)
+                .map(Paste::getBlobId)
+                .filter(Objects::nonNull)
+                .distinct()
+                .toList();
+
+        if (blobIds.isEmpty()) {
+            return Flux.fromIterable(pastes);
+        }
+
+        var blobs = getCollectionOfBlobs()
+                .find(new Document("_id", new Document("$in", blobIds)))
+                .projection(PasteBlobStore.CONTENT_PROJECTION);
+
+        return Flux.from(blobs)
+                .collectMap(doc -> doc.getString("_id"), pasteBlobStore::toContent)
+                .flatMapMany(contents -> {
+                    for (var paste : pastes) {
+                        if (paste.getText() == null && paste.getBlobId() != null) {
+                            paste.setContent(contents.get(paste.getBlobId()));
+                        }
+                    }
+                    return Flux.fromIterable(pastes);
+                });
+    }
+
+    /**
+     * Buckets are listed by the blocking client, so they are listed off the event loop
+     */
+    private Mono<List<String>> liveCollections() {
+
+        if (!pasteBuckets.isEnabled()) {
+            return Mono.just(List.of(collectionName));
+        }
+
+        return Mono.fromCallable(pasteBuckets::liveCollections)
+                .subscribeOn(Schedulers.boundedElastic());
+    }
+
+    /**
+     * Indexes of a new bucket are created by the blocking client, so the bucket is resolved off the
+     * event loop
+     */
+    private Mono<String> collectionFor(Paste paste) {
+
+        if (!pasteBuckets.isEnabled()) {
+            return Mono.just(collectionName);
+        }
+
+        return Mono.fromCallable(() -> pasteBuckets.collectionFor(paste))
+                .subscribeOn(Schedulers.boundedElastic());
+    }
+
+    private MongoCollection<Paste> getCollectionOfPastes(String name) {
+        return reactiveMongoDatabase.getCollection(name, Paste.class);
+    }
+
+    private MongoCollection<Document> getCollectionOfBlobs() {
+        return reactiveMongoDatabase.getCollection(blobsCollectionName);
+    }
+}
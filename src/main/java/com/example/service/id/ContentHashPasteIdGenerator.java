@@ -0,0 +1,59 @@
+package com.example.service.id;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.time.LocalDateTime;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Generates hashes as SHA-256 of the text of a paste, salted with a random value of the node
+ * and a counter, so that identical texts get different hashes and hashes cannot be guessed.
+ * Unlike {@link SnowflakePasteIdGenerator}, unlisted pastes cannot be found by enumerating hashes
+ */
+@Component
+@ConditionalOnProperty(name = "pastes.id.generator", havingValue = "content-hash",
+        matchIfMissing = true)
+public class ContentHashPasteIdGenerator implements PasteIdGenerator {
+
+    private final byte[] salt;
+    private final AtomicLong counter = new AtomicLong();
+
+    public ContentHashPasteIdGenerator(@Value("${pastes.id.node-id:0}") long nodeId) {
+
+        var random = new byte[16];
+        new SecureRandom().nextBytes(random);
+
+        this.salt = ByteBuffer.allocate(Long.BYTES + random.length)
+                .putLong(nodeId)
+                .put(random)
+                .array();
+    }
+
+    @Override
+    public long generate(String text, LocalDateTime createdAt) {
+
+        var digest = sha256();
+        digest.update(salt);
+        digest.update(ByteBuffer.allocate(Long.BYTES).putLong(counter.incrementAndGet()).array());
+        digest.update(createdAt.toString().getBytes(StandardCharsets.UTF_8));
+        digest.update(text.getBytes(StandardCharsets.UTF_8));
+
+        // Hashes are kept positive
+        return ByteBuffer.wrap(digest.digest()).getLong() & Long.MAX_VALUE;
+    }
+
+    private MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not supported", e);
+        }
+    }
+}
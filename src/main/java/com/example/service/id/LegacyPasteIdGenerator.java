@@ -0,0 +1,35 @@
+package com.example.service.id;
+
+import com.example.model.Paste;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+
+/**
+ * Generates hashes with {@link Paste#generateHash(String, LocalDateTime)} as before the generators
+ * existed.
+ * Identical texts loaded within the same second get the same hash, the second of them fails to be
+ * added.
+ * Such hashes can be guessed from the text and the time, so links of unlisted pastes can be
+ * enumerated
+ */
+@Component
+@ConditionalOnProperty(name = "pastes.id.generator", havingValue = "legacy")
+@Slf4j
+public class LegacyPasteIdGenerator implements PasteIdGenerator {
+
+    @PostConstruct
+    public void warnOfGuessableHashes() {
+        log.warn("Hashes of pastes are generated by text and time and can be guessed, "
+                + "unlisted pastes can be found by enumerating them. "
+                + "Use 'content-hash' generator to prevent it");
+    }
+
+    @Override
+    public long generate(String text, LocalDateTime createdAt) {
+        return Paste.generateHash(text, createdAt);
+    }
+}
@@ -0,0 +1,18 @@
+package com.example.service.id;
+
+import java.time.LocalDateTime;
+
+/**
+ * Generator of hashes that identify pastes in links
+ */
+@FunctionalInterface
+public interface PasteIdGenerator {
+
+    /**
+     * Generates a hash for a new paste
+     * @param text text of the new paste
+     * @param createdAt time of creation of the new paste
+     * @return hash of the new paste
+     */
+    long generate(String text, LocalDateTime createdAt);
+}
@@ -0,0 +1,71 @@
+package com.example.service.id;
+
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Generates hashes from the current time in milliseconds (41 bits), the id of the node (10 bits)
+ * and a sequence number within the millisecond (12 bits).
+ * Hashes of one node grow monotonically, hashes of different nodes never collide
+ * as long as every node has its own {@code pastes.id.node-id}.
+ * Such hashes are easily guessed from any other hash, so links of unlisted pastes can be
+ * enumerated, the generator is used only if it is chosen explicitly
+ */
+@Component
+@ConditionalOnProperty(name = "pastes.id.generator", havingValue = "snowflake")
+@Slf4j
+public class SnowflakePasteIdGenerator implements PasteIdGenerator {
+
+    static final long EPOCH_MILLIS = Instant.parse("2023-01-01T00:00:00Z").toEpochMilli();
+
+    static final int NODE_BITS = 10;
+    static final int SEQUENCE_BITS = 12;
+    static final long MAX_NODE_ID = (1L << NODE_BITS) - 1;
+
+    private final long nodeId;
+
+    /**
+     * Milliseconds since the epoch shifted left by {@link #SEQUENCE_BITS}, plus the last used
+     * sequence number.
+     * A sequence that overflows borrows the next millisecond
+     */
+    private final AtomicLong state = new AtomicLong();
+
+    public SnowflakePasteIdGenerator(@Value("${pastes.id.node-id:0}") long nodeId) {
+
+        if (nodeId < 0 || nodeId > MAX_NODE_ID) {
+            throw new IllegalArgumentException("Node id must be between 0 and " + MAX_NODE_ID);
+        }
+
+        this.nodeId = nodeId;
+    }
+
+    @PostConstruct
+    public void warnOfGuessableHashes() {
+        log.warn("Hashes of pastes are generated by time and can be guessed, "
+                + "unlisted pastes can be found by enumerating them. "
+                + "Use 'content-hash' generator to prevent it");
+    }
+
+    @Override
+    public long generate(String text, LocalDateTime createdAt) {
+
+        var millis = System.currentTimeMillis() - EPOCH_MILLIS;
+
+        var next = state.updateAndGet(previous -> Math.max(previous + 1, millis << SEQUENCE_BITS));
+
+        var timestamp = next >>> SEQUENCE_BITS;
+        var sequence = next & ((1L << SEQUENCE_BITS) - 1);
+
+        return (timestamp << (NODE_BITS + SEQUENCE_BITS))
+                | (nodeId << SEQUENCE_BITS)
+                | sequence;
+    }
+}
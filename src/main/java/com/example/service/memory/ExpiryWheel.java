@@ -0,0 +1,120 @@
+package com.example.service.memory;
+
+import java.util.Arrays;
+import java.util.function.LongConsumer;
+
+/**
+ * Hashed timing wheel of expiration times of pastes. Every slot of the wheel covers one tick of
+ * time and keeps hashes of the pastes expiring within the tick, so expired pastes are found by
+ * visiting only the slots of the elapsed ticks instead of all pastes. Pastes expiring more than one
+ * revolution ahead stay in their slot until the wheel comes round to them at the right revolution.
+ * A paste is reported at most one tick after it expires. The wheel is not thread-safe
+ */
+class ExpiryWheel {
+
+    private static final int MIN_SLOT_CAPACITY = 8;
+
+    private final long tickInMillis;
+    private final Slot[] slots;
+    private final int mask;
+
+    /**
+     * The first tick that has not elapsed yet
+     */
+    private long currentTick;
+
+    ExpiryWheel(long tickInMillis, int numberOfSlots, long nowInMillis) {
+
+        if (Integer.bitCount(numberOfSlots) != 1) {
+            throw new IllegalArgumentException("Number of slots must be a power of two");
+        }
+
+        this.tickInMillis = tickInMillis;
+        this.slots = new Slot[numberOfSlots];
+        this.mask = numberOfSlots - 1;
+        this.currentTick = nowInMillis / tickInMillis;
+
+        for (int i = 0; i < numberOfSlots; i++) {
+            slots[i] = new Slot();
+        }
+    }
+
+    /**
+     * Schedules the expiration of a paste
+     * @param hash hash of the paste
+     * @param expireAtInMillis expiration time of the paste in milliseconds since the epoch
+     */
+    void add(long hash, long expireAtInMillis) {
+        // Already expired pastes go to the current slot and are reported once the current tick
+        // elapses
+        var tick = Math.max(expireAtInMillis / tickInMillis, currentTick);
+        slots[(int) (tick & mask)].add(hash, expireAtInMillis);
+    }
+
+    /**
+     * Turns the wheel to the current time and reports pastes that have expired in the elapsed ticks
+     * @param nowInMillis current time in milliseconds since the epoch
+     * @param expired consumer of hashes of expired pastes
+     */
+    void advance(long nowInMillis, LongConsumer expired) {
+
+        var nowTick = nowInMillis / tickInMillis;
+
+        // Every slot is visited at most once, even if the wheel has not been turned for more than a
+        // revolution
+        var lastTick = Math.min(nowTick, currentTick + slots.length);
+        for (var tick = currentTick; tick < lastTick; tick++) {
+            slots[(int) (tick & mask)].removeExpired(nowInMillis, expired);
+        }
+
+        currentTick = Math.max(currentTick, nowTick);
+    }
+
+    void clear() {
+        for (var slot : slots) {
+            slot.size = 0;
+        }
+    }
+
+    private static final class Slot {
+
+        private long[] hashes = new long[MIN_SLOT_CAPACITY];
+        private long[] expireAts = new long[MIN_SLOT_CAPACITY];
+        private int size;
+
+        private void add(long hash, long expireAt) {
+
+            if (size == hashes.length) {
+                hashes = Arrays.copyOf(hashes, size * 2);
+                expireAts = Arrays.copyOf(expireAts, size * 2);
+            }
+
+            hashes[size] = hash;
+            expireAts[size] = expireAt;
+            size++;
+        }
+
+        private void removeExpired(long now, LongConsumer expired) {
+
+            int i = 0;
+            while (i < size) {
+                if (expireAts[i] <= now) {
+                    expired.accept(hashes[i]);
+                    // The last entry takes the place of the removed one, the order within a slot
+                    // does not matter
+                    size--;
+                    hashes[i] = hashes[size];
+                    expireAts[i] = expireAts[size];
+                } else {
+                    i++;
+                }
+            }
+
+            // Slots shrink back after a burst of pastes has expired
+            if (size < hashes.length / 4 && hashes.length > MIN_SLOT_CAPACITY) {
+                hashes = Arrays.copyOf(hashes, hashes.length / 2);
+                expireAts = Arrays.copyOf(expireAts, expireAts.length / 2);
+            }
+        }
+    }
+}
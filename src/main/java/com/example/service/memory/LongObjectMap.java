@@ -0,0 +1,164 @@
+package com.example.service.memory;
+
+import java.util.Arrays;
+import java.util.function.Consumer;
+
+/**
+ * Hash map from primitive {@code long} keys to values with open addressing and linear probing,
+ * so that keys are neither boxed nor wrapped into entries. Removal shifts the following entries
+ * back instead of leaving tombstones, so lookups never slow down after many removals.
+ * The map is not thread-safe and does not accept {@code null} values
+ * @param <V> type of values
+ */
+class LongObjectMap<V> {
+
+    private static final int MIN_CAPACITY = 16;
+
+    private long[] keys;
+    private Object[] values;
+    private int mask;
+    private int size;
+
+    LongObjectMap() {
+        this(MIN_CAPACITY);
+    }
+
+    LongObjectMap(int expectedSize) {
+        var capacity = Integer.highestOneBit(Math.max(expectedSize * 2 - 1, MIN_CAPACITY - 1)) << 1;
+        allocate(capacity);
+    }
+
+    @SuppressWarnings("unchecked")
+    V get(long key) {
+
+        for (int i = slot(key); values[i] != null; i = (i + 1) & mask) {
+            if (keys[i] == key) {
+                return (V) values[i];
+            }
+        }
+
+        return null;
+    }
+
+    boolean containsKey(long key) {
+        return get(key) != null;
+    }
+
+    /**
+     * Associates the value with the key
+     * @return the previous value, {@code null} if there was no value
+     */
+    @SuppressWarnings("unchecked")
+    V put(long key, V value) {
+
+        if (value == null) {
+            throw new IllegalArgumentException("Value must not be null");
+        }
+
+        int i = slot(key);
+        for (; values[i] != null; i = (i + 1) & mask) {
+            if (keys[i] == key) {
+                var previous = (V) values[i];
+                values[i] = value;
+                return previous;
+            }
+        }
+
+        keys[i] = key;
+        values[i] = value;
+
+        // Load factor is kept at most 1/2, so probe sequences stay short
+        if (++size * 2 > keys.length) {
+            resize(keys.length * 2);
+        }
+
+        return null;
+    }
+
+    /**
+     * Removes the value of the key
+     * @return the removed value, {@code null} if there was no value
+     */
+    @SuppressWarnings("unchecked")
+    V remove(long key) {
+
+        int i = slot(key);
+        for (; values[i] != null; i = (i + 1) & mask) {
+            if (keys[i] == key) {
+                break;
+            }
+        }
+
+        if (values[i] == null) {
+            return null;
+        }
+
+        var removed = (V) values[i];
+        size--;
+
+        // Entries after the removed one are moved back if their own slot is not between the gap and
+        // them
+        int gap = i;
+        for (int j = (gap + 1) & mask; values[j] != null; j = (j + 1) & mask) {
+            int home = slot(keys[j]);
+            if (((j - home) & mask) >= ((j - gap) & mask)) {
+                keys[gap] = keys[j];
+                values[gap] = values[j];
+                gap = j;
+            }
+        }
+
+        values[gap] = null;
+
+        return removed;
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * Passes every value to the action, the map must not be changed by the action
+     */
+    @SuppressWarnings("unchecked")
+    void forEachValue(Consumer<V> action) {
+        for (var value : values) {
+            if (value != null) {
+                action.accept((V) value);
+            }
+        }
+    }
+
+    void clear() {
+        Arrays.fill(values, null);
+        size = 0;
+    }
+
+    private int slot(long key) {
+        // Fibonacci hashing spreads sequential keys, e.g. Snowflake ids, over the whole table
+        var hash = key * 0x9E3779B97F4A7C15L;
+        return (int) (hash ^ (hash >>> 32)) & mask;
+    }
+
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        values = new Object[capacity];
+        mask = capacity - 1;
+    }
+
+    @SuppressWarnings("unchecked")
+    private void resize(int capacity) {
+
+        var oldKeys = keys;
+        var oldValues = values;
+
+        allocate(capacity);
+        size = 0;
+
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldValues[i] != null) {
+                put(oldKeys[i], (V) oldValues[i]);
+            }
+        }
+    }
+}
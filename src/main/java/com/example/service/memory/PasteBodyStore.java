@@ -0,0 +1,244 @@
+package com.example.service.memory;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * Off-heap storage of texts of pastes in direct buffers, so that texts neither take the heap
+ * nor are copied by the garbage collector. Texts are appended to segments of {@code segmentSize}
+ * bytes and a segment is reused once all of its texts are removed. Segments where removed texts
+ * take at least a quarter of the space can be compacted, and their free tail is reused as well, so
+ * long-lived texts do not pin whole segments of removed ones. A text larger than a segment gets a
+ * buffer of its own.
+ * A text is addressed by the id of its segment in the high half of the address and its offset in
+ * the low half.
+ * The store is not thread-safe
+ */
+class PasteBodyStore {
+
+    /**
+     * Address returned when there is no space left for a text
+     */
+    static final long NO_SPACE = -1;
+
+    private final int segmentSize;
+    private final long maxSizeInBytes;
+
+    private final List<Segment> segments = new ArrayList<>();
+    private final Deque<Segment> freeSegments = new ArrayDeque<>();
+    private final Deque<Integer> freeIds = new ArrayDeque<>();
+    private Segment current;
+    private long allocatedBytes;
+
+    PasteBodyStore(int segmentSize, long maxSizeInBytes) {
+        this.segmentSize = segmentSize;
+        this.maxSizeInBytes = maxSizeInBytes;
+    }
+
+    /**
+     * Copies the text into the store
+     * @param bytes UTF-8 bytes of a text
+     * @return address of the text, {@link #NO_SPACE} if the store is full
+     */
+    long add(byte[] bytes) {
+
+        Segment segment;
+
+        if (bytes.length > segmentSize) {
+            segment = allocate(bytes.length);
+        } else {
+            if (current != null && current.liveBytes == 0) {
+                current.position = 0;
+            }
+            if (current == null || current.remaining() < bytes.length) {
+                current = nextSegment(bytes.length);
+            }
+            segment = current;
+        }
+
+        if (segment == null) {
+            return NO_SPACE;
+        }
+
+        var offset = segment.position;
+        segment.buffer.put(offset, bytes);
+        segment.position += bytes.length;
+        segment.liveBytes += bytes.length;
+
+        return (long) segment.id << 32 | offset;
+    }
+
+    /**
+     * Copies the text out of the store
+     * @param address address of the text
+     * @param length length of the text in bytes
+     * @return UTF-8 bytes of the text
+     */
+    byte[] get(long address, int length) {
+        var bytes = new byte[length];
+        segments.get(segmentId(address)).buffer.get(offset(address), bytes);
+        return bytes;
+    }
+
+    /**
+     * Releases the space of the text, the segment of the text is reused when it has no texts left
+     * @param address address of the text
+     * @param length length of the text in bytes
+     */
+    void remove(long address, int length) {
+
+        var segment = segments.get(segmentId(address));
+        segment.liveBytes -= length;
+
+        if (segment.liveBytes > 0 || segment == current) {
+            return;
+        }
+
+        if (segment.buffer.capacity() > segmentSize) {
+            // Own buffer of a large text is released to the garbage collector
+            segments.set(segment.id, null);
+            freeIds.push(segment.id);
+            allocatedBytes -= segment.buffer.capacity();
+        } else {
+            segment.position = 0;
+            if (!segment.free) {
+                segment.free = true;
+                freeSegments.push(segment);
+            }
+        }
+    }
+
+    /**
+     * Returns ids of segments where removed texts take at least a quarter of the space, except the
+     * current one and buffers of large texts. So no more than a quarter of the store is lost to
+     * removed texts after compaction
+     * @return ids of segments worth compacting
+     */
+    List<Integer> getFragmentedSegments() {
+
+        var ids = new ArrayList<Integer>();
+
+        for (var segment : segments) {
+            if (segment != null && segment != current && !segment.free
+                    && segment.buffer.capacity() == segmentSize
+                    && segment.position - segment.liveBytes >= segmentSize / 4) {
+                ids.add(segment.id);
+            }
+        }
+
+        return ids;
+    }
+
+    /**
+     * Moves all texts of a segment to its start in their order, so the space of removed texts is
+     * reused
+     * @param segmentId id of a segment
+     * @param addresses addresses of all texts of the segment, sorted by their offsets
+     * @param lengths lengths of the texts in bytes, in the same order
+     * @return new addresses of the texts in the same order
+     */
+    long[] compact(int segmentId, long[] addresses, int[] lengths) {
+
+        var segment = segments.get(segmentId);
+        var moved = new long[addresses.length];
+        var position = 0;
+
+        for (int i = 0; i < addresses.length; i++) {
+
+            var offset = offset(addresses[i]);
+            if (offset != position) {
+                // Texts only move towards the start, so a text never overwrites the texts after it
+                segment.buffer.put(position, segment.buffer, offset, lengths[i]);
+            }
+
+            moved[i] = (long) segmentId << 32 | position;
+            position += lengths[i];
+        }
+
+        segment.position = position;
+
+        if (!segment.free && segment.remaining() > 0) {
+            segment.free = true;
+            freeSegments.add(segment);
+        }
+
+        return moved;
+    }
+
+    /**
+     * Returns the number of bytes of all allocated buffers
+     */
+    long getAllocatedBytes() {
+        return allocatedBytes;
+    }
+
+    /**
+     * Segment with space for at least {@code length} bytes, a free or compacted one is preferred to
+     * a new one
+     */
+    private Segment nextSegment(int length) {
+
+        for (var iterator = freeSegments.iterator(); iterator.hasNext(); ) {
+            var segment = iterator.next();
+            if (segment.remaining() >= length) {
+                iterator.remove();
+                segment.free = false;
+                return segment;
+            }
+        }
+
+        return allocate(segmentSize);
+    }
+
+    private Segment allocate(int size) {
+
+        if (allocatedBytes + size > maxSizeInBytes) {
+            return null;
+        }
+
+        var id = freeIds.isEmpty() ? segments.size() : freeIds.pop();
+        var segment = new Segment(id, ByteBuffer.allocateDirect(size));
+
+        if (id == segments.size()) {
+            segments.add(segment);
+        } else {
+            segments.set(id, segment);
+        }
+        allocatedBytes += size;
+
+        return segment;
+    }
+
+    static int segmentId(long address) {
+        return (int) (address >>> 32);
+    }
+
+    private static int offset(long address) {
+        return (int) address;
+    }
+
+    private static final class Segment {
+
+        private final int id;
+        private final ByteBuffer buffer;
+        private int position;
+        private int liveBytes;
+
+        /**
+         * Whether the segment waits in the free segments to become the current one
+         */
+        private boolean free;
+
+        private Segment(int id, ByteBuffer buffer) {
+            this.id = id;
+            this.buffer = buffer;
+        }
+
+        private int remaining() {
+            return buffer.capacity() - position;
+        }
+    }
+}
@@ -0,0 +1,515 @@
+package com.example.service.memory;
+
+import com.example.model.Access;
+import com.example.model.Paste;
+import com.example.model.PasteContent;
+import com.example.model.PasteCursor;
+import com.example.model.PasteEncoding;
+import com.example.model.PasteRequest;
+import com.example.model.PasteResult;
+import com.example.service.PasteDocuments;
+import com.example.service.PasteIngestRejectedException;
+import com.example.service.PasteMetrics;
+import com.example.service.PasteStorage;
+import com.example.service.id.PasteIdGenerator;
+import jakarta.annotation.Nullable;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.NavigableSet;
+import java.util.Objects;
+import java.util.TreeSet;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+/**
+ * Storage of pastes in the memory of the application, for edge nodes and tests that run without
+ * MongoDB.
+ * Pastes are looked up by their hashes in a {@link LongObjectMap}, their texts are kept off-heap
+ * in a {@link PasteBodyStore}, expired pastes are found by an {@link ExpiryWheel}
+ * and public pastes are kept sorted from the newest for the feed and the search.
+ * Pastes are lost when the application stops
+ */
+@Service
+@ConditionalOnProperty(name = "pastes.storage", havingValue = "memory")
+@Slf4j
+public class PasteServiceInMemory implements PasteStorage {
+
+    private static final Comparator<Entry> NEWEST_FIRST = Comparator.comparing(Entry::createdAt)
+            .thenComparingLong(Entry::hash)
+            .reversed();
+
+    /**
+     * Number of texts copied out of the store at a time by a search
+     */
+    private static final int SEARCH_BATCH_SIZE = 100;
+
+    private final PasteIdGenerator pasteIdGenerator;
+    private final PasteDocuments pasteDocuments;
+    private final PasteMetrics pasteMetrics;
+    private final int limitOfLastPastes;
+    private final int maxAttemptsToCreate;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final LongObjectMap<Entry> pastes = new LongObjectMap<>();
+    private final NavigableSet<Entry> publicPastes = new TreeSet<>(NEWEST_FIRST);
+    private final PasteBodyStore bodies;
+    private final ExpiryWheel expiryWheel;
+
+    public PasteServiceInMemory(PasteIdGenerator pasteIdGenerator,
+                                PasteDocuments pasteDocuments,
+                                PasteMetrics pasteMetrics,
+                                @Value("${pastes.last-pastes.limit}") int limitOfLastPastes,
+                                @Value("${pastes.id.max-attempts:3}") int maxAttemptsToCreate,
+                                @Value("${pastes.memory.segment-size.bytes:8388608}")
+                                int segmentSizeInBytes,
+                                @Value("${pastes.memory.max-size.bytes:268435456}")
+                                long maxSizeInBytes,
+                                @Value("${pastes.memory.expiry.tick.millis:1000}")
+                                long tickInMillis,
+                                @Value("${pastes.memory.expiry.slots:4096}") int numberOfSlots) {
+
+        this.pasteIdGenerator = pasteIdGenerator;
+        this.pasteDocuments = pasteDocuments;
+        this.pasteMetrics = pasteMetrics;
+        this.limitOfLastPastes = limitOfLastPastes;
+        this.maxAttemptsToCreate = maxAttemptsToCreate;
+        this.bodies = new PasteBodyStore(segmentSizeInBytes, maxSizeInBytes);
+        this.expiryWheel = new ExpiryWheel(tickInMillis, numberOfSlots, System.currentTimeMillis());
+    }
+
+    @Override
+    public Paste getByHash(Long hash) {
+        return pasteMetrics.record("getByHash", () -> read(() -> {
+            var entry = find(hash);
+            return found(entry == null ? null : toPaste(entry));
+        }));
+    }
+
+    @Override
+    public PasteContent getContentByHash(Long hash) {
+        return pasteMetrics.record("getContentByHash", () -> read(() -> {
+            var entry = find(hash);
+            return found(entry == null ? null : toContent(entry));
+        }));
+    }
+
+    @Override
+    public LocalDateTime getExpireAtByHash(Long hash) {
+        return pasteMetrics.record("getExpireAtByHash", () -> read(() -> {
+            var entry = find(hash);
+            return found(entry == null ? null : entry.expireAt());
+        }));
+    }
+
+    @Override
+    public List<Paste> getAllLast() {
+        return getAllLast(null, limitOfLastPastes);
+    }
+
+    @Override
+    public List<Paste> getAllLast(PasteCursor after, int limit) {
+        return pasteMetrics.record("getAllLast", () -> read(() -> {
+
+            var now = LocalDateTime.now();
+            var result = new ArrayList<Paste>();
+
+            for (var entry : newerThan(after)) {
+                if (result.size() >= limit) {
+                    break;
+                }
+                if (entry.expireAt().isAfter(now)) {
+                    result.add(toPaste(entry));
+                }
+            }
+
+            return result;
+        }));
+    }
+
+    @Override
+    public List<Paste> getAllBySubstring(String text) {
+        return getAllBySubstring(text, null, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Checks texts of public pastes from the oldest one, there is no index of their contents.
+     * Texts are copied out of the store by batches under the lock, but decoded and matched without
+     * it, so a search does not hold back writers for the whole scan
+     */
+    @Override
+    public List<Paste> getAllBySubstring(String text, PasteCursor after, int limit) {
+
+        if (Objects.requireNonNullElse(text, "").isBlank()) {
+            return Collections.emptyList();
+        }
+
+        return pasteMetrics.record("getAllBySubstring", () -> {
+
+            var containing = pasteDocuments.containing(text);
+            var result = new ArrayList<Paste>();
+            var position = after;
+
+            while (result.size() < limit) {
+
+                var cursor = position;
+                var batch = read(() -> copyOlderThan(cursor));
+
+                for (var copy : batch) {
+                    if (copy.text() == null || result.size() >= limit) {
+                        continue;
+                    }
+                    var paste = toPaste(copy.entry(), copy.text());
+                    if (containing.test(paste)) {
+                        result.add(paste);
+                    }
+                }
+
+                if (batch.size() < SEARCH_BATCH_SIZE) {
+                    break;
+                }
+
+                var last = batch.get(batch.size() - 1).entry();
+                position = new PasteCursor(last.createdAt(), last.hash());
+            }
+
+            pasteMetrics.found(result.size());
+
+            return result;
+        });
+    }
+
+    /**
+     * Copies texts of the next {@link #SEARCH_BATCH_SIZE} public pastes after the cursor, from the
+     * oldest.
+     * Expired pastes are skipped but still count towards the batch
+     */
+    private List<Copy> copyOlderThan(@Nullable PasteCursor after) {
+
+        var now = LocalDateTime.now();
+        var batch = new ArrayList<Copy>(SEARCH_BATCH_SIZE);
+
+        for (var entry : olderThan(after)) {
+            if (batch.size() >= SEARCH_BATCH_SIZE) {
+                break;
+            }
+            batch.add(new Copy(entry, entry.expireAt().isAfter(now) ? getText(entry) : null));
+        }
+
+        return batch;
+    }
+
+    @Override
+    public Stream<Paste> streamAllBySubstring(String text) {
+        return getAllBySubstring(text).stream();
+    }
+
+    /**
+     * Adds new paste with a hash from the {@link PasteIdGenerator},
+     * a hash that is already taken is generated again up to {@code pastes.id.max-attempts} times
+     * @throws PasteIngestRejectedException if there is no memory left for the text
+     */
+    @Override
+    public Paste create(PasteRequest pasteRequest) {
+        return pasteMetrics.record("create", () -> write(() -> {
+
+            var paste = pasteRequest.toPaste();
+            var error = insert(paste);
+
+            if (error != null) {
+                throw new PasteIngestRejectedException(error);
+            }
+
+            log.info("New paste is added by hash '{}'", paste.getHash());
+
+            return paste;
+        }));
+    }
+
+    /**
+     * Texts are kept in memory anyway, so the whole text is read first
+     */
+    @Override
+    public Paste create(PasteRequest pasteRequest, InputStream text) throws IOException {
+        return create(pasteRequest.toBuilder()
+                .text(new String(text.readAllBytes(), StandardCharsets.UTF_8)).build());
+    }
+
+    @Override
+    public List<PasteResult> createAll(List<PasteRequest> pasteRequests) {
+        return pasteMetrics.record("createAll", () -> write(() -> {
+
+            var results = new ArrayList<PasteResult>(pasteRequests.size());
+
+            for (var pasteRequest : pasteRequests) {
+
+                var error = pasteRequest == null ? "Paste is missing" : pasteRequest.validate();
+                if (error != null) {
+                    results.add(PasteResult.failed(error));
+                    continue;
+                }
+
+                var paste = pasteRequest.toPaste();
+                error = insert(paste);
+                results.add(error == null ? PasteResult.created(paste) : PasteResult.failed(error));
+            }
+
+            return results;
+        }));
+    }
+
+    /**
+     * Removes pastes that have expired since the last removal
+     */
+    @Override
+    public void removeExpiredPastes() {
+        pasteMetrics.record("removeExpiredPastes", () -> write(() -> {
+
+            var deletedCount = removeExpired();
+
+            if (deletedCount > 0) {
+                log.info("Expired pastes were deleted: '{}' pastes", deletedCount);
+            }
+
+            return null;
+        }));
+    }
+
+    /**
+     * Returns the number of bytes of memory allocated for texts of pastes
+     */
+    public long getAllocatedBytes() {
+        return read(bodies::getAllocatedBytes);
+    }
+
+    /**
+     * Adds the paste, it gets a new hash if its hash is taken. Returns the reason why it was not
+     * added, if any
+     */
+    private String insert(Paste paste) {
+
+        // Writers turn the wheel as well, so memory of expired pastes is reused without the
+        // scheduled remover
+        removeExpired();
+
+        for (int attempt = 1; ; attempt++) {
+            paste.setHash(pasteIdGenerator.generate(paste.getText(), paste.getCreatedAt()));
+            if (!pastes.containsKey(paste.getHash())) {
+                break;
+            }
+            if (attempt >= maxAttemptsToCreate) {
+                log.warn("Paste was not added, hash '{}' is already taken", paste.getHash());
+                return "Paste was not saved";
+            }
+        }
+
+        var bytes = paste.getText().getBytes(StandardCharsets.UTF_8);
+        var address = bodies.add(bytes);
+        if (address == PasteBodyStore.NO_SPACE && compactBodies()) {
+            address = bodies.add(bytes);
+        }
+        if (address == PasteBodyStore.NO_SPACE) {
+            log.warn("Paste was not added, no memory is left for '{}' bytes", bytes.length);
+            return "Storage of pastes is full";
+        }
+
+        var entry = new Entry(paste.getHash(), paste.getAccess(), paste.getCreatedAt(),
+                paste.getExpireAt(), address, bytes.length);
+
+        pastes.put(entry.hash(), entry);
+        if (entry.access() == Access.PUBLIC) {
+            publicPastes.add(entry);
+        }
+        expiryWheel.add(entry.hash(), pasteDocuments.toEpochMilli(entry.expireAt()));
+
+        pasteMetrics.created(paste.getText());
+
+        return null;
+    }
+
+    /**
+     * Compacts fragmented segments of the {@link PasteBodyStore} and moves their pastes to the new
+     * addresses
+     * @return {@code true} if any segment was compacted
+     */
+    private boolean compactBodies() {
+
+        var segmentIds = new HashSet<>(bodies.getFragmentedSegments());
+        if (segmentIds.isEmpty()) {
+            return false;
+        }
+
+        var entriesBySegment = new HashMap<Integer, List<Entry>>();
+        pastes.forEachValue(entry -> {
+            var segmentId = PasteBodyStore.segmentId(entry.address());
+            if (segmentIds.contains(segmentId)) {
+                entriesBySegment.computeIfAbsent(segmentId, id -> new ArrayList<>()).add(entry);
+            }
+        });
+
+        for (var segmentId : segmentIds) {
+
+            var entries = entriesBySegment.getOrDefault(segmentId, List.of());
+            entries.sort(Comparator.comparingLong(Entry::address));
+
+            var addresses = entries.stream().mapToLong(Entry::address).toArray();
+            var lengths = entries.stream().mapToInt(Entry::length).toArray();
+            var moved = bodies.compact(segmentId, addresses, lengths);
+
+            for (int i = 0; i < entries.size(); i++) {
+                var entry = entries.get(i);
+                var movedEntry = new Entry(entry.hash(), entry.access(), entry.createdAt(),
+                        entry.expireAt(), moved[i], entry.length());
+                pastes.put(entry.hash(), movedEntry);
+                if (entry.access() == Access.PUBLIC) {
+                    publicPastes.remove(entry);
+                    publicPastes.add(movedEntry);
+                }
+            }
+        }
+
+        log.info("Segments of texts were compacted: '{}' segments", segmentIds.size());
+
+        return true;
+    }
+
+    private long removeExpired() {
+
+        var now = LocalDateTime.now();
+        var deletedCount = new long[1];
+
+        expiryWheel.advance(System.currentTimeMillis(), hash -> {
+            var entry = pastes.get(hash);
+            // A hash may have been taken again by a later paste
+            if (entry != null && !entry.expireAt().isAfter(now)) {
+                remove(entry);
+                deletedCount[0]++;
+            }
+        });
+
+        if (deletedCount[0] > 0) {
+            pasteMetrics.expired(deletedCount[0]);
+        }
+
+        return deletedCount[0];
+    }
+
+    private void remove(Entry entry) {
+        pastes.remove(entry.hash());
+        publicPastes.remove(entry);
+        bodies.remove(entry.address(), entry.length());
+    }
+
+    private Entry find(@Nullable Long hash) {
+
+        if (hash == null) {
+            return null;
+        }
+
+        var entry = pastes.get(hash);
+        if (entry == null || !entry.expireAt().isAfter(LocalDateTime.now())) {
+            return null;
+        }
+
+        return entry;
+    }
+
+    /**
+     * Public pastes after the cursor, from the newest
+     */
+    private Iterable<Entry> newerThan(@Nullable PasteCursor after) {
+        return after == null ? publicPastes : publicPastes.tailSet(probe(after), false);
+    }
+
+    /**
+     * Public pastes after the cursor, from the oldest
+     */
+    private Iterable<Entry> olderThan(@Nullable PasteCursor after) {
+        return after == null
+                ? publicPastes.descendingSet()
+                : publicPastes.headSet(probe(after), false).descendingSet();
+    }
+
+    private static Entry probe(PasteCursor cursor) {
+        return new Entry(cursor.hash(), Access.PUBLIC, cursor.createdAt(), null, 0, 0);
+    }
+
+    private Paste toPaste(Entry entry) {
+        return toPaste(entry, getText(entry));
+    }
+
+    private Paste toPaste(Entry entry, byte[] text) {
+        return Paste.builder()
+                .hash(entry.hash())
+                .text(new String(text, StandardCharsets.UTF_8))
+                .access(entry.access())
+                .createdAt(entry.createdAt())
+                .expireAt(entry.expireAt())
+                .build();
+    }
+
+    private PasteContent toContent(Entry entry) {
+        var content = new PasteContent(getText(entry), PasteEncoding.IDENTITY);
+        content.setExpireAt(entry.expireAt());
+        return content;
+    }
+
+    private byte[] getText(Entry entry) {
+        return bodies.get(entry.address(), entry.length());
+    }
+
+    private <T> T found(@Nullable T result) {
+
+        if (result == null) {
+            pasteMetrics.notFound();
+        }
+
+        return result;
+    }
+
+    private <T> T read(Supplier<T> call) {
+        lock.readLock().lock();
+        try {
+            return call.get();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private <T> T write(Supplier<T> call) {
+        lock.writeLock().lock();
+        try {
+            return call.get();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Paste without its text, which is kept in the {@link PasteBodyStore} at the {@code address}
+     */
+    private record Entry(long hash, Access access, LocalDateTime createdAt, LocalDateTime expireAt,
+                         long address, int length) {
+    }
+
+    /**
+     * Paste with its text copied out of the {@link PasteBodyStore}, {@code null} if the paste has
+     * expired
+     */
+    private record Copy(Entry entry, @Nullable byte[] text) {
+    }
+}
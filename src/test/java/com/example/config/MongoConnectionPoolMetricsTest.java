@@ -0,0 +1,90 @@
+package com.example.config;
+
+import com.mongodb.ServerAddress;
+import com.mongodb.client.MongoDatabase;
+import com.mongodb.connection.ClusterId;
+import com.mongodb.connection.ConnectionId;
+import com.mongodb.connection.ServerId;
+import com.mongodb.event.ConnectionCheckOutFailedEvent;
+import com.mongodb.event.ConnectionCheckOutStartedEvent;
+import com.mongodb.event.ConnectionCheckedInEvent;
+import com.mongodb.event.ConnectionCheckedOutEvent;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.bson.Document;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest
+class MongoConnectionPoolMetricsTest {
+
+    @Autowired
+    private MongoDatabase db;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Test
+    void testUsageIsMeasured() {
+
+        db.runCommand(new Document("ping", 1));
+
+        var timer = meterRegistry.find("mongodb.driver.pool.usage").timer();
+        assertNotNull(timer);
+        assertTrue(timer.count() > 0);
+
+        var wait = meterRegistry.find("mongodb.driver.pool.wait").tag("outcome", "checked_out")
+                .timer();
+        assertNotNull(wait);
+        assertTrue(wait.count() > 0);
+
+        assertNotNull(meterRegistry.find("mongodb.driver.pool.checkedout").gauge());
+        assertNotNull(meterRegistry.find("mongodb.driver.pool.waitqueuesize").gauge());
+    }
+
+    @Test
+    void testCheckedInOnAnotherThread() throws InterruptedException {
+
+        var meterRegistry = new SimpleMeterRegistry();
+        var metrics = new MongoConnectionPoolMetrics(meterRegistry);
+        var connectionId = new ConnectionId(new ServerId(new ClusterId(), new ServerAddress()));
+
+        // Reactive driver checks a connection out on one thread and returns it on another
+        var thread = new Thread(() ->
+                metrics.connectionCheckedOut(new ConnectionCheckedOutEvent(connectionId)));
+        thread.start();
+        thread.join();
+
+        metrics.connectionCheckedIn(new ConnectionCheckedInEvent(connectionId));
+
+        assertEquals(1, meterRegistry.find("mongodb.driver.pool.usage").timer().count());
+        assertEquals(0, metrics.getCheckedOut());
+    }
+
+    @Test
+    void testWaitIsMeasured() {
+
+        var meterRegistry = new SimpleMeterRegistry();
+        var metrics = new MongoConnectionPoolMetrics(meterRegistry);
+        var serverId = new ServerId(new ClusterId(), new ServerAddress());
+
+        // Both operations wait, the first one gets a connection and the second one times out
+        metrics.connectionCheckOutStarted(new ConnectionCheckOutStartedEvent(serverId));
+        metrics.connectionCheckOutStarted(new ConnectionCheckOutStartedEvent(serverId));
+        metrics.connectionCheckedOut(new ConnectionCheckedOutEvent(new ConnectionId(serverId)));
+        metrics.connectionCheckOutFailed(new ConnectionCheckOutFailedEvent(serverId,
+                ConnectionCheckOutFailedEvent.Reason.TIMEOUT));
+
+        var checkedOut = meterRegistry.find("mongodb.driver.pool.wait")
+                .tag("outcome", "checked_out").timer();
+        var failed = meterRegistry.find("mongodb.driver.pool.wait").tag("outcome", "failed")
+                .timer();
+        assertEquals(1, checkedOut.count());
+        assertEquals(1, failed.count());
+    }
+}
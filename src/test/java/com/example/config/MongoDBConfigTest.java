@@ -0,0 +1,24 @@
+package com.example.config;
+
+import com.mongodb.MongoClientSettings;
+import com.mongodb.ServerAddress;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+@SpringBootTest(properties = "mongodb.host=mongodb://127.0.0.1:27017")
+class MongoDBConfigTest {
+
+    @Autowired
+    private MongoClientSettings mongoClientSettings;
+
+    @Test
+    void testClientConnectsToMongodbHost() {
+        assertEquals(List.of(new ServerAddress("127.0.0.1", 27017)),
+                     mongoClientSettings.getClusterSettings().getHosts());
+    }
+}
@@ -0,0 +1,59 @@
+package com.example.config;
+
+import com.mongodb.client.MongoDatabase;
+import org.bson.Document;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest
+class MongoDBIndexesInitializerTest {
+
+    @Autowired
+    private MongoDBIndexesInitializer mongoDBIndexesInitializer;
+
+    @Autowired
+    private MongoDatabase db;
+
+    @Value("${mongodb.collection.pastes}")
+    private String collectionName;
+
+    @AfterEach
+    void tearDown() {
+        var collection = db.getCollection(collectionName);
+        collection.drop();
+    }
+
+    @Test
+    void testCreateIndexes() {
+
+        mongoDBIndexesInitializer.createIndexes();
+
+        var indexNames = getIndexNames();
+        assertTrue(indexNames.containsAll(
+                Set.of("hash_1", "access_1_createdAt_-1_hash_-1", "grams_1", "expireAt_1")));
+
+        // Second run must not fail on the existing indexes
+        mongoDBIndexesInitializer.createIndexes();
+        assertEquals(indexNames, getIndexNames());
+    }
+
+    private Set<String> getIndexNames() {
+
+        var names = new HashSet<String>();
+
+        for (Document index : db.getCollection(collectionName).listIndexes()) {
+            names.add(index.getString("name"));
+        }
+
+        return names;
+    }
+}
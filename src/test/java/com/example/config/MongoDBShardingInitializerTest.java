@@ -0,0 +1,50 @@
+package com.example.config;
+
+import com.example.service.PasteDocuments;
+import com.mongodb.client.MongoDatabase;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(properties = "mongodb.sharding.enabled=true")
+class MongoDBShardingInitializerTest {
+
+    @Autowired
+    private MongoDBShardingInitializer mongoDBShardingInitializer;
+
+    @Autowired
+    private PasteDocuments pasteDocuments;
+
+    @Autowired
+    private MongoDatabase db;
+
+    @Value("${mongodb.collection.pastes}")
+    private String collectionName;
+
+    @AfterEach
+    void tearDown() {
+        db.getCollection(collectionName).drop();
+    }
+
+    @Test
+    void testShardCollectionsWithoutCluster() {
+        // A standalone server has no sharding, the application keeps working with unsharded
+        // collections
+        assertFalse(mongoDBShardingInitializer.shardCollections());
+    }
+
+    @Test
+    void testLookupByHashContainsShardKey() {
+
+        var shardKey = MongoDBShardingInitializer.PASTES_SHARD_KEY.toBsonDocument();
+        var filter = pasteDocuments.byHash(42L);
+
+        for (var field : shardKey.keySet()) {
+            assertEquals(42L, filter.get(field));
+        }
+    }
+}
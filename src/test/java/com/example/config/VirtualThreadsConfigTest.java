@@ -0,0 +1,23 @@
+package com.example.config;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class VirtualThreadsConfigTest {
+
+    @Test
+    void testVirtualThreadFactory() {
+
+        if (Runtime.version().feature() < 21) {
+            assertThrows(IllegalStateException.class,
+                         () -> VirtualThreadsConfig.virtualThreadFactory("test-"));
+            return;
+        }
+
+        var threadFactory = VirtualThreadsConfig.virtualThreadFactory("test-");
+        assertEquals("test-0", threadFactory.newThread(() -> { }).getName());
+        assertEquals("test-1", threadFactory.newThread(() -> { }).getName());
+    }
+}
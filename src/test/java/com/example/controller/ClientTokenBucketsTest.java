@@ -0,0 +1,99 @@
+package com.example.controller;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ClientTokenBucketsTest {
+
+    private final AtomicLong now = new AtomicLong(1_000_000_000L);
+
+    @Test
+    void testTryTake() {
+
+        // 10 tokens, 1 token per 100 ms
+        var buckets = new ClientTokenBuckets(10, 10, now::get);
+
+        assertEquals(0, buckets.tryTake("a", 4));
+        assertEquals(0, buckets.tryTake("a", 6));
+
+        // Empty bucket has the next token in 100 ms
+        assertEquals(TimeUnit.MILLISECONDS.toNanos(100), buckets.tryTake("a", 1));
+        assertEquals(TimeUnit.MILLISECONDS.toNanos(500), buckets.tryTake("a", 5));
+
+        // Other clients are not affected
+        assertEquals(0, buckets.tryTake("b", 10));
+
+        now.addAndGet(TimeUnit.MILLISECONDS.toNanos(500));
+        assertEquals(0, buckets.tryTake("a", 5));
+        assertTrue(buckets.tryTake("a", 1) > 0);
+
+        // Tokens above the capacity are not kept
+        now.addAndGet(TimeUnit.HOURS.toNanos(1));
+        assertEquals(0, buckets.tryTake("a", 10));
+        assertTrue(buckets.tryTake("a", 1) > 0);
+    }
+
+    @Test
+    void testCostAboveCapacity() {
+
+        var buckets = new ClientTokenBuckets(10, 10, now::get);
+
+        // A request costing more than the capacity takes the whole bucket rather than never passing
+        assertEquals(0, buckets.tryTake("a", 50));
+        assertTrue(buckets.tryTake("a", 1) > 0);
+    }
+
+    @Test
+    void testRemoveFull() {
+
+        var buckets = new ClientTokenBuckets(10, 10, now::get);
+
+        buckets.tryTake("a", 1);
+        buckets.tryTake("b", 10);
+        assertEquals(2, buckets.size());
+
+        now.addAndGet(TimeUnit.MILLISECONDS.toNanos(100));
+        assertEquals(1, buckets.removeFull());
+        assertEquals(1, buckets.size());
+
+        now.addAndGet(TimeUnit.SECONDS.toNanos(1));
+        assertEquals(1, buckets.removeFull());
+        assertEquals(0, buckets.size());
+    }
+
+    @Test
+    void testConcurrentTryTake() throws InterruptedException {
+
+        // Refill is negligible within the test, so exactly the capacity is taken
+        var buckets = new ClientTokenBuckets(1000, 0.001);
+        var taken = new AtomicInteger();
+        var threads = 8;
+        var done = new CountDownLatch(threads);
+
+        var executor = Executors.newFixedThreadPool(threads);
+        try {
+            for (int i = 0; i < threads; i++) {
+                executor.execute(() -> {
+                    for (int j = 0; j < 500; j++) {
+                        if (buckets.tryTake("client", 1) == 0) {
+                            taken.incrementAndGet();
+                        }
+                    }
+                    done.countDown();
+                });
+            }
+            assertTrue(done.await(10, TimeUnit.SECONDS));
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertEquals(1000, taken.get());
+    }
+}
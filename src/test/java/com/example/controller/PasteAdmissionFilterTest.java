@@ -0,0 +1,121 @@
+package com.example.controller;
+
+import com.example.model.PasteId;
+import com.example.service.PasteMetrics;
+import com.example.service.PasteService;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.RequestPostProcessor;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest(properties = {
+        "pastes.admission.enabled=true",
+        "pastes.admission.tokens.capacity=10",
+        "pastes.admission.tokens.per-second=0.001",
+        "pastes.admission.cost.lookup=1",
+        "pastes.admission.cost.search=5"
+})
+@AutoConfigureMockMvc
+class PasteAdmissionFilterTest {
+
+    private final String baseURL = "/api/v1/pastes";
+
+    @Autowired
+    private MockMvc mvc;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private PasteAdmissionFilter pasteAdmissionFilter;
+
+    @MockBean
+    private PasteService pasteService;
+
+    @Test
+    void testClientOutOfTokens() throws Exception {
+
+        var rejectedBefore = meterRegistry.counter("pastes.admission.rejected", "reason", "rate")
+                .count();
+
+        // Searches cost more than lookups, so they run out sooner
+        mvc.perform(get(baseURL + "/text/message").with(client("10.0.0.1")))
+                .andExpect(status().isOk());
+        mvc.perform(get(baseURL + "/text/message").with(client("10.0.0.1")))
+                .andExpect(status().isOk());
+        mvc.perform(get(baseURL + "/text/message").with(client("10.0.0.1")))
+                .andExpect(status().isTooManyRequests())
+                .andExpect(header().exists(HttpHeaders.RETRY_AFTER));
+
+        var hash = PasteId.format(1L);
+        for (int i = 0; i < 10; i++) {
+            mvc.perform(get(baseURL + "/" + hash).with(client("10.0.0.2")))
+                    .andExpect(status().isNotFound());
+        }
+        mvc.perform(get(baseURL + "/" + hash).with(client("10.0.0.2")))
+                .andExpect(status().isTooManyRequests());
+
+        // Other clients and other paths are not limited
+        mvc.perform(get(baseURL + "/" + hash).with(client("10.0.0.3")))
+                .andExpect(status().isNotFound());
+        mvc.perform(get("/actuator/health").with(client("10.0.0.2"))).andExpect(status().isOk());
+
+        assertEquals(rejectedBefore + 2,
+                     meterRegistry.counter("pastes.admission.rejected", "reason", "rate").count());
+        assertEquals(0, pasteAdmissionFilter.getConcurrent());
+    }
+
+    @Test
+    void testTooManyConcurrentRequests() throws Exception {
+
+        var meterRegistry = new SimpleMeterRegistry();
+        var filter = new PasteAdmissionFilter(new PasteMetrics(meterRegistry), 100, 50, 1);
+        var nestedStatus = new AtomicInteger();
+
+        // The nested request arrives while the first one is being handled
+        filter.doFilter(request("10.0.0.1"), new MockHttpServletResponse(), (request, response) -> {
+            var nested = new MockHttpServletResponse();
+            filter.doFilter(request("10.0.0.2"), nested,
+                    (r, s) -> fail("Request over the limit was handled"));
+            nestedStatus.set(nested.getStatus());
+        });
+
+        assertEquals(503, nestedStatus.get());
+        assertEquals(0, filter.getConcurrent());
+        assertEquals(1, meterRegistry
+                .counter("pastes.admission.rejected", "reason", "concurrency").count());
+
+        var response = new MockHttpServletResponse();
+        filter.doFilter(request("10.0.0.2"), response, (r, s) -> {
+        });
+        assertEquals(200, response.getStatus());
+    }
+
+    private MockHttpServletRequest request(String remoteAddress) {
+        var request = new MockHttpServletRequest("GET", baseURL + "/" + PasteId.format(1L));
+        request.setRemoteAddr(remoteAddress);
+        return request;
+    }
+
+    private static RequestPostProcessor client(String remoteAddress) {
+        return request -> {
+            request.setRemoteAddr(remoteAddress);
+            return request;
+        };
+    }
+}
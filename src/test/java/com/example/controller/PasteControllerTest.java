@@ -1,27 +1,44 @@
 package com.example.controller;
 
 import com.example.model.Paste;
+import com.example.model.PasteContent;
+import com.example.model.PasteCursor;
+import com.example.model.PasteEncoding;
+import com.example.model.PasteId;
 import com.example.model.PasteRequest;
+import com.example.model.PasteResult;
+import com.example.service.PasteIngestRejectedException;
+import com.example.service.PasteSearchTimeoutException;
 import com.example.service.PasteService;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
 
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
 import java.util.Collections;
 import java.util.List;
+import java.util.stream.Stream;
 
+import static org.hamcrest.Matchers.containsString;
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.*;
 import static org.mockito.Mockito.*;
-import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
-import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
 @SpringBootTest
 @AutoConfigureMockMvc
@@ -36,6 +53,9 @@ class PasteControllerTest {
     @Autowired
     private ObjectMapper objectMapper;
 
+    @Value("${pastes.upload.max-size.bytes}")
+    private int maxUploadSizeInBytes;
+
     private final String baseURL = "/api/v1/pastes";
     private List<Paste> pastes;
 
@@ -43,20 +63,30 @@ class PasteControllerTest {
     void setUp() {
 
         pastes = List.of(
-                PasteRequest.builder().text("first test message").access("PUBLIC").validityInSeconds(600).build().toPaste(),
-                PasteRequest.builder().text("second test message").access("unlisted").validityInSeconds(700).build().toPaste(),
-                PasteRequest.builder().text("third test message").access("public").validityInSeconds(0).build().toPaste(),
-                PasteRequest.builder().text("forth test message").access("PUBLIC").validityInSeconds(0).build().toPaste()
+                PasteRequest.builder().text("first test message").access("PUBLIC")
+                        .validityInSeconds(600).build().toPaste(),
+                PasteRequest.builder().text("second test message").access("unlisted")
+                        .validityInSeconds(700).build().toPaste(),
+                PasteRequest.builder().text("third test message").access("public")
+                        .validityInSeconds(0).build().toPaste(),
+                PasteRequest.builder().text("forth test message").access("PUBLIC")
+                        .validityInSeconds(0).build().toPaste()
         );
+        for (int i = 0; i < pastes.size(); i++) {
+            pastes.get(i).setHash(i + 2L);
+        }
 
-        when(pasteService.getByHash(0L)).thenReturn(null);
+        when(pasteService.getContentByHash(0L)).thenReturn(null);
         when(pasteService.getAllLast()).thenReturn(pastes);
-        when(pasteService.getAllBySubstring("-")).thenReturn(Collections.emptyList());
-        when(pasteService.create(any(PasteRequest.class))).thenReturn(Paste.builder().build());
+        when(pasteService.getAllBySubstring(eq("-"), isNull(), anyInt()))
+                .thenReturn(Collections.emptyList());
+        when(pasteService.create(any(PasteRequest.class)))
+                .thenReturn(Paste.builder().hash(1L).build());
 
         for (var paste : pastes) {
-            when(pasteService.getByHash(paste.getHash())).thenReturn(paste);
-            when(pasteService.getAllBySubstring(paste.getText())).thenReturn(List.of(paste));
+            when(pasteService.getContentByHash(paste.getHash())).thenReturn(paste.toContent());
+            when(pasteService.getAllBySubstring(eq(paste.getText()), isNull(), anyInt()))
+                    .thenReturn(List.of(paste));
         }
     }
 
@@ -69,16 +99,126 @@ class PasteControllerTest {
                     .andExpect(status().isOk())
                     .andExpect(content().string(paste.getText()));
 
-            verify(pasteService, times(1)).getByHash(paste.getHash());
+            mvc.perform(MockMvcRequestBuilders.get(baseURL + "/{hash}",
+                    PasteId.format(paste.getHash())))
+                    .andExpect(status().isOk())
+                    .andExpect(content().string(paste.getText()));
+
+            verify(pasteService, times(2)).getContentByHash(paste.getHash());
         }
 
         mvc.perform(MockMvcRequestBuilders.get(baseURL + "/{hash}", 0))
                 .andExpect(status().isNotFound());
 
-        verify(pasteService, times(1)).getByHash(0L);
+        verify(pasteService, times(1)).getContentByHash(0L);
 
         mvc.perform(MockMvcRequestBuilders.get(baseURL + "/{hash}", "-"))
                 .andExpect(status().isBadRequest());
+
+        mvc.perform(MockMvcRequestBuilders.get(baseURL + "/{hash}", "abc"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void testGetByHashWithCompressedText() throws Exception {
+
+        var text = "Compressed text";
+        var data = PasteEncoding.GZIP.encode(text.getBytes(StandardCharsets.UTF_8));
+        var paste = Paste.builder().hash(42L).content(new PasteContent(data, PasteEncoding.GZIP))
+                .build();
+
+        when(pasteService.getContentByHash(paste.getHash())).thenReturn(paste.toContent());
+
+        mvc.perform(MockMvcRequestBuilders.get(baseURL + "/{hash}", paste.getHash())
+                        .header(HttpHeaders.ACCEPT_ENCODING, "gzip, deflate"))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.CONTENT_ENCODING, "gzip"))
+                .andExpect(header().string(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING))
+                .andExpect(content().bytes(data));
+
+        mvc.perform(MockMvcRequestBuilders.get(baseURL + "/{hash}", paste.getHash())
+                        .header(HttpHeaders.ACCEPT_ENCODING, "gzip;q=0"))
+                .andExpect(status().isOk())
+                .andExpect(header().doesNotExist(HttpHeaders.CONTENT_ENCODING))
+                .andExpect(content().string(text));
+
+        // The coding listed by its name takes precedence over '*'
+        mvc.perform(MockMvcRequestBuilders.get(baseURL + "/{hash}", paste.getHash())
+                        .header(HttpHeaders.ACCEPT_ENCODING, "*;q=0, gzip"))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.CONTENT_ENCODING, "gzip"));
+
+        mvc.perform(MockMvcRequestBuilders.get(baseURL + "/{hash}", paste.getHash())
+                        .header(HttpHeaders.ACCEPT_ENCODING, "*;q=0.5, gzip;q=0"))
+                .andExpect(status().isOk())
+                .andExpect(header().doesNotExist(HttpHeaders.CONTENT_ENCODING))
+                .andExpect(content().string(text));
+
+        mvc.perform(MockMvcRequestBuilders.get(baseURL + "/{hash}", paste.getHash()))
+                .andExpect(status().isOk())
+                .andExpect(header().doesNotExist(HttpHeaders.CONTENT_ENCODING))
+                .andExpect(content().string(text));
+    }
+
+    @Test
+    void testGetByHashWithCacheHeaders() throws Exception {
+
+        var paste = pastes.get(0);
+        // Weak, so that the text may still be compressed on the fly
+        var eTag = "W/\"" + PasteId.format(paste.getHash()) + "\"";
+
+        var cacheControl =
+                mvc.perform(MockMvcRequestBuilders.get(baseURL + "/{hash}", paste.getHash()))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, eTag))
+                .andExpect(header().string(HttpHeaders.CACHE_CONTROL, containsString("public")))
+                .andReturn()
+                .getResponse()
+                .getHeader(HttpHeaders.CACHE_CONTROL);
+
+        // The paste is valid for 600 seconds
+        var maxAge = Integer.parseInt(cacheControl.replaceAll(".*max-age=(\\d+).*", "$1"));
+        assertTrue(maxAge > 590 && maxAge <= 600);
+
+        verify(pasteService, times(1)).getContentByHash(paste.getHash());
+    }
+
+    @Test
+    void testGetByHashIfNoneMatch() throws Exception {
+
+        var paste = pastes.get(0);
+        var eTag = "W/\"" + PasteId.format(paste.getHash()) + "\"";
+
+        when(pasteService.getExpireAtByHash(paste.getHash())).thenReturn(paste.getExpireAt());
+
+        mvc.perform(MockMvcRequestBuilders.get(baseURL + "/{hash}", paste.getHash())
+                        .header(HttpHeaders.IF_NONE_MATCH, "\"other\", " + eTag.substring(2)))
+                .andExpect(status().isNotModified())
+                .andExpect(header().string(HttpHeaders.ETAG, eTag))
+                .andExpect(header().string(HttpHeaders.CACHE_CONTROL, containsString("max-age=")))
+                .andExpect(content().string(""));
+
+        // The text is not loaded to answer a conditional request
+        verify(pasteService, never()).getContentByHash(paste.getHash());
+
+        // The compressed representation matches only while its encoding is accepted
+        var gzipETag = "\"" + PasteId.format(paste.getHash()) + "-gzip\"";
+
+        mvc.perform(MockMvcRequestBuilders.get(baseURL + "/{hash}", paste.getHash())
+                        .header(HttpHeaders.ACCEPT_ENCODING, "gzip")
+                        .header(HttpHeaders.IF_NONE_MATCH, gzipETag))
+                .andExpect(status().isNotModified())
+                .andExpect(header().string(HttpHeaders.ETAG, gzipETag));
+
+        mvc.perform(MockMvcRequestBuilders.get(baseURL + "/{hash}", paste.getHash())
+                        .header(HttpHeaders.IF_NONE_MATCH, gzipETag))
+                .andExpect(status().isOk())
+                .andExpect(content().string(paste.getText()));
+
+        // An expired paste is not found even if the client has it
+        mvc.perform(MockMvcRequestBuilders.get(baseURL + "/{hash}", 0)
+                        .header(HttpHeaders.IF_NONE_MATCH, "*"))
+                .andExpect(status().isNotFound());
     }
 
     @Test
@@ -90,12 +230,17 @@ class PasteControllerTest {
                 .getResponse()
                 .getContentAsString();
 
-        var typeFactory = objectMapper.getTypeFactory().constructCollectionType(List.class, String.class);
+        var typeFactory = objectMapper.getTypeFactory()
+                .constructCollectionType(List.class, String.class);
         List<String> textsReturned = objectMapper.readValue(jsonResponse, typeFactory);
 
         assertFalse(textsReturned.isEmpty());
 
-        verify(pasteService, times(1)).getAllLast();
+        mvc.perform(MockMvcRequestBuilders.get(baseURL))
+                .andExpect(header()
+                        .string(HttpHeaders.CACHE_CONTROL, containsString("s-maxage=5")));
+
+        verify(pasteService, times(2)).getAllLast();
     }
 
     @Test
@@ -103,26 +248,140 @@ class PasteControllerTest {
 
         for (var paste : pastes) {
 
-            String jsonResponse = mvc.perform(MockMvcRequestBuilders.get(baseURL + "/text/{text}", paste.getText()))
+            String jsonResponse = mvc.perform(
+                    MockMvcRequestBuilders.get(baseURL + "/text/{text}", paste.getText()))
                     .andExpect(status().isOk())
                     .andReturn()
                     .getResponse()
                     .getContentAsString();
 
-            var typeFactory = objectMapper.getTypeFactory().constructCollectionType(List.class, String.class);
+            var typeFactory = objectMapper.getTypeFactory()
+                    .constructCollectionType(List.class, String.class);
             List<String> textsReturned = objectMapper.readValue(jsonResponse, typeFactory);
 
             assertFalse(textsReturned.isEmpty());
             assertTrue(textsReturned.contains(paste.getText()));
 
-            verify(pasteService, times(1)).getAllBySubstring(paste.getText());
+            verify(pasteService, times(1))
+                    .getAllBySubstring(eq(paste.getText()), isNull(), anyInt());
         }
 
         mvc.perform(MockMvcRequestBuilders.get(baseURL + "/text/{text}", "-"))
                 .andExpect(status().isOk())
                 .andExpect(content().json("[]"));
 
-        verify(pasteService, times(1)).getAllBySubstring("-");
+        verify(pasteService, times(1)).getAllBySubstring(eq("-"), isNull(), anyInt());
+    }
+
+    @Test
+    void testGetAllLastByPages() throws Exception {
+
+        var cursor = PasteCursor.of(pastes.get(1));
+        when(pasteService.getAllLast(null, 2)).thenReturn(pastes.subList(0, 2));
+        when(pasteService.getAllLast(cursor, 2)).thenReturn(pastes.subList(2, 3));
+
+        // Full page has a link to the next one
+        mvc.perform(MockMvcRequestBuilders.get(baseURL).param("size", "2"))
+                .andExpect(status().isOk())
+                .andExpect(header()
+                        .string(HttpHeaders.LINK, containsString("cursor=" + cursor.encode())))
+                .andExpect(jsonPath("$.length()").value(2));
+
+        mvc.perform(MockMvcRequestBuilders.get(baseURL).param("size", "2")
+                .param("cursor", cursor.encode()))
+                .andExpect(status().isOk())
+                .andExpect(header().doesNotExist(HttpHeaders.LINK))
+                .andExpect(jsonPath("$[0]").value(pastes.get(2).getText()));
+
+        mvc.perform(MockMvcRequestBuilders.get(baseURL).param("cursor", "-"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void testGetAllBySubstringByPages() throws Exception {
+
+        var text = "message";
+        when(pasteService.getAllBySubstring(eq(text), isNull(), anyInt())).thenReturn(pastes);
+
+        // Page size is capped
+        mvc.perform(MockMvcRequestBuilders.get(baseURL + "/text/{text}", text)
+                .param("size", "100000"))
+                .andExpect(status().isOk());
+
+        verify(pasteService, times(1)).getAllBySubstring(text, null, 100);
+
+        mvc.perform(MockMvcRequestBuilders.get(baseURL + "/text/{text}", text).param("cursor", "-"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void testGetAllBySubstringTooLong() throws Exception {
+
+        var text = "message";
+        when(pasteService.getAllBySubstring(eq(text), isNull(), anyInt()))
+                .thenThrow(new PasteSearchTimeoutException(
+                        "Search by a substring took too long", null));
+
+        mvc.perform(MockMvcRequestBuilders.get(baseURL + "/text/{text}", text).param("size", "10"))
+                .andExpect(status().isServiceUnavailable())
+                .andExpect(header().exists(HttpHeaders.RETRY_AFTER));
+    }
+
+    @Test
+    void testStreamAllBySubstringTimeout() throws Exception {
+
+        var text = "message";
+        var timeout = new PasteSearchTimeoutException("Search by a substring took too long", null);
+        when(pasteService.streamAllBySubstring(text)).thenReturn(Stream.concat(
+                pastes.stream().limit(1),
+                Stream.generate(() -> { throw timeout; })));
+
+        var result = mvc.perform(MockMvcRequestBuilders.get(baseURL + "/text/{text}", text)
+                        .accept("application/x-ndjson"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        // The found paste is already sent, so the stream ends with an error record
+        var body = mvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andReturn()
+                .getResponse()
+                .getContentAsString();
+
+        var lines = body.split("\n");
+        assertEquals(2, lines.length);
+        assertEquals(objectMapper.writeValueAsString(pastes.get(0).getText()), lines[0]);
+        assertTrue(objectMapper.readTree(lines[1]).has("error"));
+    }
+
+    @Test
+    void testStreamAllBySubstring() throws Exception {
+
+        var text = "message";
+        when(pasteService.streamAllBySubstring(text)).thenReturn(pastes.stream());
+
+        var result = mvc.perform(MockMvcRequestBuilders.get(baseURL + "/text/{text}", text)
+                        .accept("application/x-ndjson"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        var expected = new StringBuilder();
+        for (var paste : pastes) {
+            expected.append(objectMapper.writeValueAsString(paste.getText())).append('\n');
+        }
+
+        mvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(content().string(expected.toString()));
+
+        when(pasteService.streamAllBySubstring("-")).thenReturn(Stream.empty());
+
+        result = mvc.perform(MockMvcRequestBuilders.get(baseURL + "/text/{text}", "-")
+                        .accept("application/x-ndjson"))
+                .andReturn();
+
+        mvc.perform(asyncDispatch(result))
+                .andExpect(content().string(""));
     }
 
     @Test
@@ -139,8 +398,158 @@ class PasteControllerTest {
         mvc.perform(MockMvcRequestBuilders.post(baseURL)
                         .contentType(MediaType.APPLICATION_JSON)
                         .content(jsonRequest))
-                .andExpect(status().isOk());
+                .andExpect(status().isOk())
+                .andExpect(content().string(PasteId.format(1L)));
+
+        verify(pasteService, times(1)).create(any(PasteRequest.class));
+
+        // Invalid requests are rejected before they reach the service
+        mvc.perform(MockMvcRequestBuilders.post(baseURL)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"text\": \"new message\", \"validityInSeconds\": 100}"))
+                .andExpect(status().isBadRequest())
+                .andExpect(content().string("Access is missing"));
 
         verify(pasteService, times(1)).create(any(PasteRequest.class));
     }
-}
\ No newline at end of file
+
+    @Test
+    void testCreateFromStream() throws Exception {
+
+        var text = "raw message";
+
+        when(pasteService.create(any(PasteRequest.class), any(InputStream.class)))
+                .thenAnswer(invocation -> {
+            var body = invocation.getArgument(1, InputStream.class).readAllBytes();
+            assertEquals(text, new String(body, StandardCharsets.UTF_8));
+            return Paste.builder().hash(2L).build();
+        });
+
+        mvc.perform(MockMvcRequestBuilders.post(baseURL + "/raw")
+                        .param("access", "public")
+                        .param("validityInSeconds", "100")
+                        .contentType(MediaType.TEXT_PLAIN)
+                        .content(text))
+                .andExpect(status().isOk())
+                .andExpect(content().string(PasteId.format(2L)));
+
+        mvc.perform(MockMvcRequestBuilders.post(baseURL + "/raw")
+                        .param("access", "secret")
+                        .param("validityInSeconds", "100")
+                        .content(text))
+                .andExpect(status().isBadRequest());
+
+        verify(pasteService, times(1)).create(any(PasteRequest.class), any(InputStream.class));
+    }
+
+    @Test
+    void testCreateFromStreamTooLarge() throws Exception {
+
+        when(pasteService.create(any(PasteRequest.class), any(InputStream.class)))
+                .thenAnswer(invocation -> {
+            invocation.getArgument(1, InputStream.class)
+                    .transferTo(OutputStream.nullOutputStream());
+            return Paste.builder().hash(2L).build();
+        });
+
+        var body = new byte[maxUploadSizeInBytes + 1];
+
+        // Rejected by the declared length before the body is read
+        mvc.perform(MockMvcRequestBuilders.post(baseURL + "/raw")
+                        .param("access", "public")
+                        .param("validityInSeconds", "100")
+                        .header(HttpHeaders.CONTENT_LENGTH, body.length)
+                        .content(body))
+                .andExpect(status().isPayloadTooLarge());
+
+        verify(pasteService, never()).create(any(PasteRequest.class), any(InputStream.class));
+
+        // Rejected while the body is read
+        mvc.perform(MockMvcRequestBuilders.post(baseURL + "/raw")
+                        .param("access", "public")
+                        .param("validityInSeconds", "100")
+                        .content(body))
+                .andExpect(status().isPayloadTooLarge());
+
+        mvc.perform(MockMvcRequestBuilders.post(baseURL + "/raw")
+                        .param("access", "public")
+                        .param("validityInSeconds", "100")
+                        .content(new byte[maxUploadSizeInBytes]))
+                .andExpect(status().isOk());
+    }
+
+    @Test
+    void testGetByHashWithStreamedText() throws Exception {
+
+        var text = "Streamed text";
+        var data = PasteEncoding.GZIP.encode(text.getBytes(StandardCharsets.UTF_8));
+        var content = new PasteContent(() -> new ByteArrayInputStream(data), data.length,
+                PasteEncoding.GZIP);
+
+        when(pasteService.getContentByHash(42L)).thenReturn(content);
+
+        mvc.perform(MockMvcRequestBuilders.get(baseURL + "/{hash}", 42L)
+                        .header(HttpHeaders.ACCEPT_ENCODING, "gzip"))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.CONTENT_ENCODING, "gzip"))
+                .andExpect(header().longValue(HttpHeaders.CONTENT_LENGTH, data.length))
+                .andExpect(content().bytes(data));
+
+        // Decoded while it is sent to a client that does not accept the encoding
+        mvc.perform(MockMvcRequestBuilders.get(baseURL + "/{hash}", 42L))
+                .andExpect(status().isOk())
+                .andExpect(header().doesNotExist(HttpHeaders.CONTENT_ENCODING))
+                .andExpect(content().string(text));
+    }
+
+    @Test
+    void testCreateWhenIngestIsFull() throws Exception {
+
+        when(pasteService.create(any(PasteRequest.class)))
+                .thenThrow(new PasteIngestRejectedException(
+                        "Too many pastes are waiting to be written"));
+
+        var pasteRequest = PasteRequest.builder().text("new message").access("PUBLIC")
+                .validityInSeconds(100).build();
+
+        mvc.perform(MockMvcRequestBuilders.post(baseURL)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(pasteRequest)))
+                .andExpect(status().isTooManyRequests())
+                .andExpect(header().exists(HttpHeaders.RETRY_AFTER));
+    }
+
+    @Test
+    void testCreateAll() throws Exception {
+
+        var pasteRequests = List.of(
+                PasteRequest.builder().text("first artifact").access("PUBLIC")
+                        .validityInSeconds(100).build(),
+                PasteRequest.builder().text("second artifact").validityInSeconds(100).build());
+
+        when(pasteService.createAll(anyList())).thenReturn(List.of(
+                PasteResult.created(Paste.builder().hash(1L).build()),
+                PasteResult.failed("Access is missing")));
+
+        mvc.perform(MockMvcRequestBuilders.post(baseURL + "/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(pasteRequests)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].hash").value(PasteId.format(1L)))
+                .andExpect(jsonPath("$[0].error").doesNotExist())
+                .andExpect(jsonPath("$[1].hash").doesNotExist())
+                .andExpect(jsonPath("$[1].error").value("Access is missing"));
+
+        verify(pasteService, times(1)).createAll(pasteRequests);
+
+        // Batch larger than pastes.batch.max-size is rejected as a whole
+        var tooLarge = Collections.nCopies(101, pasteRequests.get(0));
+
+        mvc.perform(MockMvcRequestBuilders.post(baseURL + "/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(tooLarge)))
+                .andExpect(status().isBadRequest());
+
+        verifyNoMoreInteractions(pasteService);
+    }
+}
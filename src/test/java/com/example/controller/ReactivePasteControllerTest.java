@@ -0,0 +1,204 @@
+package com.example.controller;
+
+import com.example.model.Paste;
+import com.example.model.PasteCursor;
+import com.example.model.PasteId;
+import com.example.model.PasteRequest;
+import com.example.service.PasteSearchTimeoutException;
+import com.example.service.ReactivePasteService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.reactive.AutoConfigureWebTestClient;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+// TTL indexes of the reactive profile would replace the indexes of the collections shared with
+// other tests
+@SpringBootTest(properties = "pastes.expiry.strategy=scheduler")
+@AutoConfigureWebTestClient
+@ActiveProfiles("reactive")
+class ReactivePasteControllerTest {
+
+    @Autowired
+    private WebTestClient webTestClient;
+
+    @MockBean
+    private ReactivePasteService pasteService;
+
+    private final String baseURL = "/api/v1/pastes";
+    private List<Paste> pastes;
+
+    @BeforeEach
+    void setUp() {
+
+        pastes = List.of(
+                PasteRequest.builder().text("first test message").access("PUBLIC")
+                        .validityInSeconds(600).build().toPaste(),
+                PasteRequest.builder().text("second test message").access("PUBLIC")
+                        .validityInSeconds(700).build().toPaste()
+        );
+        for (int i = 0; i < pastes.size(); i++) {
+            pastes.get(i).setHash(i + 2L);
+        }
+
+        when(pasteService.getByHash(anyLong())).thenReturn(Mono.empty());
+        when(pasteService.getAllLast()).thenReturn(Flux.fromIterable(pastes));
+        when(pasteService.create(any(PasteRequest.class)))
+                .thenReturn(Mono.just(Paste.builder().hash(1L).build()));
+
+        for (var paste : pastes) {
+            when(pasteService.getByHash(paste.getHash())).thenReturn(Mono.just(paste));
+        }
+    }
+
+    @Test
+    void testGetByHash() {
+
+        for (var paste : pastes) {
+            webTestClient.get().uri(baseURL + "/{hash}", PasteId.format(paste.getHash()))
+                    .exchange()
+                    .expectStatus().isOk()
+                    .expectBody(String.class).isEqualTo(paste.getText());
+        }
+
+        webTestClient.get().uri(baseURL + "/{hash}", 0)
+                .exchange()
+                .expectStatus().isNotFound();
+
+        webTestClient.get().uri(baseURL + "/{hash}", "abc")
+                .exchange()
+                .expectStatus().isBadRequest();
+    }
+
+    @Test
+    void testGetByHashOfFile() {
+
+        var paste = Paste.builder().hash(10L).fileId("65300000000000000000000a").build();
+        when(pasteService.getByHash(paste.getHash())).thenReturn(Mono.just(paste));
+
+        // The text of a file is not read by the reactive service, so it is not answered with an
+        // empty text
+        webTestClient.get().uri(baseURL + "/{hash}", PasteId.format(paste.getHash()))
+                .exchange()
+                .expectStatus().isEqualTo(HttpStatus.NOT_IMPLEMENTED);
+    }
+
+    @Test
+    void testGetAllLast() {
+
+        webTestClient.get().uri(baseURL)
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.length()").isEqualTo(pastes.size())
+                .jsonPath("$[0]").isEqualTo(pastes.get(0).getText())
+                .jsonPath("$[1]").isEqualTo(pastes.get(1).getText());
+    }
+
+    @Test
+    void testGetAllBySubstringByPages() {
+
+        when(pasteService.getAllBySubstring(eq("test"), isNull(), eq(2)))
+                .thenReturn(Flux.fromIterable(pastes));
+
+        var link = webTestClient.get().uri(baseURL + "/text/{text}?size=2", "test")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.length()").isEqualTo(2)
+                .returnResult()
+                .getResponseHeaders()
+                .getFirst(HttpHeaders.LINK);
+
+        var next = PasteCursor.of(pastes.get(1)).encode();
+        assertTrue(link.contains("cursor=" + next));
+
+        webTestClient.get().uri(baseURL + "/text/{text}?cursor=-", "test")
+                .exchange()
+                .expectStatus().isBadRequest();
+    }
+
+    @Test
+    void testGetAllBySubstringTimeout() {
+
+        when(pasteService.getAllBySubstring(eq("test"), isNull(), eq(10))).thenReturn(
+                Flux.error(new PasteSearchTimeoutException(
+                        "Search by a substring took too long", null)));
+
+        webTestClient.get().uri(baseURL + "/text/{text}?size=10", "test")
+                .exchange()
+                .expectStatus().isEqualTo(HttpStatus.SERVICE_UNAVAILABLE)
+                .expectHeader().exists(HttpHeaders.RETRY_AFTER);
+    }
+
+    @Test
+    void testStreamAllBySubstring() {
+
+        when(pasteService.getAllBySubstring("test")).thenReturn(Flux.fromIterable(pastes));
+
+        webTestClient.get().uri(baseURL + "/text/{text}", "test")
+                .accept(MediaType.APPLICATION_NDJSON)
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody(String.class)
+                .isEqualTo("\"first test message\"\n\"second test message\"\n");
+    }
+
+    @Test
+    void testStreamAllBySubstringTimeout() {
+
+        when(pasteService.getAllBySubstring("test")).thenReturn(Flux.concat(
+                Flux.just(pastes.get(0)),
+                Flux.error(new PasteSearchTimeoutException(
+                        "Search by a substring took too long", null))));
+
+        // The found paste is already sent, so the stream ends with an error record
+        webTestClient.get().uri(baseURL + "/text/{text}", "test")
+                .accept(MediaType.APPLICATION_NDJSON)
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody(String.class)
+                .value(body -> assertTrue(body.startsWith("\"first test message\"\n{\"error\":")));
+    }
+
+    @Test
+    void testCreate() {
+
+        var pasteRequest = PasteRequest.builder().text("new message").access("PUBLIC")
+                .validityInSeconds(100).build();
+
+        webTestClient.post().uri(baseURL)
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(pasteRequest)
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody(String.class).isEqualTo(PasteId.format(1L));
+
+        verify(pasteService, times(1)).create(any(PasteRequest.class));
+
+        // Invalid requests are rejected before they reach the service
+        webTestClient.post().uri(baseURL)
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(PasteRequest.builder().text("new message").validityInSeconds(100)
+                        .build())
+                .exchange()
+                .expectStatus().isBadRequest()
+                .expectBody(String.class).isEqualTo("Access is missing");
+
+        verify(pasteService, times(1)).create(any(PasteRequest.class));
+    }
+}
@@ -0,0 +1,36 @@
+package com.example.model;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PasteIdTest {
+
+    @Test
+    void testFormatAndParse() {
+        for (var hash : List.of(0L, 1L, -1L, 42L, Long.MAX_VALUE, Long.MIN_VALUE,
+                7_106_233_521_782_784_000L)) {
+
+            var id = PasteId.format(hash);
+
+            assertEquals(11, id.length());
+            assertTrue(Character.isLetter(id.charAt(0)));
+            assertEquals(hash, PasteId.parse(id));
+        }
+    }
+
+    @Test
+    void testParseDecimal() {
+        assertEquals(12345L, PasteId.parse("12345"));
+        assertEquals(-12345L, PasteId.parse("-12345"));
+    }
+
+    @Test
+    void testParseWrongFormat() {
+        for (var id : List.of("", "-", "abc", "AAAAAAAAAA!", "zzzzzzzzzzz", "AAAAAAAAAAAA")) {
+            assertThrows(IllegalArgumentException.class, () -> PasteId.parse(id));
+        }
+    }
+}
@@ -0,0 +1,139 @@
+package com.example.service;
+
+import com.example.model.Access;
+import com.example.model.Paste;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LastPastesFeedTest {
+
+    private static final int LIMIT = 3;
+
+    private LastPastesFeed lastPastesFeed;
+
+    private LocalDateTime now;
+
+    @BeforeEach
+    void setUp() {
+        lastPastesFeed = new LastPastesFeed(LIMIT);
+        now = LocalDateTime.now().truncatedTo(ChronoUnit.SECONDS);
+    }
+
+    @Test
+    void testAdd() {
+
+        var paste = paste(1, Access.PUBLIC, 0, 600);
+
+        // Pastes are not added until the feed is loaded
+        lastPastesFeed.add(paste);
+        assertFalse(lastPastesFeed.isLoaded());
+        assertTrue(lastPastesFeed.getPastes().isEmpty());
+
+        lastPastesFeed.reset(List.of());
+        lastPastesFeed.add(paste);
+        lastPastesFeed.add(paste(2, Access.UNLISTED, 1, 600));
+
+        assertEquals(List.of(paste), lastPastesFeed.getPastes());
+    }
+
+    @Test
+    void testLimitAndOrder() {
+
+        lastPastesFeed.reset(List.of());
+
+        var pastes = List.of(
+                paste(1, Access.PUBLIC, 0, 600),
+                paste(2, Access.PUBLIC, 3, 600),
+                paste(3, Access.PUBLIC, 1, 600),
+                paste(4, Access.PUBLIC, 2, 600)
+        );
+        pastes.forEach(lastPastesFeed::add);
+
+        assertEquals(List.of(pastes.get(1), pastes.get(3), pastes.get(2)),
+                     lastPastesFeed.getPastes());
+    }
+
+    @Test
+    void testExpiredPastes() {
+
+        var pasteValid = paste(1, Access.PUBLIC, -10, 600);
+        var pasteExpired = paste(2, Access.PUBLIC, -5, 0);
+
+        lastPastesFeed.reset(List.of());
+        lastPastesFeed.add(pasteValid);
+        assertFalse(lastPastesFeed.hasExpired());
+
+        // Expired pastes are dropped as soon as they get into the feed
+        lastPastesFeed.add(pasteExpired);
+        assertFalse(lastPastesFeed.hasExpired());
+        assertEquals(List.of(pasteValid), lastPastesFeed.getPastes());
+    }
+
+    @Test
+    void testRefresh() {
+
+        var pasteLoaded = paste(1, Access.PUBLIC, 0, 600);
+        var pasteAdded = paste(2, Access.PUBLIC, 1, 600);
+
+        lastPastesFeed.reset(List.of());
+
+        lastPastesFeed.refresh(() -> {
+            // Paste added while the storage is being read must not be lost
+            lastPastesFeed.add(pasteAdded);
+            // Nested refreshes are skipped
+            lastPastesFeed.refresh(() -> fail("Refresh is already running"));
+            return List.of(pasteLoaded);
+        });
+
+        assertEquals(List.of(pasteAdded, pasteLoaded), lastPastesFeed.getPastes());
+    }
+
+    @Test
+    void testFirstRefresh() {
+
+        var pasteLoaded = paste(1, Access.PUBLIC, 0, 600);
+        var pasteAdded = paste(2, Access.PUBLIC, 1, 600);
+
+        // Paste added while the feed is loaded for the first time must not be lost
+        lastPastesFeed.refresh(() -> {
+            lastPastesFeed.add(pasteAdded);
+            return List.of(pasteLoaded);
+        });
+
+        assertEquals(List.of(pasteAdded, pasteLoaded), lastPastesFeed.getPastes());
+    }
+
+    @Test
+    void testFailedFirstRefresh() {
+
+        assertThrows(IllegalStateException.class, () -> lastPastesFeed.refresh(() -> {
+            lastPastesFeed.add(paste(1, Access.PUBLIC, 0, 600));
+            throw new IllegalStateException("Storage is not available");
+        }));
+
+        // The feed is loaded again on the next request, even though a paste was added during the
+        // failed load
+        assertFalse(lastPastesFeed.isLoaded());
+        assertTrue(lastPastesFeed.getPastes().isEmpty());
+    }
+
+    private Paste paste(long hash, Access access, long createdAfterSeconds,
+                        long validityInSeconds) {
+
+        var createdAt = now.plusSeconds(createdAfterSeconds);
+
+        return Paste.builder()
+                .hash(hash)
+                .text("message " + hash)
+                .access(access)
+                .createdAt(createdAt)
+                .expireAt(now.plusSeconds(validityInSeconds))
+                .build();
+    }
+}
@@ -0,0 +1,151 @@
+package com.example.service;
+
+import com.example.model.Paste;
+import com.example.model.PasteRequest;
+import com.mongodb.client.MongoDatabase;
+import org.bson.Document;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.List;
+import java.util.TreeSet;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(
+        properties = {"pastes.expiry.strategy=buckets", "pastes.expiry.bucket.refresh.millis=0"})
+class PasteBucketsTest {
+
+    @Autowired
+    private PasteBuckets pasteBuckets;
+
+    @Autowired
+    private PasteServiceMongoDB pasteServiceMongoDB;
+
+    @Autowired
+    private MongoDatabase db;
+
+    @Value("${mongodb.collection.pastes}")
+    private String collectionName;
+
+    @AfterEach
+    void tearDown() {
+        for (var name : db.listCollectionNames()) {
+            if (name.startsWith(collectionName)) {
+                db.getCollection(name).drop();
+            }
+        }
+    }
+
+    @Test
+    void testHashKeepsBucket() {
+
+        var now = LocalDateTime.now();
+        var hash = pasteBuckets.inBucket(Long.MAX_VALUE, now);
+
+        assertTrue(hash > 0);
+        assertEquals(pasteBuckets.inBucket(12345L, now) >>> PasteBuckets.HASH_BITS,
+                     hash >>> PasteBuckets.HASH_BITS);
+        assertEquals(pasteBuckets.collectionOf(pasteBuckets.inBucket(1L, now)),
+                     pasteBuckets.collectionOf(hash));
+        assertNotEquals(pasteBuckets.collectionOf(hash),
+                        pasteBuckets.collectionOf(pasteBuckets.inBucket(1L, now.plusDays(1))));
+
+        // Pastes that never expire in practice share the last bucket
+        var forever = pasteBuckets.inBucket(1L, now.plusYears(1000));
+        assertEquals(PasteBuckets.MAX_BUCKET, forever >>> PasteBuckets.HASH_BITS);
+        assertTrue(forever > 0);
+    }
+
+    @Test
+    void testPastesAreStoredByExpiration() {
+
+        var shortLived = pasteServiceMongoDB.create(request(600));
+        var longLived = pasteServiceMongoDB.create(request(3 * 24 * 3600));
+
+        var shortCollection = pasteBuckets.collectionOf(shortLived.getHash());
+        var longCollection = pasteBuckets.collectionOf(longLived.getHash());
+
+        assertNotEquals(shortCollection, longCollection);
+        assertEquals(1, db.getCollection(shortCollection).countDocuments());
+        assertEquals(1, db.getCollection(longCollection).countDocuments());
+        assertEquals(List.of(shortCollection, longCollection), pasteBuckets.liveCollections());
+
+        assertEquals(List.of(longLived, shortLived), pasteServiceMongoDB.getAllLast(null, 100));
+    }
+
+    @Test
+    void testExpiredBucketsAreDropped() {
+
+        var expired = request(0).toPaste();
+        expired.setExpireAt(expired.getExpireAt().minusHours(3));
+        expired.setHash(pasteBuckets.inBucket(1L, expired.getExpireAt()));
+        var expiredCollection = pasteBuckets.collectionFor(expired);
+        db.getCollection(expiredCollection, Paste.class).insertOne(expired);
+
+        var alive = pasteServiceMongoDB.create(request(600));
+        var aliveCollection = pasteBuckets.collectionOf(alive.getHash());
+
+        assertEquals(List.of(aliveCollection), pasteBuckets.liveCollections());
+
+        assertEquals(1, pasteBuckets.dropExpired(LocalDateTime.now()));
+
+        var names = db.listCollectionNames().into(new ArrayList<>());
+        assertFalse(names.contains(expiredCollection));
+        assertTrue(names.contains(aliveCollection));
+        assertEquals(alive, pasteServiceMongoDB.getByHash(alive.getHash()));
+    }
+
+    @Test
+    void testLongLivedPastesShareCoarseBuckets() {
+
+        var now = LocalDateTime.now();
+
+        // A year of pastes expiring every hour is kept in a bounded number of collections
+        var collections = new TreeSet<String>();
+        for (int hours = 1; hours <= 365 * 24; hours++) {
+            collections.add(
+                    pasteBuckets.collectionOf(pasteBuckets.inBucket(1L, now.plusHours(hours))));
+        }
+        assertTrue(collections.size() <= 48 + 13 + 2, "Too many buckets: " + collections.size());
+
+        // Pastes beyond the horizon share the last bucket, which is cleaned paste by paste
+        var expired = pasteServiceMongoDB.create(request(400 * 24 * 3600));
+        assertEquals(pasteBuckets.lastCollection(), pasteBuckets.collectionOf(expired.getHash()));
+        db.getCollection(pasteBuckets.lastCollection()).updateOne(
+                new Document("hash", expired.getHash()),
+                new Document("$set", new Document("expireAt",
+                        new Date(System.currentTimeMillis() - 1000))));
+
+        pasteServiceMongoDB.removeExpiredPastes();
+
+        assertEquals(0, db.getCollection(pasteBuckets.lastCollection()).countDocuments());
+    }
+
+    @Test
+    void testMerge() {
+
+        var merged = PasteBuckets.merge(List.of(
+                List.of(1, 4, 7).iterator(),
+                List.<Integer>of().iterator(),
+                List.of(2, 3, 8, 9).iterator()), Comparator.naturalOrder());
+
+        var values = new ArrayList<Integer>();
+        merged.forEachRemaining(values::add);
+
+        assertEquals(List.of(1, 2, 3, 4, 7, 8, 9), values);
+    }
+
+    private static PasteRequest request(int validityInSeconds) {
+        return PasteRequest.builder()
+                .text("bucketed test message").access("PUBLIC").validityInSeconds(validityInSeconds)
+                .build();
+    }
+}
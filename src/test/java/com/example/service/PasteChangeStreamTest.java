@@ -0,0 +1,122 @@
+package com.example.service;
+
+import com.example.model.Paste;
+import com.example.model.PasteChange;
+import com.example.model.PasteRequest;
+import com.mongodb.client.MongoDatabase;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.event.EventListener;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(properties = {
+        "pastes.changes.enabled=true",
+        "pastes.changes.max-await.millis=100",
+        "pastes.changes.polling.interval.millis=100",
+        "pastes.changes.polling.lag.millis=1000"
+})
+class PasteChangeStreamTest {
+
+    @Autowired
+    private LastPastesFeed lastPastesFeed;
+
+    @Autowired
+    private PasteServiceMongoDB pasteServiceMongoDB;
+
+    @Autowired
+    private PasteChangeStream pasteChangeStream;
+
+    @Autowired
+    private MongoDatabase db;
+
+    @Autowired
+    private BlockingQueue<PasteChange> changes;
+
+    @Value("${mongodb.collection.pastes}")
+    private String collectionName;
+
+    @Value("${mongodb.collection.changes}")
+    private String changesCollectionName;
+
+    @AfterEach
+    void tearDown() {
+        db.getCollection(collectionName).drop();
+        db.getCollection(changesCollectionName).drop();
+        changes.clear();
+    }
+
+    @Test
+    void testPasteInsertedByAnotherNode() throws InterruptedException {
+
+        // The feed is replaced with the pastes of the storage, rather than merged with the pastes
+        // of other tests
+        lastPastesFeed.reset(pasteServiceMongoDB.getAllLast(10));
+
+        // Written straight to the collection, as another node would do
+        var paste = PasteRequest.builder().text("paste of another node").access("PUBLIC")
+                .validityInSeconds(600).build().toPaste();
+        paste.setHash(1L);
+        db.getCollection(collectionName, Paste.class).insertOne(paste);
+
+        var change = nextChangeOf(paste.getHash());
+        assertEquals(PasteChange.Type.INSERT, change.type());
+        assertEquals(paste.getText(), change.paste().getText());
+        assertEquals(paste.getAccess(), change.paste().getAccess());
+
+        // Subscribers are notified one by one, the feed may get the paste after this test
+        var deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(1);
+        while (pasteServiceMongoDB.getAllLast().stream()
+                .noneMatch(p -> p.getHash().equals(paste.getHash()))
+                && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertTrue(pasteServiceMongoDB.getAllLast().stream()
+                .anyMatch(p -> p.getHash().equals(paste.getHash())));
+
+        // A paste is published once however many polls find it
+        if (pasteChangeStream.isPolling()) {
+            Thread.sleep(500);
+            assertTrue(changes.stream().noneMatch(c -> c.hash() == paste.getHash()));
+        }
+    }
+
+    private PasteChange nextChangeOf(long hash) throws InterruptedException {
+
+        var deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+
+        while (System.nanoTime() < deadline) {
+            var change = changes.poll(100, TimeUnit.MILLISECONDS);
+            if (change != null && change.hash() == hash) {
+                return change;
+            }
+        }
+
+        return fail("Change of paste '" + hash + "' was not published");
+    }
+
+    @TestConfiguration
+    static class ChangesConfig {
+
+        private final BlockingQueue<PasteChange> changes = new LinkedBlockingQueue<>();
+
+        @Bean
+        BlockingQueue<PasteChange> changes() {
+            return changes;
+        }
+
+        @EventListener
+        void onPasteChange(PasteChange change) {
+            changes.add(change);
+        }
+    }
+}
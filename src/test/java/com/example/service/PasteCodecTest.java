@@ -0,0 +1,114 @@
+package com.example.service;
+
+import com.example.model.Access;
+import com.example.model.Paste;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.bson.BsonDocument;
+import org.bson.BsonDocumentReader;
+import org.bson.BsonDocumentWriter;
+import org.bson.BsonString;
+import org.bson.codecs.DecoderContext;
+import org.bson.codecs.EncoderContext;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.temporal.ChronoUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PasteCodecTest {
+
+    private PasteCodec pasteCodec;
+
+    private LocalDateTime now;
+
+    @BeforeEach
+    void setUp() {
+        var pasteTrigrams = new PasteTrigrams(65536, 512, 64);
+        pasteCodec = new PasteCodec(new PasteDocuments(pasteTrigrams), pasteTrigrams,
+                new PasteMetrics(new SimpleMeterRegistry()));
+        now = LocalDateTime.now().truncatedTo(ChronoUnit.MILLIS);
+    }
+
+    @Test
+    void testEncodeAndDecode() {
+
+        var paste = Paste.builder()
+                .hash(42L)
+                .text("test message")
+                .access(Access.UNLISTED)
+                .createdAt(now)
+                .expireAt(now.plusSeconds(600))
+                .build();
+
+        var document = encode(paste);
+
+        assertTrue(document.isObjectId("_id"));
+        assertEquals(42L, document.getInt64("hash").getValue());
+        assertEquals("test message", document.getString("text").getValue());
+        assertFalse(document.containsKey("blobId"));
+        assertEquals("UNLISTED", document.getString("access").getValue());
+        assertEquals(now.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli(),
+                document.getDateTime("createdAt").getValue());
+        assertFalse(document.getArray("grams").isEmpty());
+        assertEquals(65536, document.getInt32("gramBuckets").getValue());
+
+        assertEquals(paste, decode(document));
+    }
+
+    @Test
+    void testEncodeAndDecodeWithBlob() {
+
+        var paste = Paste.builder()
+                .hash(43L)
+                .text("test message stored in a blob")
+                .access(Access.PUBLIC)
+                .createdAt(now)
+                .expireAt(now.plusSeconds(600))
+                .blobId("blob")
+                .build();
+
+        var document = encode(paste);
+
+        assertFalse(document.containsKey("text"));
+        assertEquals("blob", document.getString("blobId").getValue());
+
+        // Text stored in a blob is not loaded by the codec
+        var decoded = decode(document);
+        assertNull(decoded.getText());
+        assertEquals("blob", decoded.getBlobId());
+        assertEquals(paste.getCreatedAt(), decoded.getCreatedAt());
+        assertEquals(paste.getExpireAt(), decoded.getExpireAt());
+    }
+
+    @Test
+    void testDecodeUnknownAccess() {
+
+        var paste = Paste.builder()
+                .hash(44L)
+                .text("test message")
+                .access(Access.PUBLIC)
+                .createdAt(now)
+                .expireAt(now)
+                .build();
+
+        var document = encode(paste);
+        document.put("access", new BsonString("PRIVATE"));
+
+        assertThrows(IllegalArgumentException.class, () -> decode(document));
+    }
+
+    private BsonDocument encode(Paste paste) {
+        var document = new BsonDocument();
+        pasteCodec.encode(new BsonDocumentWriter(document), paste,
+                EncoderContext.builder().build());
+        return document;
+    }
+
+    private Paste decode(BsonDocument document) {
+        return pasteCodec.decode(new BsonDocumentReader(document),
+                DecoderContext.builder().build());
+    }
+}
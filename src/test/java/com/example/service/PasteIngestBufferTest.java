@@ -0,0 +1,99 @@
+package com.example.service;
+
+import com.example.model.Access;
+import com.example.model.Paste;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PasteIngestBufferTest {
+
+    private static final int CAPACITY = 3;
+    private static final int BATCH_SIZE = 2;
+
+    private PasteIngestBuffer pasteIngestBuffer;
+
+    @BeforeEach
+    void setUp() {
+        pasteIngestBuffer = new PasteIngestBuffer(CAPACITY, BATCH_SIZE);
+    }
+
+    @Test
+    void testOffer() {
+
+        for (long hash = 1; hash <= CAPACITY; hash++) {
+            assertTrue(pasteIngestBuffer.offer(paste(hash)));
+        }
+
+        // Full buffer rejects new pastes
+        assertFalse(pasteIngestBuffer.offer(paste(CAPACITY + 1)));
+        assertEquals(CAPACITY, pasteIngestBuffer.size());
+
+        assertEquals(paste(1), pasteIngestBuffer.get(1));
+        assertNull(pasteIngestBuffer.get(CAPACITY + 1));
+    }
+
+    @Test
+    void testPollAndComplete() {
+
+        pasteIngestBuffer.offer(paste(1));
+        pasteIngestBuffer.offer(paste(2));
+        pasteIngestBuffer.offer(paste(3));
+
+        var batch = pasteIngestBuffer.poll(BATCH_SIZE);
+        assertEquals(List.of(paste(1), paste(2)), batch);
+        assertEquals(1, pasteIngestBuffer.size());
+
+        // Taken pastes are readable until they are completed
+        assertEquals(paste(1), pasteIngestBuffer.get(1));
+        assertTrue(pasteIngestBuffer.offer(paste(4)));
+
+        pasteIngestBuffer.complete(batch);
+        assertNull(pasteIngestBuffer.get(1));
+        assertNull(pasteIngestBuffer.get(2));
+
+        assertEquals(List.of(paste(3), paste(4)), pasteIngestBuffer.poll(BATCH_SIZE));
+        assertTrue(pasteIngestBuffer.poll(BATCH_SIZE).isEmpty());
+    }
+
+    @Test
+    void testRequeue() {
+
+        pasteIngestBuffer.offer(paste(1));
+
+        var batch = pasteIngestBuffer.poll(BATCH_SIZE);
+        pasteIngestBuffer.requeue(batch);
+
+        assertEquals(1, pasteIngestBuffer.size());
+        assertEquals(paste(1), pasteIngestBuffer.get(1));
+        assertEquals(batch, pasteIngestBuffer.poll(BATCH_SIZE));
+    }
+
+    @Test
+    void testAwaitBatch() {
+
+        pasteIngestBuffer.offer(paste(1));
+        pasteIngestBuffer.offer(paste(2));
+
+        // Full batch is not waited for
+        var start = System.nanoTime();
+        pasteIngestBuffer.awaitBatch(Duration.ofSeconds(10));
+        assertTrue(Duration.ofNanos(System.nanoTime() - start)
+                .compareTo(Duration.ofSeconds(5)) < 0);
+    }
+
+    private static Paste paste(long hash) {
+        return Paste.builder()
+                .hash(hash)
+                .text("message " + hash)
+                .access(Access.PUBLIC)
+                .createdAt(LocalDateTime.of(2023, 1, 1, 0, 0))
+                .expireAt(LocalDateTime.of(2100, 1, 1, 0, 0))
+                .build();
+    }
+}
@@ -0,0 +1,95 @@
+package com.example.service;
+
+import com.example.model.PasteRequest;
+import com.mongodb.client.MongoDatabase;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.test.autoconfigure.actuate.observability.AutoConfigureObservability;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.Matchers.containsString;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+@AutoConfigureObservability
+class PasteMetricsTest {
+
+    @Autowired
+    private PasteServiceMongoDB pasteServiceMongoDB;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private MockMvc mvc;
+
+    @Autowired
+    private MongoDatabase db;
+
+    @Value("${mongodb.collection.pastes}")
+    private String collectionName;
+
+    @Value("${mongodb.collection.blobs}")
+    private String blobsCollectionName;
+
+    @AfterEach
+    void tearDown() {
+        db.getCollection(collectionName).drop();
+        db.getCollection(blobsCollectionName).drop();
+    }
+
+    @Test
+    void testOperationsAreMeasured() throws Exception {
+
+        var createdBefore = meterRegistry.counter("pastes.created").count();
+        var notFoundBefore = meterRegistry.counter("pastes.not.found").count();
+
+        var paste = pasteServiceMongoDB.create(
+                PasteRequest.builder().text("measured message").access("PUBLIC")
+                        .validityInSeconds(600).build());
+        assertNotNull(pasteServiceMongoDB.getByHash(paste.getHash()));
+        assertNull(pasteServiceMongoDB.getByHash(0L));
+        assertEquals(1, pasteServiceMongoDB.getAllBySubstring("measured", null, 10).size());
+
+        assertEquals(createdBefore + 1, meterRegistry.counter("pastes.created").count());
+        assertEquals(notFoundBefore + 1, meterRegistry.counter("pastes.not.found").count());
+
+        var getByHash = meterRegistry.find("pastes.operation").tag("operation", "getByHash")
+                .timer();
+        assertNotNull(getByHash);
+        assertTrue(getByHash.count() >= 2);
+
+        // Both lookups ran a command and the found paste was decoded
+        var mongodb = meterRegistry.find("pastes.operation.mongodb").tag("operation", "getByHash")
+                .timer();
+        var conversion = meterRegistry.find("pastes.operation.conversion")
+                .tag("operation", "getByHash").timer();
+        assertTrue(mongodb.totalTime(TimeUnit.NANOSECONDS) > 0);
+        assertTrue(conversion.totalTime(TimeUnit.NANOSECONDS) > 0);
+        assertTrue(mongodb.totalTime(TimeUnit.NANOSECONDS)
+                <= getByHash.totalTime(TimeUnit.NANOSECONDS));
+
+        // Lookups and the search are measured by their routes as well
+        assertTrue(meterRegistry.find("pastes.read").tag("route", "lookup").timer().count() >= 2);
+        assertTrue(meterRegistry.find("pastes.read").tag("route", "scan").timer().count() >= 1);
+
+        assertTrue(meterRegistry.find("pastes.search.results").summary().count() > 0);
+        assertTrue(meterRegistry.find("pastes.size").summary().count() > 0);
+
+        mvc.perform(get("/actuator/prometheus"))
+                .andExpect(status().isOk())
+                .andExpect(content().string(containsString("pastes_operation_seconds_bucket")))
+                .andExpect(content().string(containsString("pastes_created_total")));
+    }
+}
@@ -0,0 +1,59 @@
+package com.example.service;
+
+import com.example.model.Paste;
+import com.mongodb.ReadConcern;
+import com.mongodb.ReadPreference;
+import com.mongodb.TaggableReadPreference;
+import com.mongodb.client.MongoDatabase;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(properties = {
+        "mongodb.routes.scan.read-preference=secondaryPreferred",
+        "mongodb.routes.scan.max-staleness.seconds=120",
+        "mongodb.routes.scan.read-concern=majority"
+})
+class PasteReadRoutesTest {
+
+    @Autowired
+    private PasteReadRoutes pasteReadRoutes;
+
+    @Autowired
+    private MongoDatabase db;
+
+    @Test
+    void testRoutes() {
+
+        assertEquals(ReadPreference.primary(),
+                     pasteReadRoutes.getReadPreference(PasteReadRoute.LOOKUP));
+        assertEquals(ReadConcern.LOCAL, pasteReadRoutes.getReadConcern(PasteReadRoute.LOOKUP));
+
+        var scan = (TaggableReadPreference) pasteReadRoutes.getReadPreference(PasteReadRoute.SCAN);
+        assertEquals(ReadPreference.secondaryPreferred().getName(), scan.getName());
+        assertEquals(120, scan.getMaxStaleness(TimeUnit.SECONDS));
+        assertEquals(ReadConcern.MAJORITY, pasteReadRoutes.getReadConcern(PasteReadRoute.SCAN));
+
+        var collection = pasteReadRoutes.route(db.getCollection("pastes-test", Paste.class),
+                PasteReadRoute.SCAN);
+        assertEquals(scan, collection.getReadPreference());
+        assertEquals(ReadConcern.MAJORITY, collection.getReadConcern());
+    }
+
+    @Test
+    void testInvalidMaxStaleness() {
+
+        assertThrows(IllegalArgumentException.class,
+                () -> new PasteReadRoutes("primary", "local", "secondaryPreferred", 10, "local"));
+        assertThrows(IllegalArgumentException.class,
+                () -> new PasteReadRoutes("primary", "local", "primary", 90, "local"));
+
+        var routes = new PasteReadRoutes("primary", "local", "nearest", 0, "available");
+        assertEquals(ReadPreference.nearest(), routes.getReadPreference(PasteReadRoute.SCAN));
+        assertEquals(ReadConcern.AVAILABLE, routes.getReadConcern(PasteReadRoute.SCAN));
+    }
+}
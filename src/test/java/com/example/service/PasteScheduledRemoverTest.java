@@ -1,10 +1,12 @@
 package com.example.service;
 
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 
@@ -15,15 +17,19 @@ class PasteScheduledRemoverTest {
     @Mock
     private PasteService pasteService;
 
+    private PasteMetrics pasteMetrics;
+
     @BeforeEach
     void setUp() {
         MockitoAnnotations.openMocks(this);
-        pasteScheduledRemover = new PasteScheduledRemover(pasteService);
+        pasteMetrics = new PasteMetrics(new SimpleMeterRegistry());
+        pasteScheduledRemover = new PasteScheduledRemover(pasteService, pasteMetrics);
     }
 
     @Test
     void testParseAndSend() {
         pasteScheduledRemover.parseAndSend();
         verify(pasteService, times(1)).removeExpiredPastes();
+        assertEquals(1, pasteMetrics.getRemoverRuns().count());
     }
 }
\ No newline at end of file
@@ -0,0 +1,142 @@
+package com.example.service;
+
+import com.example.model.PasteChange;
+import com.example.model.PasteRequest;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class PasteServiceCachingTest {
+
+    private PasteServiceCaching pasteServiceCaching;
+    private SimpleMeterRegistry meterRegistry;
+
+    @Mock
+    private PasteServiceMongoDB pasteService;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        meterRegistry = new SimpleMeterRegistry();
+        pasteServiceCaching =
+                new PasteServiceCaching(pasteService, meterRegistry, 1024 * 1024, 3600, 60_000);
+    }
+
+    @Test
+    void testGetByHash() {
+
+        var paste = PasteRequest.builder().text("cached message").access("PUBLIC")
+                .validityInSeconds(600).build().toPaste();
+        paste.setHash(1L);
+        when(pasteService.getByHash(paste.getHash())).thenReturn(paste);
+
+        for (int i = 0; i < 3; i++) {
+            assertEquals(paste, pasteServiceCaching.getByHash(paste.getHash()));
+        }
+
+        verify(pasteService, times(1)).getByHash(paste.getHash());
+        assertEquals(2, pasteServiceCaching.getStats().hitCount());
+        assertEquals(1, pasteServiceCaching.getStats().missCount());
+
+        // Counters are published to the meter registry
+        assertEquals(2, meterRegistry.get("cache.gets").tags("cache", "pastes", "result", "hit")
+                .functionCounter().count());
+        assertEquals(1, meterRegistry.get("cache.gets").tags("cache", "pastes", "result", "miss")
+                .functionCounter().count());
+    }
+
+    @Test
+    void testGetContentByHash() {
+
+        var paste = PasteRequest.builder().text("cached message").access("PUBLIC")
+                .validityInSeconds(600).build().toPaste();
+        paste.setHash(2L);
+        when(pasteService.getByHash(paste.getHash())).thenReturn(paste);
+
+        // Missing paste is loaded whole and cached for both kinds of reads
+        assertEquals(paste.getText(),
+                     pasteServiceCaching.getContentByHash(paste.getHash()).getText());
+        assertEquals(paste, pasteServiceCaching.getByHash(paste.getHash()));
+        assertNull(pasteServiceCaching.getContentByHash(0L));
+
+        // Hits serve the cached bytes without encoding the text again
+        var content = pasteServiceCaching.getContentByHash(paste.getHash());
+        assertSame(content, pasteServiceCaching.getContentByHash(paste.getHash()));
+        assertEquals("cached message", paste.getText());
+
+        verify(pasteService, times(1)).getByHash(paste.getHash());
+        verify(pasteService, never()).getContentByHash(anyLong());
+    }
+
+    @Test
+    void testGetByHashOfMissingPaste() {
+
+        assertNull(pasteServiceCaching.getByHash(0L));
+        assertNull(pasteServiceCaching.getByHash(0L));
+
+        verify(pasteService, times(1)).getByHash(0L);
+    }
+
+    @Test
+    void testOnPasteChange() {
+
+        var paste = PasteRequest.builder().text("changed message").access("PUBLIC")
+                .validityInSeconds(600).build().toPaste();
+        paste.setHash(3L);
+
+        // Miss of a paste created by another node is dropped
+        assertNull(pasteServiceCaching.getByHash(paste.getHash()));
+        pasteServiceCaching.onPasteChange(PasteChange.inserted(paste));
+
+        when(pasteService.getByHash(paste.getHash())).thenReturn(paste);
+        assertEquals(paste, pasteServiceCaching.getByHash(paste.getHash()));
+
+        // Cached paste stays until it is deleted by another node
+        pasteServiceCaching.onPasteChange(PasteChange.inserted(paste));
+        assertEquals(paste, pasteServiceCaching.getByHash(paste.getHash()));
+        verify(pasteService, times(2)).getByHash(paste.getHash());
+
+        pasteServiceCaching.onPasteChange(PasteChange.deleted(paste.getHash()));
+        when(pasteService.getByHash(paste.getHash())).thenReturn(null);
+        assertNull(pasteServiceCaching.getByHash(paste.getHash()));
+        verify(pasteService, times(3)).getByHash(paste.getHash());
+    }
+
+    @Test
+    void testGetByHashOfExpiredPaste() {
+
+        var paste = PasteRequest.builder().text("expired message").access("PUBLIC")
+                .validityInSeconds(0).build().toPaste();
+        paste.setHash(4L);
+        when(pasteService.getByHash(paste.getHash())).thenReturn(paste);
+
+        pasteServiceCaching.getByHash(paste.getHash());
+        pasteServiceCaching.getByHash(paste.getHash());
+
+        verify(pasteService, times(2)).getByHash(paste.getHash());
+    }
+
+    @Test
+    void testCreate() {
+
+        var pasteRequest = PasteRequest.builder().text("new message").access("PUBLIC")
+                .validityInSeconds(100).build();
+        var paste = pasteRequest.toPaste();
+        paste.setHash(5L);
+        when(pasteService.create(any(PasteRequest.class))).thenReturn(paste);
+
+        // A miss cached before the paste is created must not hide it
+        assertNull(pasteServiceCaching.getByHash(paste.getHash()));
+
+        pasteServiceCaching.create(pasteRequest);
+
+        assertEquals(paste, pasteServiceCaching.getByHash(paste.getHash()));
+        verify(pasteService, times(1)).getByHash(paste.getHash());
+    }
+}
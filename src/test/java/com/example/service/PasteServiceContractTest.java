@@ -0,0 +1,185 @@
+package com.example.service;
+
+import com.example.model.Paste;
+import com.example.model.PasteCursor;
+import com.example.model.PasteRequest;
+import com.example.model.PasteResult;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Behaviour every {@link PasteStorage} must have, checked through the {@link PasteService} API
+ * only.
+ * Every test starts with an empty storage
+ */
+public abstract class PasteServiceContractTest {
+
+    protected abstract PasteStorage pasteStorage();
+
+    @Test
+    void testCreateAndGetByHash() {
+
+        var paste = pasteStorage().create(request("first test message", "PUBLIC", 600));
+
+        assertNotNull(paste.getHash());
+        assertEquals(paste, pasteStorage().getByHash(paste.getHash()));
+
+        var content = pasteStorage().getContentByHash(paste.getHash());
+        assertNotNull(content);
+        assertEquals("first test message", content.getText());
+    }
+
+    @Test
+    void testGetByMissingHash() {
+        assertNull(pasteStorage().getByHash(0L));
+        assertNull(pasteStorage().getContentByHash(0L));
+        assertNull(pasteStorage().getExpireAtByHash(0L));
+    }
+
+    @Test
+    void testGetExpireAtByHash() {
+
+        var paste = pasteStorage().create(request("test message with expiration", "UNLISTED", 600));
+        var expired = pasteStorage().create(request("expired test message", "PUBLIC", 0));
+
+        var expireAt = pasteStorage().getExpireAtByHash(paste.getHash());
+        assertNotNull(expireAt);
+        assertEquals(0, Duration.between(paste.getExpireAt(), expireAt).toSeconds());
+        assertEquals(expireAt, pasteStorage().getContentByHash(paste.getHash()).getExpireAt());
+
+        assertNull(pasteStorage().getExpireAtByHash(expired.getHash()));
+    }
+
+    @Test
+    void testExpiredPastesAreHidden() {
+
+        var expired = pasteStorage().create(request("expired test message", "PUBLIC", 0));
+
+        assertNull(pasteStorage().getByHash(expired.getHash()));
+        assertNull(pasteStorage().getContentByHash(expired.getHash()));
+        assertTrue(pasteStorage().getAllLast().isEmpty());
+        assertTrue(pasteStorage().getAllBySubstring("expired").isEmpty());
+    }
+
+    @Test
+    void testUnlistedPastesAreOnlyFoundByHash() {
+
+        var unlisted = pasteStorage().create(request("unlisted test message", "unlisted", 600));
+
+        assertEquals(unlisted, pasteStorage().getByHash(unlisted.getHash()));
+        assertTrue(pasteStorage().getAllLast().isEmpty());
+        assertTrue(pasteStorage().getAllBySubstring("unlisted").isEmpty());
+    }
+
+    @Test
+    void testGetAllLastPagesFromTheNewest() {
+
+        // Pastes created within the same second are ordered by their hashes
+        var pastes = new ArrayList<Paste>();
+        for (int i = 0; i < 5; i++) {
+            pastes.add(pasteStorage().create(request("message " + i, "PUBLIC", 600)));
+        }
+        pastes.sort(PasteDocuments.NEWEST_FIRST_ORDER);
+
+        assertEquals(pastes, pasteStorage().getAllLast());
+
+        var firstPage = pasteStorage().getAllLast(null, 2);
+        assertEquals(pastes.subList(0, 2), firstPage);
+
+        var secondPage = pasteStorage().getAllLast(PasteCursor.of(firstPage.get(1)), 2);
+        assertEquals(pastes.subList(2, 4), secondPage);
+
+        var lastPage = pasteStorage().getAllLast(PasteCursor.of(secondPage.get(1)), 2);
+        assertEquals(pastes.subList(4, 5), lastPage);
+    }
+
+    @Test
+    void testGetAllBySubstring() {
+
+        var found = new ArrayList<>(List.of(
+                pasteStorage().create(request("First test message", "PUBLIC", 600)),
+                pasteStorage().create(request("second TEST message", "PUBLIC", 600))));
+        found.sort(PasteDocuments.OLDEST_FIRST_ORDER);
+        var first = found.get(0);
+        var second = found.get(1);
+        pasteStorage().create(request("another one", "PUBLIC", 600));
+        pasteStorage().create(request("text with (.*) inside", "PUBLIC", 600));
+
+        assertEquals(List.of(first, second), pasteStorage().getAllBySubstring("test"));
+        assertEquals(List.of(second),
+                     pasteStorage().getAllBySubstring("test", PasteCursor.of(first), 10));
+        assertEquals(List.of(first), pasteStorage().getAllBySubstring("test", null, 1));
+        assertEquals(List.of(first, second), pasteStorage().streamAllBySubstring("Test").toList());
+
+        // The substring is literal, not a regular expression
+        assertEquals(1, pasteStorage().getAllBySubstring("(.*)").size());
+        assertTrue(pasteStorage().getAllBySubstring(" ").isEmpty());
+    }
+
+    @Test
+    void testCreateAll() {
+
+        var results = pasteStorage().createAll(Arrays.asList(
+                request("first batch message", "PUBLIC", 600),
+                null,
+                request("second batch message", "secret", 600),
+                request(null, "PUBLIC", 600),
+                request("third batch message", "UNLISTED", 600)));
+
+        assertEquals(5, results.size());
+        assertTrue(results.get(0).isCreated());
+        assertEquals(PasteResult.failed("Paste is missing"), results.get(1));
+        assertFalse(results.get(2).isCreated());
+        assertFalse(results.get(3).isCreated());
+        assertTrue(results.get(4).isCreated());
+
+        assertEquals(results.get(0).paste(),
+                     pasteStorage().getByHash(results.get(0).paste().getHash()));
+        assertEquals(results.get(4).paste(),
+                     pasteStorage().getByHash(results.get(4).paste().getHash()));
+        assertEquals(List.of(results.get(0).paste()), pasteStorage().getAllLast());
+    }
+
+    @Test
+    void testCreateFromStream() throws IOException {
+
+        var text = "streamed test message";
+        var paste = pasteStorage().create(request(null, "PUBLIC", 600), stream(text));
+
+        assertEquals(text, pasteStorage().getByHash(paste.getHash()).getText());
+        assertEquals(text, pasteStorage().getContentByHash(paste.getHash()).getText());
+        assertEquals(List.of(paste), pasteStorage().getAllLast());
+    }
+
+    @Test
+    void testRemoveExpiredPastes() {
+
+        var expired = pasteStorage().create(request("expired test message", "PUBLIC", 0));
+        var alive = pasteStorage().create(request("alive test message", "PUBLIC", 600));
+
+        pasteStorage().removeExpiredPastes();
+
+        assertNull(pasteStorage().getByHash(expired.getHash()));
+        assertEquals(alive, pasteStorage().getByHash(alive.getHash()));
+        assertEquals(List.of(alive), pasteStorage().getAllLast());
+    }
+
+    private static InputStream stream(String text) {
+        return new ByteArrayInputStream(text.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static PasteRequest request(String text, String access, int validityInSeconds) {
+        return PasteRequest.builder().text(text).access(access).validityInSeconds(validityInSeconds)
+                .build();
+    }
+}
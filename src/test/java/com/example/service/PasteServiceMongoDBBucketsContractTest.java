@@ -0,0 +1,54 @@
+package com.example.service;
+
+import com.mongodb.client.MongoDatabase;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.test.context.SpringBootTest;
+
+@SpringBootTest(properties = "pastes.expiry.strategy=buckets")
+class PasteServiceMongoDBBucketsContractTest extends PasteServiceContractTest {
+
+    @Autowired
+    private LastPastesFeed lastPastesFeed;
+
+    @Autowired
+    private PasteServiceMongoDB pasteServiceMongoDB;
+
+    @Autowired
+    private MongoDatabase db;
+
+    @Value("${mongodb.collection.pastes}")
+    private String collectionName;
+
+    @Value("${mongodb.collection.blobs}")
+    private String blobsCollectionName;
+
+    @Value("${mongodb.collection.files}")
+    private String filesBucketName;
+
+    @Override
+    protected PasteStorage pasteStorage() {
+        return pasteServiceMongoDB;
+    }
+
+    @BeforeEach
+    void setUp() {
+        // The feed is replaced with the pastes of the storage, rather than merged with the pastes
+        // of other tests
+        lastPastesFeed.reset(pasteServiceMongoDB.getAllLast(10));
+    }
+
+    @AfterEach
+    void tearDown() {
+        for (var name : db.listCollectionNames()) {
+            if (name.startsWith(collectionName)) {
+                db.getCollection(name).drop();
+            }
+        }
+        db.getCollection(blobsCollectionName).drop();
+        db.getCollection(filesBucketName + ".files").drop();
+        db.getCollection(filesBucketName + ".chunks").drop();
+    }
+}
@@ -2,9 +2,13 @@ package com.example.service;
 
 import com.example.model.Access;
 import com.example.model.Paste;
+import com.example.model.PasteCursor;
+import com.example.model.PasteEncoding;
 import com.example.model.PasteRequest;
+import com.example.model.PasteResult;
 import com.mongodb.client.MongoDatabase;
 import org.bson.Document;
+import org.bson.types.Binary;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -13,25 +17,51 @@ import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.mock.mockito.SpyBean;
 
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDateTime;
 import java.time.ZoneId;
 import java.util.*;
+import java.util.function.Function;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
 
 import static org.junit.jupiter.api.Assertions.*;
 
 @SpringBootTest
 class PasteServiceMongoDBTest {
 
+    @Autowired
+    private LastPastesFeed lastPastesFeed;
+
     @Autowired
     private PasteServiceMongoDB pasteServiceMongoDB;
 
+    @Autowired
+    private PasteGramStore pasteGramStore;
+
+    @Autowired
+    private PasteGramsBackfill pasteGramsBackfill;
+
     @SpyBean
     private MongoDatabase db;
 
     @Value("${mongodb.collection.pastes}")
     private String collectionName;
 
+    @Value("${mongodb.collection.blobs}")
+    private String blobsCollectionName;
+
+    @Value("${mongodb.collection.files}")
+    private String filesBucketName;
+
+    @Value("${mongodb.collection.grams}")
+    private String gramsCollectionName;
+
     @Value("${pastes.last-pastes.limit}")
     private int limitOfLastPastes;
 
@@ -41,32 +71,83 @@ class PasteServiceMongoDBTest {
     void setUp() {
 
         pastes = new ArrayList<>(List.of(
-                PasteRequest.builder().text("first test message").access("PUBLIC").validityInSeconds(600).build().toPaste(),
-                PasteRequest.builder().text("second test message").access("unlisted").validityInSeconds(700).build().toPaste(),
-                PasteRequest.builder().text("third test message").access("public").validityInSeconds(0).build().toPaste(),
-                PasteRequest.builder().text("forth test message").access("PUBLIC").validityInSeconds(0).build().toPaste()
+                PasteRequest.builder().text("first test message").access("PUBLIC")
+                        .validityInSeconds(600).build().toPaste(),
+                PasteRequest.builder().text("second test message").access("unlisted")
+                        .validityInSeconds(700).build().toPaste(),
+                PasteRequest.builder().text("third test message").access("public")
+                        .validityInSeconds(0).build().toPaste(),
+                PasteRequest.builder().text("forth test message").access("PUBLIC")
+                        .validityInSeconds(0).build().toPaste()
         ));
+        for (int i = 0; i < pastes.size(); i++) {
+            pastes.get(i).setHash(i + 1L);
+        }
 
-        var docs = toDocuments(pastes);
+        db.getCollection(collectionName, Paste.class).insertMany(pastes);
 
-        var collection = db.getCollection(collectionName);
-        collection.insertMany(docs);
+        // The feed is replaced with the pastes of the storage, rather than merged with the pastes
+        // of other tests
+        lastPastesFeed.reset(pasteServiceMongoDB.getAllLast(10));
     }
 
     @AfterEach
     void tearDown() {
         var collection = db.getCollection(collectionName);
         collection.drop();
+
+        db.getCollection(blobsCollectionName).drop();
+        db.getCollection(gramsCollectionName).drop();
+        db.getCollection(filesBucketName + ".files").drop();
+        db.getCollection(filesBucketName + ".chunks").drop();
     }
 
     @Test
     void testGetByHash() {
         for (var paste : pastes) {
-            assertEquals(paste, pasteServiceMongoDB.getByHash(paste.getHash()));
+            if (isExpired(paste)) {
+                assertNull(pasteServiceMongoDB.getByHash(paste.getHash()));
+            } else {
+                assertEquals(paste, pasteServiceMongoDB.getByHash(paste.getHash()));
+            }
         }
         assertNull(pasteServiceMongoDB.getByHash(0L));
     }
 
+    @Test
+    void testGetContentByHash() {
+
+        for (var paste : pastes) {
+            var content = pasteServiceMongoDB.getContentByHash(paste.getHash());
+            if (isExpired(paste)) {
+                assertNull(content);
+            } else {
+                assertEquals(PasteEncoding.IDENTITY, content.getEncoding());
+                assertEquals(paste.getText(), content.getText());
+                assertArrayEquals(paste.getText().getBytes(StandardCharsets.UTF_8),
+                                  content.getData());
+            }
+        }
+
+        assertNull(pasteServiceMongoDB.getContentByHash(0L));
+
+        // Texts in blobs are served in their stored form
+        var text = "Repeated line of a large paste, served as it is stored. ".repeat(20);
+        var pasteCreated = pasteServiceMongoDB.create(
+                PasteRequest.builder().text(text).access("PUBLIC").validityInSeconds(100).build());
+
+        var content = pasteServiceMongoDB.getContentByHash(pasteCreated.getHash());
+        assertEquals(PasteEncoding.GZIP, content.getEncoding());
+        assertEquals(text, content.getText());
+
+        var unicodeText = "Ünïcödé ✓ text";
+        var pasteUnicode = pasteServiceMongoDB.create(
+                PasteRequest.builder().text(unicodeText).access("PUBLIC").validityInSeconds(100)
+                        .build());
+        assertEquals(unicodeText,
+                     pasteServiceMongoDB.getContentByHash(pasteUnicode.getHash()).getText());
+    }
+
     @Test
     void testGetAllLast() {
 
@@ -75,6 +156,7 @@ class PasteServiceMongoDBTest {
 
         var pastesExpected = pastes.stream()
                 .filter(p -> p.getAccess().equals(Access.PUBLIC))
+                .filter(p -> !isExpired(p))
                 .sorted(Comparator.comparing(Paste::getCreatedAt).reversed())
                 .limit(limitOfLastPastes)
                 .toList();
@@ -88,6 +170,11 @@ class PasteServiceMongoDBTest {
         assertTrue(pasteServiceMongoDB.getAllBySubstring("").isEmpty());
         assertTrue(pasteServiceMongoDB.getAllBySubstring("oooooooooo").isEmpty());
 
+        // Input is matched literally, not as a regular expression
+        assertTrue(pasteServiceMongoDB.getAllBySubstring(".*").isEmpty());
+        assertTrue(pasteServiceMongoDB.getAllBySubstring("(a+)+$").isEmpty());
+        assertFalse(pasteServiceMongoDB.getAllBySubstring("FIRST Test").isEmpty());
+
         // By words
         var words = pastes.stream()
                         .map(Paste::getText)
@@ -100,6 +187,7 @@ class PasteServiceMongoDBTest {
 
             var pastesExpected = pastes.stream()
                     .filter(p -> p.getAccess().equals(Access.PUBLIC))
+                    .filter(p -> !isExpired(p))
                     .filter(p -> p.getText().contains(word))
                     .collect(Collectors.toSet());
 
@@ -124,6 +212,7 @@ class PasteServiceMongoDBTest {
 
             var pastesExpected = pastes.stream()
                     .filter(p -> p.getAccess().equals(Access.PUBLIC))
+                    .filter(p -> !isExpired(p))
                     .filter(p -> p.getText().contains(word))
                     .collect(Collectors.toSet());
 
@@ -132,10 +221,126 @@ class PasteServiceMongoDBTest {
         }
     }
 
+    @Test
+    void testGetAllBySubstringOfCreatedPaste() {
+
+        var pasteRequest = PasteRequest.builder().text("Indexed (message) with 1+1=2")
+                .access("PUBLIC").validityInSeconds(100).build();
+        var pasteCreated = pasteServiceMongoDB.create(pasteRequest);
+
+        for (var text : List.of("indexed", "(MESSAGE)", "1+1=2", "d (m", "h 1")) {
+            assertEquals(List.of(pasteCreated), pasteServiceMongoDB.getAllBySubstring(text));
+        }
+
+        assertTrue(pasteServiceMongoDB.getAllBySubstring("message with").isEmpty());
+    }
+
+    @Test
+    void testGetAllBySubstringOfLargePaste() {
+
+        var text = largeText();
+        var pasteRequest = PasteRequest.builder().text(text).access("PUBLIC").validityInSeconds(100)
+                .build();
+        var pasteCreated = pasteServiceMongoDB.create(pasteRequest);
+        pasteServiceMongoDB.create(pasteRequest.toBuilder().access("UNLISTED").build());
+
+        // Large pastes keep no trigrams and are found by their segments, only public ones are
+        // segmented
+        assertTrue(db.getCollection(gramsCollectionName).countDocuments() > 1);
+        assertEquals(db.getCollection(gramsCollectionName)
+                .countDocuments(new Document("hash", pasteCreated.getHash())),
+                db.getCollection(gramsCollectionName).countDocuments());
+
+        for (var word : List.of("word0 ", "WORD1000", "word1999", text.substring(7000, 7200))) {
+            assertEquals(List.of(pasteCreated), pasteServiceMongoDB.getAllBySubstring(word));
+        }
+
+        assertTrue(pasteServiceMongoDB.getAllBySubstring("word2000").isEmpty());
+    }
+
+    @Test
+    void testGetAllBySubstringOfNotIndexedPastes() {
+
+        // Pastes stored before trigrams were kept in them
+        var pastesNotIndexed = List.of(
+                PasteRequest.builder().text("not indexed message").access("PUBLIC")
+                        .validityInSeconds(100).build().toPaste(),
+                PasteRequest.builder().text(largeText()).access("PUBLIC").validityInSeconds(100)
+                        .build().toPaste());
+        pastesNotIndexed.get(0).setHash(101L);
+        pastesNotIndexed.get(1).setHash(102L);
+        db.getCollection(collectionName).insertMany(toDocuments(pastesNotIndexed));
+        pasteGramStore.setComplete(false);
+
+        assertEquals(List.of(pastesNotIndexed.get(0)),
+                     pasteServiceMongoDB.getAllBySubstring("not indexed"));
+        assertEquals(List.of(pastesNotIndexed.get(1)),
+                     pasteServiceMongoDB.getAllBySubstring("word1500"));
+
+        while (!pasteGramStore.isComplete()) {
+            pasteGramsBackfill.backfill();
+        }
+
+        assertEquals(0, db.getCollection(collectionName)
+                .countDocuments(new Document("gramBuckets", new Document("$exists", false))));
+        assertTrue(db.getCollection(gramsCollectionName)
+                .countDocuments(new Document("hash", pastesNotIndexed.get(1).getHash())) > 1);
+
+        assertEquals(List.of(pastesNotIndexed.get(0)),
+                     pasteServiceMongoDB.getAllBySubstring("not indexed"));
+        assertEquals(List.of(pastesNotIndexed.get(1)),
+                     pasteServiceMongoDB.getAllBySubstring("word1500"));
+    }
+
+    @Test
+    void testGetAllLastByPages() {
+
+        var pastesCreated = new ArrayList<Paste>();
+        for (int i = 0; i < 5; i++) {
+            var pasteRequest = PasteRequest.builder().text("paged message " + i).access("PUBLIC")
+                    .validityInSeconds(100).build();
+            pastesCreated.add(pasteServiceMongoDB.create(pasteRequest));
+        }
+
+        var pastesExpected = Stream.concat(pastes.stream(), pastesCreated.stream())
+                .filter(p -> p.getAccess().equals(Access.PUBLIC))
+                .filter(p -> !isExpired(p))
+                .sorted(Comparator.comparing(Paste::getCreatedAt).thenComparing(Paste::getHash)
+                        .reversed())
+                .toList();
+
+        var pastesFound = readAllPages(after -> pasteServiceMongoDB.getAllLast(after, 2));
+        assertEquals(pastesExpected, pastesFound);
+    }
+
+    @Test
+    void testGetAllBySubstringByPages() {
+
+        var pastesCreated = new ArrayList<Paste>();
+        for (int i = 0; i < 5; i++) {
+            var pasteRequest = PasteRequest.builder().text("paged message " + i).access("PUBLIC")
+                    .validityInSeconds(100).build();
+            pastesCreated.add(pasteServiceMongoDB.create(pasteRequest));
+        }
+
+        var pastesExpected = pastesCreated.stream()
+                .sorted(Comparator.comparing(Paste::getCreatedAt).thenComparing(Paste::getHash))
+                .toList();
+
+        var pastesFound =
+                readAllPages(after -> pasteServiceMongoDB.getAllBySubstring("paged", after, 2));
+        assertEquals(pastesExpected, pastesFound);
+
+        try (var pastesStreamed = pasteServiceMongoDB.streamAllBySubstring("paged")) {
+            assertEquals(pastesExpected, pastesStreamed.toList());
+        }
+    }
+
     @Test
     void testCreate() {
 
-        var pasteRequest = PasteRequest.builder().text("new message").access("PUBLIC").validityInSeconds(100).build();
+        var pasteRequest = PasteRequest.builder().text("new message").access("PUBLIC")
+                .validityInSeconds(100).build();
         var pasteExpected = pasteRequest.toPaste();
 
         var pasteCreated = pasteServiceMongoDB.create(pasteRequest);
@@ -144,19 +349,234 @@ class PasteServiceMongoDBTest {
         assertEquals(pasteExpected.getAccess(), pasteCreated.getAccess());
 
         assertEquals(pasteCreated, pasteServiceMongoDB.getByHash(pasteCreated.getHash()));
+        assertTrue(pasteServiceMongoDB.getAllLast().contains(pasteCreated));
+
+        // Identical text loaded within the same second gets its own hash
+        var pasteCreatedAgain = pasteServiceMongoDB.create(pasteRequest);
+        assertNotEquals(pasteCreated.getHash(), pasteCreatedAgain.getHash());
+        assertEquals(pasteCreatedAgain, pasteServiceMongoDB.getByHash(pasteCreatedAgain.getHash()));
+    }
+
+    @Test
+    void testCreateAll() {
+
+        var sharedText =
+                "Shared artifact of a build that is long enough to be stored in a blob. ".repeat(3);
+        var pasteRequests = List.of(
+                PasteRequest.builder().text("first artifact").access("PUBLIC")
+                        .validityInSeconds(100).build(),
+                PasteRequest.builder().text("no access").validityInSeconds(100).build(),
+                PasteRequest.builder().text(sharedText).access("unlisted").validityInSeconds(100)
+                        .build(),
+                PasteRequest.builder().text("wrong access").access("SECRET").validityInSeconds(100)
+                        .build(),
+                PasteRequest.builder().text(sharedText).access("PUBLIC").validityInSeconds(100)
+                        .build());
+
+        var results = pasteServiceMongoDB.createAll(pasteRequests);
+
+        assertEquals(pasteRequests.size(), results.size());
+        assertEquals(List.of(true, false, true, false, true),
+                     results.stream().map(PasteResult::isCreated).toList());
+        assertEquals("Access is missing", results.get(1).error());
+        assertEquals("Access 'SECRET' is unknown", results.get(3).error());
+
+        for (int i : List.of(0, 2, 4)) {
+            var pasteCreated = results.get(i).paste();
+            assertEquals(pasteRequests.get(i).getText(), pasteCreated.getText());
+            assertEquals(pasteCreated, pasteServiceMongoDB.getByHash(pasteCreated.getHash()));
+        }
+
+        assertEquals(3, db.getCollection(collectionName).countDocuments(
+                new Document("hash", new Document("$in", results.stream()
+                        .filter(PasteResult::isCreated)
+                        .map(r -> r.paste().getHash())
+                        .toList()))));
+
+        var blobs = db.getCollection(blobsCollectionName);
+        assertEquals(1, blobs.countDocuments());
+        assertEquals(2, blobs.find().first().getInteger("refCount"));
+
+        var lastPastes = pasteServiceMongoDB.getAllLast();
+        assertTrue(lastPastes.containsAll(List.of(results.get(0).paste(), results.get(4).paste())));
+        assertFalse(lastPastes.contains(results.get(2).paste()));
+    }
+
+    @Test
+    void testCreateWithSharedText() {
+
+        var text = "Shared log line that is long enough to be stored in a blob. ".repeat(3);
+        var pasteRequest = PasteRequest.builder().text(text).access("PUBLIC").validityInSeconds(100)
+                .build();
+
+        var pasteCreated = pasteServiceMongoDB.create(pasteRequest);
+        var pasteCreatedAgain = pasteServiceMongoDB.create(pasteRequest);
+
+        var blobs = db.getCollection(blobsCollectionName);
+        assertEquals(1, blobs.countDocuments());
+        assertEquals(2, blobs.find().first().getInteger("refCount"));
+
+        var pastesCollection = db.getCollection(collectionName);
+        assertNull(pastesCollection.find(new Document("hash", pasteCreated.getHash())).first()
+                .get("text"));
+
+        assertEquals(pasteCreated, pasteServiceMongoDB.getByHash(pasteCreated.getHash()));
+        assertEquals(pasteCreatedAgain, pasteServiceMongoDB.getByHash(pasteCreatedAgain.getHash()));
+        assertTrue(pasteServiceMongoDB.getAllLast()
+                .containsAll(List.of(pasteCreated, pasteCreatedAgain)));
+
+        assertEquals(Set.of(pasteCreated, pasteCreatedAgain),
+                     new HashSet<>(pasteServiceMongoDB.getAllBySubstring("LOG LINE")));
+        assertTrue(pasteServiceMongoDB.getAllBySubstring("log lines").isEmpty());
+    }
+
+    @Test
+    void testCreateWithCompressedText() {
+
+        var text = "Repeated line of a large paste, compressed at rest. ".repeat(20);
+        var pasteRequest = PasteRequest.builder().text(text).access("PUBLIC").validityInSeconds(100)
+                .build();
+
+        var pasteCreated = pasteServiceMongoDB.create(pasteRequest);
+
+        var blob = db.getCollection(blobsCollectionName).find().first();
+        assertNull(blob.get("text"));
+        assertEquals("gzip", blob.getString("encoding"));
+        assertTrue(blob.get("data", Binary.class).length() < text.length());
+
+        var pasteFound = pasteServiceMongoDB.getByHash(pasteCreated.getHash());
+        assertEquals(PasteEncoding.GZIP, pasteFound.getContent().getEncoding());
+        assertEquals(text, pasteFound.getText());
+        assertEquals(pasteCreated, pasteFound);
+
+        assertEquals(List.of(pasteCreated), pasteServiceMongoDB.getAllBySubstring("LARGE PASTE"));
+    }
+
+    @Test
+    void testCreateFromStreamWithFile() throws IOException {
+
+        // Random words, so that the compressed text still takes several chunks
+        var text = "Large paste " + Stream.generate(UUID::randomUUID).limit(30).map(UUID::toString)
+                .collect(Collectors.joining(" "));
+        var pasteRequest = PasteRequest.builder().access("PUBLIC").validityInSeconds(100).build();
+
+        var pasteCreated = pasteServiceMongoDB.create(pasteRequest,
+                new ByteArrayInputStream(text.getBytes(StandardCharsets.UTF_8)));
+
+        var doc = db.getCollection(collectionName)
+                .find(new Document("hash", pasteCreated.getHash())).first();
+        assertNull(doc.get("text"));
+        assertNotNull(doc.getObjectId("fileId"));
+
+        var file = db.getCollection(filesBucketName + ".files").find().first();
+        assertEquals(doc.getObjectId("fileId"), file.getObjectId("_id"));
+        assertEquals("gzip", file.get("metadata", Document.class).getString("encoding"));
+        assertTrue(db.getCollection(filesBucketName + ".chunks").countDocuments() > 1);
+
+        var content = pasteServiceMongoDB.getContentByHash(pasteCreated.getHash());
+        assertTrue(content.isStreamed());
+        assertEquals(PasteEncoding.GZIP, content.getEncoding());
+        assertEquals(text, content.getText());
+
+        try (var decoded = content.openDecoded()) {
+            assertEquals(text, new String(decoded.readAllBytes(), StandardCharsets.UTF_8));
+        }
+
+        // Texts of files are found only by links
+        assertEquals(text, pasteServiceMongoDB.getByHash(pasteCreated.getHash()).getText());
+        assertFalse(pasteServiceMongoDB.getAllLast(null, 100).contains(pasteCreated));
+        assertTrue(pasteServiceMongoDB.getAllBySubstring("large paste").isEmpty());
+    }
+
+    @Test
+    void testCreateFromStreamFailsToRead() {
+
+        var pasteRequest = PasteRequest.builder().access("PUBLIC").validityInSeconds(100).build();
+        var failingStream = new SequenceInputStream(
+                new ByteArrayInputStream(new byte[1000]),
+                new InputStream() {
+                    @Override
+                    public int read() throws IOException {
+                        throw new IOException("Connection reset");
+                    }
+                });
+
+        assertThrows(IOException.class,
+                     () -> pasteServiceMongoDB.create(pasteRequest, failingStream));
+
+        // Chunks written before the failure are deleted
+        assertEquals(0, db.getCollection(filesBucketName + ".files").countDocuments());
+        assertEquals(0, db.getCollection(filesBucketName + ".chunks").countDocuments());
+        assertEquals(0, db.getCollection(collectionName)
+                .countDocuments(new Document("fileId", new Document("$exists", true))));
+    }
+
+    @Test
+    void testRemoveExpiredPastesWithFile() throws IOException {
+
+        var text = new byte[1000];
+        var pasteRequestExpired = PasteRequest.builder().access("PUBLIC").validityInSeconds(0)
+                .build();
+        var pasteRequestValid = PasteRequest.builder().access("PUBLIC").validityInSeconds(100)
+                .build();
+
+        pasteServiceMongoDB.create(pasteRequestExpired, new ByteArrayInputStream(text));
+        var pasteValid =
+                pasteServiceMongoDB.create(pasteRequestValid, new ByteArrayInputStream(text));
+
+        pasteServiceMongoDB.removeExpiredPastes();
+
+        var files = db.getCollection(filesBucketName + ".files");
+        assertEquals(1, files.countDocuments());
+        assertEquals(pasteValid.getFileId(), files.find().first().getObjectId("_id").toHexString());
+        assertEquals(text.length,
+                     pasteServiceMongoDB.getContentByHash(pasteValid.getHash()).getText().length());
+    }
+
+    @Test
+    void testRemoveExpiredPastesWithSharedText() {
+
+        var text = "Shared log line that is long enough to be stored in a blob. ".repeat(3);
+        var pasteRequestExpired = PasteRequest.builder().text(text).access("PUBLIC")
+                .validityInSeconds(0).build();
+        var pasteRequestValid = PasteRequest.builder().text(text).access("PUBLIC")
+                .validityInSeconds(100).build();
+
+        var blobs = db.getCollection(blobsCollectionName);
+
+        // Blob is kept while any paste referencing it is not expired
+        pasteServiceMongoDB.create(pasteRequestExpired);
+        var pasteValid = pasteServiceMongoDB.create(pasteRequestValid);
+
+        pasteServiceMongoDB.removeExpiredPastes();
+
+        assertEquals(1, blobs.countDocuments());
+        assertEquals(1, blobs.find().first().getInteger("refCount"));
+        assertEquals(pasteValid, pasteServiceMongoDB.getByHash(pasteValid.getHash()));
+
+        // Blob is removed along with the last paste referencing it, even before its own expiration
+        // time
+        var expire = new Document("$set", new Document("expireAt", toDate(LocalDateTime.now())));
+        db.getCollection(collectionName).updateMany(new Document(), expire);
+
+        pasteServiceMongoDB.removeExpiredPastes();
+
+        assertNull(pasteServiceMongoDB.getByHash(pasteValid.getHash()));
+        assertEquals(0, blobs.countDocuments());
     }
 
     @Test
     void testRemoveExpiredPastes() {
 
         var pastesExpired = pastes.stream()
-                            .filter(p -> !LocalDateTime.now().isBefore(p.getExpireAt()))
+                            .filter(this::isExpired)
                             .toList();
 
         pasteServiceMongoDB.removeExpiredPastes();
 
+        var collection = db.getCollection(collectionName);
         for (var pasteExpired : pastesExpired) {
-            assertNull(pasteServiceMongoDB.getByHash(pasteExpired.getHash()));
+            assertNull(collection.find(new Document("hash", pasteExpired.getHash())).first());
         }
 
         pastes.removeAll(pastesExpired);
@@ -165,6 +585,34 @@ class PasteServiceMongoDBTest {
         }
     }
 
+    private List<Paste> readAllPages(Function<PasteCursor, List<Paste>> pageReader) {
+
+        var pastesRead = new ArrayList<Paste>();
+        PasteCursor after = null;
+
+        while (true) {
+            var page = pageReader.apply(after);
+            pastesRead.addAll(page);
+            if (page.isEmpty()) {
+                return pastesRead;
+            }
+            after = PasteCursor.of(page.get(page.size() - 1));
+        }
+    }
+
+    /**
+     * Text with too many trigrams to be kept in a paste
+     */
+    private String largeText() {
+        return IntStream.range(0, 2000)
+                .mapToObj(i -> "word" + i)
+                .collect(Collectors.joining(" "));
+    }
+
+    private boolean isExpired(Paste paste) {
+        return !LocalDateTime.now().isBefore(paste.getExpireAt());
+    }
+
     private List<Document> toDocuments(Collection<Paste> pastes) {
 
         var documents = new ArrayList<Document>();
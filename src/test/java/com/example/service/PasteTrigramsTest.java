@@ -0,0 +1,64 @@
+package com.example.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PasteTrigramsTest {
+
+    private final PasteTrigrams pasteTrigrams = new PasteTrigrams(65536, 64, 16);
+
+    @Test
+    void testOfPaste() {
+
+        assertNotNull(pasteTrigrams.ofPaste("short message"));
+        assertTrue(pasteTrigrams.ofPaste("ab").isEmpty());
+
+        // Too many trigrams to be kept in a paste
+        assertNull(pasteTrigrams.ofPaste(text()));
+    }
+
+    @Test
+    void testOfSegments() {
+
+        assertEquals(1, pasteTrigrams.ofSegments("short message").size());
+
+        var text = text();
+        var segments = pasteTrigrams.ofSegments(text);
+
+        assertTrue(segments.size() > 1);
+        segments.forEach(segment -> assertTrue(segment.size() <= 64));
+
+        // Every substring of at most the overlap is entirely within some segment
+        for (int length = 3; length <= 16; length++) {
+            for (int i = 0; i + length <= text.length(); i++) {
+                var query =
+                        pasteTrigrams.ofSegmentQuery(text.substring(i, i + length).toUpperCase());
+                assertTrue(segments.stream()
+                        .anyMatch(segment -> new HashSet<>(segment).containsAll(query)),
+                        "Substring at " + i + " of " + length
+                        + " characters is not in any segment");
+            }
+        }
+    }
+
+    @Test
+    void testOfSegmentQuery() {
+
+        // Only the beginning of a long substring is matched by segments
+        var text = text();
+        assertEquals(pasteTrigrams.ofSegmentQuery(text.substring(0, 16)),
+                     pasteTrigrams.ofSegmentQuery(text));
+        assertTrue(pasteTrigrams.ofSegmentQuery("ab").isEmpty());
+    }
+
+    private String text() {
+        return IntStream.range(0, 200)
+                .mapToObj(i -> "word" + i)
+                .collect(Collectors.joining(" "));
+    }
+}
@@ -0,0 +1,129 @@
+package com.example.service;
+
+import com.example.config.MongoDBIndexesInitializer;
+import com.example.model.PasteRequest;
+import com.mongodb.client.MongoDatabase;
+import org.bson.Document;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.*;
+
+@SpringBootTest(properties = {
+        "pastes.ingest.write-behind.enabled=true",
+        "pastes.ingest.write-behind.capacity=100",
+        "pastes.ingest.write-behind.batch-size=10",
+        "pastes.ingest.write-behind.flush-interval.millis=60000"
+})
+class PasteWriteBehindFlusherTest {
+
+    @Autowired
+    private PasteServiceMongoDB pasteServiceMongoDB;
+
+    @Autowired
+    private PasteIngestBuffer pasteIngestBuffer;
+
+    @Autowired
+    private PasteWriteBehindFlusher pasteWriteBehindFlusher;
+
+    @Autowired
+    private MongoDBIndexesInitializer mongoDBIndexesInitializer;
+
+    @Autowired
+    private MongoDatabase db;
+
+    @Value("${mongodb.collection.pastes}")
+    private String collectionName;
+
+    @Value("${mongodb.collection.blobs}")
+    private String blobsCollectionName;
+
+    @AfterEach
+    void tearDown() {
+        db.getCollection(collectionName).drop();
+        db.getCollection(blobsCollectionName).drop();
+    }
+
+    @Test
+    void testCreateAndDrain() throws InterruptedException {
+
+        var pasteRequest = PasteRequest.builder().text("buffered message").access("PUBLIC")
+                .validityInSeconds(100).build();
+        var collection = db.getCollection(collectionName);
+
+        // Less than a batch within the flush interval stays in the buffer, but is readable at once
+        var pasteCreated = pasteServiceMongoDB.create(pasteRequest);
+
+        assertEquals(pasteCreated, pasteServiceMongoDB.getByHash(pasteCreated.getHash()));
+        assertEquals(0, collection.countDocuments(new Document("hash", pasteCreated.getHash())));
+
+        // Shutdown writes the rest of the buffer
+        pasteWriteBehindFlusher.drain();
+
+        assertEquals(1, collection.countDocuments(new Document("hash", pasteCreated.getHash())));
+        assertNull(pasteIngestBuffer.get(pasteCreated.getHash()));
+        assertEquals(pasteCreated, pasteServiceMongoDB.getByHash(pasteCreated.getHash()));
+    }
+
+    @Test
+    void testFlushRequeuedBatch() {
+
+        var text = "Buffered log line that is long enough to be stored in a blob. ".repeat(3);
+        var pasteRequest = PasteRequest.builder().text(text).access("PUBLIC").validityInSeconds(100)
+                .build();
+
+        // Hashes of written pastes are unique
+        mongoDBIndexesInitializer.createIndexesOfPastes(collectionName);
+
+        var pasteCreated = pasteServiceMongoDB.create(pasteRequest);
+        var batch = pasteIngestBuffer.poll(pasteIngestBuffer.getBatchSize());
+
+        // A batch which was written before its flush failed is written again after it is requeued
+        pasteServiceMongoDB.flush(batch);
+        pasteServiceMongoDB.flush(batch);
+        pasteIngestBuffer.complete(batch);
+
+        assertEquals(1, db.getCollection(collectionName)
+                .countDocuments(new Document("hash", pasteCreated.getHash())));
+        assertEquals(1,
+                     db.getCollection(blobsCollectionName).find().first().getInteger("refCount"));
+        assertEquals(text, pasteServiceMongoDB.getByHash(pasteCreated.getHash()).getText());
+    }
+
+    @Test
+    void testBadPasteDoesNotStopDraining() throws InterruptedException {
+
+        var buffer = new PasteIngestBuffer(100, 10);
+        var pasteService = mock(PasteServiceMongoDB.class);
+        var flusher = new PasteWriteBehindFlusher(buffer, pasteService, Duration.ofMinutes(1));
+
+        var good = PasteRequest.builder().text("good").access("PUBLIC").validityInSeconds(100)
+                .build().toPaste();
+        var bad = PasteRequest.builder().text("bad").access("PUBLIC").validityInSeconds(100)
+                .build().toPaste();
+        good.setHash(1L);
+        bad.setHash(2L);
+        buffer.offer(good);
+        buffer.offer(bad);
+
+        // Any batch with the bad paste fails other than in the storage
+        doThrow(new IllegalStateException("Paste cannot be encoded"))
+                .when(pasteService).flush(argThat(pastes -> pastes.contains(bad)));
+
+        flusher.start();
+        flusher.drain();
+
+        verify(pasteService).flush(List.of(good));
+        assertEquals(0, buffer.size());
+        assertNull(buffer.get(good.getHash()));
+        assertNull(buffer.get(bad.getHash()));
+    }
+}
@@ -0,0 +1,166 @@
+package com.example.service;
+
+import com.example.model.Access;
+import com.example.model.Paste;
+import com.example.model.PasteCursor;
+import com.example.model.PasteRequest;
+import com.mongodb.client.MongoDatabase;
+import org.bson.Document;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import reactor.core.publisher.Flux;
+import reactor.test.StepVerifier;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// TTL indexes of the reactive profile would replace the indexes of the collections shared with
+// other tests
+@SpringBootTest(properties = "pastes.expiry.strategy=scheduler")
+@ActiveProfiles("reactive")
+class ReactivePasteServiceMongoDBTest {
+
+    @Autowired
+    private ReactivePasteServiceMongoDB reactivePasteServiceMongoDB;
+
+    @Autowired
+    private LastPastesFeed lastPastesFeed;
+
+    @Autowired
+    private MongoDatabase db;
+
+    @Value("${mongodb.collection.pastes}")
+    private String collectionName;
+
+    @Value("${mongodb.collection.blobs}")
+    private String blobsCollectionName;
+
+    @BeforeEach
+    void setUp() {
+        lastPastesFeed.reset(List.of());
+    }
+
+    @AfterEach
+    void tearDown() {
+        db.getCollection(collectionName).drop();
+        db.getCollection(blobsCollectionName).drop();
+    }
+
+    @Test
+    void testCreateAndGetByHash() {
+
+        var pasteRequest = PasteRequest.builder().text("reactive message").access("PUBLIC")
+                .validityInSeconds(100).build();
+
+        var pasteCreated = reactivePasteServiceMongoDB.create(pasteRequest).block();
+
+        assertNotNull(pasteCreated);
+        assertEquals(pasteRequest.getText(), pasteCreated.getText());
+        assertEquals(Access.PUBLIC, pasteCreated.getAccess());
+
+        StepVerifier.create(reactivePasteServiceMongoDB.getByHash(pasteCreated.getHash()))
+                .expectNext(pasteCreated)
+                .verifyComplete();
+
+        // Pastes are stored exactly like by the blocking service, so they are read by the same
+        // codec
+        assertEquals(pasteCreated, db.getCollection(collectionName, Paste.class)
+                .find(new Document("hash", pasteCreated.getHash()))
+                .first());
+
+        StepVerifier.create(reactivePasteServiceMongoDB.getByHash(0L))
+                .verifyComplete();
+    }
+
+    @Test
+    void testCreateWithSharedText() {
+
+        var text = "Shared reactive line that is long enough to be stored in a blob. ".repeat(3);
+        var pasteRequest = PasteRequest.builder().text(text).access("PUBLIC").validityInSeconds(100)
+                .build();
+
+        var pasteCreated = reactivePasteServiceMongoDB.create(pasteRequest).block();
+        var pasteCreatedAgain = reactivePasteServiceMongoDB.create(pasteRequest).block();
+
+        assertNotNull(pasteCreated);
+        assertEquals(2,
+                     db.getCollection(blobsCollectionName).find().first().getInteger("refCount"));
+
+        StepVerifier.create(reactivePasteServiceMongoDB.getByHash(pasteCreated.getHash()))
+                .expectNext(pasteCreated)
+                .verifyComplete();
+
+        var pastesExpected = Stream.of(pasteCreated, pasteCreatedAgain)
+                .sorted(PasteDocuments.OLDEST_FIRST_ORDER)
+                .toList();
+
+        StepVerifier.create(reactivePasteServiceMongoDB.getAllBySubstring("REACTIVE LINE"))
+                .expectNextSequence(pastesExpected)
+                .verifyComplete();
+    }
+
+    @Test
+    void testGetAllByPages() {
+
+        var pastesCreated = new ArrayList<Paste>();
+        for (int i = 0; i < 5; i++) {
+            var pasteRequest = PasteRequest.builder().text("paged message " + i).access("PUBLIC")
+                    .validityInSeconds(100).build();
+            pastesCreated.add(reactivePasteServiceMongoDB.create(pasteRequest).block());
+        }
+        pastesCreated.add(reactivePasteServiceMongoDB.create(
+                PasteRequest.builder().text("unlisted paged message").access("UNLISTED")
+                        .validityInSeconds(100).build()).block());
+
+        var oldestFirst = Comparator.comparing(Paste::getCreatedAt).thenComparing(Paste::getHash);
+        var pastesOldestFirst = pastesCreated.stream()
+                .filter(p -> p.getAccess() == Access.PUBLIC)
+                .sorted(oldestFirst)
+                .toList();
+        var pastesNewestFirst = pastesOldestFirst.stream()
+                .sorted(oldestFirst.reversed())
+                .toList();
+
+        assertEquals(pastesNewestFirst,
+                     readAllPages(after -> reactivePasteServiceMongoDB.getAllLast(after, 2)));
+        assertEquals(pastesOldestFirst,
+                     readAllPages(after ->
+                             reactivePasteServiceMongoDB.getAllBySubstring("paged", after, 2)));
+
+        assertTrue(reactivePasteServiceMongoDB.getAllLast().collectList().block()
+                .containsAll(pastesOldestFirst));
+
+        // Subscriber takes found pastes one by one
+        StepVerifier.create(reactivePasteServiceMongoDB.getAllBySubstring("paged"), 1)
+                .expectNext(pastesOldestFirst.get(0))
+                .thenRequest(1)
+                .expectNext(pastesOldestFirst.get(1))
+                .thenCancel()
+                .verify();
+    }
+
+    private List<Paste> readAllPages(Function<PasteCursor, Flux<Paste>> pageReader) {
+
+        var pastesRead = new ArrayList<Paste>();
+        PasteCursor after = null;
+
+        while (true) {
+            var page = pageReader.apply(after).collectList().block();
+            pastesRead.addAll(page);
+            if (page.isEmpty()) {
+                return pastesRead;
+            }
+            after = PasteCursor.of(page.get(page.size() - 1));
+        }
+    }
+}
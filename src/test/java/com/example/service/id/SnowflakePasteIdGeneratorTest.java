@@ -0,0 +1,54 @@
+package com.example.service.id;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SnowflakePasteIdGeneratorTest {
+
+    private SnowflakePasteIdGenerator snowflakePasteIdGenerator;
+
+    @BeforeEach
+    void setUp() {
+        snowflakePasteIdGenerator = new SnowflakePasteIdGenerator(5);
+    }
+
+    @Test
+    void testGenerate() {
+
+        var now = LocalDateTime.now();
+
+        long previous = 0;
+        for (int i = 0; i < 10_000; i++) {
+            var hash = snowflakePasteIdGenerator.generate("same text", now);
+            assertTrue(hash > previous);
+            assertEquals(5, (hash >>> SnowflakePasteIdGenerator.SEQUENCE_BITS)
+                    & SnowflakePasteIdGenerator.MAX_NODE_ID);
+            previous = hash;
+        }
+    }
+
+    @Test
+    void testGenerateConcurrently() {
+
+        var now = LocalDateTime.now();
+        Set<Long> hashes = ConcurrentHashMap.newKeySet();
+
+        IntStream.range(0, 100_000).parallel()
+                .forEach(i -> hashes.add(snowflakePasteIdGenerator.generate("same text", now)));
+
+        assertEquals(100_000, hashes.size());
+    }
+
+    @Test
+    void testNodeIdOutOfRange() {
+        assertThrows(IllegalArgumentException.class, () -> new SnowflakePasteIdGenerator(-1));
+        assertThrows(IllegalArgumentException.class, () -> new SnowflakePasteIdGenerator(1024));
+    }
+}
@@ -0,0 +1,59 @@
+package com.example.service.memory;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LongObjectMapTest {
+
+    @Test
+    void testPutGetRemove() {
+
+        var map = new LongObjectMap<String>();
+
+        assertNull(map.put(1L, "one"));
+        assertNull(map.put(-1L, "minus one"));
+        assertEquals("one", map.put(1L, "uno"));
+
+        assertEquals("uno", map.get(1L));
+        assertEquals("minus one", map.get(-1L));
+        assertNull(map.get(2L));
+        assertEquals(2, map.size());
+
+        assertEquals("uno", map.remove(1L));
+        assertNull(map.remove(1L));
+        assertFalse(map.containsKey(1L));
+        assertEquals(1, map.size());
+
+        map.clear();
+        assertEquals(0, map.size());
+        assertNull(map.get(-1L));
+    }
+
+    @Test
+    void testBehavesLikeHashMap() {
+
+        var map = new LongObjectMap<Long>();
+        var expected = new HashMap<Long, Long>();
+        var random = new Random(42);
+
+        // A small range of keys makes collisions, removals in the middle of probe sequences and
+        // resizes frequent
+        for (int i = 0; i < 100_000; i++) {
+            long key = random.nextInt(2048) << 20;
+            if (random.nextInt(3) == 0) {
+                assertEquals(expected.remove(key), map.remove(key));
+            } else {
+                assertEquals(expected.put(key, (long) i), map.put(key, (long) i));
+            }
+            assertEquals(expected.size(), map.size());
+        }
+
+        for (long key = 0; key < 2048; key++) {
+            assertEquals(expected.get(key << 20), map.get(key << 20));
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package com.example.service.memory;
+
+import com.example.model.Paste;
+import com.example.model.PasteRequest;
+import com.example.service.PasteDocuments;
+import com.example.service.PasteIngestRejectedException;
+import com.example.service.PasteMetrics;
+import com.example.service.PasteServiceContractTest;
+import com.example.service.PasteStorage;
+import com.example.service.PasteTrigrams;
+import com.example.service.id.SnowflakePasteIdGenerator;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PasteServiceInMemoryTest extends PasteServiceContractTest {
+
+    private static final int SEGMENT_SIZE = 64;
+    private static final int MAX_SIZE = 4 * SEGMENT_SIZE;
+
+    private PasteServiceInMemory pasteServiceInMemory;
+
+    @Override
+    protected PasteStorage pasteStorage() {
+        return pasteServiceInMemory;
+    }
+
+    @BeforeEach
+    void setUp() {
+        pasteServiceInMemory = new PasteServiceInMemory(
+                new SnowflakePasteIdGenerator(0),
+                new PasteDocuments(new PasteTrigrams(65536, 512, 64)),
+                new PasteMetrics(new SimpleMeterRegistry()),
+                10, 3, SEGMENT_SIZE, MAX_SIZE, 1, 16);
+    }
+
+    @Test
+    void testTextsOfExpiredPastesAreReleased() throws InterruptedException {
+
+        pasteServiceInMemory.create(request("a".repeat(SEGMENT_SIZE * 2), 0));
+        pasteServiceInMemory.create(request("expired test message", 0));
+        assertTrue(pasteServiceInMemory.getAllocatedBytes() > 0);
+
+        awaitNextTick();
+        pasteServiceInMemory.removeExpiredPastes();
+
+        // The segment of the current text is kept, the own buffer of the large text is released
+        assertEquals(SEGMENT_SIZE, pasteServiceInMemory.getAllocatedBytes());
+    }
+
+    @Test
+    void testCreateWhenFull() {
+
+        for (int i = 0; i < MAX_SIZE / SEGMENT_SIZE; i++) {
+            pasteServiceInMemory.create(request("b".repeat(SEGMENT_SIZE), 600));
+        }
+
+        var request = request("one more test message", 600);
+        assertThrows(PasteIngestRejectedException.class,
+                     () -> pasteServiceInMemory.create(request));
+
+        var results = pasteServiceInMemory.createAll(List.of(request));
+        assertEquals("Storage of pastes is full", results.get(0).error());
+    }
+
+    @Test
+    void testFragmentedSegmentsAreCompacted() throws InterruptedException {
+
+        // Every segment keeps one long-lived text among expired ones, the last segment stays
+        // current
+        var livePastes = new ArrayList<Paste>();
+        for (int segment = 0; segment < MAX_SIZE / SEGMENT_SIZE; segment++) {
+            livePastes.add(pasteServiceInMemory.create(request("live message #" + segment, 600)));
+            for (int i = 0; i < 3; i++) {
+                pasteServiceInMemory.create(request("expired message" + i, 0));
+            }
+        }
+
+        awaitNextTick();
+        pasteServiceInMemory.removeExpiredPastes();
+
+        // Space of expired texts is reused although no segment is empty
+        for (int i = 0; i < 3; i++) {
+            livePastes.add(
+                    pasteServiceInMemory.create(request("c".repeat(SEGMENT_SIZE * 3 / 4), 600)));
+        }
+
+        assertEquals(MAX_SIZE, pasteServiceInMemory.getAllocatedBytes());
+        for (var paste : livePastes) {
+            assertEquals(paste.getText(),
+                         pasteServiceInMemory.getByHash(paste.getHash()).getText());
+        }
+        assertEquals(MAX_SIZE / SEGMENT_SIZE,
+                     pasteServiceInMemory.getAllBySubstring("live message").size());
+    }
+
+    private static void awaitNextTick() throws InterruptedException {
+        // A slot of the expiry wheel is turned once its tick has passed
+        Thread.sleep(2);
+    }
+
+    private static PasteRequest request(String text, int validityInSeconds) {
+        return PasteRequest.builder().text(text).access("PUBLIC")
+                .validityInSeconds(validityInSeconds).build();
+    }
+}